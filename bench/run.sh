@@ -0,0 +1,14 @@
+#!/bin/sh
+# Compile and run the benchmarks using only the JDK and the jars in lib/,
+# so it works offline. Extra JVM flags can be passed in JAVA_OPTS, e.g.
+#   JAVA_OPTS="-Xmx8g" bench/run.sh -size 1000000 -filter Filter
+# Set MAIN to run another class from bench/, e.g. MAIN=twitter.ScalingHarness.
+set -e
+cd "$(dirname "$0")/.."
+out=build/bench
+rm -rf "$out"
+mkdir -p "$out"
+# hello.java is a stray copy of SocialNetwork and does not compile
+javac -d "$out" -cp lib/javax.json-1.0.jar \
+    $(find src bench -name '*.java' ! -name hello.java)
+exec java $JAVA_OPTS -cp "$out:lib/javax.json-1.0.jar" "${MAIN:-twitter.Benchmarks}" "$@"
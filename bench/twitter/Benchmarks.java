@@ -0,0 +1,286 @@
+/* Copyright (c) 2007-2016 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package twitter;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Benchmarks of every public operation of TweetReader, Extract, Filter and
+ * SocialNetwork over a synthetic corpus.
+ *
+ * Usage: Benchmarks [-size N] [-users N] [-mentions D] [-skew S] [-length L]
+ *                   [-seed N] [-warmup N] [-iterations N] [-time MS]
+ *                   [-filter REGEX]
+ *
+ * Run with bench/run.sh, which needs nothing beyond the JDK and lib/.
+ */
+public class Benchmarks {
+
+    private final List<Tweet> tweets;
+    private final byte[] json;
+    private final byte[] gzippedJson;
+    private final String popularAuthor;
+    private final Timespan middleTenth;
+    private final Map<String, Set<String>> followsGraph;
+    private final WeightedFollowsGraph weightedGraph;
+    private final CompactGraph compactGraph;
+    private final byte[] binaryGraph;
+    private final TweetArena arena;
+    private final TweetBlocks blocks;
+    private final SegmentedTweetStore store;
+    private final TweetIndex index;
+    private final Path indexFile;
+    private final TweetCorpus corpus = new TweetCorpus();
+    private final CachedQueries cachedQueries;
+    private final Map<String, Callable<?>> cases = new LinkedHashMap<>();
+
+    /*
+     * Prepare the inputs of every benchmark from a generated corpus.
+     */
+    private Benchmarks(TweetGenerator generator, int size) throws IOException {
+        this.tweets = generator.tweets(size);
+        this.json = toJson(generator, size);
+        this.gzippedJson = gzip(json);
+        this.popularAuthor = tweets.isEmpty() ? "user0" : tweets.get(0).getAuthor();
+        final Timespan all = Extract.getTimespan(tweets);
+        final long seconds = all.getEnd().getEpochSecond() - all.getStart().getEpochSecond();
+        final Instant from = all.getStart().plusSeconds(seconds * 45 / 100);
+        this.middleTenth = new Timespan(from, from.plusSeconds(seconds / 10));
+        this.followsGraph = SocialNetwork.guessFollowsGraph(tweets);
+        this.weightedGraph = SocialNetwork.guessWeightedFollowsGraph(tweets, EnumSet.of(FollowEvidence.MENTION));
+        this.compactGraph = CompactGraph.of(weightedGraph);
+        this.binaryGraph = exportGraph(true);
+        this.arena = TweetArena.of(tweets);
+        this.blocks = TweetBlocks.of(tweets);
+        this.store = new SegmentedTweetStore();
+        store.append(tweets);
+        store.seal();
+        store.compact();
+        this.index = TweetIndex.build(tweets);
+        this.indexFile = Files.createTempFile("benchmarks", ".twix");
+        indexFile.toFile().deleteOnExit();
+        index.save(indexFile);
+        // appended as polls of 100 would be, in many small batches
+        for (int start = 0; start < tweets.size(); start += 100) {
+            corpus.append(tweets.subList(start, Math.min(start + 100, tweets.size())));
+        }
+        this.cachedQueries = new CachedQueries(corpus, new QueryCache(4L * size));
+        registerCases();
+    }
+
+    private WeightedFollowsGraph ingest(int parsers, int extractors) throws IOException {
+        final IngestPipeline pipeline = new IngestPipeline(parsers, extractors);
+        pipeline.ingest(new ByteArrayInputStream(json));
+        return pipeline.graph();
+    }
+
+    private void registerCases() {
+        cases.put("TweetReader.readTweets", () -> TweetReader.readTweets(new ByteArrayInputStream(json)));
+        cases.put("TweetReader.readTweets.gzip", () -> TweetReader.readTweets(new ByteArrayInputStream(gzippedJson)));
+        // what Main does with one poll: serially, then through the pipeline
+        cases.put("ingest.serial", () -> {
+            final List<Tweet> read = TweetReader.readTweets(new ByteArrayInputStream(json));
+            Extract.getTimespan(read);
+            Extract.getMentionedUsers(read);
+            return SocialNetwork.guessWeightedFollowsGraph(read, EnumSet.of(FollowEvidence.MENTION));
+        });
+        cases.put("IngestPipeline.ingest.1x1", () -> ingest(1, 1));
+        cases.put("IngestPipeline.ingest.2x1", () -> ingest(2, 1));
+        cases.put("TweetDeduplicator.filter.overlap", () -> {
+            final TweetDeduplicator dedup = new TweetDeduplicator(Duration.ofHours(1));
+            dedup.filter(tweets.subList(0, tweets.size() / 2));
+            return dedup.filter(tweets);
+        });
+        cases.put("Extract.getTimespan", () -> Extract.getTimespan(tweets));
+        cases.put("Extract.getTimespan.segments", () -> Extract.getTimespan(store));
+        cases.put("Extract.getMentionedUsers", () -> Extract.getMentionedUsers(tweets));
+        cases.put("Extract.estimateMentionedUsers", () -> Extract.estimateMentionedUsers(tweets));
+        cases.put("Extract.getMentionedUsers.arena", () -> Extract.getMentionedUsers(arena));
+        cases.put("Filter.writtenBy", () -> Filter.writtenBy(tweets, popularAuthor));
+        cases.put("Filter.writtenBy.snapshot", () -> Filter.writtenBy(corpus.snapshot(), popularAuthor));
+        cases.put("TweetCorpus.snapshot", () -> corpus.snapshot());
+        cases.put("TweetCorpus.snapshot.copy", () -> new ArrayList<>(corpus.snapshot()));
+        cases.put("Filter.inTimespan", () -> Filter.inTimespan(tweets, middleTenth));
+        cases.put("Filter.inTimespan.segments", () -> Filter.inTimespan(store, middleTenth));
+        cases.put("Filter.containing.rare", () -> Filter.containing(tweets, Arrays.asList("nosuchword")));
+        cases.put("Filter.containing.common", () -> Filter.containing(tweets, Arrays.asList("rivest", "Obama")));
+        cases.put("Filter.containing.arena.rare", () -> Filter.containing(arena, Arrays.asList("nosuchword")));
+        cases.put("Filter.containing.arena.common", () -> Filter.containing(arena, Arrays.asList("rivest", "Obama")));
+        cases.put("TweetArena.of", () -> TweetArena.of(tweets));
+        cases.put("ByteScanner.delimiters.swar", () -> countDelimiters(true));
+        cases.put("ByteScanner.delimiters.scalar", () -> countDelimiters(false));
+        cases.put("Filter.containing.blocks.rare", () -> Filter.containing(blocks, Arrays.asList("nosuchword")));
+        cases.put("Filter.containing.blocks.common", () -> Filter.containing(blocks, Arrays.asList("rivest", "Obama")));
+        cases.put("Filter.mentioning.rare", () -> Filter.mentioning(tweets, "nosuchuser"));
+        cases.put("Filter.mentioning.common", () -> Filter.mentioning(tweets, popularAuthor));
+        cases.put("Filter.mentioning.blocks.rare", () -> Filter.mentioning(blocks, "nosuchuser"));
+        cases.put("Filter.mentioning.blocks.common", () -> Filter.mentioning(blocks, popularAuthor));
+        cases.put("TweetBlocks.of", () -> TweetBlocks.of(tweets));
+        cases.put("Filter.writtenBy.index", () -> Filter.writtenBy(index, popularAuthor));
+        cases.put("Filter.inTimespan.index", () -> Filter.inTimespan(index, middleTenth));
+        cases.put("Filter.containing.index.rare", () -> Filter.containing(index, Arrays.asList("nosuchword")));
+        cases.put("Filter.containing.index.common", () -> Filter.containing(index, Arrays.asList("rivest", "Obama")));
+        cases.put("TweetIndex.build", () -> TweetIndex.build(tweets));
+        cases.put("CachedQueries.containing.hit", () -> cachedQueries.containing(Arrays.asList("rivest", "Obama")));
+        cases.put("CachedQueries.influencers.hit", () -> cachedQueries.influencers());
+        // misses answered from the resident indexes
+        cases.put("CachedQueries.containing.miss", () -> {
+            cachedQueries.cache().clear();
+            return cachedQueries.containing(Arrays.asList("rivest", "Obama"));
+        });
+        cases.put("CachedQueries.mentioning.miss", () -> {
+            cachedQueries.cache().clear();
+            return cachedQueries.mentioning(popularAuthor);
+        });
+        cases.put("TweetIndex.load", () -> TweetIndex.load(indexFile));
+        cases.put("SocialNetwork.guessFollowsGraph", () -> SocialNetwork.guessFollowsGraph(tweets));
+        cases.put("SocialNetwork.guessFollowsGraph.allEvidence",
+                () -> SocialNetwork.guessFollowsGraph(tweets, EnumSet.allOf(FollowEvidence.class)));
+        cases.put("SocialNetwork.guessFollowsGraph.hashtags",
+                () -> SocialNetwork.guessFollowsGraph(tweets, EnumSet.of(FollowEvidence.HASHTAG)));
+        cases.put("SocialNetwork.guessWeightedFollowsGraph",
+                () -> SocialNetwork.guessWeightedFollowsGraph(tweets, EnumSet.of(FollowEvidence.MENTION)));
+        cases.put("SocialNetwork.influencers", () -> SocialNetwork.influencers(followsGraph));
+        cases.put("SocialNetwork.influencersByStrength", () -> SocialNetwork.influencersByStrength(weightedGraph));
+        cases.put("SocialNetwork.approximateInfluencers", () -> SocialNetwork.approximateInfluencers(tweets, 100));
+        cases.put("SocialNetwork.suggestFollows", () -> SocialNetwork.suggestFollows(followsGraph, 10));
+        cases.put("TriadicClosure.suggest.compact", () -> TriadicClosure.suggestIds(compactGraph, 10, TriadicClosure.DEFAULT_HUB_CAP));
+        cases.put("TriadicClosure.suggest.sequential", () -> sequentialSuggest());
+        cases.put("GraphFormat.writeBinary", () -> exportGraph(true));
+        cases.put("GraphFormat.writeEdgeList", () -> exportGraph(false));
+        cases.put("GraphFormat.readBinary",
+                () -> GraphFormat.readBinary(Channels.newChannel(new ByteArrayInputStream(binaryGraph))));
+        cases.put("SocialNetwork.detectCommunities",
+                () -> SocialNetwork.detectCommunities(followsGraph, LabelPropagation.DEFAULT_MAX_ITERATIONS));
+    }
+
+    /*
+     * The same work as TriadicClosure.suggestIds on a single thread, to show
+     * what the parallel stage gains.
+     */
+    private Object sequentialSuggest() throws Exception {
+        final ForkJoinPool one = new ForkJoinPool(1);
+        try {
+            return one.submit(() -> TriadicClosure.suggestIds(compactGraph, 10, TriadicClosure.DEFAULT_HUB_CAP)).get();
+        } finally {
+            one.shutdown();
+        }
+    }
+
+    /*
+     * Count the '@' and ' ' bytes of every text of the arena, with the
+     * eight-bytes-at-a-time kernel or the byte-at-a-time loop.
+     */
+    private int countDelimiters(boolean swar) {
+        int count = 0;
+        for (int row = 0; row < arena.size(); row++) {
+            final ByteBuffer bytes = arena.textBuffer(row);
+            final int to = arena.textOffset(row) + arena.textLength(row);
+            for (byte delimiter : new byte[] { '@', ' ' }) {
+                for (int i = arena.textOffset(row); ; i++, count++) {
+                    i = swar ? ByteScanner.indexOf(bytes, i, to, delimiter)
+                            : ByteScanner.indexOfScalar(bytes, i, to, delimiter);
+                    if (i == to) {
+                        break;
+                    }
+                }
+            }
+        }
+        return count;
+    }
+
+    private byte[] exportGraph(boolean binary) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        if (binary) {
+            GraphFormat.writeBinary(compactGraph, Channels.newChannel(bytes));
+        } else {
+            GraphFormat.writeEdgeList(compactGraph, Channels.newChannel(bytes));
+        }
+        return bytes.toByteArray();
+    }
+
+    private static byte[] toJson(TweetGenerator generator, int size) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (Writer out = new OutputStreamWriter(bytes, StandardCharsets.UTF_8)) {
+            generator.writeJson(out, size);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static byte[] gzip(byte[] bytes) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gz = new GZIPOutputStream(out)) {
+            gz.write(bytes);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Run the benchmarks.
+     *
+     * @param args command-line options, see class comment
+     * @throws IOException if the corpus cannot be prepared
+     */
+    public static void main(String[] args) throws IOException {
+        final Map<String, String> options = parseOptions(args);
+        final int size = Integer.parseInt(options.getOrDefault("size", "100000"));
+        final int users = Integer.parseInt(options.getOrDefault("users", Integer.toString(Math.max(1, size / 10))));
+        final TweetGenerator generator = new TweetGenerator(
+                Long.parseLong(options.getOrDefault("seed", "6005")),
+                users,
+                Double.parseDouble(options.getOrDefault("mentions", "1.5")),
+                Double.parseDouble(options.getOrDefault("skew", "1.0")),
+                Integer.parseInt(options.getOrDefault("length", "140")));
+        final MicroBench bench = new MicroBench(
+                Integer.parseInt(options.getOrDefault("warmup", "5")),
+                Integer.parseInt(options.getOrDefault("iterations", "5")),
+                Long.parseLong(options.getOrDefault("time", "1000")),
+                System.out);
+        final Pattern filter = Pattern.compile(options.getOrDefault("filter", ".*"));
+
+        System.out.println(generator + ", size=" + size);
+        final Benchmarks benchmarks = new Benchmarks(generator, size);
+        for (Map.Entry<String, Callable<?>> entry : benchmarks.cases.entrySet()) {
+            if (filter.matcher(entry.getKey()).find()) {
+                bench.run(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    /*
+     * Parse "-name value" pairs.
+     */
+    static Map<String, String> parseOptions(String[] args) {
+        final Map<String, String> options = new LinkedHashMap<>();
+        for (int i = 0; i < args.length; i += 2) {
+            if (!args[i].startsWith("-") || i + 1 >= args.length) {
+                throw new IllegalArgumentException("expected -option value pairs, got " + Arrays.toString(args));
+            }
+            options.put(args[i].substring(1), args[i + 1]);
+        }
+        return options;
+    }
+}
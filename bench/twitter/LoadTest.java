@@ -0,0 +1,147 @@
+/* Copyright (c) 2007-2016 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package twitter;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Load test of QueryServer: a number of clients, each on its own virtual
+ * thread, send a fixed mix of queries back to back for a while, and the
+ * client-side latency of each kind of query is reported, along with the
+ * server's own view if it runs in-process.
+ *
+ * By default a server is started in-process over a synthetic corpus; with
+ * -url the test targets a server that is already running.
+ *
+ * Usage: LoadTest [-url http://host:port] [-size N] [-clients N]
+ *                 [-warmup SECONDS] [-seconds SECONDS]
+ */
+public class LoadTest {
+
+    /**
+     * Run the load test.
+     *
+     * @param args command-line options, see class comment
+     * @throws IOException if the in-process server cannot start
+     * @throws InterruptedException if interrupted while waiting for clients
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        final Map<String, String> options = Benchmarks.parseOptions(args);
+        final int clients = Integer.parseInt(options.getOrDefault("clients", "64"));
+        final int warmup = Integer.parseInt(options.getOrDefault("warmup", "5"));
+        final int seconds = Integer.parseInt(options.getOrDefault("seconds", "20"));
+
+        QueryServer server = null;
+        final String base;
+        final String author;
+        final Instant middle;
+        if (options.containsKey("url")) {
+            base = options.get("url");
+            author = "user0";
+            middle = Instant.now().minusSeconds(1800);
+        } else {
+            final int size = Integer.parseInt(options.getOrDefault("size", "100000"));
+            final List<Tweet> tweets = new TweetGenerator(6005, Math.max(1, size / 10)).tweets(size);
+            final TweetCorpus corpus = new TweetCorpus();
+            corpus.append(tweets);
+            server = new QueryServer(new CachedQueries(corpus, new QueryCache(10L * size)),
+                    new InetSocketAddress("localhost", 0));
+            server.start();
+            base = "http://localhost:" + server.port();
+            author = tweets.get(0).getAuthor();
+            final Timespan all = Extract.getTimespan(tweets);
+            middle = all.getStart().plusMillis((all.getEnd().toEpochMilli() - all.getStart().toEpochMilli()) / 2);
+        }
+
+        final Map<String, URI> mix = new LinkedHashMap<>();
+        mix.put("timespan", URI.create(base + "/timespan"));
+        mix.put("mentions", URI.create(base + "/mentions"));
+        mix.put("influencers", URI.create(base + "/influencers?k=10"));
+        mix.put("tweets by author", URI.create(base + "/tweets?author=" + author));
+        mix.put("tweets by words", URI.create(base + "/tweets?words=rivest+Obama&limit=20"));
+        mix.put("tweets in timespan", URI.create(base + "/tweets?start=" + middle
+                + "&end=" + middle.plusSeconds(60) + "&limit=20"));
+
+        System.out.println("target " + base + ", " + clients + " clients");
+        run(mix, clients, warmup, false);
+        run(mix, clients, seconds, true);
+        if (server != null) {
+            System.out.println("server-side latency:");
+            for (String endpoint : new String[] { "/timespan", "/mentions", "/tweets", "/influencers" }) {
+                print(endpoint, server.latency(endpoint), warmup + seconds);
+            }
+            server.stop(0);
+        }
+    }
+
+    private static void run(Map<String, URI> mix, int clients, int seconds, boolean report)
+            throws InterruptedException {
+        final List<String> names = new ArrayList<>(mix.keySet());
+        final Map<String, LatencyHistogram> latencies = new LinkedHashMap<>();
+        for (String name : names) {
+            latencies.put(name, new LatencyHistogram());
+        }
+        final LongAdder errors = new LongAdder();
+        final HttpClient http = HttpClient.newBuilder()
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .build();
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        final ExecutorService pool = Executors.newVirtualThreadPerTaskExecutor();
+        for (int c = 0; c < clients; c++) {
+            final int client = c;
+            pool.execute(() -> {
+                for (int i = client; System.nanoTime() < deadline; i++) {
+                    final String name = names.get(i % names.size());
+                    final long start = System.nanoTime();
+                    try {
+                        final HttpResponse<Void> response = http.send(
+                                HttpRequest.newBuilder(mix.get(name)).build(), HttpResponse.BodyHandlers.discarding());
+                        if (response.statusCode() != 200) {
+                            errors.increment();
+                        }
+                    } catch (IOException ioe) {
+                        errors.increment();
+                    } catch (InterruptedException ie) {
+                        return;
+                    }
+                    latencies.get(name).record(System.nanoTime() - start);
+                }
+            });
+        }
+        pool.shutdown();
+        pool.awaitTermination(seconds + 60, TimeUnit.SECONDS);
+        if (report) {
+            System.out.println(String.format(Locale.ROOT, "%-20s %10s %10s %10s %10s %10s",
+                    "query", "requests", "req/s", "p50 ms", "p99 ms", "max ms"));
+            long total = 0;
+            for (Map.Entry<String, LatencyHistogram> entry : latencies.entrySet()) {
+                print(entry.getKey(), entry.getValue(), seconds);
+                total += entry.getValue().getCount();
+            }
+            System.out.println(String.format(Locale.ROOT, "total %d requests, %.0f req/s, %d errors",
+                    total, (double) total / seconds, errors.sum()));
+        }
+    }
+
+    private static void print(String name, LatencyHistogram latency, int seconds) {
+        System.out.println(String.format(Locale.ROOT, "%-20s %10d %10.0f %10.2f %10.2f %10.2f",
+                name, latency.getCount(), (double) latency.getCount() / seconds,
+                latency.getPercentile(50) / 1e6, latency.getPercentile(99) / 1e6, latency.getMax() / 1e6));
+    }
+}
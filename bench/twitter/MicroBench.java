@@ -0,0 +1,176 @@
+/* Copyright (c) 2007-2016 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package twitter;
+
+import java.io.PrintStream;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+
+/**
+ * A small, dependency-free microbenchmark runner in the spirit of JMH.
+ *
+ * Each benchmark is run for a number of warmup iterations, whose results are
+ * discarded, and then for a number of measured iterations. An iteration calls
+ * the operation repeatedly until a time budget is used up. Every result is
+ * folded into a sink so the JIT cannot eliminate the work as dead code.
+ *
+ * Unlike JMH there is no forking: run one benchmark per JVM (see the -filter
+ * option of Benchmarks) when profile pollution between benchmarks matters.
+ */
+public class MicroBench {
+
+    /**
+     * Outcome of one benchmark.
+     */
+    public static final class Result {
+        private final String name;
+        private final double meanNanosPerOp;
+        private final double stddevNanosPerOp;
+        private final long ops;
+
+        Result(String name, double meanNanosPerOp, double stddevNanosPerOp, long ops) {
+            this.name = name;
+            this.meanNanosPerOp = meanNanosPerOp;
+            this.stddevNanosPerOp = stddevNanosPerOp;
+            this.ops = ops;
+        }
+
+        /**
+         * @return name of the benchmark
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return mean time per operation over the measured iterations, in ns
+         */
+        public double getMeanNanosPerOp() {
+            return meanNanosPerOp;
+        }
+
+        /**
+         * @return standard deviation of the per-iteration time per operation, in ns
+         */
+        public double getStddevNanosPerOp() {
+            return stddevNanosPerOp;
+        }
+
+        /**
+         * @return total number of operations in the measured iterations
+         */
+        public long getOps() {
+            return ops;
+        }
+
+        /*
+         * @see Object.toString()
+         */
+        @Override public String toString() {
+            return String.format(Locale.ROOT, "%-48s %14.1f +- %10.1f ns/op %12.1f ops/s",
+                    name, meanNanosPerOp, stddevNanosPerOp, 1e9 / meanNanosPerOp);
+        }
+    }
+
+    private final int warmupIterations;
+    private final int measurementIterations;
+    private final long iterationNanos;
+    private final PrintStream out;
+
+    private volatile int sink;
+
+    /**
+     * Make a runner.
+     *
+     * @param warmupIterations
+     *            number of unmeasured iterations, >= 0.
+     * @param measurementIterations
+     *            number of measured iterations, > 0.
+     * @param iterationMillis
+     *            minimum duration of each iteration, > 0.
+     * @param out
+     *            where to report each result as it completes.
+     */
+    public MicroBench(int warmupIterations, int measurementIterations, long iterationMillis, PrintStream out) {
+        if (warmupIterations < 0 || measurementIterations <= 0 || iterationMillis <= 0) {
+            throw new IllegalArgumentException("invalid iteration settings");
+        }
+        this.warmupIterations = warmupIterations;
+        this.measurementIterations = measurementIterations;
+        this.iterationNanos = iterationMillis * 1_000_000L;
+        this.out = out;
+    }
+
+    /**
+     * Run a benchmark and report its result.
+     *
+     * @param name
+     *            name of the benchmark.
+     * @param operation
+     *            the operation to measure; its result is consumed so it is not
+     *            optimized away.
+     * @return the measured result
+     * @throws RuntimeException wrapping any exception thrown by operation
+     */
+    public Result run(String name, Callable<?> operation) {
+        try {
+            for (int i = 0; i < warmupIterations; i++) {
+                iteration(operation);
+            }
+            final double[] perOp = new double[measurementIterations];
+            long ops = 0;
+            for (int i = 0; i < measurementIterations; i++) {
+                final long[] measured = iteration(operation);
+                perOp[i] = (double) measured[0] / measured[1];
+                ops += measured[1];
+            }
+            final Result result = new Result(name, mean(perOp), stddev(perOp), ops);
+            out.println(result);
+            return result;
+        } catch (Exception e) {
+            throw new RuntimeException("benchmark " + name + " failed", e);
+        }
+    }
+
+    /*
+     * Run operation until the iteration budget is used up.
+     *
+     * @return { elapsed nanoseconds, number of operations }
+     */
+    private long[] iteration(Callable<?> operation) throws Exception {
+        long ops = 0;
+        final long start = System.nanoTime();
+        long elapsed;
+        do {
+            consume(operation.call());
+            ops++;
+            elapsed = System.nanoTime() - start;
+        } while (elapsed < iterationNanos);
+        return new long[] { elapsed, ops };
+    }
+
+    private void consume(Object result) {
+        sink += System.identityHashCode(result);
+    }
+
+    private static double mean(double[] xs) {
+        double sum = 0;
+        for (double x : xs) {
+            sum += x;
+        }
+        return sum / xs.length;
+    }
+
+    private static double stddev(double[] xs) {
+        if (xs.length < 2) {
+            return 0;
+        }
+        final double mean = mean(xs);
+        double squares = 0;
+        for (double x : xs) {
+            squares += (x - mean) * (x - mean);
+        }
+        return Math.sqrt(squares / (xs.length - 1));
+    }
+}
@@ -0,0 +1,241 @@
+/* Copyright (c) 2007-2016 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package twitter;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Measures how the analytics scale with corpus size.
+ *
+ * For each scale step (by default 10K, 100K, ... up to -to) a synthetic
+ * corpus with power-law authors and mentions is generated, optionally
+ * written to a gzipped JSON file and read back with TweetReader, and each
+ * operation is run a few times. For the fastest run the harness reports
+ * throughput in tweets per second, the bytes allocated by the measuring
+ * thread and its allocation rate, and the peak heap occupancy during the run.
+ * The sweep stops at the first step that runs out of memory.
+ *
+ * The operations named stream:... take their tweets from
+ * TweetGenerator.iterator, one at a time, through the Iterator overloads of
+ * Extract and SocialNetwork, so they never hold the corpus. With -stream
+ * only, just those run and the list is never built, which lets the sweep
+ * go past what fits in the heap.
+ *
+ * Usage: ScalingHarness [-from N] [-to N] [-factor N] [-usersPerTweet F]
+ *                       [-mentions D] [-skew S] [-mentionSkew S] [-seed N]
+ *                       [-repeat N] [-json true|false] [-filter REGEX]
+ *                       [-stream also|only|none]
+ *
+ * Give the JVM a large heap (JAVA_OPTS=-Xmx...) for the upper steps: held
+ * in memory, 100M tweets need tens of gigabytes.
+ */
+public class ScalingHarness {
+
+    private static final double MB = 1024.0 * 1024.0;
+
+    private final com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    private final int repeat;
+    private final Pattern filter;
+
+    private ScalingHarness(int repeat, Pattern filter) {
+        this.repeat = repeat;
+        this.filter = filter;
+    }
+
+    /**
+     * Run the scaling sweep.
+     *
+     * @param args command-line options, see class comment
+     * @throws IOException if a JSON corpus cannot be written or read
+     */
+    public static void main(String[] args) throws IOException {
+        final Map<String, String> options = Benchmarks.parseOptions(args);
+        final long from = Long.parseLong(options.getOrDefault("from", "10000"));
+        final long to = Long.parseLong(options.getOrDefault("to", "100000000"));
+        final long factor = Long.parseLong(options.getOrDefault("factor", "10"));
+        final double usersPerTweet = Double.parseDouble(options.getOrDefault("usersPerTweet", "0.1"));
+        final double skew = Double.parseDouble(options.getOrDefault("skew", "1.0"));
+        final boolean json = Boolean.parseBoolean(options.getOrDefault("json", "false"));
+        final String stream = options.getOrDefault("stream", "also");
+        if (!Arrays.asList("also", "only", "none").contains(stream)) {
+            throw new IllegalArgumentException("-stream must be also, only or none");
+        }
+        final ScalingHarness harness = new ScalingHarness(
+                Integer.parseInt(options.getOrDefault("repeat", "3")),
+                Pattern.compile(options.getOrDefault("filter", ".*")));
+
+        System.out.println(String.format(Locale.ROOT, "%12s %-32s %10s %14s %10s %10s %10s",
+                "tweets", "operation", "ms", "tweets/s", "alloc MB", "MB/s", "peak MB"));
+        for (long scale = from; scale <= to; scale *= factor) {
+            final TweetGenerator generator = new TweetGenerator(
+                    Long.parseLong(options.getOrDefault("seed", "6005")),
+                    (int) Math.max(1, Math.min(Integer.MAX_VALUE - 8, scale * usersPerTweet)),
+                    Double.parseDouble(options.getOrDefault("mentions", "1.5")),
+                    skew,
+                    Double.parseDouble(options.getOrDefault("mentionSkew", Double.toString(skew))),
+                    TweetGenerator.MAX_TEXT_LENGTH);
+            try {
+                if (!stream.equals("none")) {
+                    harness.stream(generator, scale);
+                }
+                if (!stream.equals("only")) {
+                    harness.step(generator, scale, json);
+                }
+            } catch (OutOfMemoryError oome) {
+                System.out.println("out of memory at " + scale + " tweets; stopping");
+                return;
+            }
+        }
+    }
+
+    /*
+     * Measure the streaming operations over a corpus generated lazily, anew
+     * for each run.
+     */
+    private void stream(TweetGenerator generator, long scale) {
+        final Map<String, Callable<?>> operations = new LinkedHashMap<>();
+        operations.put("stream:getTimespan", () -> Extract.getTimespan(generator.iterator(scale)));
+        operations.put("stream:estimateMentionedUsers",
+                () -> Extract.estimateMentionedUsers(generator.iterator(scale)));
+        operations.put("stream:approximateInfluencers",
+                () -> SocialNetwork.approximateInfluencers(generator.iterator(scale), 100));
+        for (Map.Entry<String, Callable<?>> entry : operations.entrySet()) {
+            if (filter.matcher(entry.getKey()).find()) {
+                measure(scale, entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    /*
+     * Generate one corpus and measure every selected operation on it.
+     */
+    private void step(TweetGenerator generator, long scale, boolean json) throws IOException {
+        if (scale > Integer.MAX_VALUE - 8) {
+            throw new OutOfMemoryError("corpus of " + scale + " tweets does not fit in a List");
+        }
+        final List<Tweet> tweets;
+        if (json) {
+            final Path file = Files.createTempFile("tweets-" + scale + "-", ".json.gz");
+            try {
+                try (Writer out = new BufferedWriter(new OutputStreamWriter(
+                        new GZIPOutputStream(Files.newOutputStream(file), 1 << 16), StandardCharsets.UTF_8))) {
+                    generator.writeJson(out, scale);
+                }
+                final String name = "TweetReader.readTweetsFromFile";
+                tweets = filter.matcher(name).find()
+                        ? measure(scale, name, () -> TweetReader.readTweetsFromFile(file))
+                        : TweetReader.readTweetsFromFile(file);
+            } finally {
+                Files.deleteIfExists(file);
+            }
+        } else {
+            tweets = generator.tweets((int) scale);
+        }
+
+        final Timespan all = Extract.getTimespan(tweets);
+        final long seconds = all.getEnd().getEpochSecond() - all.getStart().getEpochSecond();
+        final Instant middle = all.getStart().plusSeconds(seconds * 45 / 100);
+        final Timespan middleTenth = new Timespan(middle, middle.plusSeconds(seconds / 10));
+        final String popularAuthor = tweets.isEmpty() ? "user0" : tweets.get(0).getAuthor();
+        final Map<String, Set<String>> followsGraph = SocialNetwork.guessFollowsGraph(tweets);
+
+        final Map<String, Callable<?>> operations = new LinkedHashMap<>();
+        operations.put("Extract.getTimespan", () -> Extract.getTimespan(tweets));
+        operations.put("Extract.getMentionedUsers", () -> Extract.getMentionedUsers(tweets));
+        operations.put("Extract.estimateMentionedUsers", () -> Extract.estimateMentionedUsers(tweets));
+        operations.put("Filter.writtenBy", () -> Filter.writtenBy(tweets, popularAuthor));
+        operations.put("Filter.inTimespan", () -> Filter.inTimespan(tweets, middleTenth));
+        operations.put("Filter.containing", () -> Filter.containing(tweets, Arrays.asList("rivest", "Obama")));
+        operations.put("SocialNetwork.guessFollowsGraph", () -> SocialNetwork.guessFollowsGraph(tweets));
+        operations.put("SocialNetwork.influencers", () -> SocialNetwork.influencers(followsGraph));
+        operations.put("SocialNetwork.approximateInfluencers", () -> SocialNetwork.approximateInfluencers(tweets, 100));
+        operations.put("SocialNetwork.suggestFollows", () -> SocialNetwork.suggestFollows(followsGraph, 10));
+        operations.put("SocialNetwork.detectCommunities",
+                () -> SocialNetwork.detectCommunities(followsGraph, LabelPropagation.DEFAULT_MAX_ITERATIONS));
+        for (Map.Entry<String, Callable<?>> entry : operations.entrySet()) {
+            if (filter.matcher(entry.getKey()).find()) {
+                measure(scale, entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    /*
+     * Run an operation repeat times, print the fastest run and return the
+     * result of the last run.
+     */
+    private <T> T measure(long scale, String name, Callable<T> operation) {
+        T result = null;
+        long bestNanos = Long.MAX_VALUE;
+        long bestAllocated = 0;
+        long peak = 0;
+        for (int i = 0; i < repeat; i++) {
+            result = null;
+            System.gc();
+            resetPeakHeap();
+            final long allocatedBefore = threads.getCurrentThreadAllocatedBytes();
+            final long start = System.nanoTime();
+            try {
+                result = operation.call();
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Exception e) {
+                throw new RuntimeException(name + " failed", e);
+            }
+            final long nanos = System.nanoTime() - start;
+            final long allocated = threads.getCurrentThreadAllocatedBytes() - allocatedBefore;
+            peak = Math.max(peak, peakHeap());
+            if (nanos < bestNanos) {
+                bestNanos = nanos;
+                bestAllocated = allocated;
+            }
+        }
+        final double seconds = bestNanos / 1e9;
+        System.out.println(String.format(Locale.ROOT, "%12d %-32s %10.1f %14.0f %10.1f %10.1f %10.1f",
+                scale, name, bestNanos / 1e6, scale / seconds,
+                bestAllocated / MB, bestAllocated / MB / seconds, peak / MB));
+        return result;
+    }
+
+    private static void resetPeakHeap() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+            }
+        }
+    }
+
+    /*
+     * Sum of the peak usage of each heap pool since the last reset. Pools peak
+     * at different moments, so this is an upper bound on the true peak.
+     */
+    private static long peakHeap() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+}
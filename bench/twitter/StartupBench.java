@@ -0,0 +1,192 @@
+/* Copyright (c) 2007-2016 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package twitter;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Measures how long a fresh JVM running Main takes to print its first
+ * result, with and without class-data sharing (CDS).
+ *
+ * First a training run of Main over a sample corpus records the classes it
+ * loads, JDK and application and javax.json alike, in an AppCDS archive
+ * (-XX:ArchiveClassesAtExit). Then Main is started -runs times in each
+ * mode, reading the same corpus, and the harness reports the wall-clock
+ * time from starting the process to the first line on its standard output
+ * (the top influencer), and to its exit:
+ *   no CDS   -Xshare:off, every class loaded and verified from jars
+ *   JDK CDS  the JDK's default archive of its own classes
+ *   AppCDS   -XX:SharedArchiveFile with the training run's archive
+ *
+ * CDS archives only classes loaded from jars, so directories on this JVM's
+ * class path, such as build/bench, are packed into jars next to the
+ * archive, and every run of Main uses those. The archive only fits the JVM
+ * and class path that made it, so rebuild it after changing either. To use
+ * it for real runs, start Main with -XX:SharedArchiveFile=ARCHIVE; on JDK
+ * 19 or later, adding -XX:+AutoCreateSharedArchive makes the first run
+ * create it.
+ *
+ * Usage: StartupBench [-size N] [-file PATH] [-runs N] [-archive PATH]
+ *
+ * Run with MAIN=twitter.StartupBench bench/run.sh.
+ */
+public class StartupBench {
+
+    /**
+     * Train the archive and time the runs.
+     *
+     * @param args command-line options, see class comment
+     * @throws IOException if the corpus or archive cannot be written, or Main
+     *         cannot be started
+     * @throws InterruptedException if interrupted while waiting for Main
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        final Map<String, String> options = Benchmarks.parseOptions(args);
+        final int runs = Integer.parseInt(options.getOrDefault("runs", "5"));
+        if (runs < 1) {
+            throw new IllegalArgumentException("-runs must be at least 1");
+        }
+        final Path archive = Paths.get(options.getOrDefault("archive", "build/twitter.jsa")).toAbsolutePath();
+
+        final Path corpus;
+        if (options.containsKey("file")) {
+            corpus = Paths.get(options.get("file"));
+        } else {
+            final int size = Integer.parseInt(options.getOrDefault("size", "10000"));
+            corpus = Files.createTempFile("startup-", ".json.gz");
+            corpus.toFile().deleteOnExit();
+            try (Writer out = new BufferedWriter(new OutputStreamWriter(
+                    new GZIPOutputStream(Files.newOutputStream(corpus), 1 << 16), StandardCharsets.UTF_8))) {
+                new TweetGenerator(6005, Math.max(1, size / 10)).writeJson(out, size);
+            }
+        }
+
+        Files.createDirectories(archive.getParent());
+        Files.deleteIfExists(archive);
+        final String classPath = jarClassPath(archive.getParent());
+        final Run training = run(classPath, corpus, "-XX:ArchiveClassesAtExit=" + archive);
+        if (!Files.exists(archive)) {
+            throw new IOException("training run did not write " + archive);
+        }
+        System.out.println(String.format(Locale.ROOT, "trained %s (%d KB) in %.0f ms",
+                archive, Files.size(archive) / 1024, training.exitMillis));
+
+        final Map<String, String> modes = new LinkedHashMap<>();
+        modes.put("no CDS", "-Xshare:off");
+        modes.put("JDK CDS", "-Xshare:auto");
+        modes.put("AppCDS", "-XX:SharedArchiveFile=" + archive);
+
+        System.out.println(String.format(Locale.ROOT, "%-10s %14s %14s %14s %14s",
+                "mode", "first ms min", "first ms med", "exit ms min", "exit ms med"));
+        for (Map.Entry<String, String> mode : modes.entrySet()) {
+            final double[] first = new double[runs];
+            final double[] exit = new double[runs];
+            for (int i = 0; i < runs; i++) {
+                final Run run = run(classPath, corpus, mode.getValue());
+                first[i] = run.firstResultMillis;
+                exit[i] = run.exitMillis;
+            }
+            Arrays.sort(first);
+            Arrays.sort(exit);
+            System.out.println(String.format(Locale.ROOT, "%-10s %14.1f %14.1f %14.1f %14.1f",
+                    mode.getKey(), first[0], first[runs / 2], exit[0], exit[runs / 2]));
+        }
+    }
+
+    /*
+     * Timings of one run of Main, in milliseconds from starting its process.
+     */
+    private static final class Run {
+        final double firstResultMillis;
+        final double exitMillis;
+
+        Run(double firstResultMillis, double exitMillis) {
+            this.firstResultMillis = firstResultMillis;
+            this.exitMillis = exitMillis;
+        }
+    }
+
+    /*
+     * This JVM's class path, with each directory replaced by a jar of its
+     * contents written to dir.
+     */
+    private static String jarClassPath(Path dir) throws IOException {
+        final List<String> entries = new ArrayList<>();
+        for (String entry : System.getProperty("java.class.path").split(File.pathSeparator)) {
+            final Path path = Paths.get(entry).toAbsolutePath();
+            if (!Files.isDirectory(path)) {
+                entries.add(path.toString());
+                continue;
+            }
+            final Path jar = dir.resolve("classpath-" + entries.size() + ".jar");
+            try (JarOutputStream out = new JarOutputStream(Files.newOutputStream(jar));
+                    Stream<Path> files = Files.walk(path)) {
+                for (Path file : (Iterable<Path>) files.filter(Files::isRegularFile)::iterator) {
+                    final String name = path.relativize(file).toString().replace(File.separatorChar, '/');
+                    out.putNextEntry(new JarEntry(name));
+                    Files.copy(file, out);
+                    out.closeEntry();
+                }
+            }
+            entries.add(jar.toString());
+        }
+        return String.join(File.pathSeparator, entries);
+    }
+
+    /*
+     * Run Main over a corpus in a new JVM with the given class path and
+     * sharing flag.
+     */
+    private static Run run(String classPath, Path corpus, String sharing)
+            throws IOException, InterruptedException {
+        final List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        command.add(sharing);
+        command.add("-ea");
+        command.add("-Dtwitter.file=" + corpus.toAbsolutePath());
+        command.add("-cp");
+        command.add(classPath);
+        command.add("twitter.Main");
+
+        final long start = System.nanoTime();
+        final Process process = new ProcessBuilder(command)
+                .redirectError(ProcessBuilder.Redirect.DISCARD)
+                .start();
+        long first = -1;
+        try (BufferedReader out = new BufferedReader(
+                new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            while (out.readLine() != null) {
+                if (first < 0) {
+                    first = System.nanoTime();
+                }
+            }
+        }
+        final int status = process.waitFor();
+        final long end = System.nanoTime();
+        if (status != 0) {
+            throw new IOException("Main exited with status " + status + ": " + command);
+        }
+        return new Run(((first < 0 ? end : first) - start) / 1e6, (end - start) / 1e6);
+    }
+}
@@ -0,0 +1,330 @@
+/* Copyright (c) 2007-2016 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package twitter;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.NoSuchElementException;
+import java.util.SplittableRandom;
+
+/**
+ * Deterministic generator of synthetic tweets for benchmarks.
+ *
+ * The same seed and parameters always produce the same corpus. Authors and
+ * mentioned users are drawn from a Zipf distribution over a fixed population
+ * of usernames, so a few users write and are mentioned most of the time, as
+ * on the real service. Some tweets are retweets ("RT @user:") or replies
+ * (leading @-mention), and hashtags are drawn from a Zipf distribution over
+ * a fixed set of tags.
+ */
+public class TweetGenerator {
+
+    /** Maximum tweet length allowed by Tweet's rep invariant. */
+    public static final int MAX_TEXT_LENGTH = 140;
+
+    private static final String[] WORDS = {
+        "the", "a", "is", "to", "of", "and", "in", "it", "you", "that",
+        "rivest", "talk", "today", "great", "new", "time", "people", "love", "just", "now",
+        "obama", "game", "music", "news", "happy", "night", "week", "check", "out", "this",
+        "MIT", "Boston", "coffee", "code", "java", "bug", "fix", "ship", "release", "lol",
+    };
+
+    private static final int HASHTAGS = 1000;
+    private static final double HASHTAG_DENSITY = 0.3;
+    private static final int RETWEET_PERCENT = 10;
+    private static final int REPLY_PERCENT = 15;
+
+    private static final Instant EPOCH = Instant.parse("2016-02-17T00:00:00Z");
+    private static final long SPAN_SECONDS = 7L * 24 * 60 * 60;
+    private static final DateTimeFormatter CREATED_AT =
+            DateTimeFormatter.ofPattern("EEE MMM dd HH:mm:ss Z yyyy", Locale.US).withZone(ZoneOffset.UTC);
+
+    private final long seed;
+    private final int users;
+    private final double mentionDensity;
+    private final double authorSkew;
+    private final double mentionSkew;
+    private final int maxTextLength;
+    private final String[] usernames;
+    private final double[] authorCumulative;
+    private final double[] mentionCumulative;
+    private final double[] hashtagCumulative;
+
+    /* Rep invariant:
+     *   users > 0, mentionDensity >= 0, authorSkew >= 0, mentionSkew >= 0
+     *   0 < maxTextLength <= MAX_TEXT_LENGTH
+     *   usernames.length == authorCumulative.length == mentionCumulative.length == users
+     *   each cumulative array is nondecreasing and ends at 1.0
+     */
+
+    /**
+     * Make a generator.
+     *
+     * @param seed
+     *            seed of the pseudo-random sequence.
+     * @param users
+     *            number of distinct usernames, > 0.
+     * @param mentionDensity
+     *            expected number of @-mentions per tweet, >= 0.
+     * @param authorSkew
+     *            Zipf exponent of the author distribution, >= 0; 0 is
+     *            uniform, around 1 is realistic.
+     * @param mentionSkew
+     *            Zipf exponent of the mentioned-user distribution, >= 0.
+     *            Popular authors are also the most mentioned users.
+     * @param maxTextLength
+     *            maximum tweet text length, in 1..140.
+     */
+    public TweetGenerator(long seed, int users, double mentionDensity, double authorSkew, double mentionSkew,
+            int maxTextLength) {
+        if (users <= 0 || mentionDensity < 0 || authorSkew < 0 || mentionSkew < 0
+                || maxTextLength <= 0 || maxTextLength > MAX_TEXT_LENGTH) {
+            throw new IllegalArgumentException("invalid generator parameters");
+        }
+        this.seed = seed;
+        this.users = users;
+        this.mentionDensity = mentionDensity;
+        this.authorSkew = authorSkew;
+        this.mentionSkew = mentionSkew;
+        this.maxTextLength = maxTextLength;
+        this.usernames = new String[users];
+        for (int i = 0; i < users; i++) {
+            // mixed case so that case-insensitive handling is exercised
+            usernames[i] = (i % 3 == 0 ? "User" : "user") + i;
+        }
+        this.authorCumulative = zipfCumulative(users, authorSkew);
+        this.mentionCumulative = mentionSkew == authorSkew ? authorCumulative : zipfCumulative(users, mentionSkew);
+        this.hashtagCumulative = zipfCumulative(HASHTAGS, 1.0);
+    }
+
+    /**
+     * Make a generator whose authors and mentioned users follow the same
+     * Zipf distribution.
+     *
+     * @param seed
+     *            seed of the pseudo-random sequence.
+     * @param users
+     *            number of distinct usernames, > 0.
+     * @param mentionDensity
+     *            expected number of @-mentions per tweet, >= 0.
+     * @param skew
+     *            Zipf exponent of the author and mention distributions, >= 0.
+     * @param maxTextLength
+     *            maximum tweet text length, in 1..140.
+     */
+    public TweetGenerator(long seed, int users, double mentionDensity, double skew, int maxTextLength) {
+        this(seed, users, mentionDensity, skew, skew, maxTextLength);
+    }
+
+    /**
+     * Make a generator with realistic defaults: 1.5 mentions per tweet, Zipf
+     * exponent 1 and full-length tweets.
+     *
+     * @param seed
+     *            seed of the pseudo-random sequence.
+     * @param users
+     *            number of distinct usernames, > 0.
+     */
+    public TweetGenerator(long seed, int users) {
+        this(seed, users, 1.5, 1.0, MAX_TEXT_LENGTH);
+    }
+
+    /*
+     * Cumulative distribution of ranks 1..n under Zipf(s).
+     */
+    private static double[] zipfCumulative(int n, double s) {
+        final double[] cdf = new double[n];
+        double sum = 0;
+        for (int i = 0; i < n; i++) {
+            sum += 1.0 / Math.pow(i + 1, s);
+            cdf[i] = sum;
+        }
+        for (int i = 0; i < n; i++) {
+            cdf[i] /= sum;
+        }
+        cdf[n - 1] = 1.0;
+        return cdf;
+    }
+
+    /**
+     * @return the number of distinct usernames this generator draws from
+     */
+    public int users() {
+        return users;
+    }
+
+    /*
+     * @see Object.toString()
+     */
+    @Override public String toString() {
+        return "TweetGenerator(seed=" + seed
+                + ", users=" + users
+                + ", mentionDensity=" + mentionDensity
+                + ", authorSkew=" + authorSkew
+                + ", mentionSkew=" + mentionSkew
+                + ", maxTextLength=" + maxTextLength + ")";
+    }
+
+    /**
+     * Generate a corpus of tweets with ids 0..count-1 and nondecreasing
+     * timestamps spread over one week.
+     *
+     * @param count
+     *            number of tweets, >= 0.
+     * @return a new modifiable list of count tweets
+     */
+    public List<Tweet> tweets(int count) {
+        final List<Tweet> tweets = new ArrayList<>(count);
+        final SplittableRandom random = new SplittableRandom(seed);
+        final StringBuilder text = new StringBuilder(MAX_TEXT_LENGTH);
+        for (int i = 0; i < count; i++) {
+            tweets.add(next(random, i, count, text));
+        }
+        return tweets;
+    }
+
+    /**
+     * Generate a corpus lazily. The tweets are equal to those returned by
+     * tweets(count), but only the current one is held in memory, so
+     * corpora larger than the heap can be fed to streaming consumers.
+     *
+     * @param count
+     *            number of tweets, >= 0.
+     * @return an iterator over count tweets
+     */
+    public Iterator<Tweet> iterator(long count) {
+        final SplittableRandom random = new SplittableRandom(seed);
+        final StringBuilder text = new StringBuilder(MAX_TEXT_LENGTH);
+        return new Iterator<Tweet>() {
+            private long index = 0;
+
+            @Override public boolean hasNext() {
+                return index < count;
+            }
+
+            @Override public Tweet next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return TweetGenerator.this.next(random, index++, count, text);
+            }
+        };
+    }
+
+    /**
+     * Write a corpus in the JSON format read by TweetReader. Tweets are
+     * generated as they are written, so the corpus is never held in memory.
+     * The tweets written are equal to those returned by tweets(count).
+     *
+     * @param out
+     *            destination of the JSON text; not closed by this method.
+     * @param count
+     *            number of tweets, >= 0.
+     * @throws IOException if out cannot be written
+     */
+    public void writeJson(Writer out, long count) throws IOException {
+        final SplittableRandom random = new SplittableRandom(seed);
+        final StringBuilder text = new StringBuilder(MAX_TEXT_LENGTH);
+        out.write('[');
+        for (long i = 0; i < count; i++) {
+            final Tweet tweet = next(random, i, count, text);
+            if (i > 0) {
+                out.write(',');
+            }
+            out.write("{\"id\":");
+            out.write(Long.toString(tweet.getId()));
+            out.write(",\"text\":\"");
+            writeEscaped(out, tweet.getText());
+            out.write("\",\"created_at\":\"");
+            out.write(CREATED_AT.format(tweet.getTimestamp()));
+            out.write("\",\"user.screen_name\":\"");
+            out.write(tweet.getAuthor());
+            out.write("\"}\n");
+        }
+        out.write(']');
+    }
+
+    /*
+     * Generate tweet number index of count.
+     */
+    private Tweet next(SplittableRandom random, long index, long count, StringBuilder text) {
+        final String author = usernames[pick(random, authorCumulative)];
+        text.setLength(0);
+        int mentions = poisson(random, mentionDensity);
+        int hashtags = poisson(random, HASHTAG_DENSITY);
+        final int shortest = Math.max(1, maxTextLength / 4);
+        final int length = shortest + random.nextInt(maxTextLength - shortest + 1);
+        final int kind = random.nextInt(100);
+        if (mentions > 0 && kind < RETWEET_PERCENT) {
+            text.append("RT @").append(usernames[pick(random, mentionCumulative)]).append(':');
+            mentions--;
+        } else if (mentions > 0 && kind < RETWEET_PERCENT + REPLY_PERCENT) {
+            text.append('@').append(usernames[pick(random, mentionCumulative)]);
+            mentions--;
+        }
+        while (text.length() < length) {
+            final String token;
+            if (mentions > 0 && random.nextInt(3) == 0) {
+                token = "@" + usernames[pick(random, mentionCumulative)];
+                mentions--;
+            } else if (hashtags > 0 && random.nextInt(3) == 0) {
+                token = "#tag" + pick(random, hashtagCumulative);
+                hashtags--;
+            } else {
+                token = WORDS[random.nextInt(WORDS.length)];
+            }
+            if (text.length() + 1 + token.length() > maxTextLength) {
+                break;
+            }
+            if (text.length() > 0) {
+                text.append(' ');
+            }
+            text.append(token);
+        }
+        // timestamps grow with index; large corpora have many tweets per second
+        final long second = count <= 1 ? 0 : index * SPAN_SECONDS / count;
+        return new Tweet(index, author, text.toString(), EPOCH.plusSeconds(second));
+    }
+
+    /*
+     * Draw a user rank from a Zipf distribution.
+     */
+    private static int pick(SplittableRandom random, double[] cumulative) {
+        final int i = Arrays.binarySearch(cumulative, random.nextDouble());
+        return i >= 0 ? i : -i - 1;
+    }
+
+    /*
+     * Draw from a Poisson distribution with the given mean (Knuth's method,
+     * fine for the small means used here).
+     */
+    private static int poisson(SplittableRandom random, double mean) {
+        final double limit = Math.exp(-mean);
+        int k = 0;
+        double p = random.nextDouble();
+        while (p > limit) {
+            k++;
+            p *= random.nextDouble();
+        }
+        return k;
+    }
+
+    private static void writeEscaped(Writer out, String s) throws IOException {
+        for (int i = 0; i < s.length(); i++) {
+            final char c = s.charAt(i);
+            if (c == '"' || c == '\\') {
+                out.write('\\');
+            }
+            out.write(c);
+        }
+    }
+}
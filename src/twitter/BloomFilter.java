@@ -0,0 +1,108 @@
+/* Copyright (c) 2007-2016 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package twitter;
+
+/**
+ * A Bloom filter: a set of values that answers membership queries with no
+ * false negatives and a bounded rate of false positives, in a fixed number
+ * of bits per value.
+ *
+ * A filter made for n values and false-positive rate p holds
+ * ceil(-n ln p / (ln 2)^2) bits, rounded up to a power of two, and sets
+ * round(bits / n * ln 2) of them per value; with at most n values added,
+ * mightContain() of a value never added is true with probability about p.
+ *
+ * Values are added as 64-bit hashes, which must be well mixed. Not
+ * thread-safe while values are being added; safe to query from many threads
+ * once it is no longer modified.
+ */
+public final class BloomFilter {
+
+    private final int hashes;
+    private final int mask;
+    private final long[] bits;
+
+    /* Rep invariant:
+     *   hashes >= 1
+     *   mask + 1 is a power of two, the number of bits, and == 64 * bits.length
+     */
+
+    /**
+     * Make an empty filter.
+     *
+     * @param expectedValues
+     *            number of values the filter is sized for, >= 0.
+     * @param falsePositiveRate
+     *            false-positive rate wanted when that many values have been added, in (0, 1).
+     */
+    public BloomFilter(int expectedValues, double falsePositiveRate) {
+        if (expectedValues < 0) {
+            throw new IllegalArgumentException("expectedValues must be >= 0");
+        }
+        if (!(falsePositiveRate > 0 && falsePositiveRate < 1)) {
+            throw new IllegalArgumentException("falsePositiveRate must be in (0, 1)");
+        }
+        final int n = Math.max(1, expectedValues);
+        final double wanted = Math.max(64, Math.ceil(-n * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2))));
+        if (wanted > 1 << 30) {
+            throw new IllegalArgumentException("filter would exceed 2^30 bits");
+        }
+        final int size = Integer.highestOneBit((int) wanted - 1) << 1;
+        this.mask = size - 1;
+        this.bits = new long[size / 64];
+        this.hashes = Math.max(1, (int) Math.round((double) size / n * Math.log(2)));
+    }
+
+    /*
+     * Bit of hash number i, by double hashing: h1 + i * h2.
+     */
+    private int bit(long hash, int i) {
+        final int h1 = (int) hash;
+        final int h2 = (int) (hash >>> 32) | 1;
+        return (h1 + i * h2) & mask;
+    }
+
+    /**
+     * Add a value.
+     *
+     * @param hash
+     *            well-mixed 64-bit hash of the value.
+     */
+    public void add(long hash) {
+        for (int i = 0; i < hashes; i++) {
+            final int b = bit(hash, i);
+            bits[b >>> 6] |= 1L << b;
+        }
+    }
+
+    /**
+     * @param hash
+     *            well-mixed 64-bit hash of a value.
+     * @return true if the value may have been added, false if it certainly
+     *         has not
+     */
+    public boolean mightContain(long hash) {
+        for (int i = 0; i < hashes; i++) {
+            final int b = bit(hash, i);
+            if ((bits[b >>> 6] & (1L << b)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return number of bits of the filter
+     */
+    public int bitCount() {
+        return mask + 1;
+    }
+
+    /**
+     * @return number of bits set per value added
+     */
+    public int hashCount() {
+        return hashes;
+    }
+}
@@ -0,0 +1,128 @@
+/* Copyright (c) 2007-2016 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package twitter;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A bounded, lock-free, multi-producer multi-consumer FIFO queue over a
+ * ring of slots, after Dmitry Vyukov's bounded MPMC queue.
+ *
+ * Each slot has a sequence number that says whose turn it is: a producer
+ * claims position p by advancing the tail with a compare-and-set once slot
+ * p's sequence is p, fills the slot, and sets the sequence to p + 1; a
+ * consumer claims position p from the head once the sequence is p + 1,
+ * empties the slot, and sets the sequence to p + capacity, handing the slot
+ * to the producer of the next lap. offer() and poll() never block: they
+ * report a full or empty queue instead, and callers decide how to wait.
+ *
+ * @param <T> type of the elements
+ */
+final class BoundedQueue<T> {
+
+    private final int mask;
+    private final AtomicLongArray sequences;
+    private final AtomicReferenceArray<T> slots;
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+
+    /* Rep invariant:
+     *   mask + 1 is a power of two, the capacity, == sequences.length == slots.length
+     *   head <= tail <= head + capacity
+     *   positions head..tail-1 hold the elements, oldest first; slot p & mask
+     *     of a position p being filled or emptied is owned by the thread
+     *     that claimed p
+     *
+     * Thread safety argument:
+     *   positions are claimed by compare-and-set on head and tail, so each
+     *   is claimed by one thread; a slot's element is written before its
+     *   sequence is published with a volatile write, and read after the
+     *   sequence is read, so elements are safely handed over
+     */
+
+    /**
+     * Make an empty queue.
+     *
+     * @param capacity most elements held at once, in 2..2^30; rounded up
+     *        to a power of two
+     */
+    BoundedQueue(int capacity) {
+        if (capacity < 2 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("capacity must be in 2..2^30");
+        }
+        final int size = Integer.highestOneBit(capacity - 1) << 1;
+        this.mask = size - 1;
+        this.sequences = new AtomicLongArray(size);
+        this.slots = new AtomicReferenceArray<>(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * @param element element to add, not null
+     * @return true if it was added, false if the queue was full
+     */
+    boolean offer(T element) {
+        long position = tail.get();
+        while (true) {
+            final int slot = (int) position & mask;
+            final long turn = sequences.get(slot) - position;
+            if (turn == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    slots.lazySet(slot, element);
+                    sequences.set(slot, position + 1);
+                    return true;
+                }
+                position = tail.get();
+            } else if (turn < 0) {
+                return false;
+            } else {
+                position = tail.get();
+            }
+        }
+    }
+
+    /**
+     * @return the oldest element, removed, or null if the queue was empty
+     */
+    T poll() {
+        long position = head.get();
+        while (true) {
+            final int slot = (int) position & mask;
+            final long turn = sequences.get(slot) - (position + 1);
+            if (turn == 0) {
+                if (head.compareAndSet(position, position + 1)) {
+                    final T element = slots.get(slot);
+                    slots.lazySet(slot, null);
+                    sequences.set(slot, position + mask + 1);
+                    return element;
+                }
+                position = head.get();
+            } else if (turn < 0) {
+                return null;
+            } else {
+                position = head.get();
+            }
+        }
+    }
+
+    /**
+     * @return number of elements, exact only when no thread is adding or
+     *         removing elements
+     */
+    int size() {
+        final long size = tail.get() - head.get();
+        return (int) Math.max(0, Math.min(size, mask + 1));
+    }
+
+    /**
+     * @return most elements held at once
+     */
+    int capacity() {
+        return mask + 1;
+    }
+}
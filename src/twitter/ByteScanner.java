@@ -0,0 +1,144 @@
+/* Copyright (c) 2007-2016 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package twitter;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * ByteScanner finds delimiter bytes, like '@' and ' ', in UTF-8 text held
+ * in a ByteBuffer, eight bytes at a time.
+ *
+ * Each step reads a long and computes, without branches, a mask with the
+ * high bit set in exactly the bytes equal to the delimiter (SIMD within a
+ * register); the position of the first such byte is a leading- or
+ * trailing-zero count, depending on the buffer's byte order. The tail of
+ * a range shorter than eight bytes is scanned one byte at a time, as is
+ * every range by the *Scalar variants, which are kept for comparison.
+ */
+final class ByteScanner {
+
+    private static final long ONES = 0x0101010101010101L;
+    private static final long LOW7 = 0x7f7f7f7f7f7f7f7fL;
+    private static final long HIGH = 0x8080808080808080L;
+
+    private ByteScanner() {
+        throw new AssertionError("not instantiable");
+    }
+
+    /*
+     * @return mask with the high bit of each byte of word that is zero, and
+     *         no other bits; exact, since no carry crosses a byte
+     */
+    private static long zeroBytes(long word) {
+        final long low = (word & LOW7) + LOW7;
+        return ~(low | word | LOW7);
+    }
+
+    /*
+     * @return index, in memory order, of the first byte flagged in mask != 0
+     */
+    private static int first(long mask, boolean bigEndian) {
+        return (bigEndian ? Long.numberOfLeadingZeros(mask) : Long.numberOfTrailingZeros(mask)) >>> 3;
+    }
+
+    /**
+     * @param bytes buffer to scan; its position and limit are ignored
+     * @param from index of the first byte to scan
+     * @param to index just past the last byte to scan
+     * @param delimiter byte to find
+     * @return least index in [from, to) of a byte equal to delimiter, or to
+     *         if there is none
+     */
+    static int indexOf(ByteBuffer bytes, int from, int to, byte delimiter) {
+        final boolean bigEndian = bytes.order() == ByteOrder.BIG_ENDIAN;
+        final long pattern = ONES * (delimiter & 0xff);
+        int i = from;
+        for (; i + 8 <= to; i += 8) {
+            final long mask = zeroBytes(bytes.getLong(i) ^ pattern);
+            if (mask != 0) {
+                return i + first(mask, bigEndian);
+            }
+        }
+        return indexOfScalar(bytes, i, to, delimiter);
+    }
+
+    /**
+     * Find every occurrence of a delimiter in a range, which may hold many
+     * texts packed one after another, in one pass.
+     *
+     * @param bytes buffer to scan; its position and limit are ignored
+     * @param from index of the first byte to scan
+     * @param to index just past the last byte to scan
+     * @param delimiter byte to find
+     * @param positions receives the indexes found, in ascending order,
+     *        until it is full
+     * @return number of indexes found, at most positions.length; if it is
+     *         positions.length, scan again from just past the last one
+     */
+    static int indexAll(ByteBuffer bytes, int from, int to, byte delimiter, int[] positions) {
+        final boolean bigEndian = bytes.order() == ByteOrder.BIG_ENDIAN;
+        final long pattern = ONES * (delimiter & 0xff);
+        int found = 0;
+        int i = from;
+        for (; i + 8 <= to && found < positions.length; i += 8) {
+            long mask = zeroBytes(bytes.getLong(i) ^ pattern);
+            while (mask != 0 && found < positions.length) {
+                final int at = first(mask, bigEndian);
+                positions[found++] = i + at;
+                // clear the flag just reported
+                mask &= ~(0x80L << (8 * (bigEndian ? 7 - at : at)));
+            }
+            if (mask != 0) {
+                return found;
+            }
+        }
+        for (; i < to && found < positions.length; i++) {
+            if (bytes.get(i) == delimiter) {
+                positions[found++] = i;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * @param bytes buffer to scan; its position and limit are ignored
+     * @param from index of the first byte to scan
+     * @param to index just past the last byte to scan
+     * @return true iff every byte of [from, to) is ASCII
+     */
+    static boolean isAscii(ByteBuffer bytes, int from, int to) {
+        int i = from;
+        for (; i + 8 <= to; i += 8) {
+            if ((bytes.getLong(i) & HIGH) != 0) {
+                return false;
+            }
+        }
+        for (; i < to; i++) {
+            if (bytes.get(i) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * indexOf(), one byte at a time.
+     *
+     * @param bytes buffer to scan; its position and limit are ignored
+     * @param from index of the first byte to scan
+     * @param to index just past the last byte to scan
+     * @param delimiter byte to find
+     * @return least index in [from, to) of a byte equal to delimiter, or to
+     *         if there is none
+     */
+    static int indexOfScalar(ByteBuffer bytes, int from, int to, byte delimiter) {
+        for (int i = from; i < to; i++) {
+            if (bytes.get(i) == delimiter) {
+                return i;
+            }
+        }
+        return to;
+    }
+}
@@ -0,0 +1,273 @@
+/* Copyright (c) 2007-2016 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package twitter;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+/**
+ * The Extract, Filter and influencer queries of a dashboard over a growing corpus,
+ * answered from a QueryCache while the corpus is unchanged. Queries are
+ * normalized before lookup, so "Obama" and "obama", or the same words in a
+ * different order, share an entry. Results weigh their number of elements
+ * plus one, so the cache's bound is roughly a bound on the references it
+ * holds. Thread-safe.
+ *
+ * A query the cache misses is answered from indexes kept resident beside
+ * the corpus, not by a scan: a TweetIndex for authors, timestamps and
+ * words, and TweetBlocks for mentions, with the timespan and mentioned
+ * users of the tweets they cover. The indexes are split into chunks of
+ * consecutive tweets. When the corpus grows, only its new tweets are
+ * indexed, as a new chunk, and a chunk no larger than the one after it is
+ * merged into it, so there are O(log n) chunks and each tweet is indexed
+ * O(log n) times. append() brings the indexes up to date at once; tweets
+ * appended to the corpus directly are indexed by the next query.
+ */
+public final class CachedQueries {
+
+    private final TweetCorpus corpus;
+    private final QueryCache cache;
+    private volatile Resident resident = new Resident(new TweetCorpus().snapshot(), Collections.emptyList());
+
+    /* Rep invariant:
+     *   every cached value is immutable or unmodifiable
+     *   resident indexes corpus as of some version
+     *
+     * Thread safety argument:
+     *   resident is immutable, and only replaced, while holding this
+     *     object's lock, by one indexing a later snapshot, so its version
+     *     never decreases
+     */
+
+    /*
+     * Indexes of one snapshot of the corpus, in chunks of consecutive tweets.
+     * Immutable.
+     */
+    private static final class Resident {
+        final TweetCorpus.Snapshot snapshot;
+        final List<Chunk> chunks;
+
+        /* Rep invariant:
+         *   chunks are non-empty, cover snapshot in order without gaps, and
+         *     each is larger than the one after it
+         */
+
+        Resident(TweetCorpus.Snapshot snapshot, List<Chunk> chunks) {
+            this.snapshot = snapshot;
+            this.chunks = chunks;
+        }
+
+        /*
+         * Indexes of a later snapshot of the same corpus, reusing the chunks
+         * of this one that need not be merged.
+         */
+        Resident extend(TweetCorpus.Snapshot later) {
+            final List<Chunk> next = new ArrayList<>(chunks);
+            int from = snapshot.size();
+            while (!next.isEmpty() && next.get(next.size() - 1).size <= later.size() - from) {
+                from = next.remove(next.size() - 1).from;
+            }
+            next.add(new Chunk(from, later.subList(from, later.size())));
+            return new Resident(later, Collections.unmodifiableList(next));
+        }
+    }
+
+    /*
+     * Indexes of tweets from..from+size-1 of the corpus. Immutable.
+     */
+    private static final class Chunk {
+        final int from;
+        final int size;
+        final TweetIndex index;
+        final TweetBlocks blocks;
+        final Timespan timespan;
+        final Set<String> mentionedUsers;
+
+        Chunk(int from, List<Tweet> tweets) {
+            this.from = from;
+            this.size = tweets.size();
+            this.index = TweetIndex.build(tweets);
+            this.blocks = TweetBlocks.of(tweets);
+            this.timespan = Extract.getTimespan(tweets);
+            this.mentionedUsers = Extract.getMentionedUsers(tweets);
+        }
+    }
+
+    /**
+     * Make a query front end.
+     *
+     * @param corpus
+     *            the corpus to query.
+     * @param cache
+     *            where to cache results; may be shared with other front ends
+     *            of the same corpus.
+     */
+    public CachedQueries(TweetCorpus corpus, QueryCache cache) {
+        this.corpus = corpus;
+        this.cache = cache;
+    }
+
+    /**
+     * @return the cache holding the results of this front end
+     */
+    public QueryCache cache() {
+        return cache;
+    }
+
+    /*
+     * @return indexes of the corpus as it is now, or as it was later still
+     */
+    private Resident resident() {
+        final Resident known = resident;
+        final TweetCorpus.Snapshot snapshot = corpus.snapshot();
+        if (known.snapshot.version() >= snapshot.version()) {
+            return known;
+        }
+        synchronized (this) {
+            if (resident.snapshot.version() < snapshot.version()) {
+                resident = resident.extend(snapshot);
+            }
+            return resident;
+        }
+    }
+
+    private <T> T query(String key, Function<Resident, T> query, ToLongFunction<? super T> weigher) {
+        // the indexes pin both the version and the tweets, so a result is
+        // always computed from exactly the version it is cached under
+        final Resident indexes = resident();
+        return cache.get(key, indexes.snapshot.version(), () -> query.apply(indexes), weigher);
+    }
+
+    /*
+     * A list query answered chunk by chunk, the results concatenated in
+     * corpus order.
+     */
+    private List<Tweet> query(String key, Function<Chunk, List<Tweet>> query) {
+        return query(key, indexes -> {
+            final List<Tweet> result = new ArrayList<>();
+            for (Chunk chunk : indexes.chunks) {
+                result.addAll(query.apply(chunk));
+            }
+            return Collections.unmodifiableList(result);
+        }, result -> result.size() + 1L);
+    }
+
+    /**
+     * Append tweets to the corpus, and index them before returning, so
+     * queries of the new version need not.
+     *
+     * @param batch
+     *            tweets to append, in order; not modified.
+     * @return the version of the corpus after the append
+     */
+    public long append(List<Tweet> batch) {
+        final long version = corpus.append(batch);
+        resident();
+        return version;
+    }
+
+    /**
+     * @return the corpus queried
+     */
+    public TweetCorpus corpus() {
+        return corpus;
+    }
+
+    /**
+     * @return Extract.getTimespan(tweets) over the corpus
+     */
+    public Timespan timespan() {
+        return query("timespan", indexes -> {
+            if (indexes.chunks.isEmpty()) {
+                return Extract.getTimespan(indexes.snapshot);
+            }
+            Instant start = indexes.chunks.get(0).timespan.getStart();
+            Instant end = indexes.chunks.get(0).timespan.getEnd();
+            for (Chunk chunk : indexes.chunks) {
+                start = chunk.timespan.getStart().isBefore(start) ? chunk.timespan.getStart() : start;
+                end = chunk.timespan.getEnd().isAfter(end) ? chunk.timespan.getEnd() : end;
+            }
+            return new Timespan(start, end);
+        }, result -> 1L);
+    }
+
+    /**
+     * @return unmodifiable Extract.getMentionedUsers(tweets) over the corpus
+     */
+    public Set<String> mentionedUsers() {
+        return query("mentionedUsers", indexes -> {
+            final Set<String> mentioned = new HashSet<>();
+            for (Chunk chunk : indexes.chunks) {
+                mentioned.addAll(chunk.mentionedUsers);
+            }
+            return Collections.unmodifiableSet(mentioned);
+        }, result -> result.size() + 1L);
+    }
+
+    /**
+     * @param username
+     *            Twitter username.
+     * @return unmodifiable Filter.writtenBy(tweets, username) over the corpus
+     */
+    public List<Tweet> writtenBy(String username) {
+        return query("writtenBy " + Usernames.toLowerCase(username),
+                chunk -> Filter.writtenBy(chunk.index, username));
+    }
+
+    /**
+     * @param username
+     *            Twitter username.
+     * @return unmodifiable Filter.mentioning(tweets, username) over the corpus
+     */
+    public List<Tweet> mentioning(String username) {
+        return query("mentioning " + Usernames.toLowerCase(username),
+                chunk -> Filter.mentioning(chunk.blocks, username));
+    }
+
+    /**
+     * @param timespan
+     *            timespan.
+     * @return unmodifiable Filter.inTimespan(tweets, timespan) over the corpus
+     */
+    public List<Tweet> inTimespan(Timespan timespan) {
+        return query("inTimespan " + timespan.getStart() + " " + timespan.getEnd(),
+                chunk -> Filter.inTimespan(chunk.index, timespan));
+    }
+
+    /**
+     * @param words
+     *            words, as for Filter.containing.
+     * @return unmodifiable Filter.containing(tweets, words) over the corpus
+     */
+    public List<Tweet> containing(List<String> words) {
+        // words have no spaces, so a space-separated sorted set is unambiguous
+        final TreeSet<String> normalized = new TreeSet<>();
+        for (String word : words) {
+            if (word != null && !word.isEmpty()) {
+                normalized.add(word.toLowerCase(Locale.ROOT));
+            }
+        }
+        return query("containing " + String.join(" ", normalized),
+                chunk -> Filter.containing(chunk.index, words));
+    }
+
+    /**
+     * @return unmodifiable SocialNetwork.influencers of
+     *         SocialNetwork.guessFollowsGraph(tweets) over the corpus
+     */
+    public List<String> influencers() {
+        return query("influencers",
+                indexes -> Collections.unmodifiableList(
+                        SocialNetwork.influencers(SocialNetwork.guessFollowsGraph(indexes.snapshot))),
+                result -> result.size() + 1L);
+    }
+}
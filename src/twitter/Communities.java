@@ -0,0 +1,111 @@
+/* Copyright (c) 2007-2016 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package twitter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * An immutable partition of the users of a graph into communities, numbered
+ * 0..communityCount()-1 in order of their lowest user id.
+ */
+public final class Communities {
+
+    private final UserIndex users;
+    private final int[] community;
+    private final int[] sizes;
+    private final int iterations;
+
+    /* Rep invariant:
+     *   community.length <= users.size()
+     *   every community[v] is in 0..sizes.length-1
+     *   sizes[c] == number of v with community[v] == c, and sizes[c] > 0
+     *   for c > 0, the lowest v in community c is greater than the lowest v in c - 1
+     *   iterations >= 0
+     */
+
+    /*
+     * Make the partition in which users u and v are together iff
+     * labels[u] == labels[v]; labels is not kept.
+     */
+    Communities(UserIndex users, int[] labels, int iterations) {
+        this.users = users;
+        this.community = new int[labels.length];
+        this.iterations = iterations;
+        final int[] renumbered = new int[labels.length];
+        Arrays.fill(renumbered, -1);
+        int count = 0;
+        int[] sizes = new int[16];
+        for (int v = 0; v < labels.length; v++) {
+            int c = renumbered[labels[v]];
+            if (c < 0) {
+                c = renumbered[labels[v]] = count++;
+                if (c == sizes.length) {
+                    sizes = Arrays.copyOf(sizes, c * 2);
+                }
+            }
+            community[v] = c;
+            sizes[c]++;
+        }
+        this.sizes = Arrays.copyOf(sizes, count);
+    }
+
+    /**
+     * @return number of communities
+     */
+    public int communityCount() {
+        return sizes.length;
+    }
+
+    /**
+     * @param user
+     *            a username, case-insensitive.
+     * @return the community of user, or -1 if user is not in the graph
+     */
+    public int communityOf(String user) {
+        final int v = users.id(Usernames.toLowerCase(user));
+        return v < 0 || v >= community.length ? -1 : community[v];
+    }
+
+    /**
+     * @param v
+     *            a user id of the graph.
+     * @return the community of that user
+     */
+    public int communityOf(int v) {
+        return community[v];
+    }
+
+    /**
+     * @param c
+     *            a community in 0..communityCount()-1.
+     * @return number of users in community c, > 0
+     */
+    public int size(int c) {
+        return sizes[c];
+    }
+
+    /**
+     * @param c
+     *            a community in 0..communityCount()-1.
+     * @return the lowercase usernames in community c, in user id order
+     */
+    public List<String> members(int c) {
+        final List<String> members = new ArrayList<>(sizes[c]);
+        for (int v = 0; v < community.length; v++) {
+            if (community[v] == c) {
+                members.add(users.name(v));
+            }
+        }
+        return members;
+    }
+
+    /**
+     * @return number of propagation rounds run to find this partition
+     */
+    public int iterations() {
+        return iterations;
+    }
+}
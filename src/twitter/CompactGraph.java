@@ -0,0 +1,229 @@
+/* Copyright (c) 2007-2016 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package twitter;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+/**
+ * An immutable directed graph over users in compressed sparse row form: the
+ * out-neighbors of user v are targets[offsets[v]] .. targets[offsets[v+1]-1],
+ * sorted ascending, so a whole graph is two int arrays and membership tests
+ * are binary searches. Users are identified by the dense ids of a UserIndex.
+ */
+public final class CompactGraph {
+
+    private final UserIndex users;
+    private final int vertices;
+    private final int[] offsets;
+    private final int[] targets;
+
+    /* Rep invariant:
+     *   vertices <= users.size()
+     *   offsets.length == vertices + 1, offsets[0] == 0,
+     *     offsets is non-decreasing, offsets[vertices] == targets.length
+     *   for every v, its row targets[offsets[v]..offsets[v+1]-1] is strictly
+     *     increasing, holds ids in 0..vertices-1, and does not contain v
+     */
+
+    private CompactGraph(UserIndex users, int vertices, int[] offsets, int[] targets) {
+        this.users = users;
+        this.vertices = vertices;
+        this.offsets = offsets;
+        this.targets = targets;
+    }
+
+    /**
+     * Compact a social network.
+     *
+     * @param followsGraph
+     *            a social network, as defined by SocialNetwork; not modified.
+     * @return a graph with an edge from A to B iff A follows B in
+     *         followsGraph, ignoring case; users are interned lowercase, every
+     *         key and followee of followsGraph being a user, in alphabetical
+     *         order, so equal social networks get equal ids however their
+     *         maps were built
+     */
+    public static CompactGraph of(Map<String, Set<String>> followsGraph) {
+        final SortedSet<String> names = new TreeSet<>();
+        for (Map.Entry<String, Set<String>> entry : followsGraph.entrySet()) {
+            names.add(Usernames.toLowerCase(entry.getKey()));
+            for (String followee : entry.getValue()) {
+                names.add(Usernames.toLowerCase(followee));
+            }
+        }
+        final UserIndex users = new UserIndex();
+        for (String name : names) {
+            users.intern(name);
+        }
+        final EdgeList edges = new EdgeList();
+        for (Map.Entry<String, Set<String>> entry : followsGraph.entrySet()) {
+            final int follower = users.intern(Usernames.toLowerCase(entry.getKey()));
+            for (String followee : entry.getValue()) {
+                edges.add(follower, users.intern(Usernames.toLowerCase(followee)));
+            }
+        }
+        return build(users, users.size(), edges);
+    }
+
+    /**
+     * Compact the edges of a weighted follows graph, dropping the weights.
+     *
+     * @param graph
+     *            a weighted follows graph; evidence added to it later is not
+     *            seen by the result.
+     * @return a graph with the same users and ids as graph and an edge from
+     *         A to B iff graph has one
+     */
+    public static CompactGraph of(WeightedFollowsGraph graph) {
+        final EdgeList edges = new EdgeList();
+        graph.forEachEdge((follower, followee, weight, first, last) -> edges.add(follower, followee));
+        return build(graph.users(), graph.users().size(), edges);
+    }
+
+    /**
+     * @return a graph with the same users and ids as this one, and edges
+     *         both ways between A and B iff this graph has an edge between
+     *         them either way
+     */
+    public CompactGraph undirected() {
+        final EdgeList edges = new EdgeList();
+        for (int v = 0; v < vertices; v++) {
+            for (int i = offsets[v]; i < offsets[v + 1]; i++) {
+                edges.add(v, targets[i]);
+                edges.add(targets[i], v);
+            }
+        }
+        return build(users, vertices, edges);
+    }
+
+    /*
+     * A growable list of (from, to) pairs.
+     */
+    static final class EdgeList {
+        int size = 0;
+        int[] from = new int[64];
+        int[] to = new int[64];
+
+        void add(int f, int t) {
+            if (size == from.length) {
+                from = Arrays.copyOf(from, size * 2);
+                to = Arrays.copyOf(to, size * 2);
+            }
+            from[size] = f;
+            to[size] = t;
+            size++;
+        }
+    }
+
+    /*
+     * Counting sort of the edges by source, then sort and deduplicate each
+     * row; self-edges are dropped.
+     */
+    static CompactGraph build(UserIndex users, int vertices, EdgeList edges) {
+        final int[] offsets = new int[vertices + 1];
+        for (int e = 0; e < edges.size; e++) {
+            offsets[edges.from[e] + 1]++;
+        }
+        for (int v = 0; v < vertices; v++) {
+            offsets[v + 1] += offsets[v];
+        }
+        final int[] next = Arrays.copyOf(offsets, vertices);
+        final int[] targets = new int[edges.size];
+        for (int e = 0; e < edges.size; e++) {
+            targets[next[edges.from[e]]++] = edges.to[e];
+        }
+
+        // compact in place: rows only shrink, so writes never pass reads
+        int write = 0;
+        for (int v = 0; v < vertices; v++) {
+            final int start = offsets[v];
+            final int end = offsets[v + 1];
+            Arrays.sort(targets, start, end);
+            offsets[v] = write;
+            for (int i = start; i < end; i++) {
+                final int t = targets[i];
+                if (t != v && (write == offsets[v] || targets[write - 1] != t)) {
+                    targets[write++] = t;
+                }
+            }
+        }
+        offsets[vertices] = write;
+        return new CompactGraph(users, vertices, offsets,
+                write == targets.length ? targets : Arrays.copyOf(targets, write));
+    }
+
+    /*
+     * Wrap rows that already satisfy the rep invariant, as read back by
+     * GraphFormat, without copying them.
+     */
+    static CompactGraph fromRows(UserIndex users, int vertices, int[] offsets, int[] targets) {
+        return new CompactGraph(users, vertices, offsets, targets);
+    }
+
+    /**
+     * @return the users of this graph; ids 0..vertexCount()-1 are its vertices
+     */
+    public UserIndex users() {
+        return users;
+    }
+
+    /**
+     * @return number of users in this graph
+     */
+    public int vertexCount() {
+        return vertices;
+    }
+
+    /**
+     * @return number of edges in this graph
+     */
+    public int edgeCount() {
+        return targets.length;
+    }
+
+    /**
+     * @param v
+     *            a user id in 0..vertexCount()-1.
+     * @return the number of users v follows
+     */
+    public int outDegree(int v) {
+        return offsets[v + 1] - offsets[v];
+    }
+
+    /**
+     * @param v
+     *            a user id in 0..vertexCount()-1.
+     * @return the ids of the users v follows, in ascending order
+     */
+    public int[] neighbors(int v) {
+        return Arrays.copyOfRange(targets, offsets[v], offsets[v + 1]);
+    }
+
+    /**
+     * @param follower
+     *            a user id in 0..vertexCount()-1.
+     * @param followee
+     *            a user id.
+     * @return true iff follower follows followee in this graph
+     */
+    public boolean hasEdge(int follower, int followee) {
+        return Arrays.binarySearch(targets, offsets[follower], offsets[follower + 1], followee) >= 0;
+    }
+
+    /*
+     * The row boundaries and targets themselves, for hot loops in this
+     * package; callers must not modify them.
+     */
+    int[] offsets() {
+        return offsets;
+    }
+
+    int[] targets() {
+        return targets;
+    }
+}
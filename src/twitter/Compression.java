@@ -0,0 +1,99 @@
+/* Copyright (c) 2007-2016 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package twitter;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Compression formats understood by TweetReader. Only formats the JDK can
+ * decode on its own are supported.
+ */
+public enum Compression {
+
+    /** Uncompressed input. */
+    NONE,
+
+    /** gzip (RFC 1952), possibly several concatenated members. */
+    GZIP,
+
+    /** zlib-wrapped deflate (RFC 1950). */
+    ZLIB,
+
+    /** Raw deflate without any header (RFC 1951). Never auto-detected. */
+    DEFLATE;
+
+    private static final int GZIP_MAGIC_0 = 0x1f;
+    private static final int GZIP_MAGIC_1 = 0x8b;
+    private static final int ZLIB_METHOD_DEFLATE = 8;
+    private static final int ZLIB_CHECK_DIVISOR = 31;
+
+    private static final int INFLATE_BUFFER_SIZE = 1 << 16;
+
+    /**
+     * Guess the compression of a stream from its first bytes, without
+     * consuming them.
+     *
+     * @param in
+     *            stream positioned at the start of the data; must support mark/reset.
+     * @return GZIP or ZLIB if the stream starts with the corresponding header,
+     *         otherwise NONE. DEFLATE has no header and is never returned.
+     * @throws IOException if the stream cannot be read
+     */
+    public static Compression detect(BufferedInputStream in) throws IOException {
+        in.mark(2);
+        final int b0 = in.read();
+        final int b1 = in.read();
+        in.reset();
+        if (b0 < 0 || b1 < 0) {
+            return NONE;
+        }
+        if (b0 == GZIP_MAGIC_0 && b1 == GZIP_MAGIC_1) {
+            return GZIP;
+        }
+        if ((b0 & 0x0f) == ZLIB_METHOD_DEFLATE && ((b0 << 8) | b1) % ZLIB_CHECK_DIVISOR == 0) {
+            return ZLIB;
+        }
+        return NONE;
+    }
+
+    /*
+     * Wrap a compressed stream in a decoder for this format. The returned
+     * stream releases any native inflater state when closed.
+     */
+    InputStream decoder(InputStream in) throws IOException {
+        switch (this) {
+        case NONE:
+            return in;
+        case GZIP:
+            return new GZIPInputStream(in, INFLATE_BUFFER_SIZE);
+        case ZLIB:
+            return ownedInflater(in, new Inflater(false));
+        case DEFLATE:
+            return ownedInflater(in, new Inflater(true));
+        default:
+            throw new AssertionError(this);
+        }
+    }
+
+    /*
+     * InflaterInputStream does not end an inflater it was handed, so this one
+     * does it on close.
+     */
+    private static InputStream ownedInflater(InputStream in, Inflater inflater) {
+        return new InflaterInputStream(in, inflater, INFLATE_BUFFER_SIZE) {
+            @Override public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    inflater.end();
+                }
+            }
+        };
+    }
+}
@@ -0,0 +1,99 @@
+/* Copyright (c) 2007-2016 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package twitter;
+
+/**
+ * A Count-Min sketch: approximate counts of values in a stream, in memory
+ * that depends only on the accuracy asked for, not on how many distinct
+ * values there are.
+ *
+ * A sketch made for accuracy epsilon and confidence 1 - delta never
+ * underestimates a count, and with probability at least 1 - delta
+ * overestimates it by at most epsilon * total(). It holds
+ * ceil(ln(1 / delta)) rows of at least e / epsilon counters each.
+ *
+ * Values are added as 64-bit hashes, which must be well mixed. Not
+ * thread-safe.
+ */
+public final class CountMinSketch {
+
+    private final int depth;
+    private final int mask;
+    private final long[] counters;
+    private long total = 0;
+
+    /* Rep invariant:
+     *   depth >= 1
+     *   mask + 1 is a power of two, the width of a row
+     *   counters.length == depth * (mask + 1)
+     *   every counter <= total
+     */
+
+    /**
+     * Make an empty sketch.
+     *
+     * @param epsilon
+     *            bound on overestimates as a fraction of the total count, in (0, 1).
+     * @param delta
+     *            probability that an estimate exceeds that bound, in (0, 1).
+     */
+    public CountMinSketch(double epsilon, double delta) {
+        if (!(epsilon > 0 && epsilon < 1) || !(delta > 0 && delta < 1)) {
+            throw new IllegalArgumentException("epsilon and delta must be in (0, 1)");
+        }
+        final int width = Integer.highestOneBit((int) Math.ceil(Math.E / epsilon) - 1) << 1;
+        this.depth = (int) Math.ceil(Math.log(1 / delta));
+        this.mask = width - 1;
+        this.counters = new long[depth * width];
+    }
+
+    /*
+     * Column of hash in a row, by double hashing: h1 + row * h2.
+     */
+    private int column(long hash, int row) {
+        final int h1 = (int) hash;
+        final int h2 = (int) (hash >>> 32) | 1;
+        return (h1 + row * h2) & mask;
+    }
+
+    /**
+     * Count a value.
+     *
+     * @param hash
+     *            well-mixed 64-bit hash of the value.
+     * @param count
+     *            number of occurrences to add, >= 0.
+     * @return the estimated count of the value, including these occurrences
+     */
+    public long add(long hash, long count) {
+        total += count;
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0, base = 0; row < depth; row++, base += mask + 1) {
+            final int i = base + column(hash, row);
+            counters[i] += count;
+            estimate = Math.min(estimate, counters[i]);
+        }
+        return estimate;
+    }
+
+    /**
+     * @param hash
+     *            well-mixed 64-bit hash of a value.
+     * @return the estimated count of the value
+     */
+    public long estimate(long hash) {
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0, base = 0; row < depth; row++, base += mask + 1) {
+            estimate = Math.min(estimate, counters[base + column(hash, row)]);
+        }
+        return estimate;
+    }
+
+    /**
+     * @return sum of all counts added
+     */
+    public long total() {
+        return total;
+    }
+}
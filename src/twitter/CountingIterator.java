@@ -0,0 +1,48 @@
+/* Copyright (c) 2007-2016 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package twitter;
+
+import java.util.Iterator;
+
+/**
+ * An iterator that counts the elements taken from another, so operations
+ * over an iterator of unknown length can report how much input they
+ * consumed. Not thread-safe.
+ *
+ * @param <T> type of the elements
+ */
+final class CountingIterator<T> implements Iterator<T> {
+
+    private final Iterator<? extends T> source;
+    private long count = 0;
+
+    /* Rep invariant:
+     *   count == number of calls of next() that returned
+     */
+
+    /**
+     * @param source elements to iterate over; must not be used by others
+     *        while this iterator is
+     */
+    CountingIterator(Iterator<? extends T> source) {
+        this.source = source;
+    }
+
+    @Override public boolean hasNext() {
+        return source.hasNext();
+    }
+
+    @Override public T next() {
+        final T next = source.next();
+        count++;
+        return next;
+    }
+
+    /**
+     * @return number of elements taken so far
+     */
+    long count() {
+        return count;
+    }
+}
@@ -0,0 +1,163 @@
+/* Copyright (c) 2007-2016 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package twitter;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Finds follows evidence in a stream of tweets, one tweet at a time, with a
+ * single scan of each tweet's text. All usernames it reports are lowercase,
+ * and it never reports that a user follows themselves.
+ *
+ * Mutable and not thread-safe: hashtag evidence depends on the tweets seen
+ * so far.
+ */
+final class EvidenceScanner {
+
+    /**
+     * Receives the evidence found by an EvidenceScanner.
+     */
+    interface EdgeSink {
+        /**
+         * Called once per piece of evidence that follower follows followee.
+         *
+         * @param follower lowercase username of the follower
+         * @param followee lowercase username of the followee, != follower
+         * @param tweet the tweet that provides the evidence
+         * @param kind the kind of evidence
+         */
+        void edge(String follower, String followee, Tweet tweet, FollowEvidence kind);
+    }
+
+    /** Default number of recent distinct authors remembered per hashtag. */
+    static final int DEFAULT_HASHTAG_CAP = 8;
+
+    /*
+     * The last few distinct authors to start using one hashtag, oldest
+     * overwritten first.
+     */
+    private static final class RecentAuthors {
+        final String[] authors;
+        int size = 0;
+        int next = 0;
+
+        RecentAuthors(int cap) {
+            this.authors = new String[cap];
+        }
+
+        void add(String author) {
+            authors[next] = author;
+            next = (next + 1) % authors.length;
+            size = Math.min(size + 1, authors.length);
+        }
+    }
+
+    private final boolean mentions;
+    private final boolean retweets;
+    private final boolean replies;
+    private final boolean hashtags;
+    private final int hashtagCap;
+    private final Map<String, RecentAuthors> recentAuthorsByTag = new HashMap<>();
+
+    // state of the scan in progress, kept in fields so that scanning a
+    // tweet does not allocate a visitor
+    private String author;
+    private Tweet tweet;
+    private EdgeSink sink;
+    private final TweetText.Visitor visitor = new TweetText.Visitor() {
+        @Override public void mention(String text, int start, int end, int flags) {
+            onMention(text, start, end, flags);
+        }
+
+        @Override public void hashtag(String text, int start, int end) {
+            onHashtag(text, start, end);
+        }
+    };
+
+    /* Rep invariant:
+     *   hashtagCap > 0
+     *   every RecentAuthors in recentAuthorsByTag has capacity hashtagCap and
+     *     holds distinct lowercase usernames
+     *   recentAuthorsByTag is empty unless hashtags
+     */
+
+    /**
+     * Make a scanner.
+     *
+     * @param kinds
+     *            the kinds of evidence to report.
+     * @param hashtagCap
+     *            number of recent distinct authors remembered per hashtag, > 0;
+     *            bounds the HASHTAG evidence reported per hashtag use.
+     */
+    EvidenceScanner(Set<FollowEvidence> kinds, int hashtagCap) {
+        if (hashtagCap <= 0) {
+            throw new IllegalArgumentException("hashtagCap must be positive");
+        }
+        this.mentions = kinds.contains(FollowEvidence.MENTION);
+        this.retweets = kinds.contains(FollowEvidence.RETWEET);
+        this.replies = kinds.contains(FollowEvidence.REPLY);
+        this.hashtags = kinds.contains(FollowEvidence.HASHTAG);
+        this.hashtagCap = hashtagCap;
+    }
+
+    /**
+     * Report the evidence provided by the next tweet of the stream.
+     *
+     * @param next
+     *            the tweet.
+     * @param edges
+     *            receives the evidence.
+     */
+    void scan(Tweet next, EdgeSink edges) {
+        this.author = Usernames.toLowerCase(next.getAuthor());
+        this.tweet = next;
+        this.sink = edges;
+        TweetText.scan(next.getText(), visitor);
+        this.tweet = null;
+        this.sink = null;
+    }
+
+    private void onMention(String text, int start, int end, int flags) {
+        if (!mentions && !(retweets && (flags & TweetText.RETWEET) != 0)
+                && !(replies && (flags & TweetText.REPLY) != 0)) {
+            return;
+        }
+        final String followee = Usernames.toLowerCase(text, start, end);
+        if (followee.equals(author)) {
+            return;
+        }
+        if (mentions) {
+            sink.edge(author, followee, tweet, FollowEvidence.MENTION);
+        }
+        if (retweets && (flags & TweetText.RETWEET) != 0) {
+            sink.edge(author, followee, tweet, FollowEvidence.RETWEET);
+        }
+        if (replies && (flags & TweetText.REPLY) != 0) {
+            sink.edge(author, followee, tweet, FollowEvidence.REPLY);
+        }
+    }
+
+    private void onHashtag(String text, int start, int end) {
+        if (!hashtags) {
+            return;
+        }
+        final String tag = Usernames.toLowerCase(text, start, end);
+        final RecentAuthors recent = recentAuthorsByTag.computeIfAbsent(tag, t -> new RecentAuthors(hashtagCap));
+        boolean seen = false;
+        for (int i = 0; i < recent.size; i++) {
+            final String earlier = recent.authors[i];
+            if (earlier.equals(author)) {
+                seen = true;
+            } else {
+                sink.edge(author, earlier, tweet, FollowEvidence.HASHTAG);
+            }
+        }
+        if (!seen) {
+            recent.add(author);
+        }
+    }
+}
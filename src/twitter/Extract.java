@@ -3,7 +3,11 @@
  */
 package twitter;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.time.Instant;
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
 
@@ -25,16 +29,53 @@ public class Extract {
      *         every tweet in the list.
      */
     public static Timespan getTimespan(List<Tweet> tweets) {
-        if (tweets.isEmpty()) {
+        return getTimespan(tweets.iterator());
+    }
+
+    /**
+     * Get the time period spanned by tweets taken one at a time, in constant
+     * memory, so the input may be larger than memory.
+     * 
+     * @param tweets
+     *            tweets with distinct ids, consumed by this method.
+     * @return a minimum-length time interval that contains the timestamp of
+     *         every tweet, as defined by getTimespan(List).
+     */
+    public static Timespan getTimespan(Iterator<Tweet> tweets) {
+        final Metrics.Sample sample = Metrics.start(Metrics.Stage.TIMESPAN);
+        final CountingIterator<Tweet> counted = new CountingIterator<>(tweets);
+        final Timespan timespan = timespan(counted);
+        sample.stop(counted.count(), 1);
+        return timespan;
+    }
+
+    /**
+     * Get the time period spanned by the tweets of a store, from the bounds
+     * of its segments instead of a scan.
+     * 
+     * @param store
+     *            a store of tweets with distinct ids.
+     * @return a minimum-length time interval that contains the timestamp of
+     *         every stored tweet, as defined by getTimespan(List).
+     */
+    public static Timespan getTimespan(SegmentedTweetStore store) {
+        final Metrics.Sample sample = Metrics.start(Metrics.Stage.TIMESPAN);
+        final Timespan timespan = store.timespan();
+        sample.stop(store.size(), 1);
+        return timespan;
+    }
+
+    private static Timespan timespan(Iterator<Tweet> tweets) {
+        if (!tweets.hasNext()) {
             // Under-determined by spec; choose zero-length interval
             return new Timespan(Instant.EPOCH, Instant.EPOCH);
         }
 
-        Instant start = tweets.get(0).getTimestamp();
+        Instant start = tweets.next().getTimestamp();
         Instant end = start;
 
-        for (Tweet tweet : tweets) {
-            Instant t = tweet.getTimestamp();
+        while (tweets.hasNext()) {
+            Instant t = tweets.next().getTimestamp();
             if (t.isBefore(start)) {
                 start = t;
             }
@@ -62,27 +103,148 @@ public class Extract {
      *         include a username at most once.
      */
     public static Set<String> getMentionedUsers(List<Tweet> tweets) {
+        return getMentionedUsers(tweets.iterator());
+    }
+
+    /**
+     * Get usernames mentioned in tweets taken one at a time, in memory that
+     * grows with the number of distinct usernames only, not with the
+     * number of tweets.
+     * 
+     * @param tweets
+     *            tweets with distinct ids, consumed by this method.
+     * @return the set of usernames mentioned in the text of the tweets, as
+     *         defined by getMentionedUsers(List), lowercase.
+     */
+    public static Set<String> getMentionedUsers(Iterator<Tweet> tweets) {
+        final Metrics.Sample sample = Metrics.start(Metrics.Stage.MENTIONS);
+        final CountingIterator<Tweet> counted = new CountingIterator<>(tweets);
+        final Set<String> mentioned = mentionedUsers(counted);
+        sample.stop(counted.count(), mentioned.size());
+        return mentioned;
+    }
+
+    /**
+     * Get usernames mentioned in the tweets of an arena, scanning their UTF-8
+     * text in place.
+     * 
+     * @param arena
+     *            tweets with distinct ids, not modified by this method.
+     * @return the set of usernames mentioned in the text of the tweets, as
+     *         defined by getMentionedUsers(List), lowercase.
+     */
+    public static Set<String> getMentionedUsers(TweetArena arena) {
+        final Metrics.Sample sample = Metrics.start(Metrics.Stage.MENTIONS);
+        final Set<String> mentioned = new java.util.HashSet<>();
+        final TweetText.ByteVisitor collect = (bytes, start, end) -> {
+            final byte[] name = new byte[end - start];
+            for (int i = 0; i < name.length; i++) {
+                final byte b = bytes.get(start + i);
+                name[i] = b >= 'A' && b <= 'Z' ? (byte) (b + ('a' - 'A')) : b;
+            }
+            mentioned.add(new String(name, StandardCharsets.US_ASCII));
+        };
+        // scan each run of rows whose texts lie back to back in one buffer at once
+        int[] bounds = new int[1024];
+        for (int row = 0; row < arena.size(); ) {
+            final ByteBuffer buffer = arena.textBuffer(row);
+            int texts = 0;
+            bounds[0] = arena.textOffset(row);
+            while (row < arena.size() && arena.textBuffer(row) == buffer
+                    && arena.textOffset(row) == bounds[texts]) {
+                if (texts + 1 == bounds.length) {
+                    bounds = Arrays.copyOf(bounds, bounds.length * 2);
+                }
+                bounds[texts + 1] = bounds[texts] + arena.textLength(row);
+                texts++;
+                row++;
+            }
+            TweetText.scanMentions(buffer, bounds, texts, collect);
+        }
+        sample.stop(arena.size(), mentioned.size());
+        return mentioned;
+    }
+
+    /**
+     * Estimate how many distinct usernames are mentioned in a list of tweets,
+     * in fixed memory and without building the set of usernames.
+     * 
+     * @param tweets
+     *            list of tweets with distinct ids, not modified by this method.
+     * @return an estimate of getMentionedUsers(tweets).size(), with a
+     *         relative standard error of about 1.6%
+     */
+    public static long estimateMentionedUsers(List<Tweet> tweets) {
+        return estimateMentionedUsers(tweets.iterator());
+    }
+
+    /**
+     * Estimate how many distinct usernames are mentioned in tweets taken one
+     * at a time, in constant memory, so the input may be larger than memory.
+     * 
+     * @param tweets
+     *            tweets with distinct ids, consumed by this method.
+     * @return an estimate of the number of distinct usernames mentioned, as
+     *         defined by estimateMentionedUsers(List)
+     */
+    public static long estimateMentionedUsers(Iterator<Tweet> tweets) {
+        final Metrics.Sample sample = Metrics.start(Metrics.Stage.MENTIONS_ESTIMATE);
+        final HyperLogLog sketch = new HyperLogLog();
+        final CountingIterator<Tweet> counted = new CountingIterator<>(tweets);
+        sketchMentionedUsers(counted, sketch);
+        final long estimate = sketch.estimate();
+        sample.stop(counted.count(), estimate);
+        return estimate;
+    }
+
+    /**
+     * Add the usernames mentioned in a list of tweets to a sketch, for
+     * estimating distinct mentions over input too large for one list: sketch
+     * each chunk, possibly on separate threads with separate sketches, and
+     * merge the sketches.
+     * 
+     * @param tweets
+     *            list of tweets with distinct ids, not modified by this method.
+     * @param sketch
+     *            receives the mentioned usernames, as defined by
+     *            getMentionedUsers, ignoring case.
+     */
+    public static void sketchMentionedUsers(List<Tweet> tweets, HyperLogLog sketch) {
+        sketchMentionedUsers(tweets.iterator(), sketch);
+    }
+
+    /**
+     * Add the usernames mentioned in tweets taken one at a time to a sketch.
+     * 
+     * @param tweets
+     *            tweets with distinct ids, consumed by this method.
+     * @param sketch
+     *            receives the mentioned usernames, as defined by
+     *            getMentionedUsers, ignoring case.
+     */
+    public static void sketchMentionedUsers(Iterator<Tweet> tweets, HyperLogLog sketch) {
+        final TweetText.Visitor add = (text, start, end, flags) ->
+                sketch.add(Usernames.hash(text, start, end));
+        while (tweets.hasNext()) {
+            TweetText.scan(tweets.next().getText(), add);
+        }
+    }
+
+    /*
+     * Uninstrumented getMentionedUsers.
+     */
+    private static Set<String> mentionedUsers(Iterator<Tweet> tweets) {
         // Username rules (from Tweet.getAuthor spec): letters, digits, underscore, hyphen
         // Mention definition (from this spec): "@" followed by a username, and cannot be
         // immediately preceded or followed by a username-valid character.
         // Case-insensitive; return each username at most once.
+        // TweetText implements exactly this definition with a single scan per tweet.
 
         final java.util.Set<String> mentioned = new java.util.HashSet<>();
-        final String usernameCharClass = "[A-Za-z0-9_-]";
-        final String notUsernameCharClass = "[^A-Za-z0-9_-]";
-        // Use word boundary-like guards based on allowed username chars.
-        // Preceding char: start of string or NOT a username char.
-        // Following part: capture 1+ username chars; ensure next char is end or NOT a username char.
-        final java.util.regex.Pattern pattern = java.util.regex.Pattern.compile(
-            "(?i)(?:^|" + notUsernameCharClass + ")@(" + usernameCharClass + "+)(?=$|" + notUsernameCharClass + ")");
-
-        for (Tweet tweet : tweets) {
-            String text = tweet.getText();
-            java.util.regex.Matcher matcher = pattern.matcher(text);
-            while (matcher.find()) {
-                String user = matcher.group(1).toLowerCase();
-                mentioned.add(user);
-            }
+        final TweetText.Visitor collect = (text, start, end, flags) ->
+                mentioned.add(Usernames.toLowerCase(text, start, end));
+        while (tweets.hasNext()) {
+            TweetText.scan(tweets.next().getText(), collect);
         }
         return mentioned;
     }
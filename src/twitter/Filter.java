@@ -3,10 +3,15 @@
  */
 package twitter;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
 
 /**
  * Filter consists of methods that filter a list of tweets for those matching a
@@ -30,13 +35,14 @@ public class Filter {
      *         in the same order as in the input list.
      */
     public static List<Tweet> writtenBy(List<Tweet> tweets, String username) {
-        final String normalized = username.toLowerCase(Locale.ROOT);
+        final Metrics.Sample sample = Metrics.start(Metrics.Stage.WRITTEN_BY);
         final List<Tweet> result = new ArrayList<>();
         for (Tweet t : tweets) {
-            if (t.getAuthor().toLowerCase(Locale.ROOT).equals(normalized)) {
+            if (Usernames.equalsIgnoreCase(t.getAuthor(), username)) {
                 result.add(t);
             }
         }
+        sample.stop(tweets.size(), result.size());
         return result;
     }
 
@@ -51,6 +57,7 @@ public class Filter {
      *         in the same order as in the input list.
      */
     public static List<Tweet> inTimespan(List<Tweet> tweets, Timespan timespan) {
+        final Metrics.Sample sample = Metrics.start(Metrics.Stage.IN_TIMESPAN);
         final Instant start = timespan.getStart();
         final Instant end = timespan.getEnd();
         final List<Tweet> result = new ArrayList<>();
@@ -60,6 +67,7 @@ public class Filter {
                 result.add(t);
             }
         }
+        sample.stop(tweets.size(), result.size());
         return result;
     }
 
@@ -79,34 +87,414 @@ public class Filter {
      *         same order as in the input list.
      */
     public static List<Tweet> containing(List<Tweet> tweets, List<String> words) {
+        final Metrics.Sample sample = Metrics.start(Metrics.Stage.CONTAINING);
+        final List<Tweet> result = containingWords(tweets, words);
+        sample.stop(tweets.size(), result.size());
+        return result;
+    }
+
+    private static List<Tweet> containingWords(List<Tweet> tweets, List<String> words) {
         final List<Tweet> result = new ArrayList<>();
-        if (words.isEmpty()) return result;
+        final Set<String> search = searchWords(words);
+        if (!search.isEmpty()) {
+            addContaining(tweets, search, result);
+        }
+        return result;
+    }
 
-        // Pre-normalize search words to lowercase
-        final java.util.Set<String> search = new java.util.HashSet<>();
+    /*
+     * @return the nonempty words of words, lowercase
+     */
+    private static Set<String> searchWords(List<String> words) {
+        final Set<String> search = new java.util.HashSet<>();
         for (String w : words) {
             if (w != null && !w.isEmpty()) {
                 search.add(w.toLowerCase(Locale.ROOT));
             }
         }
-        if (search.isEmpty()) return result;
+        return search;
+    }
 
+    /*
+     * Add to result the tweets that contain a word of search, which are
+     * lowercase, in order.
+     */
+    private static void addContaining(List<Tweet> tweets, Set<String> search, List<Tweet> result) {
         for (Tweet t : tweets) {
-            String text = t.getText();
-            // Split by spaces per spec; treat sequence of nonempty words bounded by spaces/ends
-            String[] tokens = text.split(" ");
-            boolean matched = false;
-            for (String token : tokens) {
-                if (token.isEmpty()) continue;
-                String tokenLower = token.toLowerCase(Locale.ROOT);
-                if (search.contains(tokenLower)) {
-                    matched = true;
+            if (containsAnyWord(t.getText(), search)) result.add(t);
+        }
+    }
+
+    /*
+     * Whether text has a word in search, which are lowercase.
+     */
+    private static boolean containsAnyWord(String text, Set<String> search) {
+        // Split by spaces per spec; treat sequence of nonempty words bounded by spaces/ends
+        String[] tokens = text.split(" ");
+        for (String token : tokens) {
+            if (token.isEmpty()) continue;
+            String tokenLower = token.toLowerCase(Locale.ROOT);
+            if (search.contains(tokenLower)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Find tweets that contain certain words, scanning only the blocks whose
+     * filters do not rule out every word.
+     * 
+     * @param blocks
+     *            tweets with distinct ids, split into filtered blocks.
+     * @param words
+     *            a list of words to search for in the tweets.
+     *            A word is a nonempty sequence of nonspace characters.
+     * @return all and only the tweets of blocks.tweets() that contain at
+     *         least one of the words, as defined by containing(List, List),
+     *         in the same order.
+     */
+    public static List<Tweet> containing(TweetBlocks blocks, List<String> words) {
+        final Metrics.Sample sample = Metrics.start(Metrics.Stage.CONTAINING);
+        final List<Tweet> result = new ArrayList<>();
+        final Set<String> search = searchWords(words);
+        for (int b = 0; b < blocks.blockCount() && !search.isEmpty(); b++) {
+            for (String word : search) {
+                if (blocks.mayContainWord(b, word)) {
+                    addContaining(blocks.block(b), search, result);
                     break;
                 }
             }
-            if (matched) result.add(t);
         }
+        sample.stop(blocks.size(), result.size());
+        return result;
+    }
+
+    /**
+     * Find tweets that mention a particular user.
+     * 
+     * @param tweets
+     *            a list of tweets with distinct ids, not modified by this method.
+     * @param username
+     *            Twitter username, required to be a valid Twitter username as
+     *            defined by Tweet.getAuthor()'s spec.
+     * @return all and only the tweets in the list whose text mentions
+     *         username, as Extract.getMentionedUsers defines mentions,
+     *         ignoring case, in the same order as in the input list.
+     */
+    public static List<Tweet> mentioning(List<Tweet> tweets, String username) {
+        final Metrics.Sample sample = Metrics.start(Metrics.Stage.MENTIONING);
+        final List<Tweet> result = new ArrayList<>();
+        addMentioning(tweets, username, result);
+        sample.stop(tweets.size(), result.size());
+        return result;
+    }
+
+    /**
+     * Find tweets that mention a particular user, scanning only the blocks
+     * whose filters do not rule the user out.
+     * 
+     * @param blocks
+     *            tweets with distinct ids, split into filtered blocks.
+     * @param username
+     *            Twitter username, required to be a valid Twitter username as
+     *            defined by Tweet.getAuthor()'s spec.
+     * @return all and only the tweets of blocks.tweets() that mention
+     *         username, as defined by mentioning(List, String), in the same
+     *         order.
+     */
+    public static List<Tweet> mentioning(TweetBlocks blocks, String username) {
+        final Metrics.Sample sample = Metrics.start(Metrics.Stage.MENTIONING);
+        final List<Tweet> result = new ArrayList<>();
+        for (int b = 0; b < blocks.blockCount(); b++) {
+            if (blocks.mayMention(b, username)) {
+                addMentioning(blocks.block(b), username, result);
+            }
+        }
+        sample.stop(blocks.size(), result.size());
+        return result;
+    }
+
+    /*
+     * Add to result the tweets that mention username, in order.
+     */
+    private static void addMentioning(List<Tweet> tweets, String username, List<Tweet> result) {
+        final MentionMatcher matcher = new MentionMatcher(username);
+        for (Tweet t : tweets) {
+            if (matcher.test(t)) {
+                result.add(t);
+            }
+        }
+    }
+
+    /*
+     * Whether a tweet mentions a user, reusing one visitor for every tweet.
+     */
+    private static final class MentionMatcher implements Predicate<Tweet>, TweetText.Visitor {
+        private final String username;
+        private boolean found;
+
+        MentionMatcher(String username) {
+            this.username = username;
+        }
+
+        @Override public boolean test(Tweet tweet) {
+            found = false;
+            TweetText.scan(tweet.getText(), this);
+            return found;
+        }
+
+        @Override public void mention(String text, int start, int end, int flags) {
+            found |= Usernames.regionEqualsIgnoreCase(text, start, end, username);
+        }
+    }
+
+    /**
+     * Filter a stream of tweets for those written by a particular user.
+     * Lazy, so the stream may be larger than memory; since the work happens
+     * only as the result is consumed, it is not recorded in Metrics.
+     * 
+     * @param tweets
+     *            a stream of tweets with distinct ids.
+     * @param username
+     *            Twitter username, required to be a valid Twitter username as
+     *            defined by Tweet.getAuthor()'s spec.
+     * @return a stream of all and only the tweets of the stream whose author
+     *         is username, as defined by writtenBy(List, String), in
+     *         encounter order.
+     */
+    public static Stream<Tweet> writtenBy(Stream<Tweet> tweets, String username) {
+        return tweets.filter(t -> Usernames.equalsIgnoreCase(t.getAuthor(), username));
+    }
+
+    /**
+     * Filter a stream of tweets for those sent during a particular timespan.
+     * Lazy, like writtenBy(Stream, String).
+     * 
+     * @param tweets
+     *            a stream of tweets with distinct ids.
+     * @param timespan
+     *            timespan
+     * @return a stream of all and only the tweets of the stream that were
+     *         sent during the timespan, in encounter order.
+     */
+    public static Stream<Tweet> inTimespan(Stream<Tweet> tweets, Timespan timespan) {
+        final Instant start = timespan.getStart();
+        final Instant end = timespan.getEnd();
+        return tweets.filter(t -> !t.getTimestamp().isBefore(start) && !t.getTimestamp().isAfter(end));
+    }
+
+    /**
+     * Filter a stream of tweets for those that contain certain words.
+     * Lazy, like writtenBy(Stream, String).
+     * 
+     * @param tweets
+     *            a stream of tweets with distinct ids.
+     * @param words
+     *            a list of words to search for in the tweets.
+     *            A word is a nonempty sequence of nonspace characters.
+     * @return a stream of all and only the tweets of the stream that contain
+     *         at least one of the words, as defined by containing(List, List),
+     *         in encounter order.
+     */
+    public static Stream<Tweet> containing(Stream<Tweet> tweets, List<String> words) {
+        final Set<String> search = searchWords(words);
+        return tweets.filter(t -> containsAnyWord(t.getText(), search));
+    }
+
+    /**
+     * Filter a stream of tweets for those that mention a particular user.
+     * Lazy, like writtenBy(Stream, String).
+     * 
+     * @param tweets
+     *            a stream of tweets with distinct ids.
+     * @param username
+     *            Twitter username, required to be a valid Twitter username as
+     *            defined by Tweet.getAuthor()'s spec.
+     * @return a stream of all and only the tweets of the stream that mention
+     *         username, as defined by mentioning(List, String), in encounter
+     *         order.
+     */
+    public static Stream<Tweet> mentioning(Stream<Tweet> tweets, String username) {
+        // a matcher per thread, in case the stream is parallel
+        final ThreadLocal<MentionMatcher> matchers = ThreadLocal.withInitial(() -> new MentionMatcher(username));
+        return tweets.filter(t -> matchers.get().test(t));
+    }
+
+    /**
+     * Find indexed tweets written by a particular user, by lookup in the
+     * index instead of a scan.
+     * 
+     * @param index
+     *            an index of tweets with distinct ids.
+     * @param username
+     *            Twitter username, required to be a valid Twitter username as
+     *            defined by Tweet.getAuthor()'s spec.
+     * @return all and only the indexed tweets whose author is username, in
+     *         the order of the list the index was built from.
+     */
+    public static List<Tweet> writtenBy(TweetIndex index, String username) {
+        final Metrics.Sample sample = Metrics.start(Metrics.Stage.WRITTEN_BY);
+        final List<Tweet> result = index.writtenBy(username);
+        sample.stop(index.size(), result.size());
+        return result;
+    }
+
+    /**
+     * Find indexed tweets that were sent during a particular timespan, by
+     * lookup in the index instead of a scan.
+     * 
+     * @param index
+     *            an index of tweets with distinct ids.
+     * @param timespan
+     *            timespan
+     * @return all and only the indexed tweets that were sent during the
+     *         timespan, in the order of the list the index was built from.
+     */
+    public static List<Tweet> inTimespan(TweetIndex index, Timespan timespan) {
+        final Metrics.Sample sample = Metrics.start(Metrics.Stage.IN_TIMESPAN);
+        final List<Tweet> result = index.inTimespan(timespan);
+        sample.stop(index.size(), result.size());
+        return result;
+    }
+
+    /**
+     * Find stored tweets that were sent during a particular timespan,
+     * visiting only the segments of the store that overlap the timespan.
+     * 
+     * @param store
+     *            a store of tweets with distinct ids.
+     * @param timespan
+     *            timespan
+     * @return all and only the stored tweets that were sent during the
+     *         timespan, in timestamp order.
+     */
+    public static List<Tweet> inTimespan(SegmentedTweetStore store, Timespan timespan) {
+        final Metrics.Sample sample = Metrics.start(Metrics.Stage.IN_TIMESPAN);
+        final List<Tweet> result = store.inTimespan(timespan);
+        sample.stop(store.size(), result.size());
+        return result;
+    }
+
+    /**
+     * Find indexed tweets that contain certain words, by lookup in the index
+     * instead of a scan.
+     * 
+     * @param index
+     *            an index of tweets with distinct ids.
+     * @param words
+     *            a list of words to search for in the tweets.
+     *            A word is a nonempty sequence of nonspace characters.
+     * @return all and only the indexed tweets that contain at least one of
+     *         the words, as defined by containing(List, List), in the order
+     *         of the list the index was built from.
+     */
+    public static List<Tweet> containing(TweetIndex index, List<String> words) {
+        final Metrics.Sample sample = Metrics.start(Metrics.Stage.CONTAINING);
+        final List<Tweet> result = index.containing(words);
+        sample.stop(index.size(), result.size());
+        return result;
+    }
+
+    /**
+     * Find tweets of an arena that contain certain words, scanning their
+     * UTF-8 text in place; only the tweets found are made into Tweet objects.
+     * 
+     * @param arena
+     *            tweets with distinct ids, not modified by this method.
+     * @param words
+     *            a list of words to search for in the tweets.
+     *            A word is a nonempty sequence of nonspace characters.
+     * @return all and only the tweets of the arena that contain at least one
+     *         of the words, as defined by containing(List, List), in row order.
+     */
+    public static List<Tweet> containing(TweetArena arena, List<String> words) {
+        final Metrics.Sample sample = Metrics.start(Metrics.Stage.CONTAINING);
+        final List<Tweet> result = new ArrayList<>();
+
+        // ASCII words are compared byte by byte; the rest need decoding
+        final Set<String> search = new java.util.HashSet<>();
+        final List<byte[]> asciiSearch = new ArrayList<>();
+        for (String w : words) {
+            if (w != null && !w.isEmpty()) {
+                final String lower = w.toLowerCase(Locale.ROOT);
+                if (search.add(lower) && isAscii(lower)) {
+                    asciiSearch.add(lower.getBytes(StandardCharsets.US_ASCII));
+                }
+            }
+        }
+
+        if (!search.isEmpty()) {
+            for (int row = 0; row < arena.size(); row++) {
+                if (containsWord(arena.textBuffer(row), arena.textOffset(row),
+                        arena.textOffset(row) + arena.textLength(row), asciiSearch, search)) {
+                    result.add(arena.tweet(row));
+                }
+            }
+        }
+        sample.stop(arena.size(), result.size());
         return result;
     }
 
+    private static boolean isAscii(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            if (s.charAt(i) >= 0x80) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /*
+     * Whether the space-separated UTF-8 text bytes[from..to) has a word in
+     * search, all of whose ASCII members are in asciiSearch. An ASCII token
+     * lowercases to ASCII, so it can only match an ASCII word, compared
+     * ignoring ASCII case; a token with other characters is decoded and
+     * lowercased as containing(List, List) does, since some non-ASCII
+     * characters lowercase to ASCII ones.
+     */
+    private static boolean containsWord(ByteBuffer bytes, int from, int to,
+            List<byte[]> asciiSearch, Set<String> search) {
+        int start = from;
+        while (start < to) {
+            while (start < to && bytes.get(start) == ' ') {
+                start++;
+            }
+            final int end = ByteScanner.indexOf(bytes, start, to, (byte) ' ');
+            if (end > start) {
+                if (ByteScanner.isAscii(bytes, start, end)) {
+                    for (byte[] word : asciiSearch) {
+                        if (equalsIgnoreAsciiCase(bytes, start, end, word)) {
+                            return true;
+                        }
+                    }
+                } else {
+                    final byte[] token = new byte[end - start];
+                    bytes.get(start, token);
+                    if (search.contains(new String(token, StandardCharsets.UTF_8).toLowerCase(Locale.ROOT))) {
+                        return true;
+                    }
+                }
+            }
+            start = end;
+        }
+        return false;
+    }
+
+    private static boolean equalsIgnoreAsciiCase(ByteBuffer bytes, int start, int end, byte[] lowercase) {
+        if (end - start != lowercase.length) {
+            return false;
+        }
+        for (int i = 0; i < lowercase.length; i++) {
+            byte b = bytes.get(start + i);
+            if (b >= 'A' && b <= 'Z') {
+                b += 'a' - 'A';
+            }
+            if (b != lowercase[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
 }
@@ -0,0 +1,35 @@
+/* Copyright (c) 2007-2016 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package twitter;
+
+/**
+ * Kinds of evidence that one user follows another, usable by
+ * SocialNetwork.guessFollowsGraph(tweets, evidence).
+ */
+public enum FollowEvidence {
+
+    /** The author @-mentions a user anywhere in a tweet. */
+    MENTION,
+
+    /**
+     * The tweet is a retweet, marked by a leading "RT @user": the author
+     * follows the retweeted user.
+     */
+    RETWEET,
+
+    /**
+     * The tweet is a reply, marked by Twitter's convention of starting the
+     * text with the @-mentions of the users replied to: the author follows
+     * them. Tweets carry no reply ids, so this is how reply chains are seen.
+     */
+    REPLY,
+
+    /**
+     * The author uses a hashtag that other authors used earlier in the
+     * input: the author follows those earlier authors. Only the last few
+     * distinct authors to adopt each hashtag count, which keeps the cost per
+     * tweet constant even for very popular hashtags.
+     */
+    HASHTAG,
+}
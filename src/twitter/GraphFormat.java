@@ -0,0 +1,388 @@
+/* Copyright (c) 2007-2016 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package twitter;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/**
+ * GraphFormat writes CompactGraphs to channels, and reads them back, in two
+ * formats: a compact binary adjacency format for storing and reloading
+ * graphs, and plain edge lists for other tools.
+ *
+ * Both stream through a fixed-size buffer straight from and to the rows of
+ * a CompactGraph, so exporting never builds another copy of the graph, and
+ * importing the binary format fills the graph's rows directly.
+ *
+ * Binary format, written in order; a varint is an unsigned LEB128 int, 1
+ * to 5 bytes, 7 bits per byte, least significant first:
+ *
+ *   int    MAGIC ("TWGR"), big-endian
+ *   int    VERSION, big-endian
+ *   varint number of users V, varint number of edges E
+ *   V times: varint length, UTF-8 bytes of the username with that id
+ *   V times: varint out-degree d, then d varints: the first neighbor id,
+ *            then the difference of each neighbor id from the previous one
+ *   int    CRC32 of every byte before it, big-endian
+ *
+ * Since rows are sorted, the differences are small for users with many
+ * neighbors, and most fit in one byte.
+ *
+ * Edge-list format: one line per edge, in id order, "follower\tfollowee\n",
+ * UTF-8. Reading accepts any run of spaces or tabs between the names, and
+ * skips empty lines and lines starting with '#'. Users without edges are
+ * not represented.
+ */
+public final class GraphFormat {
+
+    /** First 4 bytes of every binary graph. */
+    public static final int MAGIC = 0x54574752;
+
+    /** Version of the binary format written by this class, the only one it reads. */
+    public static final int VERSION = 1;
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private GraphFormat() {
+        throw new AssertionError("not instantiable");
+    }
+
+    /*
+     * Buffered output to a channel, checksumming what it writes.
+     */
+    private static final class Output {
+        final WritableByteChannel channel;
+        final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        final CRC32 crc = new CRC32();
+
+        Output(WritableByteChannel channel) {
+            this.channel = channel;
+        }
+
+        void ensure(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                flush();
+            }
+        }
+
+        void flush() throws IOException {
+            buffer.flip();
+            crc.update(buffer.array(), 0, buffer.limit());
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        void put(byte value) throws IOException {
+            ensure(1);
+            buffer.put(value);
+        }
+
+        void putInt(int value) throws IOException {
+            ensure(4);
+            buffer.putInt(value);
+        }
+
+        void putVarint(int value) throws IOException {
+            ensure(5);
+            int v = value;
+            while ((v & ~0x7f) != 0) {
+                buffer.put((byte) ((v & 0x7f) | 0x80));
+                v >>>= 7;
+            }
+            buffer.put((byte) v);
+        }
+
+        void putBytes(byte[] bytes) throws IOException {
+            int at = 0;
+            while (at < bytes.length) {
+                if (!buffer.hasRemaining()) {
+                    flush();
+                }
+                final int n = Math.min(buffer.remaining(), bytes.length - at);
+                buffer.put(bytes, at, n);
+                at += n;
+            }
+        }
+
+        /*
+         * Flush, then write the checksum of everything written.
+         */
+        void finish() throws IOException {
+            flush();
+            buffer.putInt((int) crc.getValue());
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
+
+    /*
+     * Buffered input from a channel, checksumming what it reads.
+     */
+    private static final class Input {
+        final ReadableByteChannel channel;
+        final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        final CRC32 crc = new CRC32();
+        boolean eof = false;
+
+        Input(ReadableByteChannel channel) {
+            this.channel = channel;
+            buffer.limit(0);
+        }
+
+        /*
+         * Make at least bytes bytes available, unless the channel ends.
+         * @return true iff they are available
+         */
+        boolean fill(int bytes) throws IOException {
+            if (buffer.remaining() >= bytes) {
+                return true;
+            }
+            crc.update(buffer.array(), 0, buffer.position());
+            buffer.compact();
+            while (buffer.position() < bytes && !eof) {
+                eof = channel.read(buffer) < 0;
+            }
+            buffer.flip();
+            return buffer.remaining() >= bytes;
+        }
+
+        void require(int bytes) throws IOException {
+            if (!fill(bytes)) {
+                throw new EOFException("graph truncated");
+            }
+        }
+
+        int getInt() throws IOException {
+            require(4);
+            return buffer.getInt();
+        }
+
+        int getVarint() throws IOException {
+            int value = 0;
+            for (int shift = 0; shift < 35; shift += 7) {
+                require(1);
+                final byte b = buffer.get();
+                value |= (b & 0x7f) << shift;
+                if (b >= 0) {
+                    if (value < 0) {
+                        break;
+                    }
+                    return value;
+                }
+            }
+            throw new IOException("malformed varint");
+        }
+
+        byte[] getBytes(int length) throws IOException {
+            final byte[] bytes = new byte[length];
+            int at = 0;
+            while (at < length) {
+                require(1);
+                final int n = Math.min(buffer.remaining(), length - at);
+                buffer.get(bytes, at, n);
+                at += n;
+            }
+            return bytes;
+        }
+
+        /*
+         * @return checksum of every byte consumed so far
+         */
+        long checksum() {
+            crc.update(buffer.array(), 0, buffer.position());
+            buffer.compact().flip();
+            return crc.getValue();
+        }
+    }
+
+    /**
+     * Write a graph in the binary format.
+     *
+     * @param graph
+     *            the graph to write.
+     * @param out
+     *            where to write; not closed.
+     * @throws IOException if out cannot be written
+     */
+    public static void writeBinary(CompactGraph graph, WritableByteChannel out) throws IOException {
+        final Output output = new Output(out);
+        final int vertices = graph.vertexCount();
+        final int[] offsets = graph.offsets();
+        final int[] targets = graph.targets();
+        output.putInt(MAGIC);
+        output.putInt(VERSION);
+        output.putVarint(vertices);
+        output.putVarint(graph.edgeCount());
+        for (int v = 0; v < vertices; v++) {
+            final byte[] name = graph.users().name(v).getBytes(StandardCharsets.UTF_8);
+            output.putVarint(name.length);
+            output.putBytes(name);
+        }
+        for (int v = 0; v < vertices; v++) {
+            output.putVarint(offsets[v + 1] - offsets[v]);
+            int previous = 0;
+            for (int i = offsets[v]; i < offsets[v + 1]; i++) {
+                output.putVarint(targets[i] - previous);
+                previous = targets[i];
+            }
+        }
+        output.finish();
+    }
+
+    /**
+     * Read a graph in the binary format.
+     *
+     * @param in
+     *            where to read, positioned at the start of a graph written
+     *            by writeBinary(); not closed, and left just past the graph.
+     * @return a graph equal to the one written: same users with the same
+     *         ids, and same edges
+     * @throws IOException if in cannot be read, does not hold a binary graph
+     *         of this version, is truncated, or fails its checksum
+     */
+    public static CompactGraph readBinary(ReadableByteChannel in) throws IOException {
+        final Input input = new Input(in);
+        if (input.getInt() != MAGIC) {
+            throw new IOException("not a binary graph");
+        }
+        final int version = input.getInt();
+        if (version != VERSION) {
+            throw new IOException("unsupported graph version " + version);
+        }
+        final int vertices = input.getVarint();
+        final int edges = input.getVarint();
+        final UserIndex users = new UserIndex();
+        for (int v = 0; v < vertices; v++) {
+            final String name = new String(input.getBytes(input.getVarint()), StandardCharsets.UTF_8);
+            if (users.intern(name) != v) {
+                throw new IOException("duplicate user " + name);
+            }
+        }
+        final int[] offsets = new int[vertices + 1];
+        final int[] targets = new int[edges];
+        int e = 0;
+        for (int v = 0; v < vertices; v++) {
+            final int degree = input.getVarint();
+            if (degree > edges - e) {
+                throw new IOException("more edges than declared");
+            }
+            int previous = 0;
+            for (int i = 0; i < degree; i++, e++) {
+                final int delta = input.getVarint();
+                final int target = previous + delta;
+                if ((i > 0 && delta == 0) || target >= vertices || target < 0 || target == v) {
+                    throw new IOException("malformed row of user " + v);
+                }
+                targets[e] = target;
+                previous = target;
+            }
+            offsets[v + 1] = e;
+        }
+        if (e != edges) {
+            throw new IOException("fewer edges than declared");
+        }
+        final long checksum = input.checksum();
+        if (input.getInt() != (int) checksum) {
+            throw new IOException("graph checksum mismatch");
+        }
+        return CompactGraph.fromRows(users, vertices, offsets, targets);
+    }
+
+    /**
+     * Write the edges of a graph as an edge list.
+     *
+     * @param graph
+     *            the graph to write.
+     * @param out
+     *            where to write; not closed.
+     * @throws IOException if out cannot be written
+     */
+    public static void writeEdgeList(CompactGraph graph, WritableByteChannel out) throws IOException {
+        final Output output = new Output(out);
+        final int vertices = graph.vertexCount();
+        final int[] offsets = graph.offsets();
+        final int[] targets = graph.targets();
+        final byte[][] names = new byte[vertices][];
+        for (int v = 0; v < vertices; v++) {
+            names[v] = graph.users().name(v).getBytes(StandardCharsets.UTF_8);
+        }
+        for (int v = 0; v < vertices; v++) {
+            for (int i = offsets[v]; i < offsets[v + 1]; i++) {
+                output.putBytes(names[v]);
+                output.put((byte) '\t');
+                output.putBytes(names[targets[i]]);
+                output.put((byte) '\n');
+            }
+        }
+        output.flush();
+    }
+
+    /**
+     * Read an edge list.
+     *
+     * @param in
+     *            where to read; read to its end, and not closed.
+     * @return a graph with an edge from A to B iff the list has one, ignoring
+     *         case, without self-edges; users are interned lowercase in the
+     *         order they first appear
+     * @throws IOException if in cannot be read, or has a line that is not
+     *         two names
+     */
+    public static CompactGraph readEdgeList(ReadableByteChannel in) throws IOException {
+        final Input input = new Input(in);
+        final UserIndex users = new UserIndex();
+        final CompactGraph.EdgeList edges = new CompactGraph.EdgeList();
+        final String[] fields = new String[2];
+        int line = 0;
+        byte[] scratch = new byte[64];
+        while (input.fill(1)) {
+            line++;
+            int fieldCount = 0;
+            boolean comment = false;
+            int length = 0;
+            boolean more = true;
+            while (more) {
+                final byte b = input.fill(1) ? input.buffer.get() : (byte) '\n';
+                more = b != '\n';
+                if (b == ' ' || b == '\t' || b == '\n' || b == '\r') {
+                    if (length > 0 && !comment) {
+                        if (fieldCount == 2) {
+                            throw new IOException("line " + line + ": more than two names");
+                        }
+                        fields[fieldCount++] = Usernames.toLowerCase(
+                                new String(scratch, 0, length, StandardCharsets.UTF_8));
+                    }
+                    length = 0;
+                } else {
+                    if (b == '#' && length == 0 && fieldCount == 0) {
+                        comment = true;
+                    }
+                    if (length == scratch.length) {
+                        scratch = Arrays.copyOf(scratch, length * 2);
+                    }
+                    scratch[length++] = b;
+                }
+            }
+            if (comment || fieldCount == 0) {
+                continue;
+            }
+            if (fieldCount != 2) {
+                throw new IOException("line " + line + ": expected two names");
+            }
+            edges.add(users.intern(fields[0]), users.intern(fields[1]));
+        }
+        return CompactGraph.build(users, users.size(), edges);
+    }
+}
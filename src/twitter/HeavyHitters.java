@@ -0,0 +1,222 @@
+/* Copyright (c) 2007-2016 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package twitter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Tracks the most frequent usernames in an unbounded stream in bounded
+ * memory: a CountMinSketch estimates every username's count, and a min-heap
+ * keeps the capacity usernames with the largest estimates seen so far. A
+ * username is added to the heap when its estimate exceeds the smallest
+ * estimate in a full heap, which it then replaces.
+ *
+ * Error bounds, for a tracker made with accuracy epsilon and confidence
+ * 1 - delta, after a stream of N usernames: every reported count is at
+ * least the true count and, with probability at least 1 - delta, at most the
+ * true count + epsilon * N; so the reported order is correct, with the same
+ * probability, for usernames whose true counts differ by more than
+ * epsilon * N. A username whose true count exceeds epsilon * N plus the
+ * smallest reported count is reported, with the same probability.
+ *
+ * Usernames are case-insensitive and reported lowercase. Memory is the
+ * sketch plus a few dozen bytes per tracked username. Not thread-safe.
+ */
+public final class HeavyHitters {
+
+    private final CountMinSketch sketch;
+    private final int capacity;
+
+    // min-heap of tracked usernames by estimated count
+    private int size = 0;
+    private final long[] heapHash;
+    private final long[] heapCount;
+    private final String[] heapName;
+
+    // open addressing, linear probing, from hash to heap position + 1; 0 if empty
+    private final long[] tableHash;
+    private final int[] tablePosition;
+
+    /* Rep invariant:
+     *   0 <= size <= capacity == heapHash.length == heapCount.length == heapName.length
+     *   heapCount[0..size-1] is a min-heap; heapHash[0..size-1] are distinct
+     *   for i < size: heapName[i] is lowercase, heapHash[i] is its hash, and
+     *     heapCount[i] <= sketch.estimate(heapHash[i])
+     *   the table maps exactly the heapHash[i], i < size, to i + 1
+     *   tableHash.length is a power of two and >= 2 * capacity
+     */
+
+    /**
+     * Make an empty tracker.
+     *
+     * @param capacity
+     *            number of usernames to track and report, > 0.
+     * @param epsilon
+     *            accuracy of the counts; see class comment. In (0, 1).
+     * @param delta
+     *            confidence of the counts; see class comment. In (0, 1).
+     */
+    public HeavyHitters(int capacity, double epsilon, double delta) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        this.sketch = new CountMinSketch(epsilon, delta);
+        this.capacity = capacity;
+        this.heapHash = new long[capacity];
+        this.heapCount = new long[capacity];
+        this.heapName = new String[capacity];
+        final int tableSize = Integer.highestOneBit(capacity * 2 - 1) << 1;
+        this.tableHash = new long[tableSize];
+        this.tablePosition = new int[tableSize];
+    }
+
+    /**
+     * Count one occurrence of a username.
+     *
+     * @param user
+     *            a username, case-insensitive.
+     */
+    public void add(String user) {
+        add(user, 0, user.length());
+    }
+
+    /*
+     * Count one occurrence of the username text[start..end), without
+     * allocating unless it enters the heap.
+     */
+    void add(String text, int start, int end) {
+        final long hash = Usernames.hash(text, start, end);
+        final long estimate = sketch.add(hash, 1);
+        // a tracked username's estimate is at least its heap count, which is
+        // at least the heap minimum, so most users can skip the lookup
+        if (size == capacity && estimate <= heapCount[0]) {
+            return;
+        }
+        final int slot = slot(hash);
+        if (tablePosition[slot] != 0) {
+            final int i = tablePosition[slot] - 1;
+            heapCount[i] = estimate;
+            siftDown(i);
+            return;
+        }
+        final String name = Usernames.toLowerCase(text, start, end);
+        if (size < capacity) {
+            set(size, hash, estimate, name);
+            size++;
+            siftUp(size - 1);
+        } else {
+            remove(heapHash[0]);
+            set(0, hash, estimate, name);
+            siftDown(0);
+        }
+    }
+
+    /**
+     * @param user
+     *            a username, case-insensitive.
+     * @return estimated number of occurrences of user; see class comment
+     */
+    public long estimate(String user) {
+        return sketch.estimate(Usernames.hash(user));
+    }
+
+    /**
+     * @return number of usernames counted
+     */
+    public long total() {
+        return sketch.total();
+    }
+
+    /**
+     * @return the tracked usernames, lowercase, in descending order of
+     *         estimated count, ties broken alphabetically; at most capacity
+     */
+    public List<String> top() {
+        final Integer[] order = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.<Integer>comparingLong(i -> -sketch.estimate(heapHash[i]))
+                .thenComparing(i -> heapName[i]));
+        final List<String> top = new ArrayList<>(size);
+        for (int i : order) {
+            top.add(heapName[i]);
+        }
+        return top;
+    }
+
+    private void set(int i, long hash, long count, String name) {
+        heapHash[i] = hash;
+        heapCount[i] = count;
+        heapName[i] = name;
+        final int slot = slot(hash);
+        tableHash[slot] = hash;
+        tablePosition[slot] = i + 1;
+    }
+
+    private void swap(int i, int j) {
+        final long hash = heapHash[i];
+        final long count = heapCount[i];
+        final String name = heapName[i];
+        set(i, heapHash[j], heapCount[j], heapName[j]);
+        set(j, hash, count, name);
+    }
+
+    private void siftUp(int i) {
+        while (i > 0 && heapCount[(i - 1) / 2] > heapCount[i]) {
+            swap(i, (i - 1) / 2);
+            i = (i - 1) / 2;
+        }
+    }
+
+    private void siftDown(int i) {
+        while (true) {
+            final int left = 2 * i + 1;
+            if (left >= size) {
+                return;
+            }
+            final int child = left + 1 < size && heapCount[left + 1] < heapCount[left] ? left + 1 : left;
+            if (heapCount[i] <= heapCount[child]) {
+                return;
+            }
+            swap(i, child);
+            i = child;
+        }
+    }
+
+    /*
+     * @return the table slot holding hash, or the empty slot where it belongs
+     */
+    private int slot(long hash) {
+        final int mask = tableHash.length - 1;
+        int s = (int) hash & mask;
+        while (tablePosition[s] != 0 && tableHash[s] != hash) {
+            s = (s + 1) & mask;
+        }
+        return s;
+    }
+
+    /*
+     * Remove hash from the table, shifting later entries of its probe run
+     * back so that lookups need no tombstones.
+     */
+    private void remove(long hash) {
+        final int mask = tableHash.length - 1;
+        int hole = slot(hash);
+        tablePosition[hole] = 0;
+        for (int s = (hole + 1) & mask; tablePosition[s] != 0; s = (s + 1) & mask) {
+            final int home = (int) tableHash[s] & mask;
+            // move s into the hole unless its home lies cyclically in (hole, s]
+            if (((s - home) & mask) >= ((s - hole) & mask)) {
+                tableHash[hole] = tableHash[s];
+                tablePosition[hole] = tablePosition[s];
+                tablePosition[s] = 0;
+                hole = s;
+            }
+        }
+    }
+}
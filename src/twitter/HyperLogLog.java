@@ -0,0 +1,134 @@
+/* Copyright (c) 2007-2016 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package twitter;
+
+/**
+ * A HyperLogLog sketch: estimates the number of distinct values added to
+ * it in a fixed amount of memory, 2^precision bytes, with a relative
+ * standard error of about 1.04 / sqrt(2^precision) (1.6% at the default
+ * precision of 12, which takes 4KB).
+ *
+ * Values are added as 64-bit hashes, which must be well mixed. Sketches of
+ * the same precision can be merged, giving the sketch of the union of their
+ * inputs, so a large input can be sketched in chunks or on several threads
+ * and the partial sketches combined. Not thread-safe.
+ */
+public final class HyperLogLog {
+
+    /** Default precision. */
+    public static final int DEFAULT_PRECISION = 12;
+
+    /** Smallest allowed precision. */
+    public static final int MIN_PRECISION = 4;
+
+    /** Largest allowed precision. */
+    public static final int MAX_PRECISION = 18;
+
+    private final int precision;
+    private final byte[] registers;
+
+    /* Rep invariant:
+     *   MIN_PRECISION <= precision <= MAX_PRECISION
+     *   registers.length == 2^precision
+     *   0 <= registers[i] <= 64 - precision + 1
+     */
+
+    /**
+     * Make an empty sketch of the default precision.
+     */
+    public HyperLogLog() {
+        this(DEFAULT_PRECISION);
+    }
+
+    /**
+     * Make an empty sketch.
+     *
+     * @param precision
+     *            log2 of the number of registers, in
+     *            MIN_PRECISION..MAX_PRECISION.
+     */
+    public HyperLogLog(int precision) {
+        if (precision < MIN_PRECISION || precision > MAX_PRECISION) {
+            throw new IllegalArgumentException("precision must be in " + MIN_PRECISION + ".." + MAX_PRECISION);
+        }
+        this.precision = precision;
+        this.registers = new byte[1 << precision];
+    }
+
+    /**
+     * @return the precision of this sketch
+     */
+    public int precision() {
+        return precision;
+    }
+
+    /**
+     * Add a value.
+     *
+     * @param hash
+     *            a well-mixed 64-bit hash of the value; equal values must
+     *            have equal hashes.
+     */
+    public void add(long hash) {
+        final int index = (int) (hash >>> (64 - precision));
+        // rank of the first 1 bit among the remaining 64 - precision bits
+        final int rank = Math.min(Long.numberOfLeadingZeros(hash << precision), 64 - precision) + 1;
+        if (rank > registers[index]) {
+            registers[index] = (byte) rank;
+        }
+    }
+
+    /**
+     * Add the values added to another sketch to this one.
+     *
+     * @param other
+     *            a sketch of the same precision; not modified.
+     */
+    public void merge(HyperLogLog other) {
+        if (other.precision != precision) {
+            throw new IllegalArgumentException("cannot merge precision " + other.precision + " into " + precision);
+        }
+        for (int i = 0; i < registers.length; i++) {
+            if (other.registers[i] > registers[i]) {
+                registers[i] = other.registers[i];
+            }
+        }
+    }
+
+    /**
+     * @return an estimate of the number of distinct values added
+     */
+    public long estimate() {
+        final int m = registers.length;
+        double sum = 0;
+        int zeros = 0;
+        for (byte register : registers) {
+            sum += Math.scalb(1.0, -register);
+            if (register == 0) {
+                zeros++;
+            }
+        }
+        final double alpha;
+        switch (m) {
+        case 16: alpha = 0.673; break;
+        case 32: alpha = 0.697; break;
+        case 64: alpha = 0.709; break;
+        default: alpha = 0.7213 / (1 + 1.079 / m); break;
+        }
+        double estimate = alpha * m * (double) m / sum;
+        if (estimate <= 2.5 * m && zeros > 0) {
+            // small range: linear counting is more accurate
+            estimate = m * Math.log((double) m / zeros);
+        }
+        // 64-bit hashes make the large-range correction unnecessary
+        return Math.round(estimate);
+    }
+
+    /**
+     * @return the relative standard error of estimate() for this precision
+     */
+    public double standardError() {
+        return 1.04 / Math.sqrt(registers.length);
+    }
+}
@@ -0,0 +1,189 @@
+/* Copyright (c) 2007-2016 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package twitter;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * An input stream that decompresses its source on a background thread.
+ *
+ * The background thread reads and inflates the compressed source into
+ * fixed-size chunks and hands them to the reading thread through a bounded
+ * queue, so disk or network I/O and inflation overlap with whatever the
+ * reader does with the bytes (typically JSON parsing). When the queue is full
+ * the inflater blocks, so memory use is bounded by capacity * chunkSize.
+ *
+ * Closing this stream closes the source, which unblocks an inflater waiting
+ * in a read of it, and waits up to CLOSE_WAIT_MILLIS for the inflater to
+ * exit. A source whose close does not unblock its reads leaves the
+ * inflater running until the read returns; it then exits without handing
+ * on anything more.
+ */
+class InflatingInputStream extends InputStream {
+
+    static final int DEFAULT_CHUNK_SIZE = 1 << 16;
+    static final int DEFAULT_CAPACITY = 8;
+    static final long CLOSE_WAIT_MILLIS = 100;
+
+    /*
+     * A chunk of inflated bytes, or the end of the stream (length < 0), or a
+     * failure of the inflater thread (error != null).
+     */
+    private static final class Chunk {
+        final byte[] bytes;
+        final int length;
+        final IOException error;
+
+        Chunk(byte[] bytes, int length, IOException error) {
+            this.bytes = bytes;
+            this.length = length;
+            this.error = error;
+        }
+    }
+
+    private static final Chunk END = new Chunk(new byte[0], -1, null);
+
+    private final BlockingQueue<Chunk> chunks;
+    private final InputStream source;
+    private final Thread inflater;
+
+    private Chunk current = new Chunk(new byte[0], 0, null);
+    private int position = 0;
+    private boolean closed = false;
+
+    /* Rep invariant:
+     *   0 <= position <= current.length, unless current is END or an error
+     *   once current is END or an error, no further chunks are taken
+     * Thread safety:
+     *   chunks and source are the only state shared with the inflater
+     *   thread; the reading thread only closes source, which blocking
+     *   streams support from another thread; all other fields are confined
+     *   to the reading thread.
+     */
+
+    /**
+     * Start decompressing a stream in the background.
+     *
+     * @param source
+     *            compressed stream; owned and closed by this stream.
+     * @param compression
+     *            format of source.
+     * @param chunkSize
+     *            size in bytes of each chunk handed to the reader, > 0.
+     * @param capacity
+     *            maximum number of chunks buffered ahead of the reader, > 0.
+     */
+    InflatingInputStream(InputStream source, Compression compression, int chunkSize, int capacity) {
+        if (chunkSize <= 0 || capacity <= 0) {
+            throw new IllegalArgumentException("requires chunkSize > 0 and capacity > 0");
+        }
+        this.chunks = new ArrayBlockingQueue<>(capacity);
+        this.source = source;
+        this.inflater = new Thread(() -> inflate(source, compression, chunkSize), "tweet-inflater");
+        this.inflater.setDaemon(true);
+        this.inflater.start();
+    }
+
+    /*
+     * Body of the inflater thread.
+     */
+    private void inflate(InputStream source, Compression compression, int chunkSize) {
+        try (InputStream decoded = compression.decoder(source)) {
+            while (true) {
+                final byte[] bytes = new byte[chunkSize];
+                final int length = decoded.readNBytes(bytes, 0, chunkSize);
+                if (length > 0) {
+                    chunks.put(new Chunk(bytes, length, null));
+                }
+                if (length < chunkSize) {
+                    chunks.put(END);
+                    return;
+                }
+            }
+        } catch (IOException ioe) {
+            try {
+                chunks.put(new Chunk(null, -1, ioe));
+            } catch (InterruptedException ie) {
+                // reader closed the stream; nobody is waiting for the error
+            }
+        } catch (InterruptedException ie) {
+            // reader closed the stream; nobody is waiting for more chunks
+        }
+    }
+
+    /*
+     * Make sure at least one byte is available in current, unless the stream
+     * has ended.
+     *
+     * @return false iff the end of the stream has been reached
+     */
+    private boolean fill() throws IOException {
+        if (closed) {
+            throw new IOException("stream closed");
+        }
+        while (position == current.length) {
+            try {
+                current = chunks.take();
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("interrupted while waiting for inflater");
+            }
+            position = 0;
+        }
+        if (current.error != null) {
+            throw new IOException("decompression failed", current.error);
+        }
+        return current.length >= 0;
+    }
+
+    @Override public int read() throws IOException {
+        if (!fill()) {
+            return -1;
+        }
+        return current.bytes[position++] & 0xff;
+    }
+
+    @Override public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (!fill()) {
+            return -1;
+        }
+        final int n = Math.min(len, current.length - position);
+        System.arraycopy(current.bytes, position, b, off, n);
+        position += n;
+        return n;
+    }
+
+    @Override public int available() throws IOException {
+        if (closed || current.length < 0) {
+            return 0;
+        }
+        return current.length - position;
+    }
+
+    @Override public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        inflater.interrupt();
+        try {
+            // a read blocked on a socket or disk ignores the interrupt, but not this
+            source.close();
+        } finally {
+            chunks.clear();
+            try {
+                inflater.join(CLOSE_WAIT_MILLIS);
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
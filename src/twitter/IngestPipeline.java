@@ -0,0 +1,741 @@
+/* Copyright (c) 2007-2016 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package twitter;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+import javax.json.JsonException;
+import javax.json.JsonReader;
+
+/**
+ * Ingests streams of tweets in concurrent stages connected by bounded
+ * queues, and accumulates what Main reports about them: the number of
+ * tweets, their timespan, the users they mention, and their weighted
+ * follows graph.
+ *
+ * The stages are:
+ *   READ      one thread decompresses the stream (see Compression) and
+ *             splits its JSON array into the bytes of each element;
+ *   PARSE     parsers() threads turn those bytes into Tweets;
+ *   EXTRACT   extractors() threads find each tweet's mentions and follows
+ *             evidence;
+ *   AGGREGATE one thread drops duplicates, if asked to, and folds the rest
+ *             into the results.
+ * Each queue holds at most queueCapacity() items, so a stage that falls
+ * behind stalls the stages before it, down to the reader, instead of
+ * letting work pile up on the heap: the memory in flight is bounded by the
+ * queue capacity, not by the size of the stream. A thread waiting on a full
+ * or empty queue spins briefly, then yields, then parks.
+ *
+ * The tweets of one stream reach the aggregator in an order that depends on
+ * scheduling, so the results are those of processing the tweets in some
+ * order: the same counts, mentions, edges, weights and first/last times as
+ * a serial pass, but user ids and edge numbers may differ. HASHTAG evidence
+ * depends on the order of the tweets and is not supported.
+ *
+ * Every stage counts its items and the time it spent blocked on a full
+ * queue downstream or starved on an empty queue upstream; see stats() and
+ * report(). Thread-safe: ingest() calls are serialized.
+ */
+public final class IngestPipeline {
+
+    /**
+     * The stages of a pipeline, in order.
+     */
+    public enum Stage {
+        /** Decompressing and splitting the stream; items are array elements. */
+        READ,
+        /** Parsing array elements; items are tweets. */
+        PARSE,
+        /** Finding mentions and evidence; items are tweets. */
+        EXTRACT,
+        /** Folding tweets into the results; items are tweets kept. */
+        AGGREGATE,
+    }
+
+    /**
+     * Throughput and waiting of one stage, summed over all its threads and
+     * over all ingest() calls so far.
+     */
+    public static final class StageStats {
+        private long items = 0;
+        private long elapsedNanos = 0;
+        private long blockedNanos = 0;
+        private long starvedNanos = 0;
+        private int maxQueueDepth = 0;
+
+        /* Rep invariant:
+         *   all fields >= 0
+         */
+
+        private synchronized void add(Counters counters) {
+            items += counters.items;
+            blockedNanos += counters.blockedNanos;
+            starvedNanos += counters.starvedNanos;
+            maxQueueDepth = Math.max(maxQueueDepth, counters.maxQueueDepth);
+        }
+
+        private synchronized void finished(long nanos) {
+            elapsedNanos += nanos;
+        }
+
+        /**
+         * @return number of items the stage has produced
+         */
+        public synchronized long items() {
+            return items;
+        }
+
+        /**
+         * @return items produced per second of wall-clock time from the start
+         *         of each ingest() until the stage finished
+         */
+        public synchronized double itemsPerSecond() {
+            return elapsedNanos == 0 ? 0 : items * 1e9 / elapsedNanos;
+        }
+
+        /**
+         * @return nanoseconds the stage's threads spent waiting for room in
+         *         the queue after them, that is, held back by the next stage
+         */
+        public synchronized long blockedNanos() {
+            return blockedNanos;
+        }
+
+        /**
+         * @return nanoseconds the stage's threads spent waiting for items in
+         *         the queue before them, that is, held back by the previous
+         *         stage
+         */
+        public synchronized long starvedNanos() {
+            return starvedNanos;
+        }
+
+        /**
+         * @return most items seen waiting in the queue before the stage; 0
+         *         for READ
+         */
+        public synchronized int maxQueueDepth() {
+            return maxQueueDepth;
+        }
+    }
+
+    /** Default capacity of each queue. */
+    public static final int DEFAULT_QUEUE_CAPACITY = 1024;
+
+    private static final Set<FollowEvidence> ORDER_INDEPENDENT =
+            EnumSet.of(FollowEvidence.MENTION, FollowEvidence.RETWEET, FollowEvidence.REPLY);
+
+    // waiting on a queue: spin, unless there is no other core to make
+    // progress meanwhile, then yield, then park
+    private static final int SPINS = Runtime.getRuntime().availableProcessors() > 1 ? 64 : 0;
+    private static final int YIELDS = 64;
+    private static final long PARK_NANOS = 50_000;
+
+    private static final int READ_CHUNK = 1 << 16;
+
+    // marks the end of a queue's input; each consumer takes one
+    private static final Object END = new Object();
+
+    /*
+     * Thrown inside a stage to unwind it after another stage has failed.
+     */
+    private static final class Aborted extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        Aborted() {
+            super(null, null, false, false);
+        }
+    }
+
+    private static final Aborted ABORTED = new Aborted();
+
+    /*
+     * What one thread of a stage has done, merged into the stage's
+     * StageStats when the thread ends.
+     */
+    private static final class Counters {
+        long items = 0;
+        long blockedNanos = 0;
+        long starvedNanos = 0;
+        int maxQueueDepth = 0;
+    }
+
+    /*
+     * A tweet with what the extractor found in it.
+     */
+    private static final class Extracted {
+        final Tweet tweet;
+        final String author;
+        final String[] mentions;
+        final String[] followees;
+
+        Extracted(Tweet tweet, String author, String[] mentions, String[] followees) {
+            this.tweet = tweet;
+            this.author = author;
+            this.mentions = mentions;
+            this.followees = followees;
+        }
+    }
+
+    private final int queueCapacity;
+    private final int parsers;
+    private final int extractors;
+    private final Set<FollowEvidence> evidence;
+    private final TweetDeduplicator dedup;
+    private final Map<Stage, StageStats> stats = new EnumMap<>(Stage.class);
+
+    // results, written only by the aggregator thread while an ingest() is
+    // in progress, which holds the lock
+    private final WeightedFollowsGraph graph = new WeightedFollowsGraph();
+    private final Set<String> mentioned = new HashSet<>();
+    private long tweets = 0;
+    private long duplicates = 0;
+    private long earliestMillis = Long.MAX_VALUE;
+    private long latestMillis = Long.MIN_VALUE;
+
+    /* Rep invariant:
+     *   queueCapacity >= 2, parsers > 0, extractors > 0
+     *   evidence is a subset of ORDER_INDEPENDENT
+     *   stats has an entry for every Stage
+     *   mentioned holds lowercase usernames
+     *   tweets == 0 and earliestMillis == Long.MAX_VALUE and latestMillis == Long.MIN_VALUE,
+     *     or tweets > 0 and earliestMillis <= latestMillis
+     *
+     * Thread safety argument:
+     *   the results and dedup are touched only by methods holding the lock
+     *     and by the aggregator thread, which runs only while ingest() holds
+     *     the lock and waits for it; Thread.join() makes its writes visible
+     *   the configuration is final and immutable
+     *   StageStats are monitors
+     *   each ingest() gets its own queues; see BoundedQueue
+     */
+
+    /**
+     * Make a pipeline that builds its graph from MENTION evidence and keeps
+     * every tweet, with queues of DEFAULT_QUEUE_CAPACITY.
+     *
+     * @param parsers
+     *            number of PARSE threads, > 0.
+     * @param extractors
+     *            number of EXTRACT threads, > 0.
+     */
+    public IngestPipeline(int parsers, int extractors) {
+        this(DEFAULT_QUEUE_CAPACITY, parsers, extractors, EnumSet.of(FollowEvidence.MENTION), null);
+    }
+
+    /**
+     * Make a pipeline.
+     *
+     * @param queueCapacity
+     *            most items waiting between two stages, >= 2; rounded up to a
+     *            power of two.
+     * @param parsers
+     *            number of PARSE threads, > 0.
+     * @param extractors
+     *            number of EXTRACT threads, > 0.
+     * @param evidence
+     *            the kinds of evidence for the graph; see FollowEvidence.
+     *            HASHTAG is not allowed.
+     * @param dedup
+     *            drops tweets seen before, by id, and is owned by this
+     *            pipeline from now on; or null to keep every tweet.
+     */
+    public IngestPipeline(int queueCapacity, int parsers, int extractors,
+            Set<FollowEvidence> evidence, TweetDeduplicator dedup) {
+        if (queueCapacity < 2) {
+            throw new IllegalArgumentException("queueCapacity must be at least 2");
+        }
+        if (parsers <= 0 || extractors <= 0) {
+            throw new IllegalArgumentException("each stage needs at least one thread");
+        }
+        if (!ORDER_INDEPENDENT.containsAll(evidence)) {
+            throw new IllegalArgumentException("evidence depends on the order of the tweets: " + evidence);
+        }
+        this.queueCapacity = Integer.highestOneBit(queueCapacity - 1) << 1;
+        this.parsers = parsers;
+        this.extractors = extractors;
+        this.evidence = evidence.isEmpty() ? EnumSet.noneOf(FollowEvidence.class) : EnumSet.copyOf(evidence);
+        this.dedup = dedup;
+        for (Stage stage : Stage.values()) {
+            stats.put(stage, new StageStats());
+        }
+    }
+
+    /**
+     * Ingest a stream of tweets, adding them to the results of this
+     * pipeline. Blocks until the whole stream has been processed, or until
+     * some stage fails, which stops all stages.
+     *
+     * @param in
+     *            a JSON array of tweets in the format TweetReader reads,
+     *            compressed or not (see Compression); closed by this method.
+     * @return number of tweets kept from this stream
+     * @throws IOException if reading the stream fails
+     * @throws JsonException if the stream is not a JSON array of tweets
+     */
+    public synchronized long ingest(InputStream in) throws IOException {
+        final Metrics.Sample sample = Metrics.start(Metrics.Stage.INGEST);
+        final long before = tweets;
+        final long duplicatesBefore = duplicates;
+        final Run run = new Run();
+        final List<Thread> threads = new ArrayList<>();
+        threads.add(run.thread(Stage.READ, 0, counters -> run.read(in, counters)));
+        for (int i = 0; i < parsers; i++) {
+            threads.add(run.thread(Stage.PARSE, i, run::parse));
+        }
+        for (int i = 0; i < extractors; i++) {
+            threads.add(run.thread(Stage.EXTRACT, i, run::extract));
+        }
+        threads.add(run.thread(Stage.AGGREGATE, 0, run::aggregate));
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        boolean interrupted = false;
+        for (Thread thread : threads) {
+            while (true) {
+                try {
+                    thread.join();
+                    break;
+                } catch (InterruptedException ie) {
+                    // stop the run, but still wait for it: the results must not change after return
+                    interrupted = true;
+                    run.fail(ie);
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+
+        final Throwable failure = run.failure.get();
+        if (failure instanceof IOException) {
+            throw (IOException) failure;
+        } else if (failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
+        } else if (failure instanceof Error) {
+            throw (Error) failure;
+        } else if (failure != null) {
+            throw new IOException("ingest interrupted", failure);
+        }
+        sample.stop(tweets - before + duplicates - duplicatesBefore, tweets - before);
+        return tweets - before;
+    }
+
+    /*
+     * The body of one thread of a stage.
+     */
+    private interface Work {
+        void run(Counters counters) throws IOException;
+    }
+
+    /*
+     * The queues and progress of one ingest() call.
+     */
+    private final class Run {
+        final long startNanos = System.nanoTime();
+        final BoundedQueue<Object> elements = new BoundedQueue<>(queueCapacity);
+        final BoundedQueue<Object> parsed = new BoundedQueue<>(queueCapacity);
+        final BoundedQueue<Object> extracted = new BoundedQueue<>(queueCapacity);
+        // threads of each stage still running, for stats
+        final Map<Stage, AtomicInteger> running = new EnumMap<>(Stage.class);
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        // threads of each stage that have not yet posted their last item
+        final AtomicInteger parsing = new AtomicInteger(parsers);
+        final AtomicInteger extracting = new AtomicInteger(extractors);
+
+        Run() {
+            running.put(Stage.READ, new AtomicInteger(1));
+            running.put(Stage.PARSE, new AtomicInteger(parsers));
+            running.put(Stage.EXTRACT, new AtomicInteger(extractors));
+            running.put(Stage.AGGREGATE, new AtomicInteger(1));
+        }
+
+        Thread thread(Stage stage, int index, Work work) {
+            final Thread thread = new Thread(() -> {
+                final Counters counters = new Counters();
+                try {
+                    work.run(counters);
+                } catch (Aborted a) {
+                    // another stage failed first
+                } catch (Throwable t) {
+                    fail(t);
+                } finally {
+                    stats.get(stage).add(counters);
+                    if (running.get(stage).decrementAndGet() == 0) {
+                        stats.get(stage).finished(System.nanoTime() - startNanos);
+                    }
+                }
+            }, "ingest-" + stage.name().toLowerCase(Locale.ROOT) + "-" + index);
+            thread.setDaemon(true);
+            return thread;
+        }
+
+        void fail(Throwable t) {
+            failure.compareAndSet(null, t);
+        }
+
+        /*
+         * Post END for each consumer of a queue once the last thread of the
+         * stage producing it is done.
+         */
+        void finish(AtomicInteger producing, BoundedQueue<Object> queue, int consumers, Counters counters) {
+            if (producing.decrementAndGet() == 0) {
+                for (int i = 0; i < consumers; i++) {
+                    put(queue, END, counters);
+                }
+            }
+        }
+
+        void put(BoundedQueue<Object> queue, Object item, Counters counters) {
+            if (queue.offer(item)) {
+                return;
+            }
+            final long start = System.nanoTime();
+            int attempt = 0;
+            do {
+                backoff(attempt++);
+            } while (!queue.offer(item));
+            counters.blockedNanos += System.nanoTime() - start;
+        }
+
+        Object take(BoundedQueue<Object> queue, Counters counters) {
+            Object item = queue.poll();
+            if (item == null) {
+                final long start = System.nanoTime();
+                int attempt = 0;
+                do {
+                    backoff(attempt++);
+                } while ((item = queue.poll()) == null);
+                counters.starvedNanos += System.nanoTime() - start;
+            }
+            counters.maxQueueDepth = Math.max(counters.maxQueueDepth, queue.size() + 1);
+            return item;
+        }
+
+        private void backoff(int attempt) {
+            if (failure.get() != null) {
+                throw ABORTED;
+            }
+            if (attempt < SPINS) {
+                Thread.onSpinWait();
+            } else if (attempt < SPINS + YIELDS) {
+                Thread.yield();
+            } else {
+                LockSupport.parkNanos(PARK_NANOS);
+            }
+        }
+
+        void read(InputStream in, Counters counters) throws IOException {
+            try (InputStream decoded = TweetReader.decompressed(in)) {
+                new ArraySplitter(element -> {
+                    put(elements, element, counters);
+                    counters.items++;
+                }).split(decoded);
+            }
+            for (int i = 0; i < parsers; i++) {
+                put(elements, END, counters);
+            }
+        }
+
+        void parse(Counters counters) {
+            for (Object next; (next = take(elements, counters)) != END; ) {
+                final Tweet tweet;
+                try (JsonReader reader = TweetReader.JSON.createReader(new ByteArrayInputStream((byte[]) next))) {
+                    tweet = TweetReader.readTweet(reader.readObject());
+                }
+                put(parsed, tweet, counters);
+                counters.items++;
+            }
+            finish(parsing, parsed, extractors, counters);
+        }
+
+        void extract(Counters counters) {
+            final Extractor extractor = new Extractor(evidence);
+            for (Object next; (next = take(parsed, counters)) != END; ) {
+                put(extracted, extractor.extract((Tweet) next), counters);
+                counters.items++;
+            }
+            finish(extracting, extracted, 1, counters);
+        }
+
+        void aggregate(Counters counters) {
+            final UserIndex users = graph.users();
+            for (Object next; (next = take(extracted, counters)) != END; ) {
+                final Extracted e = (Extracted) next;
+                if (dedup != null && !dedup.firstSeen(e.tweet)) {
+                    duplicates++;
+                    continue;
+                }
+                final long millis = e.tweet.getTimestamp().toEpochMilli();
+                tweets++;
+                earliestMillis = Math.min(earliestMillis, millis);
+                latestMillis = Math.max(latestMillis, millis);
+                mentioned.addAll(Arrays.asList(e.mentions));
+                if (e.followees.length > 0) {
+                    final int follower = users.intern(e.author);
+                    for (String followee : e.followees) {
+                        graph.addEvidence(follower, users.intern(followee), millis);
+                    }
+                }
+                counters.items++;
+            }
+            if (dedup != null) {
+                dedup.expire();
+            }
+        }
+    }
+
+    /*
+     * Finds the mentions and follows evidence of one tweet at a time, with
+     * reusable buffers. Not thread-safe: one per EXTRACT thread.
+     */
+    private static final class Extractor implements TweetText.Visitor, EvidenceScanner.EdgeSink {
+        private static final String[] NONE = new String[0];
+
+        private final EvidenceScanner scanner;
+        private final List<String> mentions = new ArrayList<>();
+        private final List<String> followees = new ArrayList<>();
+
+        Extractor(Set<FollowEvidence> evidence) {
+            this.scanner = new EvidenceScanner(evidence, EvidenceScanner.DEFAULT_HASHTAG_CAP);
+        }
+
+        Extracted extract(Tweet tweet) {
+            TweetText.scan(tweet.getText(), this);
+            scanner.scan(tweet, this);
+            final Extracted extracted = new Extracted(tweet, Usernames.toLowerCase(tweet.getAuthor()),
+                    mentions.isEmpty() ? NONE : mentions.toArray(NONE),
+                    followees.isEmpty() ? NONE : followees.toArray(NONE));
+            mentions.clear();
+            followees.clear();
+            return extracted;
+        }
+
+        @Override public void mention(String text, int start, int end, int flags) {
+            mentions.add(Usernames.toLowerCase(text, start, end));
+        }
+
+        @Override public void edge(String follower, String followee, Tweet tweet, FollowEvidence kind) {
+            followees.add(followee);
+        }
+    }
+
+    /*
+     * Splits a JSON array, read as UTF-8 bytes, into the bytes of its
+     * elements, tracking only nesting and strings; the parser checks the
+     * rest. Multi-byte UTF-8 sequences never contain ASCII bytes, so
+     * scanning bytes is safe.
+     */
+    static final class ArraySplitter {
+        interface Sink {
+            void element(byte[] bytes);
+        }
+
+        private final Sink sink;
+        private byte[] element = new byte[256];
+        private int length = 0;
+        private int depth = 0;
+        private boolean inString = false;
+        private boolean escaped = false;
+        private boolean expectElement = false;
+        private boolean done = false;
+
+        /* Rep invariant:
+         *   0 <= length <= element.length
+         *   depth == 0 before the array opens and after it closes
+         *   escaped implies inString
+         */
+
+        ArraySplitter(Sink sink) {
+            this.sink = sink;
+        }
+
+        void split(InputStream in) throws IOException {
+            final byte[] chunk = new byte[READ_CHUNK];
+            for (int n; (n = in.read(chunk)) != -1; ) {
+                for (int i = 0; i < n; i++) {
+                    accept(chunk[i]);
+                }
+            }
+            if (!done) {
+                throw new JsonException("unexpected end of input: JSON array not closed");
+            }
+        }
+
+        private void accept(byte b) {
+            if (inString) {
+                append(b);
+                if (escaped) {
+                    escaped = false;
+                } else if (b == '\\') {
+                    escaped = true;
+                } else if (b == '"') {
+                    inString = false;
+                }
+                return;
+            }
+            if (b == ' ' || b == '\t' || b == '\n' || b == '\r') {
+                if (depth > 1) {
+                    append(b);
+                }
+                return;
+            }
+            if (done) {
+                throw new JsonException("unexpected data after the JSON array");
+            }
+            if (depth == 0) {
+                if (b != '[') {
+                    throw new JsonException("expected a JSON array of tweets");
+                }
+                depth = 1;
+                return;
+            }
+            if (depth == 1) {
+                if (b == ',' || b == ']') {
+                    if (length > 0) {
+                        sink.element(Arrays.copyOf(element, length));
+                        length = 0;
+                    } else if (b == ',' || expectElement) {
+                        throw new JsonException("missing JSON array element");
+                    }
+                    expectElement = b == ',';
+                    if (b == ']') {
+                        depth = 0;
+                        done = true;
+                    }
+                    return;
+                }
+                expectElement = false;
+            }
+            if (b == '{' || b == '[') {
+                depth++;
+            } else if (b == '}' || b == ']') {
+                depth--;
+            } else if (b == '"') {
+                inString = true;
+            }
+            append(b);
+        }
+
+        private void append(byte b) {
+            if (length == element.length) {
+                element = Arrays.copyOf(element, length * 2);
+            }
+            element[length++] = b;
+        }
+    }
+
+    /**
+     * @return number of PARSE threads
+     */
+    public int parsers() {
+        return parsers;
+    }
+
+    /**
+     * @return number of EXTRACT threads
+     */
+    public int extractors() {
+        return extractors;
+    }
+
+    /**
+     * @return most items waiting between two stages
+     */
+    public int queueCapacity() {
+        return queueCapacity;
+    }
+
+    /**
+     * @return number of tweets kept so far
+     */
+    public synchronized long tweetCount() {
+        return tweets;
+    }
+
+    /**
+     * @return number of tweets dropped so far as seen before
+     */
+    public synchronized long duplicateCount() {
+        return duplicates;
+    }
+
+    /**
+     * @return the minimum-length time interval that contains the timestamps
+     *         of every tweet kept so far, as defined by Extract.getTimespan
+     */
+    public synchronized Timespan timespan() {
+        if (tweets == 0) {
+            // Under-determined by spec; choose zero-length interval, as Extract does
+            return new Timespan(Instant.EPOCH, Instant.EPOCH);
+        }
+        return new Timespan(Instant.ofEpochMilli(earliestMillis), Instant.ofEpochMilli(latestMillis));
+    }
+
+    /**
+     * @return the lowercase usernames mentioned in the tweets kept so far, as
+     *         defined by Extract.getMentionedUsers; a new set
+     */
+    public synchronized Set<String> mentionedUsers() {
+        return new HashSet<>(mentioned);
+    }
+
+    /**
+     * @return the weighted follows graph of the tweets kept so far, as
+     *         defined by SocialNetwork.guessWeightedFollowsGraph with this
+     *         pipeline's evidence; must not be used during ingest()
+     */
+    public synchronized WeightedFollowsGraph graph() {
+        return graph;
+    }
+
+    /**
+     * @param stage
+     *            a stage.
+     * @return the stage's statistics, updated as its threads end
+     */
+    public StageStats stats(Stage stage) {
+        return stats.get(stage);
+    }
+
+    /**
+     * @return a table of the statistics of every stage, one line each
+     */
+    public String report() {
+        final StringBuilder report = new StringBuilder();
+        report.append(String.format(Locale.ROOT, "%-10s %8s %12s %12s %12s %12s %10s%n",
+                "stage", "threads", "items", "items/s", "blocked ms", "starved ms", "max queue"));
+        for (Stage stage : Stage.values()) {
+            final StageStats s = stats.get(stage);
+            report.append(String.format(Locale.ROOT, "%-10s %8d %12d %12.0f %12.1f %12.1f %10d%n",
+                    stage, threads(stage), s.items(), s.itemsPerSecond(),
+                    s.blockedNanos() / 1e6, s.starvedNanos() / 1e6, s.maxQueueDepth()));
+        }
+        return report.toString();
+    }
+
+    private int threads(Stage stage) {
+        switch (stage) {
+        case PARSE: return parsers;
+        case EXTRACT: return extractors;
+        default: return 1;
+        }
+    }
+}
@@ -0,0 +1,137 @@
+/* Copyright (c) 2007-2016 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package twitter;
+
+import java.util.stream.IntStream;
+
+/**
+ * Community detection by label propagation: every user starts in a
+ * community of their own, then repeatedly joins the community most common
+ * among their neighbors, following edges either way, until no user moves or
+ * a bound on the number of rounds is reached.
+ *
+ * Each round updates the users in two halves, chosen afresh every round by
+ * hashing the user id with the seed and round number. The users of one half
+ * are updated in parallel from the labels as they stood before that half,
+ * so the result depends only on the graph and the seed, not on thread
+ * scheduling, while the alternating halves damp the oscillation that fully
+ * synchronous updating shows on bipartite structures. Labels live in int
+ * arrays and neighbor labels are counted in dense per-thread scratch arrays,
+ * so a round costs time linear in the number of edges and allocates nothing.
+ */
+public final class LabelPropagation {
+
+    /** Default bound on the number of rounds. */
+    public static final int DEFAULT_MAX_ITERATIONS = 20;
+
+    private LabelPropagation() {
+        // static methods only
+    }
+
+    /*
+     * Per-thread working space; counts is all zero between users.
+     */
+    private static final class Scratch {
+        final int[] counts;
+        final int[] touched;
+
+        Scratch(int vertices) {
+            this.counts = new int[vertices];
+            this.touched = new int[vertices];
+        }
+    }
+
+    /**
+     * Find communities.
+     *
+     * @param graph
+     *            who follows whom; edge direction is ignored.
+     * @param maxIterations
+     *            maximum number of rounds, >= 0.
+     * @param seed
+     *            chooses how each round is split into halves.
+     * @return a partition of the users of graph into communities
+     */
+    public static Communities detect(CompactGraph graph, int maxIterations, long seed) {
+        if (maxIterations < 0) {
+            throw new IllegalArgumentException("maxIterations must not be negative");
+        }
+        final CompactGraph undirected = graph.undirected();
+        final int vertices = undirected.vertexCount();
+        final int[] labels = new int[vertices];
+        final int[] next = new int[vertices];
+        for (int v = 0; v < vertices; v++) {
+            labels[v] = v;
+            next[v] = v;
+        }
+        final ThreadLocal<Scratch> scratch = ThreadLocal.withInitial(() -> new Scratch(vertices));
+
+        int round = 0;
+        while (round < maxIterations) {
+            final long roundSeed = mix(seed + round);
+            round++;
+            int moved = 0;
+            for (int half = 0; half < 2; half++) {
+                final int h = half;
+                moved += IntStream.range(0, vertices).parallel()
+                        .filter(v -> half(v, roundSeed) == h)
+                        .map(v -> {
+                            next[v] = bestLabel(undirected, v, labels, scratch.get());
+                            return next[v] == labels[v] ? 0 : 1;
+                        })
+                        .sum();
+                IntStream.range(0, vertices).parallel()
+                        .filter(v -> half(v, roundSeed) == h)
+                        .forEach(v -> labels[v] = next[v]);
+            }
+            if (moved == 0) {
+                break;
+            }
+        }
+        return new Communities(undirected.users(), labels, round);
+    }
+
+    private static int half(int v, long roundSeed) {
+        return (int) (mix(v ^ roundSeed) >>> 63);
+    }
+
+    // splitmix64 finalizer
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    /*
+     * @return the label most common among v's neighbors; v's own label if
+     *         it is among the most common or v has no neighbors, else the
+     *         smallest of the most common
+     */
+    private static int bestLabel(CompactGraph graph, int v, int[] labels, Scratch s) {
+        final int[] offsets = graph.offsets();
+        final int[] targets = graph.targets();
+        final int[] counts = s.counts;
+        int touched = 0;
+        for (int i = offsets[v]; i < offsets[v + 1]; i++) {
+            final int label = labels[targets[i]];
+            if (counts[label]++ == 0) {
+                s.touched[touched++] = label;
+            }
+        }
+        final int current = labels[v];
+        int best = current;
+        int bestCount = counts[current];
+        for (int k = 0; k < touched; k++) {
+            final int label = s.touched[k];
+            final int count = counts[label];
+            if (count > bestCount || (count == bestCount && best != current && label < best)) {
+                best = label;
+                bestCount = count;
+            }
+            counts[label] = 0;
+        }
+        counts[current] = 0;
+        return best;
+    }
+}
@@ -0,0 +1,143 @@
+/* Copyright (c) 2007-2016 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package twitter;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A thread-safe histogram of nonnegative long values (typically latencies in
+ * nanoseconds) with bounded relative error, in the style of HdrHistogram.
+ *
+ * Values below 32 are counted exactly. Larger values fall into log-linear
+ * buckets: each power-of-two range is split into 32 equal sub-buckets, so any
+ * reported percentile is within about 3% of the true value. Recording is
+ * lock-free and allocation-free; the whole histogram is about 15KB.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = SUB_BUCKETS + (Long.SIZE - 1 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    /* Rep invariant:
+     *   count == sum of counts[i]
+     *   max >= every recorded value, and is one of them if count > 0
+     * Thread safety:
+     *   all fields are thread-safe accumulators; a concurrent reader may see
+     *   a recording in some accumulators but not yet in others, so
+     *   statistics read during recording are approximate.
+     */
+
+    /*
+     * Bucket holding value v >= 0.
+     */
+    static int bucket(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        final int shift = (Long.SIZE - 1 - Long.numberOfLeadingZeros(value)) - SUB_BUCKET_BITS;
+        final int sub = (int) (value >>> shift) - SUB_BUCKETS;
+        return SUB_BUCKETS + shift * SUB_BUCKETS + sub;
+    }
+
+    /*
+     * Largest value that falls into bucket b.
+     */
+    static long highestValue(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        final int shift = (bucket - SUB_BUCKETS) / SUB_BUCKETS;
+        final long sub = (bucket - SUB_BUCKETS) % SUB_BUCKETS;
+        return ((SUB_BUCKETS + sub + 1) << shift) - 1;
+    }
+
+    /**
+     * Record a value.
+     *
+     * @param value
+     *            value to record; negative values are recorded as 0.
+     */
+    public void record(long value) {
+        final long v = Math.max(0, value);
+        counts.incrementAndGet(bucket(v));
+        count.increment();
+        sum.add(v);
+        max.accumulate(v);
+    }
+
+    /**
+     * @return number of values recorded
+     */
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * @return mean of the values recorded, or 0 if there are none
+     */
+    public double getMean() {
+        final long n = count.sum();
+        return n == 0 ? 0 : (double) sum.sum() / n;
+    }
+
+    /**
+     * @return largest value recorded, or 0 if there are none
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * Estimate a percentile of the values recorded.
+     *
+     * @param percentile
+     *            requested percentile, in 0..100.
+     * @return a value v such that at least percentile% of the recorded values
+     *         are <= v, overestimating by at most about 3%; 0 if there are
+     *         no values
+     */
+    public long getPercentile(double percentile) {
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("percentile must be in 0..100");
+        }
+        long total = 0;
+        final long[] snapshot = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        final long rank = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return Math.min(highestValue(i), getMax());
+            }
+        }
+        return getMax();
+    }
+
+    /**
+     * Forget all recorded values.
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+        count.reset();
+        sum.reset();
+        max.reset();
+    }
+}
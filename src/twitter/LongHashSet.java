@@ -0,0 +1,195 @@
+/* Copyright (c) 2007-2016 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package twitter;
+
+import java.util.Arrays;
+
+/**
+ * A mutable set of longs in open-addressing primitive arrays, with no
+ * object per element: 8 bytes per slot, or 16 if elements are stamped, at a
+ * load factor of at most 3/4. A stamped set remembers a long stamp per
+ * element, such as a time, and can drop the elements with old stamps.
+ * Not thread-safe.
+ */
+public final class LongHashSet {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    // 0 marks an empty slot; the element 0 is tracked by containsZero
+    private long[] keys;
+    private long[] stamps;
+    private boolean containsZero = false;
+    private long zeroStamp;
+    private int size = 0;
+
+    /* Rep invariant:
+     *   keys.length is a power of two >= INITIAL_CAPACITY
+     *   size == number of nonzero keys + (containsZero ? 1 : 0)
+     *   size - (containsZero ? 1 : 0) <= keys.length * 3 / 4
+     *   nonzero keys are distinct, and each is reachable by linear probing
+     *     from its home slot without crossing an empty slot
+     *   stamps is null, or has the length of keys and stamps[i] is the
+     *     stamp of keys[i]
+     */
+
+    /**
+     * Make an empty set.
+     *
+     * @param stamped
+     *            whether elements carry stamps; see add(long, long).
+     */
+    public LongHashSet(boolean stamped) {
+        this.keys = new long[INITIAL_CAPACITY];
+        this.stamps = stamped ? new long[INITIAL_CAPACITY] : null;
+    }
+
+    private static int home(long key, int mask) {
+        // murmur3 finalizer; ids are often sequential
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return (int) key & mask;
+    }
+
+    /**
+     * @param key
+     *            a long.
+     * @return true iff key is in this set
+     */
+    public boolean contains(long key) {
+        if (key == 0) {
+            return containsZero;
+        }
+        final int mask = keys.length - 1;
+        for (int s = home(key, mask); keys[s] != 0; s = (s + 1) & mask) {
+            if (keys[s] == key) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Add an element to an unstamped set, or with stamp 0 to a stamped one.
+     *
+     * @param key
+     *            a long.
+     * @return true iff key was not already in this set
+     */
+    public boolean add(long key) {
+        return add(key, 0);
+    }
+
+    /**
+     * Add an element. An element already in the set keeps its stamp.
+     *
+     * @param key
+     *            a long.
+     * @param stamp
+     *            stamp of key, ignored if this set is not stamped.
+     * @return true iff key was not already in this set
+     */
+    public boolean add(long key, long stamp) {
+        if (key == 0) {
+            if (containsZero) {
+                return false;
+            }
+            containsZero = true;
+            zeroStamp = stamp;
+            size++;
+            return true;
+        }
+        final int mask = keys.length - 1;
+        int s = home(key, mask);
+        for (; keys[s] != 0; s = (s + 1) & mask) {
+            if (keys[s] == key) {
+                return false;
+            }
+        }
+        keys[s] = key;
+        if (stamps != null) {
+            stamps[s] = stamp;
+        }
+        size++;
+        if (size - (containsZero ? 1 : 0) > keys.length / 4 * 3) {
+            rehash(keys.length * 2);
+        }
+        return true;
+    }
+
+    /**
+     * Remove the elements of a stamped set whose stamps are less than a
+     * cutoff, and shrink the set if it is then mostly empty.
+     *
+     * @param cutoff
+     *            smallest stamp kept.
+     * @return number of elements removed
+     */
+    public int removeStampedBefore(long cutoff) {
+        if (stamps == null) {
+            throw new IllegalStateException("set is not stamped");
+        }
+        final int before = size;
+        if (containsZero && zeroStamp < cutoff) {
+            containsZero = false;
+            size--;
+        }
+        int kept = 0;
+        for (int s = 0; s < keys.length; s++) {
+            if (keys[s] != 0 && stamps[s] < cutoff) {
+                keys[s] = 0;
+                size--;
+            } else if (keys[s] != 0) {
+                kept++;
+            }
+        }
+        if (size < before) {
+            // rebuilding restores the probe chains broken by the removals
+            int capacity = keys.length;
+            while (capacity > INITIAL_CAPACITY && kept <= capacity / 8) {
+                capacity /= 2;
+            }
+            rehash(capacity);
+        }
+        return before - size;
+    }
+
+    private void rehash(int capacity) {
+        final long[] oldKeys = keys;
+        final long[] oldStamps = stamps;
+        keys = new long[capacity];
+        stamps = oldStamps == null ? null : new long[capacity];
+        final int mask = capacity - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != 0) {
+                int s = home(oldKeys[i], mask);
+                while (keys[s] != 0) {
+                    s = (s + 1) & mask;
+                }
+                keys[s] = oldKeys[i];
+                if (stamps != null) {
+                    stamps[s] = oldStamps[i];
+                }
+            }
+        }
+    }
+
+    /**
+     * @return number of elements in this set
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Remove all elements.
+     */
+    public void clear() {
+        Arrays.fill(keys, 0);
+        containsZero = false;
+        size = 0;
+    }
+}
@@ -6,6 +6,10 @@ package twitter;
 import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.EnumSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -36,6 +40,19 @@ public class Main {
      * Main method of the program. Fetches a sample of tweets and prints some
      * facts about it.
      * 
+     * The server is polled -Dtwitter.polls times (default 1), every
+     * -Dtwitter.pollMillis milliseconds (default 60000); tweets repeated
+     * between polls are dropped. Each poll is read, parsed and analyzed by
+     * an IngestPipeline, sized by -Dtwitter.pipeline.parsers,
+     * -Dtwitter.pipeline.extractors and -Dtwitter.pipeline.queueCapacity.
+     * With -Dtwitter.file=PATH, each poll reads that file, compressed or
+     * not, instead of the server.
+     * 
+     * For short runs, JVM startup and class loading dominate. Starting the
+     * JVM with -XX:SharedArchiveFile=ARCHIVE maps the classes recorded by a
+     * training run instead of loading them; bench/twitter/StartupBench makes
+     * such an archive from a sample corpus and measures the gain.
+     * 
      * @param args command-line arguments (not used)
      */
     public static void main(String[] args) {
@@ -44,24 +61,47 @@ public class Main {
             throw new Error("Always run main and tests with assertions enabled");
         } catch (AssertionError ae) { }
         
-        final List<Tweet> tweets;
-        try {
-            tweets = TweetReader.readTweetsFromWeb(SAMPLE_SERVER);
-        } catch (IOException ioe) {
-            throw new RuntimeException(ioe);
+        final long reportMillis = Long.getLong("twitter.metrics.reportMillis", 0);
+        if (Metrics.ENABLED && reportMillis > 0) {
+            Metrics.startReporter(reportMillis, System.err);
+        }
+        
+        final int polls = Integer.getInteger("twitter.polls", 1);
+        final long pollMillis = Long.getLong("twitter.pollMillis", 60_000);
+        final String file = System.getProperty("twitter.file");
+        // each poll samples the last hour
+        final int processors = Runtime.getRuntime().availableProcessors();
+        final IngestPipeline pipeline = new IngestPipeline(
+                Integer.getInteger("twitter.pipeline.queueCapacity", IngestPipeline.DEFAULT_QUEUE_CAPACITY),
+                Integer.getInteger("twitter.pipeline.parsers", Math.max(1, processors / 2)),
+                Integer.getInteger("twitter.pipeline.extractors", Math.max(1, processors / 4)),
+                EnumSet.of(FollowEvidence.MENTION),
+                new TweetDeduplicator(Duration.ofHours(2)));
+        for (int poll = 0; poll < polls; poll++) {
+            try {
+                if (poll > 0) {
+                    Thread.sleep(pollMillis);
+                }
+                pipeline.ingest(file != null ? Files.newInputStream(Paths.get(file)) : SAMPLE_SERVER.openStream());
+            } catch (IOException ioe) {
+                throw new RuntimeException(ioe);
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                break;
+            }
         }
         
         // display some characteristics about the tweets
-        System.err.println("fetched " + tweets.size() + " tweets");
+        System.err.println("fetched " + pipeline.tweetCount() + " tweets");
         
-        final Timespan span = Extract.getTimespan(tweets);
+        final Timespan span = pipeline.timespan();
         System.err.println("ranging from " + span.getStart() + " to " + span.getEnd());
         
-        final Set<String> mentionedUsers = Extract.getMentionedUsers(tweets);
+        final Set<String> mentionedUsers = pipeline.mentionedUsers();
         System.err.println("covers " + mentionedUsers.size() + " Twitter users");
         
-        // infer the follows graph
-        final Map<String, Set<String>> followsGraph = SocialNetwork.guessFollowsGraph(tweets);
+        // the follows graph was inferred while ingesting
+        final Map<String, Set<String>> followsGraph = pipeline.graph().toFollowsGraph();
         System.err.println("follows graph has " + followsGraph.size() + " nodes");
         
         // print the top-N influencers
@@ -70,6 +110,11 @@ public class Main {
         for (String username : influencers.subList(0, Math.min(count, influencers.size()))) {
             System.out.println(username);
         }
+        
+        if (Metrics.ENABLED) {
+            System.err.print(pipeline.report());
+            System.err.print(Metrics.report());
+        }
     }
     
 }
@@ -0,0 +1,279 @@
+/* Copyright (c) 2007-2016 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package twitter;
+
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Metrics consists of per-stage counters and latency histograms for the
+ * operations of TweetReader, Extract, Filter and SocialNetwork.
+ *
+ * Metrics are off unless the JVM is started with -Dtwitter.metrics=true.
+ * When they are off and no recording enables StageEvent, start() returns a
+ * shared Sample whose stop() does nothing, so instrumentation costs one
+ * check of the event's setting and no allocation. When they are on, each
+ * stage is also exposed over JMX as twitter:type=Metrics,stage=NAME, and
+ * startReporter() can print a text summary periodically.
+ *
+ * Independently of that switch, each call also emits a StageEvent to Java
+ * Flight Recorder when a recording has that event enabled.
+ *
+ * Instrumented code brackets its work like this:
+ *
+ *     final Metrics.Sample sample = Metrics.start(Metrics.Stage.MENTIONS);
+ *     ...
+ *     sample.stop(tweets.size(), mentioned.size());
+ */
+public final class Metrics {
+
+    /** Whether metrics are recorded; fixed when this class is initialized. */
+    public static final boolean ENABLED = Boolean.getBoolean("twitter.metrics");
+
+    /**
+     * The instrumented stages. Inputs are tweets unless noted; outputs are
+     * the size of the result.
+     */
+    public enum Stage {
+        /** TweetReader parsing tweets from a stream; also counts bytes. */
+        READ,
+        /** TweetDeduplicator.filter; outputs are tweets not seen before. */
+        DEDUP,
+        /** IngestPipeline.ingest; inputs are tweets read, outputs tweets kept. */
+        INGEST,
+        /** Extract.getTimespan. */
+        TIMESPAN,
+        /** Extract.getMentionedUsers. */
+        MENTIONS,
+        /** Extract.estimateMentionedUsers; outputs are the estimate. */
+        MENTIONS_ESTIMATE,
+        /** Filter.writtenBy. */
+        WRITTEN_BY,
+        /** Filter.inTimespan. */
+        IN_TIMESPAN,
+        /** Filter.containing. */
+        CONTAINING,
+        /** Filter.mentioning. */
+        MENTIONING,
+        /** SocialNetwork.guessFollowsGraph; outputs are graph keys. */
+        FOLLOWS_GRAPH,
+        /** SocialNetwork.influencers; inputs are graph keys. */
+        INFLUENCERS,
+        /** SocialNetwork.influencersByStrength; inputs are users of the weighted graph. */
+        INFLUENCERS_BY_STRENGTH,
+        /** SocialNetwork.approximateInfluencers; inputs are tweets, outputs the estimated top users. */
+        INFLUENCERS_ESTIMATE,
+        /** SocialNetwork.suggestFollows; inputs are graph keys, outputs users with suggestions. */
+        SUGGEST_FOLLOWS,
+        /** SocialNetwork.detectCommunities; inputs are graph keys, outputs communities. */
+        COMMUNITIES,
+    }
+
+    /**
+     * A call of a stage in progress.
+     */
+    public static class Sample {
+
+        /** The sample returned when nothing is recorded; stopping it does nothing. */
+        static final Sample DISABLED = new Sample(null, 0, null, 0);
+
+        private final StageMetrics stage;
+        private final long startNanos;
+        private final StageEvent event;
+        private final long allocatedBefore;
+
+        /* stage is null iff metrics are disabled; event is null iff the JFR
+         * event is disabled */
+        private Sample(StageMetrics stage, long startNanos, StageEvent event, long allocatedBefore) {
+            this.stage = stage;
+            this.startNanos = startNanos;
+            this.event = event;
+            this.allocatedBefore = allocatedBefore;
+        }
+
+        /**
+         * @return true iff stopping this sample records anything, in these
+         *         metrics or in a JFR event, so a caller need only count
+         *         what it passes to stop() when this is true
+         */
+        public boolean isRecorded() {
+            return stage != null || event != null;
+        }
+
+        /**
+         * Record the end of the call.
+         *
+         * @param inputs
+         *            number of inputs the call processed.
+         * @param outputs
+         *            number of outputs the call produced.
+         */
+        public void stop(long inputs, long outputs) {
+            stop(inputs, outputs, 0);
+        }
+
+        /**
+         * Record the end of a call that consumed bytes.
+         *
+         * @param inputs
+         *            number of inputs the call processed.
+         * @param outputs
+         *            number of outputs the call produced.
+         * @param bytes
+         *            number of bytes the call consumed.
+         */
+        public void stop(long inputs, long outputs, long bytes) {
+            if (stage != null) {
+                stage.record(System.nanoTime() - startNanos, inputs, outputs, bytes);
+            }
+            if (event != null) {
+                event.end();
+                if (event.shouldCommit()) {
+                    event.batchSize = inputs;
+                    event.results = outputs;
+                    event.bytesRead = bytes;
+                    event.allocated = allocatedBytes() - allocatedBefore;
+                    event.commit();
+                }
+            }
+        }
+    }
+
+    private static final Map<Stage, StageMetrics> STAGES = new EnumMap<>(Stage.class);
+
+    // never begun or committed; asks whether a recording has StageEvent enabled
+    private static final StageEvent EVENT_PROBE = new StageEvent();
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    static {
+        for (Stage stage : Stage.values()) {
+            STAGES.put(stage, new StageMetrics(stage.name()));
+        }
+        if (ENABLED) {
+            registerMBeans();
+        }
+    }
+
+    private Metrics() {
+        throw new AssertionError("not instantiable");
+    }
+
+    private static void registerMBeans() {
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        for (Map.Entry<Stage, StageMetrics> entry : STAGES.entrySet()) {
+            try {
+                final ObjectName name = new ObjectName("twitter:type=Metrics,stage=" + entry.getKey().name());
+                if (!server.isRegistered(name)) {
+                    server.registerMBean(entry.getValue(), name);
+                }
+            } catch (JMException jme) {
+                // metrics stay available in-process and through report()
+                System.err.println("cannot register metrics MBean: " + jme);
+            }
+        }
+    }
+
+    /**
+     * Start timing a call of a stage.
+     *
+     * @param stage
+     *            the stage being called.
+     * @return a sample to stop when the call returns
+     */
+    public static Sample start(Stage stage) {
+        StageEvent event = null;
+        if (EVENT_PROBE.isEnabled()) {
+            event = new StageEvent();
+            event.stage = stage.name();
+            event.begin();
+        } else if (!ENABLED) {
+            return Sample.DISABLED;
+        }
+        return new Sample(ENABLED ? STAGES.get(stage) : null, System.nanoTime(),
+                event, event != null ? allocatedBytes() : 0);
+    }
+
+    /*
+     * Bytes allocated so far by the current thread, or 0 if the JVM cannot
+     * tell.
+     */
+    private static long allocatedBytes() {
+        final long allocated = THREADS.getCurrentThreadAllocatedBytes();
+        return allocated < 0 ? 0 : allocated;
+    }
+
+    /**
+     * @param stage
+     *            a stage.
+     * @return the metrics recorded for the stage; all zero if metrics are disabled
+     */
+    public static StageMetrics get(Stage stage) {
+        return STAGES.get(stage);
+    }
+
+    /**
+     * Forget all recorded metrics.
+     */
+    public static void reset() {
+        for (StageMetrics metrics : STAGES.values()) {
+            metrics.reset();
+        }
+    }
+
+    /**
+     * @return a human-readable table of the metrics of every stage that has
+     *         been called
+     */
+    public static String report() {
+        final StringBuilder report = new StringBuilder();
+        report.append(String.format(Locale.ROOT, "%-23s %8s %12s %12s %10s %12s %12s %10s %10s %10s%n",
+                "stage", "calls", "inputs", "outputs", "total ms", "inputs/s", "MB/s", "p50 us", "p99 us", "max us"));
+        for (StageMetrics m : STAGES.values()) {
+            if (m.getCalls() == 0) {
+                continue;
+            }
+            report.append(String.format(Locale.ROOT, "%-23s %8d %12d %12d %10.1f %12.0f %12.1f %10.1f %10.1f %10.1f%n",
+                    m.getName(), m.getCalls(), m.getInputs(), m.getOutputs(), m.getTotalMillis(),
+                    m.getInputsPerSecond(), m.getBytesPerSecond() / (1024 * 1024),
+                    m.getP50Micros(), m.getP99Micros(), m.getMaxMicros()));
+        }
+        return report.toString();
+    }
+
+    /**
+     * Print report() periodically on a daemon thread.
+     *
+     * @param periodMillis
+     *            time between reports, > 0.
+     * @param out
+     *            where to print the reports.
+     * @return a handle that stops the reports when cancelled
+     */
+    public static ScheduledFuture<?> startReporter(long periodMillis, PrintStream out) {
+        final ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, runnable -> {
+            final Thread thread = new Thread(runnable, "metrics-reporter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.setContinueExistingPeriodicTasksAfterShutdownPolicy(true);
+        executor.setRemoveOnCancelPolicy(true);
+        final ScheduledFuture<?> future = executor.scheduleAtFixedRate(
+                () -> out.print(report()), periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+        // the thread exits once the report task is cancelled
+        executor.shutdown();
+        return future;
+    }
+}
@@ -0,0 +1,203 @@
+/* Copyright (c) 2007-2016 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package twitter;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * A cache of query results over a versioned corpus, bounded by the total
+ * weight of its results and evicting least recently used entries first.
+ *
+ * Every result is cached together with the corpus version it was computed
+ * from. Looking up a newer version drops every entry of older versions, so
+ * results never outlive the corpus state they describe, and lookups for an
+ * older version than the cache holds are computed and not cached.
+ *
+ * Thread-safe. Results are computed outside the cache's lock, so concurrent
+ * misses on the same key may compute it more than once; cached results are
+ * shared between callers and must be immutable.
+ */
+public final class QueryCache implements QueryCacheMXBean {
+
+    private static final class Entry {
+        final Object value;
+        final long weight;
+
+        Entry(Object value, long weight) {
+            this.value = value;
+            this.weight = weight;
+        }
+    }
+
+    private final long maxWeight;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long version = 0;
+    private long weight = 0;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    /* Rep invariant:
+     *   maxWeight > 0
+     *   weight == sum of the weights of entries <= maxWeight
+     *   every entry was computed from corpus version `version`
+     *
+     * Thread safety argument:
+     *   entries, version and weight are guarded by this object's lock;
+     *   the counters are thread-safe
+     */
+
+    /**
+     * Make an empty cache.
+     *
+     * @param maxWeight
+     *            bound on the total weight of cached results, > 0.
+     */
+    public QueryCache(long maxWeight) {
+        if (maxWeight <= 0) {
+            throw new IllegalArgumentException("maxWeight must be positive");
+        }
+        this.maxWeight = maxWeight;
+    }
+
+    /**
+     * Get a query result, computing and caching it if needed.
+     *
+     * @param key
+     *            the query, normalized so that equal queries have equal keys.
+     * @param corpusVersion
+     *            version of the corpus the result must reflect.
+     * @param compute
+     *            computes the result from that version of the corpus.
+     * @param weigher
+     *            weight of a result, >= 0; results heavier than the cache's
+     *            bound are not cached.
+     * @param <V> type of the result
+     * @return the result of the query on that version of the corpus
+     */
+    @SuppressWarnings("unchecked")
+    public <V> V get(String key, long corpusVersion, Supplier<V> compute, ToLongFunction<? super V> weigher) {
+        synchronized (this) {
+            if (corpusVersion > version) {
+                invalidations.add(entries.size());
+                entries.clear();
+                weight = 0;
+                version = corpusVersion;
+            }
+            final Entry cached = corpusVersion == version ? entries.get(key) : null;
+            if (cached != null) {
+                hits.increment();
+                return (V) cached.value;
+            }
+        }
+        misses.increment();
+        final V value = compute.get();
+        final long valueWeight = weigher.applyAsLong(value);
+        synchronized (this) {
+            if (corpusVersion == version && valueWeight <= maxWeight) {
+                final Entry previous = entries.put(key, new Entry(value, valueWeight));
+                weight += valueWeight - (previous != null ? previous.weight : 0);
+                evict();
+            }
+        }
+        return value;
+    }
+
+    private void evict() {
+        final Iterator<Entry> lru = entries.values().iterator();
+        while (weight > maxWeight) {
+            weight -= lru.next().weight;
+            lru.remove();
+            evictions.increment();
+        }
+    }
+
+    /**
+     * Register this cache with the platform MBean server.
+     *
+     * @param name
+     *            name of the cache, unique among registered caches.
+     */
+    public void register(String name) {
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            final ObjectName objectName = new ObjectName("twitter:type=QueryCache,name=" + ObjectName.quote(name));
+            if (!server.isRegistered(objectName)) {
+                server.registerMBean(this, objectName);
+            }
+        } catch (JMException jme) {
+            // the cache works without JMX; its counters stay readable in-process
+            System.err.println("cannot register query cache MBean: " + jme);
+        }
+    }
+
+    @Override public long getHits() {
+        return hits.sum();
+    }
+
+    @Override public long getMisses() {
+        return misses.sum();
+    }
+
+    @Override public double getHitRatio() {
+        final long h = hits.sum();
+        final long total = h + misses.sum();
+        return total == 0 ? 0 : (double) h / total;
+    }
+
+    @Override public long getEvictions() {
+        return evictions.sum();
+    }
+
+    @Override public long getInvalidations() {
+        return invalidations.sum();
+    }
+
+    @Override public synchronized int getEntries() {
+        return entries.size();
+    }
+
+    @Override public synchronized long getWeight() {
+        return weight;
+    }
+
+    @Override public long getMaxWeight() {
+        return maxWeight;
+    }
+
+    @Override public synchronized void clear() {
+        entries.clear();
+        weight = 0;
+    }
+
+    /**
+     * @return a one-line summary of the cache's counters
+     */
+    @Override public synchronized String toString() {
+        return String.format(Locale.ROOT,
+                "QueryCache(entries=%d, weight=%d/%d, hits=%d, misses=%d, evictions=%d, invalidations=%d)",
+                entries.size(), weight, maxWeight, getHits(), getMisses(), getEvictions(), getInvalidations());
+    }
+
+    /*
+     * The keys of the cached entries, least recently used first.
+     */
+    synchronized List<String> keys() {
+        return new ArrayList<>(entries.keySet());
+    }
+}
@@ -0,0 +1,58 @@
+/* Copyright (c) 2007-2016 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package twitter;
+
+/**
+ * Management interface of a QueryCache, registered with the platform MBean
+ * server as twitter:type=QueryCache,name=NAME by QueryCache.register().
+ *
+ * @see QueryCache
+ */
+public interface QueryCacheMXBean {
+
+    /**
+     * @return number of lookups answered from the cache
+     */
+    long getHits();
+
+    /**
+     * @return number of lookups that had to compute their result
+     */
+    long getMisses();
+
+    /**
+     * @return fraction of lookups answered from the cache, 0 if none yet
+     */
+    double getHitRatio();
+
+    /**
+     * @return number of entries evicted to stay within the weight bound
+     */
+    long getEvictions();
+
+    /**
+     * @return number of entries dropped because the corpus changed
+     */
+    long getInvalidations();
+
+    /**
+     * @return number of entries in the cache
+     */
+    int getEntries();
+
+    /**
+     * @return total weight of the entries in the cache
+     */
+    long getWeight();
+
+    /**
+     * @return bound on the total weight of the entries
+     */
+    long getMaxWeight();
+
+    /**
+     * Drop all entries; counters are kept.
+     */
+    void clear();
+}
@@ -0,0 +1,407 @@
+/* Copyright (c) 2007-2016 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package twitter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.json.Json;
+import javax.json.JsonArrayBuilder;
+import javax.json.JsonObject;
+import javax.json.JsonObjectBuilder;
+import javax.json.JsonWriter;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * An HTTP server answering Extract, Filter and SocialNetwork queries about
+ * a resident corpus as JSON, so that consumers need not fetch and recompute.
+ * Results are cached per corpus version, and computed from indexes kept
+ * resident beside the corpus (see CachedQueries); every request runs on its
+ * own virtual thread.
+ *
+ * Endpoints:
+ *
+ *   GET  /timespan                      {"start": ISO-8601, "end": ISO-8601}
+ *   GET  /mentions                      {"count": N, "users": [...]}, distinct users
+ *                                       mentioned, lowercase and sorted
+ *   GET  /tweets?author=A               {"count": N, "tweets": [...]}
+ *   GET  /tweets?mentioning=U           tweets that mention U
+ *   GET  /tweets?start=T&end=T          tweets sent in [start, end], ISO-8601
+ *   GET  /tweets?words=W1+W2            tweets containing any of the words
+ *   GET  /influencers?k=K               {"influencers": [K usernames]}
+ *   POST /tweets                        append a JSON array of tweets, as
+ *                                       read by TweetReader; {"appended": N, "version": V}
+ *   GET  /metrics                       request latency per endpoint
+ *
+ * Tweet lists hold at most limit=N tweets (default 100); count is the size
+ * of the whole result, and tweets are in the format TweetReader reads.
+ * Malformed requests get status 400 and {"error": message}.
+ */
+public final class QueryServer {
+
+    /** Port used when none is given. */
+    public static final int DEFAULT_PORT = 8005;
+
+    private static final int DEFAULT_LIMIT = 100;
+    private static final int DEFAULT_K = 10;
+    // Tweet's rep invariant
+    private static final int MAX_TEXT_LENGTH = 140;
+    private static final List<String> ENDPOINTS = Arrays.asList("/timespan", "/mentions", "/tweets", "/influencers", "/metrics");
+
+    // the format TweetReader parses
+    private static final DateTimeFormatter CREATED_AT =
+            DateTimeFormatter.ofPattern("EEE MMM dd HH:mm:ss Z yyyy", Locale.US).withZone(ZoneOffset.UTC);
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final CachedQueries queries;
+    private final Map<String, LatencyHistogram> latencies = new LinkedHashMap<>();
+
+    /* Rep invariant:
+     *   latencies has exactly the keys ENDPOINTS
+     *
+     * Thread safety argument:
+     *   latencies is not modified after construction, and its histograms and
+     *   queries are thread-safe; handlers share no other state
+     */
+
+    /**
+     * Make a server; it does not accept requests until started.
+     *
+     * @param queries
+     *            the corpus and cache to serve.
+     * @param address
+     *            address to listen on; port 0 picks a free port.
+     * @throws IOException if the address cannot be bound
+     */
+    public QueryServer(CachedQueries queries, InetSocketAddress address) throws IOException {
+        this.queries = queries;
+        this.server = HttpServer.create(address, 0);
+        this.executor = Executors.newVirtualThreadPerTaskExecutor();
+        server.setExecutor(executor);
+        for (String endpoint : ENDPOINTS) {
+            final LatencyHistogram latency = new LatencyHistogram();
+            latencies.put(endpoint, latency);
+            server.createContext(endpoint, exchange -> handle(exchange, endpoint, latency));
+        }
+    }
+
+    /**
+     * Start accepting requests.
+     */
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * Stop accepting requests, wait up to delaySeconds for those in progress,
+     * and release the port.
+     *
+     * @param delaySeconds
+     *            how long to wait for requests in progress, >= 0.
+     */
+    public void stop(int delaySeconds) {
+        server.stop(delaySeconds);
+        executor.shutdown();
+    }
+
+    /**
+     * @return the port the server listens on
+     */
+    public int port() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * @param endpoint
+     *            an endpoint path, such as "/tweets".
+     * @return latencies of the requests to endpoint, in nanoseconds
+     */
+    public LatencyHistogram latency(String endpoint) {
+        final LatencyHistogram latency = latencies.get(endpoint);
+        if (latency == null) {
+            throw new IllegalArgumentException("no endpoint " + endpoint);
+        }
+        return latency;
+    }
+
+    /*
+     * A request the server refuses, with its HTTP status.
+     */
+    private static final class BadRequest extends Exception {
+        private static final long serialVersionUID = 1L;
+        final int status;
+
+        BadRequest(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    private void handle(HttpExchange exchange, String endpoint, LatencyHistogram latency) throws IOException {
+        final long start = System.nanoTime();
+        // what is sent if anything unexpected escapes, so the client always gets a response
+        int status = 500;
+        JsonObject response = Json.createObjectBuilder().add("error", "internal error").build();
+        try {
+            if (!exchange.getRequestURI().getPath().equals(endpoint)) {
+                throw new BadRequest(404, "no such endpoint");
+            }
+            response = respond(exchange, endpoint, parameters(exchange.getRequestURI().getRawQuery()));
+            status = 200;
+        } catch (BadRequest bad) {
+            status = bad.status;
+            response = Json.createObjectBuilder().add("error", bad.getMessage()).build();
+        } catch (IOException | RuntimeException e) {
+            response = Json.createObjectBuilder().add("error", String.valueOf(e)).build();
+        } finally {
+            try {
+                final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                try (Writer out = new OutputStreamWriter(bytes, StandardCharsets.UTF_8);
+                        JsonWriter json = Json.createWriter(out)) {
+                    json.writeObject(response);
+                }
+                // recorded before sending, so a client that sees the response also sees it counted
+                latency.record(System.nanoTime() - start);
+                exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+                exchange.sendResponseHeaders(status, bytes.size());
+                try (OutputStream body = exchange.getResponseBody()) {
+                    bytes.writeTo(body);
+                }
+            } finally {
+                exchange.close();
+            }
+        }
+    }
+
+    private JsonObject respond(HttpExchange exchange, String endpoint, Map<String, String> parameters)
+            throws BadRequest, IOException {
+        final boolean post = exchange.getRequestMethod().equals("POST");
+        if (!exchange.getRequestMethod().equals("GET") && !(post && endpoint.equals("/tweets"))) {
+            throw new BadRequest(405, "method not allowed");
+        }
+        switch (endpoint) {
+        case "/timespan": {
+            final Timespan span = queries.timespan();
+            return Json.createObjectBuilder()
+                    .add("start", span.getStart().toString())
+                    .add("end", span.getEnd().toString())
+                    .build();
+        }
+        case "/mentions": {
+            final Set<String> mentioned = queries.mentionedUsers();
+            final JsonArrayBuilder users = Json.createArrayBuilder();
+            for (String user : new TreeSet<>(mentioned)) {
+                users.add(user);
+            }
+            return Json.createObjectBuilder().add("count", mentioned.size()).add("users", users).build();
+        }
+        case "/influencers": {
+            final List<String> influencers = queries.influencers();
+            final int k = intParameter(parameters, "k", DEFAULT_K);
+            final JsonArrayBuilder users = Json.createArrayBuilder();
+            for (String user : influencers.subList(0, Math.min(k, influencers.size()))) {
+                users.add(user);
+            }
+            return Json.createObjectBuilder().add("influencers", users).build();
+        }
+        case "/tweets":
+            return post ? append(exchange) : tweets(parameters);
+        case "/metrics":
+            return metrics();
+        default:
+            throw new BadRequest(404, "no such endpoint");
+        }
+    }
+
+    private JsonObject append(HttpExchange exchange) throws BadRequest, IOException {
+        final List<Tweet> batch;
+        try {
+            batch = TweetReader.readTweets(exchange.getRequestBody());
+        } catch (IOException | RuntimeException | AssertionError e) {
+            // bad JSON, bad fields, or a corrupt compressed body
+            throw new BadRequest(400, "malformed tweets: " + e.getMessage());
+        }
+        for (Tweet tweet : batch) {
+            checkTweet(tweet);
+        }
+        final long version = queries.append(batch);
+        return Json.createObjectBuilder().add("appended", batch.size()).add("version", version).build();
+    }
+
+    /*
+     * Reject a tweet that breaks Tweet's rep invariant, which Tweet itself
+     * does not check.
+     */
+    private static void checkTweet(Tweet tweet) throws BadRequest {
+        final String author = tweet.getAuthor();
+        if (author.isEmpty()) {
+            throw new BadRequest(400, "tweet " + tweet.getId() + " has no author");
+        }
+        if (!isUsername(author)) {
+            throw new BadRequest(400, "tweet " + tweet.getId() + " has an invalid author: " + author);
+        }
+        if (tweet.getText().length() > MAX_TEXT_LENGTH) {
+            throw new BadRequest(400, "tweet " + tweet.getId() + " is longer than 140 characters");
+        }
+    }
+
+    /*
+     * Whether s is a valid Twitter username, as defined by Tweet.getAuthor()'s spec.
+     */
+    private static boolean isUsername(String s) {
+        if (s.isEmpty()) {
+            return false;
+        }
+        for (int i = 0; i < s.length(); i++) {
+            if (!TweetText.isUsernameChar(s.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private JsonObject tweets(Map<String, String> parameters) throws BadRequest {
+        final List<Tweet> tweets;
+        if (parameters.containsKey("author")) {
+            tweets = queries.writtenBy(parameters.get("author"));
+        } else if (parameters.containsKey("mentioning")) {
+            if (!isUsername(parameters.get("mentioning"))) {
+                throw new BadRequest(400, "mentioning must be a username");
+            }
+            tweets = queries.mentioning(parameters.get("mentioning"));
+        } else if (parameters.containsKey("words")) {
+            tweets = queries.containing(Arrays.asList(parameters.get("words").split(" ")));
+        } else if (parameters.containsKey("start") && parameters.containsKey("end")) {
+            try {
+                final Instant start = Instant.parse(parameters.get("start"));
+                final Instant end = Instant.parse(parameters.get("end"));
+                if (end.isBefore(start)) {
+                    throw new BadRequest(400, "end is before start");
+                }
+                tweets = queries.inTimespan(new Timespan(start, end));
+            } catch (DateTimeParseException e) {
+                throw new BadRequest(400, "timestamps must be ISO-8601 instants");
+            }
+        } else {
+            throw new BadRequest(400, "expected author, mentioning, words, or start and end");
+        }
+        final int limit = intParameter(parameters, "limit", DEFAULT_LIMIT);
+        final JsonArrayBuilder array = Json.createArrayBuilder();
+        for (Tweet tweet : tweets.subList(0, Math.min(limit, tweets.size()))) {
+            array.add(Json.createObjectBuilder()
+                    .add("id", tweet.getId())
+                    .add("text", tweet.getText())
+                    .add("created_at", CREATED_AT.format(tweet.getTimestamp()))
+                    .add("user.screen_name", tweet.getAuthor()));
+        }
+        return Json.createObjectBuilder().add("count", tweets.size()).add("tweets", array).build();
+    }
+
+    private JsonObject metrics() {
+        final JsonObjectBuilder endpoints = Json.createObjectBuilder();
+        for (Map.Entry<String, LatencyHistogram> entry : latencies.entrySet()) {
+            final LatencyHistogram latency = entry.getValue();
+            endpoints.add(entry.getKey(), Json.createObjectBuilder()
+                    .add("requests", latency.getCount())
+                    .add("meanMicros", latency.getMean() / 1000)
+                    .add("p50Micros", latency.getPercentile(50) / 1000.0)
+                    .add("p99Micros", latency.getPercentile(99) / 1000.0)
+                    .add("maxMicros", latency.getMax() / 1000.0));
+        }
+        final QueryCache cache = queries.cache();
+        final TweetCorpus.Snapshot snapshot = queries.corpus().snapshot();
+        return Json.createObjectBuilder()
+                .add("endpoints", endpoints)
+                .add("cache", Json.createObjectBuilder()
+                        .add("hits", cache.getHits())
+                        .add("misses", cache.getMisses())
+                        .add("evictions", cache.getEvictions())
+                        .add("invalidations", cache.getInvalidations()))
+                .add("version", snapshot.version())
+                .add("tweets", snapshot.size())
+                .build();
+    }
+
+    private static Map<String, String> parameters(String rawQuery) throws BadRequest {
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        final Map<String, String> parameters = new LinkedHashMap<>();
+        for (String pair : rawQuery.split("&")) {
+            final int eq = pair.indexOf('=');
+            try {
+                parameters.put(URLDecoder.decode(eq < 0 ? pair : pair.substring(0, eq), StandardCharsets.UTF_8),
+                        eq < 0 ? "" : URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+            } catch (IllegalArgumentException e) {
+                throw new BadRequest(400, "malformed query string");
+            }
+        }
+        return parameters;
+    }
+
+    private static int intParameter(Map<String, String> parameters, String name, int otherwise) throws BadRequest {
+        final String value = parameters.get(name);
+        if (value == null) {
+            return otherwise;
+        }
+        try {
+            final int n = Integer.parseInt(value);
+            if (n < 0) {
+                throw new BadRequest(400, name + " must not be negative");
+            }
+            return n;
+        } catch (NumberFormatException nfe) {
+            throw new BadRequest(400, name + " must be an integer");
+        }
+    }
+
+    /**
+     * Serve a corpus read from a file, or fetched from Main.SAMPLE_SERVER.
+     *
+     * Usage: QueryServer [-port N] [-file PATH] [-cache WEIGHT]
+     *
+     * @param args command-line options, see above
+     * @throws IOException if the corpus cannot be read or the port bound
+     */
+    public static void main(String[] args) throws IOException {
+        final Map<String, String> options = new LinkedHashMap<>();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            options.put(args[i].replaceFirst("^-", ""), args[i + 1]);
+        }
+        final TweetCorpus corpus = new TweetCorpus();
+        corpus.append(options.containsKey("file")
+                ? TweetReader.readTweetsFromFile(Paths.get(options.get("file")))
+                : TweetReader.readTweetsFromWeb(Main.SAMPLE_SERVER));
+        final QueryCache cache = new QueryCache(Long.parseLong(options.getOrDefault("cache", "10000000")));
+        cache.register("QueryServer");
+        final QueryServer server = new QueryServer(new CachedQueries(corpus, cache),
+                new InetSocketAddress(Integer.parseInt(options.getOrDefault("port", Integer.toString(DEFAULT_PORT)))));
+        server.start();
+        System.err.println("serving " + corpus.size() + " tweets on port " + server.port());
+    }
+}
@@ -0,0 +1,376 @@
+/* Copyright (c) 2007-2016 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package twitter;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A mutable, append-only store of tweets partitioned by time, so queries
+ * over a timespan touch only the part of the store in that timespan.
+ *
+ * Tweets are appended to open windows of segmentSpan each, aligned to the
+ * epoch. Once a tweet arrives for a later window, earlier windows are
+ * sealed into immutable segments, sorted by timestamp, that record their
+ * earliest and latest timestamps. A timespan query skips every segment
+ * that lies outside the timespan and binary-searches the rest. A tweet that
+ * arrives late, for a window already sealed, opens that window again and
+ * is sealed into a segment of its own.
+ *
+ * Compaction merges segments that overlap in time, like those made by late
+ * tweets, and runs of small adjacent segments, up to compactionTarget
+ * tweets per segment, so queries visit few segments. It runs when called or
+ * periodically in the background; see startCompaction().
+ *
+ * Thread-safe: a query takes the immutable list of sealed segments and
+ * copies what it needs from the open windows in one critical section, so it
+ * sees every tweet stored before it started, then scans the segments
+ * without the lock.
+ */
+public final class SegmentedTweetStore {
+
+    /** Default time spanned by each window. */
+    public static final Duration DEFAULT_SEGMENT_SPAN = Duration.ofHours(1);
+
+    /** Default number of tweets compaction aims for per segment. */
+    public static final int DEFAULT_COMPACTION_TARGET = 1 << 16;
+
+    private static final Instant EARLIEST_MILLIS = Instant.ofEpochMilli(Long.MIN_VALUE);
+
+    private static final Comparator<Tweet> BY_TIMESTAMP = Comparator.comparing(Tweet::getTimestamp);
+
+    /*
+     * An immutable run of tweets in timestamp order.
+     */
+    private static final class Segment {
+        final Tweet[] tweets;
+        final Instant min;
+        final Instant max;
+
+        Segment(Tweet[] tweets) {
+            this.tweets = tweets;
+            this.min = tweets[0].getTimestamp();
+            this.max = tweets[tweets.length - 1].getTimestamp();
+        }
+
+        boolean overlaps(Instant start, Instant end) {
+            return !max.isBefore(start) && !min.isAfter(end);
+        }
+
+        /*
+         * @return index of the first tweet not before when
+         */
+        int lowerBound(Instant when) {
+            int lo = 0;
+            int hi = tweets.length;
+            while (lo < hi) {
+                final int mid = (lo + hi) >>> 1;
+                if (tweets[mid].getTimestamp().isBefore(when)) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            return lo;
+        }
+
+        static Segment merge(Segment a, Segment b) {
+            final Tweet[] merged = new Tweet[a.tweets.length + b.tweets.length];
+            int i = 0;
+            int j = 0;
+            for (int k = 0; k < merged.length; k++) {
+                if (j == b.tweets.length
+                        || (i < a.tweets.length && !b.tweets[j].getTimestamp().isBefore(a.tweets[i].getTimestamp()))) {
+                    merged[k] = a.tweets[i++];
+                } else {
+                    merged[k] = b.tweets[j++];
+                }
+            }
+            return new Segment(merged);
+        }
+    }
+
+    private final long spanMillis;
+    private final int compactionTarget;
+    private final Object compactionLock = new Object();
+
+    // guarded by this
+    private final TreeMap<Long, List<Tweet>> open = new TreeMap<>();
+    private int openSize = 0;
+    private long latestWindow = Long.MIN_VALUE;
+
+    // replaced, never modified, while holding this
+    private volatile List<Segment> sealed = Collections.emptyList();
+
+    /* Rep invariant:
+     *   spanMillis > 0, compactionTarget > 0
+     *   open maps window numbers to nonempty lists of the tweets appended
+     *     to that window since it was last sealed, in append order
+     *   openSize == total size of the lists of open
+     *   every key of open <= latestWindow
+     *   every segment of sealed is nonempty and sorted by timestamp
+     *   every tweet appended is in exactly one segment or open list
+     *
+     * Thread safety argument:
+     *   open, openSize and latestWindow are guarded by this object's lock
+     *   sealed is volatile and refers to an unmodifiable list of immutable
+     *     segments; it is replaced only while holding this object's lock,
+     *     and queries read it in the same critical section as open
+     *   compactionLock keeps compactions from running concurrently, so the
+     *     segments a compaction read are still a prefix of sealed when it
+     *     publishes its result (sealing only appends segments)
+     */
+
+    /**
+     * Make an empty store with DEFAULT_SEGMENT_SPAN and DEFAULT_COMPACTION_TARGET.
+     */
+    public SegmentedTweetStore() {
+        this(DEFAULT_SEGMENT_SPAN, DEFAULT_COMPACTION_TARGET);
+    }
+
+    /**
+     * Make an empty store.
+     *
+     * @param segmentSpan
+     *            time spanned by each window, at least 1ms.
+     * @param compactionTarget
+     *            compaction merges adjacent segments only while the result
+     *            holds at most this many tweets, > 0; overlapping segments
+     *            are always merged.
+     */
+    public SegmentedTweetStore(Duration segmentSpan, int compactionTarget) {
+        if (segmentSpan.toMillis() <= 0) {
+            throw new IllegalArgumentException("segmentSpan must be at least 1ms");
+        }
+        if (compactionTarget <= 0) {
+            throw new IllegalArgumentException("compactionTarget must be positive");
+        }
+        this.spanMillis = segmentSpan.toMillis();
+        this.compactionTarget = compactionTarget;
+    }
+
+    private long window(Tweet tweet) {
+        return Math.floorDiv(tweet.getTimestamp().toEpochMilli(), spanMillis);
+    }
+
+    /**
+     * Append tweets, sealing the windows that end before the latest tweet
+     * seen so far.
+     *
+     * @param batch
+     *            tweets with ids distinct from each other and from the
+     *            tweets already stored; not modified.
+     */
+    public synchronized void append(List<Tweet> batch) {
+        for (Tweet tweet : batch) {
+            final long window = window(tweet);
+            open.computeIfAbsent(window, w -> new ArrayList<>()).add(tweet);
+            openSize++;
+            latestWindow = Math.max(latestWindow, window);
+        }
+        seal(latestWindow);
+    }
+
+    /**
+     * Seal every open window, including the latest, for instance before
+     * the store is only going to be queried.
+     */
+    public synchronized void seal() {
+        seal(Long.MAX_VALUE);
+    }
+
+    /*
+     * Seal the open windows before window before; requires the lock.
+     */
+    private void seal(long before) {
+        final Map<Long, List<Tweet>> ready = open.headMap(before);
+        if (ready.isEmpty()) {
+            return;
+        }
+        final List<Segment> segments = new ArrayList<>(sealed);
+        for (List<Tweet> tweets : ready.values()) {
+            final Tweet[] sorted = tweets.toArray(new Tweet[0]);
+            Arrays.sort(sorted, BY_TIMESTAMP);
+            segments.add(new Segment(sorted));
+            openSize -= sorted.length;
+        }
+        ready.clear();
+        sealed = Collections.unmodifiableList(segments);
+    }
+
+    /**
+     * Merge overlapping segments and runs of small adjacent ones. Queries
+     * and appends may proceed while the merged segments are built.
+     *
+     * @return number of segments removed by merging
+     */
+    public int compact() {
+        synchronized (compactionLock) {
+            final List<Segment> before = sealed;
+            final List<Segment> sorted = new ArrayList<>(before);
+            sorted.sort(Comparator.comparing((Segment s) -> s.min));
+            final List<Segment> merged = new ArrayList<>();
+            for (Segment segment : sorted) {
+                final int last = merged.size() - 1;
+                if (last >= 0 && (!segment.min.isAfter(merged.get(last).max)
+                        || merged.get(last).tweets.length + segment.tweets.length <= compactionTarget)) {
+                    merged.set(last, Segment.merge(merged.get(last), segment));
+                } else {
+                    merged.add(segment);
+                }
+            }
+            final int removed = before.size() - merged.size();
+            synchronized (this) {
+                final List<Segment> now = sealed;
+                merged.addAll(now.subList(before.size(), now.size()));
+                sealed = Collections.unmodifiableList(merged);
+            }
+            return removed;
+        }
+    }
+
+    /**
+     * Compact this store periodically on a background daemon thread.
+     *
+     * @param periodMillis
+     *            time between compactions, > 0.
+     * @return a handle that stops the compactions when cancelled
+     */
+    public ScheduledFuture<?> startCompaction(long periodMillis) {
+        final ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, runnable -> {
+            final Thread thread = new Thread(runnable, "segment-compactor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.setContinueExistingPeriodicTasksAfterShutdownPolicy(true);
+        executor.setRemoveOnCancelPolicy(true);
+        final ScheduledFuture<?> future = executor.scheduleWithFixedDelay(
+                this::compact, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+        // the thread exits once the compaction task is cancelled
+        executor.shutdown();
+        return future;
+    }
+
+    /**
+     * @return number of tweets stored
+     */
+    public synchronized int size() {
+        int size = openSize;
+        for (Segment segment : sealed) {
+            size += segment.tweets.length;
+        }
+        return size;
+    }
+
+    /**
+     * @return number of sealed segments
+     */
+    public int segmentCount() {
+        return sealed.size();
+    }
+
+    /**
+     * @return a new list of all the tweets stored, in timestamp order
+     */
+    public List<Tweet> tweets() {
+        return inTimespan(Instant.MIN, Instant.MAX, new int[1]);
+    }
+
+    /**
+     * @return a minimum-length time interval that contains the timestamp of
+     *         every tweet stored, as defined by Extract.getTimespan, found
+     *         from the bounds of each segment without visiting its tweets
+     */
+    public Timespan timespan() {
+        Instant start = null;
+        Instant end = null;
+        final List<Segment> segments;
+        synchronized (this) {
+            // sealed and open together: a seal in between would move tweets out of sight
+            segments = sealed;
+            for (List<Tweet> tweets : open.values()) {
+                for (Tweet tweet : tweets) {
+                    final Instant t = tweet.getTimestamp();
+                    start = start == null || t.isBefore(start) ? t : start;
+                    end = end == null || t.isAfter(end) ? t : end;
+                }
+            }
+        }
+        for (Segment segment : segments) {
+            start = start == null || segment.min.isBefore(start) ? segment.min : start;
+            end = end == null || segment.max.isAfter(end) ? segment.max : end;
+        }
+        return start == null ? new Timespan(Instant.EPOCH, Instant.EPOCH) : new Timespan(start, end);
+    }
+
+    /**
+     * Find tweets that were sent during a particular timespan.
+     *
+     * @param timespan
+     *            timespan, inclusive at both ends.
+     * @return a new list of all and only the tweets stored that were sent
+     *         during the timespan, in timestamp order
+     */
+    public List<Tweet> inTimespan(Timespan timespan) {
+        return inTimespan(timespan.getStart(), timespan.getEnd(), new int[1]);
+    }
+
+    /*
+     * Tweets sent in [start, end], in timestamp order; segmentsVisited[0]
+     * is set to the number of sealed segments not pruned.
+     */
+    List<Tweet> inTimespan(Instant start, Instant end, int[] segmentsVisited) {
+        final List<Tweet> pending = new ArrayList<>();
+        final List<Segment> segments;
+        synchronized (this) {
+            // sealed and open together: a seal in between would move tweets out of sight
+            segments = sealed;
+            final long first = start.isBefore(EARLIEST_MILLIS)
+                    ? Long.MIN_VALUE : Math.floorDiv(start.toEpochMilli(), spanMillis);
+            for (List<Tweet> tweets : open.tailMap(first).values()) {
+                for (Tweet tweet : tweets) {
+                    final Instant t = tweet.getTimestamp();
+                    if (!t.isBefore(start) && !t.isAfter(end)) {
+                        pending.add(tweet);
+                    }
+                }
+            }
+        }
+        final List<Tweet> result = new ArrayList<>();
+        int visited = 0;
+        boolean ordered = pending.isEmpty();
+        Instant last = Instant.MIN;
+        for (Segment segment : segments) {
+            if (!segment.overlaps(start, end)) {
+                continue;
+            }
+            visited++;
+            final int before = result.size();
+            for (int i = segment.lowerBound(start);
+                    i < segment.tweets.length && !segment.tweets[i].getTimestamp().isAfter(end); i++) {
+                result.add(segment.tweets[i]);
+            }
+            if (result.size() > before) {
+                ordered &= !result.get(before).getTimestamp().isBefore(last);
+                last = result.get(result.size() - 1).getTimestamp();
+            }
+        }
+        result.addAll(pending);
+        if (!ordered) {
+            result.sort(BY_TIMESTAMP);
+        }
+        segmentsVisited[0] = visited;
+        return result;
+    }
+}
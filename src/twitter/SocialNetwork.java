@@ -3,6 +3,8 @@
  */
 package twitter;
 
+import java.util.EnumSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -41,32 +43,105 @@ public class SocialNetwork {
      *         either authors or @-mentions in the list of tweets.
      */
     public static Map<String, Set<String>> guessFollowsGraph(List<Tweet> tweets) {
-        final java.util.Map<String, java.util.Set<String>> followsGraph = new java.util.HashMap<>();
+        return guessFollowsGraph(tweets, EnumSet.of(FollowEvidence.MENTION));
+    }
 
-        for (Tweet tweet : tweets) {
-            final String author = tweet.getAuthor().toLowerCase();
-            // Extract mentions from this tweet only
-            final java.util.Set<String> mentionedUsers = Extract.getMentionedUsers(java.util.Collections.singletonList(tweet));
+    /**
+     * Guess who might follow whom, from chosen kinds of evidence found in
+     * tweets. All the evidence is gathered in a single pass over the tweets,
+     * scanning each tweet's text once.
+     * 
+     * @param tweets
+     *            a list of tweets providing the evidence, not modified by this
+     *            method.
+     * @param evidence
+     *            the kinds of evidence to use; see FollowEvidence. HASHTAG
+     *            evidence depends on the order of the list.
+     * @return a social network (as defined above) in which Ernie follows Bert
+     *         if and only if there is evidence of one of the given kinds for
+     *         it in the given list of tweets. All the Twitter usernames in the
+     *         returned social network are lowercase and are either authors or
+     *         @-mentions in the list of tweets.
+     */
+    public static Map<String, Set<String>> guessFollowsGraph(List<Tweet> tweets, Set<FollowEvidence> evidence) {
+        return guessFollowsGraph(tweets.iterator(), evidence);
+    }
 
-            if (mentionedUsers.isEmpty()) {
-                continue;
-            }
+    /**
+     * Guess who might follow whom from tweets taken one at a time, in memory
+     * that grows with the graph only, not with the number of tweets.
+     * 
+     * @param tweets
+     *            tweets providing the evidence, consumed by this method.
+     * @param evidence
+     *            the kinds of evidence to use; see FollowEvidence. HASHTAG
+     *            evidence depends on the order of the tweets.
+     * @return a social network as defined by guessFollowsGraph(List, Set)
+     */
+    public static Map<String, Set<String>> guessFollowsGraph(Iterator<Tweet> tweets, Set<FollowEvidence> evidence) {
+        final Metrics.Sample sample = Metrics.start(Metrics.Stage.FOLLOWS_GRAPH);
+        final java.util.Map<String, java.util.Set<String>> followsGraph = new java.util.HashMap<>();
 
-            final java.util.Set<String> followees = followsGraph.computeIfAbsent(author, k -> new java.util.HashSet<>());
-            for (String mentioned : mentionedUsers) {
-                if (!author.equals(mentioned)) {
-                    followees.add(mentioned.toLowerCase());
-                }
-            }
-            if (followees.isEmpty()) {
-                // if all mentions were self-mentions (filtered), we can remove empty set
-                followsGraph.remove(author);
-            }
+        // sets are only created for an actual edge, so self-mentions never leave empty sets behind
+        final EvidenceScanner scanner = new EvidenceScanner(evidence, EvidenceScanner.DEFAULT_HASHTAG_CAP);
+        final EvidenceScanner.EdgeSink addEdge = (follower, followee, tweet, kind) ->
+                followsGraph.computeIfAbsent(follower, k -> new java.util.HashSet<>()).add(followee);
+        final CountingIterator<Tweet> counted = new CountingIterator<>(tweets);
+        while (counted.hasNext()) {
+            scanner.scan(counted.next(), addEdge);
         }
 
+        sample.stop(counted.count(), followsGraph.size());
         return followsGraph;
     }
 
+    /**
+     * Build a weighted follows graph from chosen kinds of evidence found in
+     * tweets, in the same single pass as guessFollowsGraph(tweets, evidence).
+     * Every piece of evidence adds 1 to the weight of its edge; a tweet that
+     * mentions a user twice, or that is both a reply and a mention, counts
+     * more than once.
+     * 
+     * @param tweets
+     *            a list of tweets providing the evidence, not modified by this
+     *            method.
+     * @param evidence
+     *            the kinds of evidence to use; see FollowEvidence.
+     * @return a weighted graph whose edges are exactly those of
+     *         guessFollowsGraph(tweets, evidence), with per-edge evidence
+     *         counts and first/last timestamps
+     */
+    public static WeightedFollowsGraph guessWeightedFollowsGraph(List<Tweet> tweets, Set<FollowEvidence> evidence) {
+        return guessWeightedFollowsGraph(tweets.iterator(), evidence);
+    }
+
+    /**
+     * Build a weighted follows graph from tweets taken one at a time, in
+     * memory that grows with the graph only, not with the number of tweets.
+     * 
+     * @param tweets
+     *            tweets providing the evidence, consumed by this method.
+     * @param evidence
+     *            the kinds of evidence to use; see FollowEvidence.
+     * @return a weighted graph as defined by guessWeightedFollowsGraph(List, Set)
+     */
+    public static WeightedFollowsGraph guessWeightedFollowsGraph(Iterator<Tweet> tweets, Set<FollowEvidence> evidence) {
+        final Metrics.Sample sample = Metrics.start(Metrics.Stage.FOLLOWS_GRAPH);
+        final WeightedFollowsGraph graph = new WeightedFollowsGraph();
+        final UserIndex users = graph.users();
+
+        final EvidenceScanner scanner = new EvidenceScanner(evidence, EvidenceScanner.DEFAULT_HASHTAG_CAP);
+        final EvidenceScanner.EdgeSink addEdge = (follower, followee, tweet, kind) ->
+                graph.addEvidence(users.intern(follower), users.intern(followee), tweet.getTimestamp().toEpochMilli());
+        final CountingIterator<Tweet> counted = new CountingIterator<>(tweets);
+        while (counted.hasNext()) {
+            scanner.scan(counted.next(), addEdge);
+        }
+
+        sample.stop(counted.count(), users.size());
+        return graph;
+    }
+
     /**
      * Find the people in a social network who have the greatest influence, in
      * the sense that they have the most followers.
@@ -77,14 +152,15 @@ public class SocialNetwork {
      *         descending order of follower count.
      */
     public static List<String> influencers(Map<String, Set<String>> followsGraph) {
+        final Metrics.Sample sample = Metrics.start(Metrics.Stage.INFLUENCERS);
         final java.util.Map<String, Integer> followerCount = new java.util.HashMap<>();
 
         // Collect all distinct users (keys and values)
         for (java.util.Map.Entry<String, java.util.Set<String>> entry : followsGraph.entrySet()) {
-            final String follower = entry.getKey().toLowerCase();
+            final String follower = Usernames.toLowerCase(entry.getKey());
             followerCount.putIfAbsent(follower, 0);
             for (String followee : entry.getValue()) {
-                final String normalizedFollowee = followee.toLowerCase();
+                final String normalizedFollowee = Usernames.toLowerCase(followee);
                 followerCount.putIfAbsent(normalizedFollowee, 0);
             }
         }
@@ -92,7 +168,7 @@ public class SocialNetwork {
         // Count followers for each followee
         for (java.util.Map.Entry<String, java.util.Set<String>> entry : followsGraph.entrySet()) {
             for (String followee : entry.getValue()) {
-                final String normalizedFollowee = followee.toLowerCase();
+                final String normalizedFollowee = Usernames.toLowerCase(followee);
                 followerCount.put(normalizedFollowee, followerCount.getOrDefault(normalizedFollowee, 0) + 1);
             }
         }
@@ -105,7 +181,158 @@ public class SocialNetwork {
             return u1.compareTo(u2);
         });
 
+        sample.stop(followsGraph.size(), users.size());
         return users;
     }
 
+    /**
+     * Find the people in a weighted social network who have the greatest
+     * influence, in the sense that the most evidence points at them.
+     * 
+     * @param graph
+     *            a weighted follows graph
+     * @return a list of all distinct Twitter usernames in graph, lowercase,
+     *         in descending order of weighted in-strength (the total weight
+     *         of the edges into the user), ties broken alphabetically.
+     */
+    public static List<String> influencersByStrength(WeightedFollowsGraph graph) {
+        final Metrics.Sample sample = Metrics.start(Metrics.Stage.INFLUENCERS_BY_STRENGTH);
+        final UserIndex index = graph.users();
+        final long[] strength = graph.inStrengths();
+        final Integer[] ids = new Integer[index.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = i;
+        }
+        java.util.Arrays.sort(ids, (a, b) -> {
+            int cmp = Long.compare(strength[b], strength[a]);
+            if (cmp != 0) return cmp;
+            return index.name(a).compareTo(index.name(b));
+        });
+
+        final List<String> users = new java.util.ArrayList<>(ids.length);
+        for (Integer id : ids) {
+            users.add(index.name(id));
+        }
+        sample.stop(ids.length, users.size());
+        return users;
+    }
+
+    /**
+     * Estimate the people with the greatest influence from a list of tweets,
+     * in memory bounded by the number asked for rather than by the number of
+     * users: the approximate counterpart of
+     * influencersByStrength(guessWeightedFollowsGraph(tweets, {MENTION})).
+     * 
+     * @param tweets
+     *            a list of tweets, not modified by this method.
+     * @param n
+     *            number of influencers wanted, > 0.
+     * @return at most n lowercase usernames, in descending order of the
+     *         estimated number of mentions of them by other users; see
+     *         HeavyHitters for the error bounds, here with epsilon 0.001 and
+     *         delta 0.01.
+     */
+    public static List<String> approximateInfluencers(List<Tweet> tweets, int n) {
+        return approximateInfluencers(tweets.iterator(), n);
+    }
+
+    /**
+     * Estimate the people with the greatest influence from tweets taken one
+     * at a time, in memory bounded by the number asked for, so the input may
+     * be larger than memory.
+     * 
+     * @param tweets
+     *            tweets, consumed by this method.
+     * @param n
+     *            number of influencers wanted, > 0.
+     * @return at most n lowercase usernames, as defined by
+     *         approximateInfluencers(List, int)
+     */
+    public static List<String> approximateInfluencers(Iterator<Tweet> tweets, int n) {
+        final Metrics.Sample sample = Metrics.start(Metrics.Stage.INFLUENCERS_ESTIMATE);
+        final HeavyHitters hitters = new HeavyHitters(n, 0.001, 0.01);
+        final CountingIterator<Tweet> counted = new CountingIterator<>(tweets);
+        countMentions(counted, hitters);
+        final List<String> top = hitters.top();
+        sample.stop(counted.count(), top.size());
+        return top;
+    }
+
+    /**
+     * Count, in a heavy-hitters tracker, the users mentioned in a list of
+     * tweets, each mention counting once, except mentions of the tweet's own
+     * author. Feeding every chunk of an unbounded stream of tweets to the
+     * same tracker gives running influencer estimates for the whole stream.
+     * 
+     * @param tweets
+     *            a list of tweets, not modified by this method.
+     * @param hitters
+     *            receives the mentioned usernames.
+     */
+    public static void countMentions(List<Tweet> tweets, HeavyHitters hitters) {
+        countMentions(tweets.iterator(), hitters);
+    }
+
+    /**
+     * Count, in a heavy-hitters tracker, the users mentioned in tweets taken
+     * one at a time, as countMentions(List, HeavyHitters) does.
+     * 
+     * @param tweets
+     *            tweets, consumed by this method.
+     * @param hitters
+     *            receives the mentioned usernames.
+     */
+    public static void countMentions(Iterator<Tweet> tweets, HeavyHitters hitters) {
+        while (tweets.hasNext()) {
+            final Tweet tweet = tweets.next();
+            final String author = tweet.getAuthor();
+            TweetText.scan(tweet.getText(), (text, start, end, flags) -> {
+                if (!Usernames.regionEqualsIgnoreCase(text, start, end, author)) {
+                    hitters.add(text, start, end);
+                }
+            });
+        }
+    }
+
+    /**
+     * Suggest whom people might follow by triadic closure: if A follows B and
+     * B follows C, A probably follows C. See TriadicClosure, whose default
+     * hub cap this uses.
+     * 
+     * @param followsGraph
+     *            a social network (as defined above)
+     * @param topN
+     *            maximum number of suggestions per user, > 0.
+     * @return map from each user, lowercase, with at least one suggestion to
+     *         at most topN lowercase users it does not already follow, best
+     *         first, ranked by how many users it follows that follow them.
+     */
+    public static Map<String, List<String>> suggestFollows(Map<String, Set<String>> followsGraph, int topN) {
+        final Metrics.Sample sample = Metrics.start(Metrics.Stage.SUGGEST_FOLLOWS);
+        final Map<String, List<String>> suggestions =
+                TriadicClosure.suggest(CompactGraph.of(followsGraph), topN, TriadicClosure.DEFAULT_HUB_CAP);
+        sample.stop(followsGraph.size(), suggestions.size());
+        return suggestions;
+    }
+
+    /**
+     * Cluster the people in a social network into communities of users who
+     * mostly follow each other, by label propagation; see LabelPropagation.
+     * The result depends only on the social network, not on the order its
+     * map iterates in.
+     * 
+     * @param followsGraph
+     *            a social network (as defined above)
+     * @param maxIterations
+     *            maximum number of propagation rounds, >= 0.
+     * @return a partition into communities of all distinct Twitter usernames
+     *         in followsGraph, ignoring case
+     */
+    public static Communities detectCommunities(Map<String, Set<String>> followsGraph, int maxIterations) {
+        final Metrics.Sample sample = Metrics.start(Metrics.Stage.COMMUNITIES);
+        final Communities communities = LabelPropagation.detect(CompactGraph.of(followsGraph), maxIterations, 0);
+        sample.stop(followsGraph.size(), communities.communityCount());
+        return communities;
+    }
+
 }
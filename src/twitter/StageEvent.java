@@ -0,0 +1,51 @@
+/* Copyright (c) 2007-2016 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package twitter;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Java Flight Recorder event for one call of a pipeline stage, so that
+ * samples in a recording can be attributed to the stage and batch they
+ * belong to. Committed by Metrics.Sample.stop() whenever the event is
+ * enabled in the recording, independently of -Dtwitter.metrics.
+ *
+ * Enable it in a recording with, for example,
+ *     -XX:StartFlightRecording:twitter.Stage#enabled=true,filename=run.jfr
+ *
+ * @see Metrics
+ */
+@Name("twitter.Stage")
+@Label("Tweet Pipeline Stage")
+@Category({ "Twitter", "Pipeline" })
+@Description("A call of TweetReader, Extract, Filter or SocialNetwork")
+@StackTrace(false)
+class StageEvent extends Event {
+
+    @Label("Stage")
+    String stage;
+
+    @Label("Batch Size")
+    @Description("Number of tweets (graph nodes or users for INFLUENCERS, INFLUENCERS_BY_STRENGTH) passed to the call")
+    long batchSize;
+
+    @Label("Results")
+    @Description("Number of tweets, users or graph nodes returned by the call")
+    long results;
+
+    @Label("Bytes Read")
+    @DataAmount
+    long bytesRead;
+
+    @Label("Allocated")
+    @Description("Bytes allocated by the calling thread during the call")
+    @DataAmount
+    long allocated;
+}
@@ -0,0 +1,108 @@
+/* Copyright (c) 2007-2016 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package twitter;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and latency histogram of one pipeline stage. Thread-safe.
+ *
+ * @see Metrics
+ */
+public class StageMetrics implements StageMetricsMXBean {
+
+    private static final double NANOS_PER_MICRO = 1e3;
+    private static final double NANOS_PER_MILLI = 1e6;
+    private static final double NANOS_PER_SECOND = 1e9;
+
+    private final String name;
+    private final LongAdder inputs = new LongAdder();
+    private final LongAdder outputs = new LongAdder();
+    private final LongAdder bytes = new LongAdder();
+    private final LongAdder nanos = new LongAdder();
+    private final LatencyHistogram latency = new LatencyHistogram();
+
+    StageMetrics(String name) {
+        this.name = name;
+    }
+
+    /**
+     * @return name of the stage
+     */
+    public String getName() {
+        return name;
+    }
+
+    /*
+     * Record one call of the stage.
+     */
+    void record(long elapsedNanos, long inputCount, long outputCount, long byteCount) {
+        latency.record(elapsedNanos);
+        nanos.add(elapsedNanos);
+        inputs.add(inputCount);
+        outputs.add(outputCount);
+        bytes.add(byteCount);
+    }
+
+    /**
+     * @return latency histogram of the calls, in nanoseconds
+     */
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    @Override public long getCalls() {
+        return latency.getCount();
+    }
+
+    @Override public long getInputs() {
+        return inputs.sum();
+    }
+
+    @Override public long getOutputs() {
+        return outputs.sum();
+    }
+
+    @Override public long getBytes() {
+        return bytes.sum();
+    }
+
+    @Override public double getTotalMillis() {
+        return nanos.sum() / NANOS_PER_MILLI;
+    }
+
+    @Override public double getInputsPerSecond() {
+        final long total = nanos.sum();
+        return total == 0 ? 0 : inputs.sum() * NANOS_PER_SECOND / total;
+    }
+
+    @Override public double getBytesPerSecond() {
+        final long total = nanos.sum();
+        return total == 0 ? 0 : bytes.sum() * NANOS_PER_SECOND / total;
+    }
+
+    @Override public double getMeanMicros() {
+        return latency.getMean() / NANOS_PER_MICRO;
+    }
+
+    @Override public double getP50Micros() {
+        return latency.getPercentile(50) / NANOS_PER_MICRO;
+    }
+
+    @Override public double getP99Micros() {
+        return latency.getPercentile(99) / NANOS_PER_MICRO;
+    }
+
+    @Override public double getMaxMicros() {
+        return latency.getMax() / NANOS_PER_MICRO;
+    }
+
+    @Override public void reset() {
+        latency.reset();
+        nanos.reset();
+        inputs.reset();
+        outputs.reset();
+        bytes.reset();
+    }
+}
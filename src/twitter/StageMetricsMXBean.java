@@ -0,0 +1,74 @@
+/* Copyright (c) 2007-2016 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package twitter;
+
+/**
+ * Management interface of the metrics of one pipeline stage, registered with
+ * the platform MBean server as twitter:type=Metrics,stage=NAME when metrics
+ * are enabled.
+ *
+ * @see Metrics
+ */
+public interface StageMetricsMXBean {
+
+    /**
+     * @return number of calls to the stage
+     */
+    long getCalls();
+
+    /**
+     * @return total number of inputs (tweets, or graph nodes) over all calls
+     */
+    long getInputs();
+
+    /**
+     * @return total number of outputs (tweets, users or graph nodes) over all calls
+     */
+    long getOutputs();
+
+    /**
+     * @return total number of bytes consumed, for stages that read bytes
+     */
+    long getBytes();
+
+    /**
+     * @return total time spent in the stage, in milliseconds
+     */
+    double getTotalMillis();
+
+    /**
+     * @return inputs processed per second of time spent in the stage
+     */
+    double getInputsPerSecond();
+
+    /**
+     * @return bytes consumed per second of time spent in the stage
+     */
+    double getBytesPerSecond();
+
+    /**
+     * @return mean latency of a call, in microseconds
+     */
+    double getMeanMicros();
+
+    /**
+     * @return median latency of a call, in microseconds
+     */
+    double getP50Micros();
+
+    /**
+     * @return 99th percentile latency of a call, in microseconds
+     */
+    double getP99Micros();
+
+    /**
+     * @return largest latency of a call, in microseconds
+     */
+    double getMaxMicros();
+
+    /**
+     * Forget everything recorded so far.
+     */
+    void reset();
+}
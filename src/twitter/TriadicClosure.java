@@ -0,0 +1,161 @@
+/* Copyright (c) 2007-2016 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package twitter;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+/**
+ * Friend-of-friend follow inference: if A follows B and B follows C, then A
+ * probably follows C too, the more so the more such B there are.
+ *
+ * For each user A, the users two hops away are counted in a dense scratch
+ * array, users A already follows are excluded with a bitset, and the best
+ * few are kept, so the cost per user is the number of two-hop paths rather
+ * than a set intersection per candidate pair. Users are processed in
+ * parallel, each worker thread with its own scratch space. Intermediaries B
+ * that follow more than a cap of users are skipped: such hubs connect
+ * almost everybody and would dominate both the result and the running time.
+ */
+public final class TriadicClosure {
+
+    /** Default out-degree above which a user is not used as an intermediary. */
+    public static final int DEFAULT_HUB_CAP = 1000;
+
+    private TriadicClosure() {
+        // static methods only
+    }
+
+    /*
+     * Per-thread working space, all zero between users.
+     */
+    private static final class Scratch {
+        final int[] paths;
+        final int[] touched;
+        final long[] followed;
+
+        Scratch(int vertices) {
+            this.paths = new int[vertices];
+            this.touched = new int[vertices];
+            this.followed = new long[(vertices + 63) >>> 6];
+        }
+    }
+
+    /**
+     * Suggest users to follow.
+     *
+     * @param graph
+     *            who follows whom.
+     * @param topN
+     *            maximum number of suggestions per user, > 0.
+     * @param hubCap
+     *            users who follow more than hubCap users are not used as
+     *            intermediaries, >= 0.
+     * @return map from each user with at least one suggestion to its
+     *         suggestions: users C that it does not follow, is not, and
+     *         reaches through some intermediary B, at most topN of them, in
+     *         descending order of the number of such B, ties broken
+     *         alphabetically
+     */
+    public static Map<String, List<String>> suggest(CompactGraph graph, int topN, int hubCap) {
+        final UserIndex users = graph.users();
+        final int[][] suggestions = suggestIds(graph, topN, hubCap);
+        final Map<String, List<String>> result = new HashMap<>();
+        for (int a = 0; a < suggestions.length; a++) {
+            if (suggestions[a].length > 0) {
+                final List<String> names = new ArrayList<>(suggestions[a].length);
+                for (int c : suggestions[a]) {
+                    names.add(users.name(c));
+                }
+                result.put(users.name(a), names);
+            }
+        }
+        return result;
+    }
+
+    /*
+     * @return suggestions[a] is the ids suggested to user a, best first
+     */
+    static int[][] suggestIds(CompactGraph graph, int topN, int hubCap) {
+        if (topN <= 0) {
+            throw new IllegalArgumentException("topN must be positive");
+        }
+        if (hubCap < 0) {
+            throw new IllegalArgumentException("hubCap must not be negative");
+        }
+        final int vertices = graph.vertexCount();
+        final int[][] suggestions = new int[vertices][];
+        final ThreadLocal<Scratch> scratch = ThreadLocal.withInitial(() -> new Scratch(vertices));
+        IntStream.range(0, vertices).parallel().forEach(a ->
+                suggestions[a] = suggestFor(graph, a, topN, hubCap, scratch.get()));
+        return suggestions;
+    }
+
+    private static int[] suggestFor(CompactGraph graph, int a, int topN, int hubCap, Scratch s) {
+        final int[] offsets = graph.offsets();
+        final int[] targets = graph.targets();
+        final int[] paths = s.paths;
+        final long[] followed = s.followed;
+        final int rowStart = offsets[a];
+        final int rowEnd = offsets[a + 1];
+
+        for (int i = rowStart; i < rowEnd; i++) {
+            final int b = targets[i];
+            followed[b >>> 6] |= 1L << b;
+        }
+        int touched = 0;
+        for (int i = rowStart; i < rowEnd; i++) {
+            final int b = targets[i];
+            final int bEnd = offsets[b + 1];
+            if (bEnd - offsets[b] > hubCap) {
+                continue;
+            }
+            for (int j = offsets[b]; j < bEnd; j++) {
+                final int c = targets[j];
+                if (c == a || (followed[c >>> 6] & (1L << c)) != 0) {
+                    continue;
+                }
+                if (paths[c]++ == 0) {
+                    s.touched[touched++] = c;
+                }
+            }
+        }
+
+        // keep the best topN by insertion into a short sorted array
+        final UserIndex users = graph.users();
+        final int[] best = new int[Math.min(topN, touched)];
+        int kept = 0;
+        for (int k = 0; k < touched; k++) {
+            final int c = s.touched[k];
+            int pos = kept;
+            while (pos > 0 && better(c, best[pos - 1], paths, users)) {
+                pos--;
+            }
+            if (pos < best.length) {
+                final int moved = Math.min(kept, best.length - 1) - pos;
+                System.arraycopy(best, pos, best, pos + 1, moved);
+                best[pos] = c;
+                kept = Math.min(kept + 1, best.length);
+            }
+        }
+
+        for (int k = 0; k < touched; k++) {
+            paths[s.touched[k]] = 0;
+        }
+        for (int i = rowStart; i < rowEnd; i++) {
+            followed[targets[i] >>> 6] = 0;
+        }
+        return best;
+    }
+
+    private static boolean better(int c, int d, int[] paths, UserIndex users) {
+        if (paths[c] != paths[d]) {
+            return paths[c] > paths[d];
+        }
+        return users.name(c).compareTo(users.name(d)) < 0;
+    }
+}
@@ -0,0 +1,204 @@
+/* Copyright (c) 2007-2016 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package twitter;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An append-only store of tweets that keeps their text off the Java heap,
+ * so that a corpus of tens of millions of tweets costs the garbage collector
+ * a handful of arrays instead of tens of millions of String objects.
+ *
+ * Texts are stored as UTF-8 in direct byte buffers of CHUNK_SIZE bytes
+ * (larger texts get a buffer of their own); ids, timestamps, authors and
+ * the location of each text are kept in primitive columns indexed by row,
+ * 0..size()-1, and authors are interned as written, case and all, in a
+ * table of their own. Filter and Extract scan the UTF-8
+ * bytes in place, and a Tweet object is made only when asked for by row.
+ * Direct buffers are freed when the arena becomes unreachable.
+ *
+ * Texts with unpaired surrogate characters, which are not valid Unicode,
+ * come back with those characters replaced by '?'. Appending is not
+ * thread-safe; once appends are done, reads may be made from any thread.
+ */
+public final class TweetArena {
+
+    /** Size of the direct buffers holding texts. */
+    public static final int CHUNK_SIZE = 1 << 24;
+
+    private static final int INITIAL_ROWS = 1024;
+
+    private final List<ByteBuffer> chunks = new ArrayList<>();
+    private ByteBuffer current = null;
+    // authors as written; a UserIndex would fold case, and rows must keep it
+    private final Map<String, Integer> authorIds = new HashMap<>();
+    private final List<String> authors = new ArrayList<>();
+
+    private int size = 0;
+    private long[] ids = new long[INITIAL_ROWS];
+    private long[] millis = new long[INITIAL_ROWS];
+    private int[] nanos = new int[INITIAL_ROWS];
+    private int[] author = new int[INITIAL_ROWS];
+    private int[] chunk = new int[INITIAL_ROWS];
+    private int[] offset = new int[INITIAL_ROWS];
+    private int[] length = new int[INITIAL_ROWS];
+
+    /* Rep invariant:
+     *   0 <= size <= length of every column array, all of which have equal length
+     *   current is null or the last element of chunks
+     *   for 0 <= r < size:
+     *     0 <= chunk[r] < chunks.size()
+     *     offset[r] + length[r] <= chunks.get(chunk[r]).capacity()
+     *     0 <= author[r] < authors.size()
+     *   authorIds.size() == authors.size(), and
+     *     authorIds.get(authors.get(a)) == a for 0 <= a < authors.size()
+     *     0 <= nanos[r] < 1_000_000
+     *   no row's bytes overlap another's
+     */
+
+    /**
+     * Make an arena holding a list of tweets, in order.
+     *
+     * @param tweets
+     *            tweets to store; not modified.
+     * @return a new arena whose rows are the tweets
+     */
+    public static TweetArena of(List<Tweet> tweets) {
+        final TweetArena arena = new TweetArena();
+        for (Tweet tweet : tweets) {
+            arena.add(tweet);
+        }
+        return arena;
+    }
+
+    /**
+     * Append a tweet.
+     *
+     * @param tweet
+     *            the tweet to store.
+     * @return the row of the tweet
+     */
+    public int add(Tweet tweet) {
+        final byte[] bytes = tweet.getText().getBytes(StandardCharsets.UTF_8);
+        if (current == null || current.remaining() < bytes.length) {
+            current = ByteBuffer.allocateDirect(Math.max(CHUNK_SIZE, bytes.length));
+            chunks.add(current);
+        }
+        if (size == ids.length) {
+            grow();
+        }
+        final int r = size++;
+        final long epochMillis = tweet.getTimestamp().toEpochMilli();
+        ids[r] = tweet.getId();
+        millis[r] = epochMillis;
+        nanos[r] = tweet.getTimestamp().getNano() % 1_000_000;
+        author[r] = authorIds.computeIfAbsent(tweet.getAuthor(), name -> {
+            authors.add(name);
+            return authors.size() - 1;
+        });
+        chunk[r] = chunks.size() - 1;
+        offset[r] = current.position();
+        length[r] = bytes.length;
+        current.put(bytes);
+        return r;
+    }
+
+    private void grow() {
+        final int capacity = size * 2;
+        ids = Arrays.copyOf(ids, capacity);
+        millis = Arrays.copyOf(millis, capacity);
+        nanos = Arrays.copyOf(nanos, capacity);
+        author = Arrays.copyOf(author, capacity);
+        chunk = Arrays.copyOf(chunk, capacity);
+        offset = Arrays.copyOf(offset, capacity);
+        length = Arrays.copyOf(length, capacity);
+    }
+
+    /**
+     * @return number of tweets stored
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param row
+     *            a row in 0..size()-1.
+     * @return id of the tweet in that row
+     */
+    public long id(int row) {
+        checkRow(row);
+        return ids[row];
+    }
+
+    /**
+     * @param row
+     *            a row in 0..size()-1.
+     * @return author of the tweet in that row, as written
+     */
+    public String author(int row) {
+        checkRow(row);
+        return authors.get(author[row]);
+    }
+
+    /**
+     * @param row
+     *            a row in 0..size()-1.
+     * @return timestamp of the tweet in that row
+     */
+    public Instant timestamp(int row) {
+        checkRow(row);
+        return Instant.ofEpochMilli(millis[row]).plusNanos(nanos[row]);
+    }
+
+    /**
+     * @param row
+     *            a row in 0..size()-1.
+     * @return text of the tweet in that row, decoded from UTF-8
+     */
+    public String text(int row) {
+        checkRow(row);
+        final byte[] bytes = new byte[length[row]];
+        chunks.get(chunk[row]).get(offset[row], bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @param row
+     *            a row in 0..size()-1.
+     * @return a new Tweet equal to the one stored in that row
+     */
+    public Tweet tweet(int row) {
+        return new Tweet(id(row), author(row), text(row), timestamp(row));
+    }
+
+    private void checkRow(int row) {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException("row " + row + " of " + size);
+        }
+    }
+
+    /*
+     * The buffer holding a row's text, and the text's offset and length in
+     * it, for scanning in place. Callers must not modify the buffer.
+     */
+    ByteBuffer textBuffer(int row) {
+        return chunks.get(chunk[row]);
+    }
+
+    int textOffset(int row) {
+        return offset[row];
+    }
+
+    int textLength(int row) {
+        return length[row];
+    }
+}
@@ -0,0 +1,191 @@
+/* Copyright (c) 2007-2016 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package twitter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * An immutable list of tweets split into fixed-size blocks, each with a
+ * Bloom filter of the lowercase words and mentioned usernames of its
+ * tweets, so a scan for a word or a mention can skip every block whose
+ * filter rules it out. Queries for rare words and users then touch only a
+ * few blocks; queries for common ones cost about the same as a plain scan.
+ *
+ * Words are as Filter.containing defines them and mentions as
+ * Extract.getMentionedUsers does. Thread-safe.
+ */
+public final class TweetBlocks {
+
+    /** Default number of tweets per block. */
+    public static final int DEFAULT_BLOCK_SIZE = 4096;
+
+    /** Default false-positive rate of the filter of each block. */
+    public static final double DEFAULT_FALSE_POSITIVE_RATE = 0.01;
+
+    // mixed into mention hashes, so a mention of "x" and the word "x" are
+    // different values of a block's filter
+    private static final long MENTION_SALT = 0x9e3779b97f4a7c15L;
+
+    private final List<Tweet> tweets;
+    private final int blockSize;
+    private final BloomFilter[] filters;
+
+    /* Rep invariant:
+     *   blockSize > 0
+     *   filters.length == ceil(tweets.size() / blockSize)
+     *   filters[b] contains wordHash(w) for every word w and mentionHash(u)
+     *     for every mentioned user u of tweets[b * blockSize ..
+     *     min((b + 1) * blockSize, tweets.size()))
+     *
+     * Safety from rep exposure:
+     *   tweets is an unmodifiable copy and Tweet is immutable; filters are
+     *   never returned and never modified after construction
+     */
+
+    private TweetBlocks(List<Tweet> tweets, int blockSize, BloomFilter[] filters) {
+        this.tweets = tweets;
+        this.blockSize = blockSize;
+        this.filters = filters;
+    }
+
+    /**
+     * Split tweets into blocks of DEFAULT_BLOCK_SIZE, with filters of
+     * DEFAULT_FALSE_POSITIVE_RATE.
+     *
+     * @param tweets
+     *            tweets with distinct ids, not modified by this method.
+     * @return the tweets, in the same order, split into filtered blocks
+     */
+    public static TweetBlocks of(List<Tweet> tweets) {
+        return of(tweets, DEFAULT_BLOCK_SIZE, DEFAULT_FALSE_POSITIVE_RATE);
+    }
+
+    /**
+     * Split tweets into blocks.
+     *
+     * @param tweets
+     *            tweets with distinct ids, not modified by this method.
+     * @param blockSize
+     *            number of tweets per block, > 0; the last block may be smaller.
+     * @param falsePositiveRate
+     *            false-positive rate of the filter of each block, in (0, 1):
+     *            about the fraction of blocks scanned for a word or user that
+     *            none of their tweets has.
+     * @return the tweets, in the same order, split into filtered blocks
+     */
+    public static TweetBlocks of(List<Tweet> tweets, int blockSize, double falsePositiveRate) {
+        if (blockSize <= 0) {
+            throw new IllegalArgumentException("blockSize must be positive");
+        }
+        final List<Tweet> copy = Collections.unmodifiableList(new ArrayList<>(tweets));
+        final BloomFilter[] filters = new BloomFilter[(copy.size() + blockSize - 1) / blockSize];
+        final KeyList keys = new KeyList();
+        final TweetText.Visitor mentions = (text, start, end, flags) ->
+                keys.add(Usernames.hash(text, start, end) ^ MENTION_SALT);
+        for (int b = 0; b < filters.length; b++) {
+            keys.size = 0;
+            final int end = Math.min(copy.size(), (b + 1) * blockSize);
+            for (int i = b * blockSize; i < end; i++) {
+                final String text = copy.get(i).getText();
+                for (String token : text.split(" ")) {
+                    if (!token.isEmpty()) {
+                        keys.add(wordHash(token.toLowerCase(Locale.ROOT)));
+                    }
+                }
+                TweetText.scan(text, mentions);
+            }
+            // size the filter for the distinct keys of the block
+            Arrays.sort(keys.values, 0, keys.size);
+            int distinct = 0;
+            for (int k = 0; k < keys.size; k++) {
+                if (k == 0 || keys.values[k] != keys.values[k - 1]) {
+                    distinct++;
+                }
+            }
+            filters[b] = new BloomFilter(distinct, falsePositiveRate);
+            for (int k = 0; k < keys.size; k++) {
+                filters[b].add(keys.values[k]);
+            }
+        }
+        return new TweetBlocks(copy, blockSize, filters);
+    }
+
+    /*
+     * A growable list of hashes.
+     */
+    private static final class KeyList {
+        int size = 0;
+        long[] values = new long[1024];
+
+        void add(long value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+    }
+
+    private static long wordHash(String lowercase) {
+        return Usernames.hash(lowercase);
+    }
+
+    /**
+     * @return the tweets, in order; unmodifiable
+     */
+    public List<Tweet> tweets() {
+        return tweets;
+    }
+
+    /**
+     * @return number of tweets
+     */
+    public int size() {
+        return tweets.size();
+    }
+
+    /**
+     * @return number of blocks
+     */
+    public int blockCount() {
+        return filters.length;
+    }
+
+    /**
+     * @param block
+     *            a block in 0..blockCount()-1.
+     * @return the tweets of the block, in order; unmodifiable
+     */
+    public List<Tweet> block(int block) {
+        if (block < 0 || block >= filters.length) {
+            throw new IndexOutOfBoundsException("block " + block + " of " + filters.length);
+        }
+        return tweets.subList(block * blockSize, Math.min(tweets.size(), (block + 1) * blockSize));
+    }
+
+    /**
+     * @param block
+     *            a block in 0..blockCount()-1.
+     * @param word
+     *            a lowercase word.
+     * @return false if no tweet of the block contains word; true if one may
+     */
+    public boolean mayContainWord(int block, String word) {
+        return filters[block].mightContain(wordHash(word));
+    }
+
+    /**
+     * @param block
+     *            a block in 0..blockCount()-1.
+     * @param username
+     *            a username, case-insensitive.
+     * @return false if no tweet of the block mentions username; true if one may
+     */
+    public boolean mayMention(int block, String username) {
+        return filters[block].mightContain(Usernames.hash(username) ^ MENTION_SALT);
+    }
+}
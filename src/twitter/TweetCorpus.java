@@ -0,0 +1,212 @@
+/* Copyright (c) 2007-2016 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package twitter;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A mutable, append-only corpus of tweets with a version number that
+ * increases on every append, so that results computed from the corpus can
+ * be tagged with the version they reflect. Thread-safe.
+ *
+ * Readers never wait for writers, nor copy the corpus: snapshot() returns
+ * an immutable view of one version, which stays valid and unchanged for as
+ * long as the reader holds it, while appends go on. Tweets are kept in
+ * immutable segments shared by every snapshot that contains them; an
+ * append publishes a new snapshot, with a new directory of segments, by
+ * compare-and-set. Small batches are merged into the last segment, copying
+ * at most SEGMENT_SIZE tweets, so the directory stays short. A snapshot no
+ * reader holds any more is reclaimed by the garbage collector, with the
+ * segments no other snapshot shares.
+ */
+public final class TweetCorpus {
+
+    /**
+     * The tweets of one version of a corpus: an unmodifiable, random-access
+     * list, in the order they were appended, unaffected by later appends.
+     * Immutable, so any number of threads can query it at once.
+     */
+    public static final class Snapshot extends AbstractList<Tweet> implements RandomAccess {
+        private static final Tweet[][] NO_SEGMENTS = new Tweet[0][];
+
+        private final long version;
+        private final Tweet[][] segments;
+        private final int[] starts;
+        private final int size;
+
+        /* Rep invariant:
+         *   version >= 0, and version == 0 iff size == 0
+         *   segments.length == starts.length
+         *   every segment is non-empty; starts[0] == 0 if there is one, and
+         *     starts[s + 1] == starts[s] + segments[s].length
+         *   size is the total length of the segments
+         *
+         * Abstraction function:
+         *   AF(version, segments, ...) = the concatenation of segments, as of
+         *                                corpus version `version`
+         *
+         * Safety from rep exposure:
+         *   segments and starts are never modified after construction, and
+         *   never returned; the mutators of AbstractList throw
+         *
+         * Thread safety argument:
+         *   all fields are final and refer to arrays not modified after
+         *   construction
+         */
+
+        private Snapshot(long version, Tweet[][] segments, int[] starts, int size) {
+            this.version = version;
+            this.segments = segments;
+            this.starts = starts;
+            this.size = size;
+        }
+
+        /*
+         * This snapshot with a batch appended, as the next version.
+         */
+        private Snapshot append(Tweet[] batch) {
+            final int last = segments.length - 1;
+            if (last >= 0 && segments[last].length + batch.length <= SEGMENT_SIZE) {
+                // merge small batches so the directory grows with the corpus, not with the appends
+                final Tweet[] merged = Arrays.copyOf(segments[last], segments[last].length + batch.length);
+                System.arraycopy(batch, 0, merged, segments[last].length, batch.length);
+                final Tweet[][] nextSegments = segments.clone();
+                nextSegments[last] = merged;
+                return new Snapshot(version + 1, nextSegments, starts, size + batch.length);
+            }
+            final Tweet[][] nextSegments = Arrays.copyOf(segments, segments.length + 1);
+            nextSegments[segments.length] = batch;
+            final int[] nextStarts = Arrays.copyOf(starts, starts.length + 1);
+            nextStarts[starts.length] = size;
+            return new Snapshot(version + 1, nextSegments, nextStarts, size + batch.length);
+        }
+
+        /**
+         * @return the version of the corpus this snapshot holds
+         */
+        public long version() {
+            return version;
+        }
+
+        @Override public int size() {
+            return size;
+        }
+
+        @Override public Tweet get(int index) {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException("index " + index + ", size " + size);
+            }
+            int s = Arrays.binarySearch(starts, index);
+            if (s < 0) {
+                s = -s - 2;
+            }
+            return segments[s][index - starts[s]];
+        }
+
+        @Override public Iterator<Tweet> iterator() {
+            return new Iterator<Tweet>() {
+                private int segment = 0;
+                private int offset = 0;
+
+                @Override public boolean hasNext() {
+                    return segment < segments.length;
+                }
+
+                @Override public Tweet next() {
+                    if (segment >= segments.length) {
+                        throw new NoSuchElementException();
+                    }
+                    final Tweet tweet = segments[segment][offset++];
+                    if (offset == segments[segment].length) {
+                        segment++;
+                        offset = 0;
+                    }
+                    return tweet;
+                }
+            };
+        }
+
+        /**
+         * @return number of segments this snapshot is stored in
+         */
+        int segmentCount() {
+            return segments.length;
+        }
+    }
+
+    /** Most tweets in a segment made by merging small batches. */
+    static final int SEGMENT_SIZE = 4096;
+
+    private final AtomicReference<Snapshot> current =
+            new AtomicReference<>(new Snapshot(0, Snapshot.NO_SEGMENTS, new int[0], 0));
+
+    /* Rep invariant:
+     *   current is not null, and its version never decreases
+     *
+     * Thread safety argument:
+     *   current is only replaced by compare-and-set with its successor, so
+     *     concurrent appends are linearized by their successful
+     *     compare-and-set and none is lost
+     *   snapshots are immutable, and published safely by AtomicReference
+     */
+
+    /**
+     * Append tweets to the corpus and advance its version, unless there are
+     * no tweets to append.
+     *
+     * @param batch
+     *            tweets to append, in order; not modified.
+     * @return the version of the corpus after the append
+     */
+    public long append(List<Tweet> batch) {
+        if (batch.isEmpty()) {
+            return version();
+        }
+        final Tweet[] added = batch.toArray(new Tweet[0]);
+        while (true) {
+            final Snapshot before = current.get();
+            final Snapshot after = before.append(added);
+            if (current.compareAndSet(before, after)) {
+                return after.version;
+            }
+        }
+    }
+
+    /**
+     * @return the corpus as it is now, without waiting for appends in
+     *         progress; holding it pins that version for queries
+     */
+    public Snapshot snapshot() {
+        return current.get();
+    }
+
+    /**
+     * @return the current version of the corpus
+     */
+    public long version() {
+        return current.get().version;
+    }
+
+    /**
+     * @return number of tweets in the corpus
+     */
+    public int size() {
+        return current.get().size;
+    }
+
+    /**
+     * @return an unmodifiable list of the tweets in the corpus now, in the
+     *         order they were appended; unaffected by later appends. Same as
+     *         snapshot(), which does not copy the tweets.
+     */
+    public List<Tweet> tweets() {
+        return snapshot();
+    }
+}
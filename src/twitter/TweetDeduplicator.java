@@ -0,0 +1,112 @@
+/* Copyright (c) 2007-2016 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package twitter;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A stage between TweetReader and the analytics that drops tweets already
+ * seen, by id, such as the overlap between successive polls of
+ * Main.SAMPLE_SERVER. Ids are kept in a LongHashSet, so millions of them
+ * take tens of megabytes and no object each.
+ *
+ * Optionally, ids expire: a deduplicator with a retention period forgets
+ * the ids of tweets sent more than that period before the newest tweet it
+ * has seen. The retention should exceed the time spanned by one batch of
+ * input, such as one poll, or repeats of forgotten tweets pass through.
+ * Not thread-safe.
+ */
+public final class TweetDeduplicator {
+
+    private final LongHashSet seen;
+    private final long retentionMillis;
+    private long newestMillis = Long.MIN_VALUE;
+
+    /* Rep invariant:
+     *   retentionMillis > 0, or retentionMillis == 0 and seen is unstamped
+     *   if retentionMillis > 0, seen is stamped with tweet epoch millis, and
+     *     newestMillis is the largest stamp ever added, or Long.MIN_VALUE
+     */
+
+    /**
+     * Make a deduplicator that remembers every id it sees.
+     */
+    public TweetDeduplicator() {
+        this.seen = new LongHashSet(false);
+        this.retentionMillis = 0;
+    }
+
+    /**
+     * Make a deduplicator whose ids expire.
+     *
+     * @param retention
+     *            how long, in tweet time, ids are remembered after the newest
+     *            tweet seen; positive.
+     */
+    public TweetDeduplicator(Duration retention) {
+        if (retention.isNegative() || retention.isZero()) {
+            throw new IllegalArgumentException("retention must be positive");
+        }
+        this.seen = new LongHashSet(true);
+        this.retentionMillis = retention.toMillis();
+    }
+
+    /**
+     * Check one tweet, remembering its id.
+     *
+     * @param tweet
+     *            a tweet.
+     * @return true iff no tweet with the same id has been seen before, or
+     *         it has expired
+     */
+    public boolean firstSeen(Tweet tweet) {
+        final long millis = tweet.getTimestamp().toEpochMilli();
+        newestMillis = Math.max(newestMillis, millis);
+        return seen.add(tweet.getId(), millis);
+    }
+
+    /**
+     * Drop the tweets of a batch that have been seen before, remembering the
+     * rest, then expire old ids.
+     *
+     * @param tweets
+     *            a batch of tweets; not modified.
+     * @return the tweets of the batch for which firstSeen is true, in order;
+     *         a tweet repeated within the batch is kept once
+     */
+    public List<Tweet> filter(List<Tweet> tweets) {
+        final Metrics.Sample sample = Metrics.start(Metrics.Stage.DEDUP);
+        final List<Tweet> fresh = new ArrayList<>(tweets.size());
+        for (Tweet tweet : tweets) {
+            if (firstSeen(tweet)) {
+                fresh.add(tweet);
+            }
+        }
+        expire();
+        sample.stop(tweets.size(), fresh.size());
+        return fresh;
+    }
+
+    /**
+     * Forget the ids of tweets sent more than the retention period before
+     * the newest tweet seen; does nothing if ids do not expire.
+     *
+     * @return number of ids forgotten
+     */
+    public int expire() {
+        if (retentionMillis == 0 || newestMillis == Long.MIN_VALUE) {
+            return 0;
+        }
+        return seen.removeStampedBefore(newestMillis - retentionMillis);
+    }
+
+    /**
+     * @return number of ids remembered
+     */
+    public int size() {
+        return seen.size();
+    }
+}
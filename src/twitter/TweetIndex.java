@@ -0,0 +1,531 @@
+/* Copyright (c) 2007-2016 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package twitter;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * An immutable index of a list of tweets by author, timestamp and word,
+ * answering the queries of Filter without scanning the tweets, and stored
+ * in a single binary image that can be saved to a file and memory-mapped
+ * back, so a process serving queries is ready as soon as the file is
+ * mapped and checked.
+ *
+ * The image holds the tweets themselves in columns (ids, timestamps,
+ * authors, UTF-8 text), a sorted dictionary of lowercase authors and one of
+ * lowercase words, each with a posting list of rows in ascending order, and
+ * the rows in timestamp order. Lookups binary-search the dictionaries in
+ * place, comparing UTF-8 bytes, and read postings straight from the image.
+ *
+ * File format, all integers big-endian, every section 8-byte aligned:
+ *
+ *   0  int   MAGIC ("TWIX")
+ *   4  int   VERSION
+ *   8  long  CRC32 of bytes 16..end
+ *   16 int   number of tweets, authors as written, author keys, word keys
+ *   32 int[] start of each section, in the order of the section constants
+ *
+ * Images are limited to 2GB, the most a single mapped buffer can hold.
+ */
+public final class TweetIndex {
+
+    /** First 4 bytes of every index file. */
+    public static final int MAGIC = 0x54574958;
+
+    /** Version of the file format written by this class, the only one it reads. */
+    public static final int VERSION = 1;
+
+    private static final int CRC_OFFSET = 8;
+    private static final int COUNTS_OFFSET = 16;
+    private static final int SECTIONS_OFFSET = 32;
+
+    // sections, in file order
+    private static final int IDS = 0;
+    private static final int SECONDS = 1;
+    private static final int NANOS = 2;
+    private static final int ROW_AUTHOR = 3;
+    private static final int TEXT_OFFSETS = 4;
+    private static final int TEXT_BYTES = 5;
+    private static final int NAME_OFFSETS = 6;
+    private static final int NAME_BYTES = 7;
+    private static final int AUTHOR_KEY_OFFSETS = 8;
+    private static final int AUTHOR_KEY_BYTES = 9;
+    private static final int AUTHOR_POSTING_OFFSETS = 10;
+    private static final int AUTHOR_POSTINGS = 11;
+    private static final int TIME_ORDER = 12;
+    private static final int WORD_KEY_OFFSETS = 13;
+    private static final int WORD_KEY_BYTES = 14;
+    private static final int WORD_POSTING_OFFSETS = 15;
+    private static final int WORD_POSTINGS = 16;
+    private static final int SECTIONS = 17;
+
+    private static final int HEADER_SIZE = align(SECTIONS_OFFSET + 4 * SECTIONS);
+
+    private final ByteBuffer image;
+    private final int size;
+    private final int authorKeys;
+    private final int wordKeys;
+    private final int[] section = new int[SECTIONS];
+
+    /* Rep invariant:
+     *   image holds a well-formed index as described in the class comment,
+     *     with position 0 and limit its length
+     *   size, authorKeys, wordKeys and section are copies of its header
+     *
+     * Safety from rep exposure:
+     *   image is never returned; queries read it with absolute gets only,
+     *   so it is safe to share between threads
+     */
+
+    private TweetIndex(ByteBuffer image) {
+        this.image = image;
+        this.size = image.getInt(COUNTS_OFFSET);
+        this.authorKeys = image.getInt(COUNTS_OFFSET + 8);
+        this.wordKeys = image.getInt(COUNTS_OFFSET + 12);
+        for (int s = 0; s < SECTIONS; s++) {
+            section[s] = image.getInt(SECTIONS_OFFSET + 4 * s);
+        }
+    }
+
+    private static int align(long offset) {
+        final long aligned = (offset + 7) & ~7L;
+        if (aligned > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("index would exceed 2GB");
+        }
+        return (int) aligned;
+    }
+
+    /*
+     * A growable list of ints.
+     */
+    private static final class IntList {
+        int size = 0;
+        int[] values = new int[4];
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+    }
+
+    /**
+     * Index a list of tweets.
+     *
+     * @param tweets
+     *            tweets with distinct ids, not modified by this method; row r
+     *            of the index is tweets.get(r).
+     * @return an index of tweets, held in memory
+     */
+    public static TweetIndex build(List<Tweet> tweets) {
+        final int n = tweets.size();
+        final byte[][] texts = new byte[n][];
+        final Map<String, Integer> names = new LinkedHashMap<>();
+        final int[] rowAuthor = new int[n];
+        final Map<String, IntList> byAuthor = new HashMap<>();
+        final Map<String, IntList> byWord = new HashMap<>();
+        long textBytes = 0;
+        for (int r = 0; r < n; r++) {
+            final Tweet tweet = tweets.get(r);
+            texts[r] = tweet.getText().getBytes(StandardCharsets.UTF_8);
+            textBytes += texts[r].length;
+            final Integer known = names.putIfAbsent(tweet.getAuthor(), names.size());
+            rowAuthor[r] = known != null ? known : names.size() - 1;
+            byAuthor.computeIfAbsent(Usernames.toLowerCase(tweet.getAuthor()), k -> new IntList()).add(r);
+            // words as Filter.containing defines them; each row posted once per word
+            for (String token : tweet.getText().split(" ")) {
+                if (!token.isEmpty()) {
+                    final IntList rows = byWord.computeIfAbsent(token.toLowerCase(Locale.ROOT), k -> new IntList());
+                    if (rows.size == 0 || rows.values[rows.size - 1] != r) {
+                        rows.add(r);
+                    }
+                }
+            }
+        }
+        final byte[][] nameBytes = new byte[names.size()][];
+        for (Map.Entry<String, Integer> entry : names.entrySet()) {
+            nameBytes[entry.getValue()] = entry.getKey().getBytes(StandardCharsets.UTF_8);
+        }
+        final Dictionary authors = new Dictionary(byAuthor);
+        final Dictionary words = new Dictionary(byWord);
+
+        final Integer[] order = new Integer[n];
+        for (int r = 0; r < n; r++) {
+            order[r] = r;
+        }
+        Arrays.sort(order, (a, b) -> tweets.get(a).getTimestamp().compareTo(tweets.get(b).getTimestamp()));
+
+        // lay out the sections
+        final long[] lengths = new long[SECTIONS];
+        lengths[IDS] = 8L * n;
+        lengths[SECONDS] = 8L * n;
+        lengths[NANOS] = 4L * n;
+        lengths[ROW_AUTHOR] = 4L * n;
+        lengths[TEXT_OFFSETS] = 4L * (n + 1);
+        lengths[TEXT_BYTES] = textBytes;
+        lengths[NAME_OFFSETS] = 4L * (nameBytes.length + 1);
+        lengths[NAME_BYTES] = totalLength(nameBytes);
+        lengths[AUTHOR_KEY_OFFSETS] = 4L * (authors.keys.length + 1);
+        lengths[AUTHOR_KEY_BYTES] = totalLength(authors.keys);
+        lengths[AUTHOR_POSTING_OFFSETS] = 4L * (authors.keys.length + 1);
+        lengths[AUTHOR_POSTINGS] = 4L * authors.postingCount;
+        lengths[TIME_ORDER] = 4L * n;
+        lengths[WORD_KEY_OFFSETS] = 4L * (words.keys.length + 1);
+        lengths[WORD_KEY_BYTES] = totalLength(words.keys);
+        lengths[WORD_POSTING_OFFSETS] = 4L * (words.keys.length + 1);
+        lengths[WORD_POSTINGS] = 4L * words.postingCount;
+        final int[] start = new int[SECTIONS];
+        long end = HEADER_SIZE;
+        for (int s = 0; s < SECTIONS; s++) {
+            start[s] = align(end);
+            end = start[s] + lengths[s];
+        }
+
+        final ByteBuffer image = ByteBuffer.allocate(align(end));
+        image.putInt(0, MAGIC);
+        image.putInt(4, VERSION);
+        image.putInt(COUNTS_OFFSET, n);
+        image.putInt(COUNTS_OFFSET + 4, nameBytes.length);
+        image.putInt(COUNTS_OFFSET + 8, authors.keys.length);
+        image.putInt(COUNTS_OFFSET + 12, words.keys.length);
+        for (int s = 0; s < SECTIONS; s++) {
+            image.putInt(SECTIONS_OFFSET + 4 * s, start[s]);
+        }
+        for (int r = 0; r < n; r++) {
+            final Instant timestamp = tweets.get(r).getTimestamp();
+            image.putLong(start[IDS] + 8 * r, tweets.get(r).getId());
+            image.putLong(start[SECONDS] + 8 * r, timestamp.getEpochSecond());
+            image.putInt(start[NANOS] + 4 * r, timestamp.getNano());
+            image.putInt(start[ROW_AUTHOR] + 4 * r, rowAuthor[r]);
+            image.putInt(start[TIME_ORDER] + 4 * r, order[r]);
+        }
+        putStrings(image, start[TEXT_OFFSETS], start[TEXT_BYTES], texts);
+        putStrings(image, start[NAME_OFFSETS], start[NAME_BYTES], nameBytes);
+        putStrings(image, start[AUTHOR_KEY_OFFSETS], start[AUTHOR_KEY_BYTES], authors.keys);
+        putPostings(image, start[AUTHOR_POSTING_OFFSETS], start[AUTHOR_POSTINGS], authors);
+        putStrings(image, start[WORD_KEY_OFFSETS], start[WORD_KEY_BYTES], words.keys);
+        putPostings(image, start[WORD_POSTING_OFFSETS], start[WORD_POSTINGS], words);
+        image.putLong(CRC_OFFSET, checksum(image));
+        return new TweetIndex(image);
+    }
+
+    /*
+     * Keys sorted by unsigned UTF-8 bytes, with their posting lists.
+     */
+    private static final class Dictionary {
+        final byte[][] keys;
+        final IntList[] postings;
+        final long postingCount;
+
+        Dictionary(Map<String, IntList> map) {
+            final List<Map.Entry<String, IntList>> entries = new ArrayList<>(map.entrySet());
+            final byte[][] keys = new byte[entries.size()][];
+            final Integer[] order = new Integer[entries.size()];
+            for (int i = 0; i < keys.length; i++) {
+                keys[i] = entries.get(i).getKey().getBytes(StandardCharsets.UTF_8);
+                order[i] = i;
+            }
+            Arrays.sort(order, (a, b) -> Arrays.compareUnsigned(keys[a], keys[b]));
+            this.keys = new byte[keys.length][];
+            this.postings = new IntList[keys.length];
+            long count = 0;
+            for (int i = 0; i < keys.length; i++) {
+                this.keys[i] = keys[order[i]];
+                this.postings[i] = entries.get(order[i]).getValue();
+                count += postings[i].size;
+            }
+            this.postingCount = count;
+        }
+    }
+
+    private static long totalLength(byte[][] strings) {
+        long total = 0;
+        for (byte[] s : strings) {
+            total += s.length;
+        }
+        return total;
+    }
+
+    private static void putStrings(ByteBuffer image, int offsets, int bytes, byte[][] strings) {
+        int at = 0;
+        for (int i = 0; i < strings.length; i++) {
+            image.putInt(offsets + 4 * i, at);
+            image.put(bytes + at, strings[i]);
+            at += strings[i].length;
+        }
+        image.putInt(offsets + 4 * strings.length, at);
+    }
+
+    private static void putPostings(ByteBuffer image, int offsets, int postings, Dictionary dictionary) {
+        int at = 0;
+        for (int i = 0; i < dictionary.postings.length; i++) {
+            image.putInt(offsets + 4 * i, at);
+            final IntList rows = dictionary.postings[i];
+            for (int k = 0; k < rows.size; k++) {
+                image.putInt(postings + 4 * (at + k), rows.values[k]);
+            }
+            at += rows.size;
+        }
+        image.putInt(offsets + 4 * dictionary.postings.length, at);
+    }
+
+    private static long checksum(ByteBuffer image) {
+        final CRC32 crc = new CRC32();
+        final ByteBuffer body = image.duplicate();
+        body.position(COUNTS_OFFSET);
+        crc.update(body);
+        return crc.getValue();
+    }
+
+    /**
+     * Write this index to a file, replacing it atomically if it exists.
+     *
+     * @param file
+     *            where to write.
+     * @throws IOException if the file cannot be written
+     */
+    public void save(Path file) throws IOException {
+        final Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel out = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            final ByteBuffer bytes = image.duplicate();
+            while (bytes.hasRemaining()) {
+                out.write(bytes);
+            }
+            out.force(true);
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Map an index file into memory, checking its format and checksum. The
+     * file must not be modified while the index is in use.
+     *
+     * @param file
+     *            a file written by save().
+     * @return the index stored in file
+     * @throws IOException if the file cannot be read, is not an index, has
+     *         an unsupported version, or fails its checksum
+     */
+    public static TweetIndex load(Path file) throws IOException {
+        final ByteBuffer image;
+        try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+            final long length = in.size();
+            if (length < HEADER_SIZE || length > Integer.MAX_VALUE) {
+                throw new IOException(file + ": not a tweet index");
+            }
+            image = in.map(FileChannel.MapMode.READ_ONLY, 0, length);
+        }
+        if (image.getInt(0) != MAGIC) {
+            throw new IOException(file + ": not a tweet index");
+        }
+        if (image.getInt(4) != VERSION) {
+            throw new IOException(file + ": unsupported index version " + image.getInt(4));
+        }
+        if (image.getLong(CRC_OFFSET) != checksum(image)) {
+            throw new IOException(file + ": index checksum mismatch");
+        }
+        return new TweetIndex(image);
+    }
+
+    /**
+     * @return number of tweets indexed
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param row
+     *            a row in 0..size()-1.
+     * @return a new Tweet equal to the one indexed in that row
+     */
+    public Tweet tweet(int row) {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException("row " + row + " of " + size);
+        }
+        final Instant timestamp = Instant.ofEpochSecond(
+                image.getLong(section[SECONDS] + 8 * row),
+                image.getInt(section[NANOS] + 4 * row));
+        final String author = string(NAME_OFFSETS, NAME_BYTES, image.getInt(section[ROW_AUTHOR] + 4 * row));
+        return new Tweet(image.getLong(section[IDS] + 8 * row), author,
+                string(TEXT_OFFSETS, TEXT_BYTES, row), timestamp);
+    }
+
+    private String string(int offsets, int bytes, int i) {
+        final int from = image.getInt(section[offsets] + 4 * i);
+        final int to = image.getInt(section[offsets] + 4 * (i + 1));
+        final byte[] value = new byte[to - from];
+        image.get(section[bytes] + from, value);
+        return new String(value, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Find tweets written by a particular user.
+     *
+     * @param username
+     *            Twitter username, case-insensitive.
+     * @return all and only the indexed tweets whose author is username, in
+     *         row order
+     */
+    public List<Tweet> writtenBy(String username) {
+        final int key = find(AUTHOR_KEY_OFFSETS, AUTHOR_KEY_BYTES, authorKeys, Usernames.toLowerCase(username));
+        return key < 0 ? new ArrayList<>() : tweets(postings(AUTHOR_POSTING_OFFSETS, AUTHOR_POSTINGS, key));
+    }
+
+    /**
+     * Find tweets that were sent during a particular timespan.
+     *
+     * @param timespan
+     *            timespan, inclusive at both ends.
+     * @return all and only the indexed tweets sent during the timespan, in
+     *         row order
+     */
+    public List<Tweet> inTimespan(Timespan timespan) {
+        final int from = firstNotBefore(timespan.getStart(), false);
+        final int to = firstNotBefore(timespan.getEnd(), true);
+        final int[] rows = new int[Math.max(0, to - from)];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = image.getInt(section[TIME_ORDER] + 4 * (from + i));
+        }
+        Arrays.sort(rows);
+        return tweets(rows);
+    }
+
+    /*
+     * @return the first position in timestamp order whose timestamp is at
+     *         or after (or, if after, strictly after) t
+     */
+    private int firstNotBefore(Instant t, boolean after) {
+        int lo = 0;
+        int hi = size;
+        while (lo < hi) {
+            final int mid = (lo + hi) >>> 1;
+            final int row = image.getInt(section[TIME_ORDER] + 4 * mid);
+            final long seconds = image.getLong(section[SECONDS] + 8 * row);
+            final int nanos = image.getInt(section[NANOS] + 4 * row);
+            int cmp = Long.compare(seconds, t.getEpochSecond());
+            if (cmp == 0) {
+                cmp = Integer.compare(nanos, t.getNano());
+            }
+            if (cmp < 0 || (after && cmp == 0)) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * Find tweets that contain certain words.
+     *
+     * @param words
+     *            words to search for; a word is a nonempty sequence of
+     *            nonspace characters, compared ignoring case.
+     * @return all and only the indexed tweets containing at least one of the
+     *         words, as defined by Filter.containing, in row order
+     */
+    public List<Tweet> containing(List<String> words) {
+        int[] rows = new int[0];
+        for (String word : words) {
+            if (word == null || word.isEmpty()) {
+                continue;
+            }
+            final int key = find(WORD_KEY_OFFSETS, WORD_KEY_BYTES, wordKeys, word.toLowerCase(Locale.ROOT));
+            if (key >= 0) {
+                rows = union(rows, postings(WORD_POSTING_OFFSETS, WORD_POSTINGS, key));
+            }
+        }
+        return tweets(rows);
+    }
+
+    private static int[] union(int[] a, int[] b) {
+        final int[] merged = new int[a.length + b.length];
+        int i = 0;
+        int j = 0;
+        int k = 0;
+        while (i < a.length || j < b.length) {
+            final int next = j == b.length || (i < a.length && a[i] <= b[j]) ? a[i] : b[j];
+            if (i < a.length && a[i] == next) {
+                i++;
+            }
+            if (j < b.length && b[j] == next) {
+                j++;
+            }
+            merged[k++] = next;
+        }
+        return Arrays.copyOf(merged, k);
+    }
+
+    /*
+     * Binary search a dictionary for a lowercase key.
+     * @return index of the key, or -1
+     */
+    private int find(int offsets, int bytes, int count, String lowercase) {
+        final byte[] key = lowercase.getBytes(StandardCharsets.UTF_8);
+        int lo = 0;
+        int hi = count - 1;
+        while (lo <= hi) {
+            final int mid = (lo + hi) >>> 1;
+            final int cmp = compareKey(offsets, bytes, mid, key);
+            if (cmp < 0) {
+                lo = mid + 1;
+            } else if (cmp > 0) {
+                hi = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    private int compareKey(int offsets, int bytes, int i, byte[] key) {
+        final int from = section[bytes] + image.getInt(section[offsets] + 4 * i);
+        final int length = section[bytes] + image.getInt(section[offsets] + 4 * (i + 1)) - from;
+        final int common = Math.min(length, key.length);
+        for (int k = 0; k < common; k++) {
+            final int cmp = Integer.compare(image.get(from + k) & 0xff, key[k] & 0xff);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return Integer.compare(length, key.length);
+    }
+
+    private int[] postings(int offsets, int postings, int key) {
+        final int from = image.getInt(section[offsets] + 4 * key);
+        final int to = image.getInt(section[offsets] + 4 * (key + 1));
+        final int[] rows = new int[to - from];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = image.getInt(section[postings] + 4 * (from + i));
+        }
+        return rows;
+    }
+
+    private List<Tweet> tweets(int[] rows) {
+        final List<Tweet> result = new ArrayList<>(rows.length);
+        for (int row : rows) {
+            result.add(tweet(row));
+        }
+        return result;
+    }
+}
@@ -3,13 +3,20 @@
  */
 package twitter;
 
+import java.io.BufferedInputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Reader;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
@@ -21,6 +28,7 @@ import javax.json.JsonException;
 import javax.json.JsonNumber;
 import javax.json.JsonObject;
 import javax.json.JsonReader;
+import javax.json.JsonReaderFactory;
 import javax.json.JsonString;
 import javax.json.JsonValue;
 
@@ -32,6 +40,11 @@ import javax.json.JsonValue;
  */
 public class TweetReader {
     
+    // built once, at class initialization: Json.createReader looks up the
+    // JSON provider on every call, and ofPattern parses its pattern
+    static final JsonReaderFactory JSON = Json.createReaderFactory(Collections.<String, Object>emptyMap());
+    private static final DateTimeFormatter CREATED_AT = DateTimeFormatter.ofPattern("EEE MMM dd HH:mm:ss Z yyyy", Locale.US);
+    
     /**
      * Get a list of tweets from a web server.
      * 
@@ -41,7 +54,103 @@ public class TweetReader {
      *                     or some other network-related error occurs.
      */
     public static List<Tweet> readTweetsFromWeb(URL url) throws IOException {
-        return readTweets(new InputStreamReader(url.openStream()));
+        return readTweets(url.openStream());
+    }
+    
+    /**
+     * Get a list of tweets from a file, which may be gzip- or zlib-compressed.
+     * 
+     * @param path file to read tweets from
+     * @return a list of tweets parsed out of the file.
+     * @throws IOException if the file cannot be read or decompressed.
+     */
+    public static List<Tweet> readTweetsFromFile(Path path) throws IOException {
+        return readTweets(Files.newInputStream(path));
+    }
+    
+    /**
+     * Get a list of tweets from a stream, detecting gzip or zlib compression
+     * from its first bytes. Compressed input is inflated on a background
+     * thread while this thread parses it.
+     * 
+     * @param in stream of UTF-8 JSON, possibly compressed; closed by this method.
+     * @return a list of tweets parsed out of the stream.
+     * @throws IOException if the stream cannot be read or decompressed.
+     */
+    public static List<Tweet> readTweets(InputStream in) throws IOException {
+        final BufferedInputStream buffered = new BufferedInputStream(in);
+        return readTweets(buffered, Compression.detect(buffered));
+    }
+    
+    /**
+     * Get a list of tweets from a stream in a known compression format.
+     * Compressed input is inflated on a background thread, which stays at
+     * most a few chunks ahead of this thread's parsing.
+     * 
+     * @param in stream of UTF-8 JSON compressed as given; closed by this method.
+     * @param compression format of the stream
+     * @return a list of tweets parsed out of the stream.
+     * @throws IOException if the stream cannot be read or decompressed.
+     */
+    public static List<Tweet> readTweets(InputStream in, Compression compression) throws IOException {
+        final Metrics.Sample sample = Metrics.start(Metrics.Stage.READ);
+        final InputStream decoded = decompressed(in, compression);
+        // counted for the metrics or a JFR recording, whichever is on
+        final CountingInputStream counted = sample.isRecorded() ? new CountingInputStream(decoded) : null;
+        try (Reader reader = new InputStreamReader(counted != null ? counted : decoded, StandardCharsets.UTF_8)) {
+            final List<Tweet> tweets = readTweets(reader);
+            sample.stop(tweets.size(), tweets.size(), counted != null ? counted.count : 0);
+            return tweets;
+        } catch (JsonException je) {
+            // the JSON parser wraps failures of the underlying stream
+            if (je.getCause() instanceof IOException) {
+                throw (IOException) je.getCause();
+            }
+            throw je;
+        }
+    }
+    
+    /*
+     * The decompressed content of a stream, inflated on a background thread
+     * if it is compressed; for readers of tweets one at a time.
+     */
+    static InputStream decompressed(InputStream in) throws IOException {
+        final BufferedInputStream buffered = new BufferedInputStream(in);
+        return decompressed(buffered, Compression.detect(buffered));
+    }
+
+    private static InputStream decompressed(InputStream in, Compression compression) {
+        return compression == Compression.NONE
+                ? in
+                : new InflatingInputStream(in, compression,
+                        InflatingInputStream.DEFAULT_CHUNK_SIZE, InflatingInputStream.DEFAULT_CAPACITY);
+    }
+
+    /*
+     * Counts the (decompressed) bytes handed to the parser, for metrics.
+     */
+    private static class CountingInputStream extends FilterInputStream {
+        private long count = 0;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override public int read() throws IOException {
+            final int b = super.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override public int read(byte[] b, int off, int len) throws IOException {
+            final int n = super.read(b, off, len);
+            if (n > 0) {
+                count += n;
+            }
+            return n;
+        }
     }
     
     /*
@@ -50,16 +159,26 @@ public class TweetReader {
      * @return a list of tweets parsed out of the stream.
      */
     private static List<Tweet> readTweets(Reader reader) {
-        JsonReader jsonReader = Json.createReader(reader);
+        JsonReader jsonReader = JSON.createReader(reader);
         JsonArray array = jsonReader.readArray();
         ArrayList<Tweet> tweetList = new ArrayList<Tweet>();
         for (int i = 0; i < array.size(); i++) {
-            Map<String, Object> map = constructTweetMap(array.get(i), null);
-            tweetList.add(createTweetFromMap(map));
+            tweetList.add(readTweet(array.get(i)));
         }
         return tweetList;
     }
     
+    /*
+     * Read one tweet, an element of the JSON array of a stream, for readers
+     * that split the array themselves.
+     * 
+     * @return the tweet represented by element
+     * @throws JsonException if element is not a tweet
+     */
+    static Tweet readTweet(JsonValue element) {
+        return createTweetFromMap(constructTweetMap(element, null));
+    }
+    
     /*
      * Crawl recursively through the JSON tree representing a single tweet.
      * 
@@ -113,8 +232,7 @@ public class TweetReader {
         Long id = Long.valueOf(tweetMap.get("id").toString());
         String screenName = tweetMap.get("user.screen_name").toString();
         String text = tweetMap.get("text").toString();
-        ZonedDateTime timestamp = ZonedDateTime.parse(tweetMap.get("created_at").toString(),
-                                                      DateTimeFormatter.ofPattern("EEE MMM dd HH:mm:ss Z yyyy", Locale.US));
+        ZonedDateTime timestamp = ZonedDateTime.parse(tweetMap.get("created_at").toString(), CREATED_AT);
         return new Tweet(id, screenName, text, timestamp.toInstant());
     }
 }
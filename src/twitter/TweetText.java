@@ -0,0 +1,205 @@
+/* Copyright (c) 2007-2016 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package twitter;
+
+import java.nio.ByteBuffer;
+
+/**
+ * TweetText finds @-mentions and #hashtags in tweet text with a single
+ * left-to-right scan, without regular expressions or allocation.
+ *
+ * A mention is "@" followed by one or more username characters (as defined
+ * by Tweet.getAuthor()), neither immediately preceded nor immediately
+ * followed by a username character; see Extract.getMentionedUsers().
+ * A hashtag is "#" followed by one or more letters, digits or underscores,
+ * not immediately preceded by a username character.
+ */
+final class TweetText {
+
+    /** Flag of a mention in the leading run of mentions that makes a tweet a reply. */
+    static final int REPLY = 1;
+
+    /** Flag of the mention in a leading "RT @user" retweet marker. */
+    static final int RETWEET = 2;
+
+    private static final String RETWEET_PREFIX = "RT @";
+
+    /**
+     * Receives the tokens found by scan(), as [start, end) ranges of the
+     * scanned text that exclude the leading '@' or '#'.
+     */
+    interface Visitor {
+        /**
+         * Called for each mention, in order.
+         *
+         * @param text the scanned text
+         * @param start index of the first username character
+         * @param end index just past the last username character
+         * @param flags REPLY and/or RETWEET, or 0
+         */
+        void mention(String text, int start, int end, int flags);
+
+        /**
+         * Called for each hashtag, in order. Ignored by default.
+         *
+         * @param text the scanned text
+         * @param start index of the first tag character
+         * @param end index just past the last tag character
+         */
+        default void hashtag(String text, int start, int end) {
+        }
+    }
+
+    /**
+     * Receives the mentions found by scanMentions(), as [start, end) ranges
+     * of the scanned bytes that exclude the leading '@'.
+     */
+    interface ByteVisitor {
+        /**
+         * Called for each mention, in order.
+         *
+         * @param bytes the scanned buffer
+         * @param start index of the first username byte
+         * @param end index just past the last username byte
+         */
+        void mention(ByteBuffer bytes, int start, int end);
+    }
+
+    private TweetText() {
+        throw new AssertionError("not instantiable");
+    }
+
+    /**
+     * @param c a character
+     * @return true iff c may appear in a Twitter username: A-Z, a-z, 0-9, _ or -
+     */
+    static boolean isUsernameChar(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+                || c == '_' || c == '-';
+    }
+
+    /**
+     * Scan UTF-8 text for mentions, finding exactly the mentions scan() finds
+     * in the decoded text: usernames are ASCII, and the bytes of non-ASCII
+     * characters are never ASCII, so they bound mentions as the characters do.
+     *
+     * @param bytes buffer holding the text; its position and limit are ignored
+     * @param from index of the first byte of the text
+     * @param to index just past the last byte of the text
+     * @param visitor receives each mention found
+     */
+    static void scanMentions(ByteBuffer bytes, int from, int to, ByteVisitor visitor) {
+        // a username holds no '@', so each '@' can be judged on its own
+        for (int i = ByteScanner.indexOf(bytes, from, to, (byte) '@'); i < to;
+                i = ByteScanner.indexOf(bytes, i + 1, to, (byte) '@')) {
+            mentionAt(bytes, from, to, i, visitor);
+        }
+    }
+
+    /**
+     * Scan texts packed one after another in a buffer for mentions, finding
+     * exactly the mentions scanMentions() finds in each text, with a single
+     * pass over the '@' bytes of all of them.
+     *
+     * @param bytes buffer holding the texts; its position and limit are ignored
+     * @param bounds text k is bytes[bounds[k]..bounds[k + 1]); nondecreasing
+     * @param texts number of texts, >= 0
+     * @param visitor receives each mention found, in order
+     */
+    static void scanMentions(ByteBuffer bytes, int[] bounds, int texts, ByteVisitor visitor) {
+        final int[] ats = new int[256];
+        final int to = bounds[texts];
+        int text = 0;
+        for (int from = bounds[0]; from < to; ) {
+            final int found = ByteScanner.indexAll(bytes, from, to, (byte) '@', ats);
+            for (int k = 0; k < found; k++) {
+                while (ats[k] >= bounds[text + 1]) {
+                    text++;
+                }
+                mentionAt(bytes, bounds[text], bounds[text + 1], ats[k], visitor);
+            }
+            if (found < ats.length) {
+                break;
+            }
+            from = ats[found - 1] + 1;
+        }
+    }
+
+    /*
+     * Report the mention starting at the '@' at index at of text
+     * bytes[from..to), if there is one.
+     */
+    private static void mentionAt(ByteBuffer bytes, int from, int to, int at, ByteVisitor visitor) {
+        if (at > from && isUsernameChar((char) bytes.get(at - 1))) {
+            return;
+        }
+        int end = at + 1;
+        while (end < to && isUsernameChar((char) bytes.get(end))) {
+            end++;
+        }
+        if (end > at + 1) {
+            visitor.mention(bytes, at + 1, end);
+        }
+    }
+
+    private static boolean isHashtagChar(char c) {
+        return c != '-' && isUsernameChar(c);
+    }
+
+    /**
+     * Scan text for mentions and hashtags.
+     *
+     * Mentions in the leading run of the text (only spaces between them, and
+     * the text starting with '@') are flagged REPLY, following Twitter's
+     * convention for replies. The mention in a text starting with "RT @" is
+     * flagged RETWEET.
+     *
+     * @param text text of a tweet
+     * @param visitor receives each token found
+     */
+    static void scan(String text, Visitor visitor) {
+        final int length = text.length();
+        final boolean retweet = text.startsWith(RETWEET_PREFIX);
+        boolean leading = length > 0 && text.charAt(0) == '@';
+        for (int i = 0; i < length; i++) {
+            final char c = text.charAt(i);
+            if (c != '@' && c != '#') {
+                if (c != ' ') {
+                    leading = false;
+                }
+                continue;
+            }
+            if (i > 0 && isUsernameChar(text.charAt(i - 1))) {
+                leading = false;
+                continue;
+            }
+            final int start = i + 1;
+            int end = start;
+            if (c == '@') {
+                while (end < length && isUsernameChar(text.charAt(end))) {
+                    end++;
+                }
+                if (end > start) {
+                    int flags = leading ? REPLY : 0;
+                    if (retweet && i == RETWEET_PREFIX.length() - 1) {
+                        flags |= RETWEET;
+                    }
+                    visitor.mention(text, start, end, flags);
+                } else {
+                    leading = false;
+                }
+            } else {
+                leading = false;
+                while (end < length && isHashtagChar(text.charAt(end))) {
+                    end++;
+                }
+                if (end > start) {
+                    visitor.hashtag(text, start, end);
+                }
+            }
+            // resume at the first character after the token
+            i = Math.max(i, end - 1);
+        }
+    }
+}
@@ -0,0 +1,75 @@
+/* Copyright (c) 2007-2016 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package twitter;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A mutable dictionary that assigns dense int ids 0, 1, 2, ... to usernames
+ * in the order they are first seen, so graphs over users can be stored in
+ * primitive arrays. Usernames are case-insensitive: callers intern lowercase
+ * names. Not thread-safe.
+ */
+public class UserIndex {
+
+    private final Map<String, Integer> ids = new HashMap<>();
+    private String[] names = new String[16];
+    private int size = 0;
+
+    /* Rep invariant:
+     *   ids.size() == size <= names.length
+     *   for 0 <= i < size: ids.get(names[i]) == i
+     */
+
+    /**
+     * Get the id of a username, assigning the next id if it is new.
+     *
+     * @param name
+     *            a lowercase username.
+     * @return the id of name, in 0..size()-1
+     */
+    public int intern(String name) {
+        final Integer id = ids.get(name);
+        if (id != null) {
+            return id;
+        }
+        if (size == names.length) {
+            names = Arrays.copyOf(names, size * 2);
+        }
+        names[size] = name;
+        ids.put(name, size);
+        return size++;
+    }
+
+    /**
+     * @param name
+     *            a lowercase username.
+     * @return the id of name, or -1 if it has not been interned
+     */
+    public int id(String name) {
+        final Integer id = ids.get(name);
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * @param id
+     *            an id in 0..size()-1.
+     * @return the username with that id
+     */
+    public String name(int id) {
+        if (id < 0 || id >= size) {
+            throw new IndexOutOfBoundsException("no user with id " + id);
+        }
+        return names[id];
+    }
+
+    /**
+     * @return the number of interned usernames
+     */
+    public int size() {
+        return size;
+    }
+}
@@ -0,0 +1,121 @@
+/* Copyright (c) 2007-2016 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package twitter;
+
+/**
+ * Usernames consists of the case-insensitive operations on Twitter
+ * usernames that every module shares: lowercasing, comparing and hashing.
+ *
+ * Usernames are ASCII (see Tweet.getAuthor()), so these fold only A-Z to
+ * a-z. That gives the same answers on every host, whatever its default
+ * locale, where String.toLowerCase() would turn "I" into a dotless i on a
+ * Turkish one. Comparing and hashing never allocate, and lowercasing
+ * returns its argument unchanged when it is already lowercase, which
+ * usernames usually are. Other characters are left as they are, so text
+ * that is not a username is still handled consistently, if not usefully.
+ */
+final class Usernames {
+
+    private Usernames() {
+        throw new AssertionError("not instantiable");
+    }
+
+    private static char fold(char c) {
+        return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+    }
+
+    /**
+     * @param name a username
+     * @return name with A-Z lowercased; name itself if it has no A-Z
+     */
+    static String toLowerCase(String name) {
+        for (int i = 0; i < name.length(); i++) {
+            final char c = name.charAt(i);
+            if (c >= 'A' && c <= 'Z') {
+                final char[] lower = name.toCharArray();
+                for (int j = i; j < lower.length; j++) {
+                    lower[j] = fold(lower[j]);
+                }
+                return new String(lower);
+            }
+        }
+        return name;
+    }
+
+    /**
+     * @param text text holding a username
+     * @param start index of the first username character
+     * @param end index just past the last username character
+     * @return text[start..end) with A-Z lowercased, made with one copy
+     */
+    static String toLowerCase(String text, int start, int end) {
+        final char[] lower = new char[end - start];
+        for (int i = 0; i < lower.length; i++) {
+            lower[i] = fold(text.charAt(start + i));
+        }
+        return new String(lower);
+    }
+
+    /**
+     * @param a a username
+     * @param b a username
+     * @return true iff a and b are equal, ignoring the case of A-Z
+     */
+    static boolean equalsIgnoreCase(String a, String b) {
+        return a.length() == b.length() && regionEqualsIgnoreCase(a, 0, a.length(), b);
+    }
+
+    /**
+     * @param text text holding a username
+     * @param start index of the first username character
+     * @param end index just past the last username character
+     * @param name a username
+     * @return true iff text[start..end) equals name, ignoring the case of A-Z
+     */
+    static boolean regionEqualsIgnoreCase(String text, int start, int end, String name) {
+        if (end - start != name.length()) {
+            return false;
+        }
+        for (int i = 0; i < name.length(); i++) {
+            final char a = text.charAt(start + i);
+            final char b = name.charAt(i);
+            if (a != b && fold(a) != fold(b)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param name a username
+     * @return a well-mixed 64-bit hash of name, ignoring the case of A-Z
+     */
+    static long hash(String name) {
+        return hash(name, 0, name.length());
+    }
+
+    /**
+     * Hash a range of text case-insensitively: equal usernames, ignoring
+     * case, get equal hashes.
+     *
+     * @param text text holding a username
+     * @param start index of the first username character
+     * @param end index just past the last username character
+     * @return a well-mixed 64-bit hash of text[start..end), ignoring the
+     *         case of A-Z
+     */
+    static long hash(String text, int start, int end) {
+        long h = 0xcbf29ce484222325L; // FNV-1a
+        for (int i = start; i < end; i++) {
+            h = (h ^ fold(text.charAt(i))) * 0x100000001b3L;
+        }
+        // murmur3 finalizer, so every bit depends on every character
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,259 @@
+/* Copyright (c) 2007-2016 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package twitter;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A mutable follows graph that remembers, for every edge, how much evidence
+ * supports it and when that evidence was first and last seen.
+ *
+ * Users are interned to dense ids (see UserIndex) and edges are stored in
+ * parallel primitive arrays indexed by edge number, with an open-addressing
+ * hash table from (follower, followee) to edge number, so the graph costs a
+ * few dozen bytes per edge and no objects per edge. Usernames are
+ * case-insensitive and stored lowercase. Not thread-safe.
+ */
+public class WeightedFollowsGraph {
+
+    /**
+     * Receives the edges of a graph; see forEachEdge().
+     */
+    public interface EdgeVisitor {
+        /**
+         * Called once per edge.
+         *
+         * @param follower id of the follower
+         * @param followee id of the followee
+         * @param weight amount of evidence for the edge, > 0
+         * @param firstSeenMillis epoch millis of the earliest evidence
+         * @param lastSeenMillis epoch millis of the latest evidence
+         */
+        void edge(int follower, int followee, int weight, long firstSeenMillis, long lastSeenMillis);
+    }
+
+    private static final int INITIAL_EDGES = 64;
+
+    private final UserIndex users = new UserIndex();
+
+    private int edges = 0;
+    private int[] from = new int[INITIAL_EDGES];
+    private int[] to = new int[INITIAL_EDGES];
+    private int[] weight = new int[INITIAL_EDGES];
+    private long[] firstSeen = new long[INITIAL_EDGES];
+    private long[] lastSeen = new long[INITIAL_EDGES];
+
+    // open addressing, linear probing; slot holds edge number + 1, 0 if empty
+    private int[] slots = new int[INITIAL_EDGES * 2];
+
+    /* Rep invariant:
+     *   0 <= edges <= from.length == to.length == weight.length
+     *                 == firstSeen.length == lastSeen.length
+     *   for 0 <= e < edges:
+     *     0 <= from[e], to[e] < users.size(), from[e] != to[e]
+     *     weight[e] > 0, firstSeen[e] <= lastSeen[e]
+     *     no other edge has the same (from[e], to[e])
+     *     exactly one slot holds e + 1, found by probing from slot(from[e], to[e])
+     *   slots.length is a power of two and > 2 * edges
+     */
+
+    /**
+     * Record one piece of evidence that follower follows followee.
+     *
+     * @param follower
+     *            username of the follower.
+     * @param followee
+     *            username of the followee; case-insensitively different from follower.
+     * @param when
+     *            time of the evidence.
+     */
+    public void addEvidence(String follower, String followee, Instant when) {
+        final String f = Usernames.toLowerCase(follower);
+        final String g = Usernames.toLowerCase(followee);
+        if (f.equals(g)) {
+            throw new IllegalArgumentException("users can't follow themselves");
+        }
+        addEvidence(users.intern(f), users.intern(g), when.toEpochMilli());
+    }
+
+    /*
+     * Record evidence between interned users, follower != followee.
+     */
+    void addEvidence(int follower, int followee, long millis) {
+        if (follower == followee) {
+            throw new IllegalArgumentException("users can't follow themselves");
+        }
+        final int e = findOrAdd(follower, followee, millis);
+        weight[e]++;
+        firstSeen[e] = Math.min(firstSeen[e], millis);
+        lastSeen[e] = Math.max(lastSeen[e], millis);
+    }
+
+    private static int hash(int follower, int followee) {
+        long key = ((long) follower << 32) | (followee & 0xffffffffL);
+        // murmur3 finalizer
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return (int) key;
+    }
+
+    /*
+     * @return edge number of (follower, followee), or -1
+     */
+    private int find(int follower, int followee) {
+        final int mask = slots.length - 1;
+        for (int s = hash(follower, followee) & mask; slots[s] != 0; s = (s + 1) & mask) {
+            final int e = slots[s] - 1;
+            if (from[e] == follower && to[e] == followee) {
+                return e;
+            }
+        }
+        return -1;
+    }
+
+    private int findOrAdd(int follower, int followee, long millis) {
+        final int existing = find(follower, followee);
+        if (existing >= 0) {
+            return existing;
+        }
+        if (edges == from.length) {
+            final int capacity = edges * 2;
+            from = Arrays.copyOf(from, capacity);
+            to = Arrays.copyOf(to, capacity);
+            weight = Arrays.copyOf(weight, capacity);
+            firstSeen = Arrays.copyOf(firstSeen, capacity);
+            lastSeen = Arrays.copyOf(lastSeen, capacity);
+        }
+        final int e = edges++;
+        from[e] = follower;
+        to[e] = followee;
+        weight[e] = 0;
+        firstSeen[e] = millis;
+        lastSeen[e] = millis;
+        if (2 * edges >= slots.length) {
+            rehash(slots.length * 2);
+        } else {
+            insertSlot(e);
+        }
+        return e;
+    }
+
+    private void insertSlot(int e) {
+        final int mask = slots.length - 1;
+        int s = hash(from[e], to[e]) & mask;
+        while (slots[s] != 0) {
+            s = (s + 1) & mask;
+        }
+        slots[s] = e + 1;
+    }
+
+    private void rehash(int capacity) {
+        slots = new int[capacity];
+        for (int e = 0; e < edges; e++) {
+            insertSlot(e);
+        }
+    }
+
+    /**
+     * @return the users of this graph, which are exactly the users that
+     *         appear in some edge
+     */
+    public UserIndex users() {
+        return users;
+    }
+
+    /**
+     * @return number of distinct (follower, followee) edges
+     */
+    public int edgeCount() {
+        return edges;
+    }
+
+    /**
+     * @param follower
+     *            a username.
+     * @param followee
+     *            a username.
+     * @return the amount of evidence that follower follows followee; 0 if none
+     */
+    public int weight(String follower, String followee) {
+        final int e = edge(follower, followee);
+        return e < 0 ? 0 : weight[e];
+    }
+
+    /**
+     * @param follower
+     *            a username.
+     * @param followee
+     *            a username.
+     * @return time of the earliest evidence that follower follows followee,
+     *         or null if there is none
+     */
+    public Instant firstSeen(String follower, String followee) {
+        final int e = edge(follower, followee);
+        return e < 0 ? null : Instant.ofEpochMilli(firstSeen[e]);
+    }
+
+    /**
+     * @param follower
+     *            a username.
+     * @param followee
+     *            a username.
+     * @return time of the latest evidence that follower follows followee,
+     *         or null if there is none
+     */
+    public Instant lastSeen(String follower, String followee) {
+        final int e = edge(follower, followee);
+        return e < 0 ? null : Instant.ofEpochMilli(lastSeen[e]);
+    }
+
+    private int edge(String follower, String followee) {
+        final int f = users.id(Usernames.toLowerCase(follower));
+        final int g = users.id(Usernames.toLowerCase(followee));
+        return f < 0 || g < 0 ? -1 : find(f, g);
+    }
+
+    /**
+     * Visit every edge, in the order edges were first seen.
+     *
+     * @param visitor
+     *            receives the edges.
+     */
+    public void forEachEdge(EdgeVisitor visitor) {
+        for (int e = 0; e < edges; e++) {
+            visitor.edge(from[e], to[e], weight[e], firstSeen[e], lastSeen[e]);
+        }
+    }
+
+    /**
+     * @return for each user id, the total weight of the edges into that user
+     */
+    public long[] inStrengths() {
+        final long[] strength = new long[users.size()];
+        for (int e = 0; e < edges; e++) {
+            strength[to[e]] += weight[e];
+        }
+        return strength;
+    }
+
+    /**
+     * @return a new social network, as defined by SocialNetwork, with the
+     *         same edges as this graph and no weights
+     */
+    public Map<String, Set<String>> toFollowsGraph() {
+        final Map<String, Set<String>> followsGraph = new HashMap<>();
+        for (int e = 0; e < edges; e++) {
+            followsGraph.computeIfAbsent(users.name(from[e]), k -> new HashSet<>()).add(users.name(to[e]));
+        }
+        return followsGraph;
+    }
+}
@@ -0,0 +1,120 @@
+/* Copyright (c) 2007-2016 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package twitter;
+
+import static org.junit.Assert.*;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class ByteScannerTest {
+
+    /*
+     * Testing strategy
+     *
+     * indexOf, indexAll, isAscii
+     *  - same answers as a byte-at-a-time scan, on random text with random
+     *    ranges: shorter than 8 bytes, multiples of 8, unaligned ends
+     *  - big-endian and little-endian buffers, heap and direct
+     *  - delimiters ASCII and not; several in one 8-byte word; none
+     *  - indexAll: positions array fills up and the scan resumes
+     *
+     * TweetText.scanMentions of packed texts
+     *  - same mentions as scanning each text alone, including a username
+     *    at the end of one text followed by username characters at the
+     *    start of the next, and an empty text
+     */
+
+    @Test(expected=AssertionError.class)
+    public void testAssertionsEnabled() {
+        assert false; // make sure assertions are enabled with VM argument: -ea
+    }
+
+    private static ByteBuffer randomText(Random random, int length, boolean direct, ByteOrder order) {
+        final byte[] alphabet = "ab@ @@  xyzé".getBytes(StandardCharsets.UTF_8);
+        final ByteBuffer bytes = direct ? ByteBuffer.allocateDirect(length) : ByteBuffer.allocate(length);
+        bytes.order(order);
+        for (int i = 0; i < length; i++) {
+            bytes.put(i, alphabet[random.nextInt(alphabet.length)]);
+        }
+        return bytes;
+    }
+
+    @Test
+    public void testSameAsScalar() {
+        final Random random = new Random(6005);
+        final byte[] delimiters = { '@', ' ', 'q', (byte) 0xc3 };
+        for (ByteOrder order : Arrays.asList(ByteOrder.BIG_ENDIAN, ByteOrder.LITTLE_ENDIAN)) {
+            for (int trial = 0; trial < 2000; trial++) {
+                final ByteBuffer bytes = randomText(random, 64, trial % 2 == 0, order);
+                final int from = random.nextInt(40);
+                final int to = from + random.nextInt(64 - from + 1);
+                boolean ascii = true;
+                for (int i = from; i < to; i++) {
+                    ascii &= bytes.get(i) >= 0;
+                }
+                assertEquals(ascii, ByteScanner.isAscii(bytes, from, to));
+                for (byte delimiter : delimiters) {
+                    assertEquals(ByteScanner.indexOfScalar(bytes, from, to, delimiter),
+                            ByteScanner.indexOf(bytes, from, to, delimiter));
+                    final List<Integer> expected = new ArrayList<>();
+                    for (int i = from; i < to; i++) {
+                        if (bytes.get(i) == delimiter) {
+                            expected.add(i);
+                        }
+                    }
+                    final List<Integer> actual = new ArrayList<>();
+                    final int[] positions = new int[3];
+                    for (int start = from; ; ) {
+                        final int found = ByteScanner.indexAll(bytes, start, to, delimiter, positions);
+                        for (int k = 0; k < found; k++) {
+                            actual.add(positions[k]);
+                        }
+                        if (found < positions.length) {
+                            break;
+                        }
+                        start = positions[found - 1] + 1;
+                    }
+                    assertEquals(expected, actual);
+                }
+            }
+        }
+    }
+
+    private static List<String> mentions(ByteBuffer bytes, int[] bounds, int texts) {
+        final List<String> found = new ArrayList<>();
+        TweetText.scanMentions(bytes, bounds, texts, (buffer, start, end) -> {
+            final byte[] name = new byte[end - start];
+            buffer.get(start, name);
+            found.add(new String(name, StandardCharsets.US_ASCII));
+        });
+        return found;
+    }
+
+    @Test
+    public void testPackedMentions() {
+        final String[] texts = { "hi @alice and @bob", "", "carol@mit.edu @", "dave @@eve @frank", "-x @g" };
+        final StringBuilder packed = new StringBuilder();
+        final int[] bounds = new int[texts.length + 1];
+        final List<String> expected = new ArrayList<>();
+        for (int k = 0; k < texts.length; k++) {
+            packed.append(texts[k]);
+            bounds[k + 1] = packed.length();
+            final ByteBuffer alone = ByteBuffer.wrap(texts[k].getBytes(StandardCharsets.US_ASCII));
+            TweetText.scanMentions(alone, 0, alone.capacity(), (buffer, start, end) ->
+                    expected.add(new String(Arrays.copyOfRange(alone.array(), start, end), StandardCharsets.US_ASCII)));
+        }
+        assertEquals(Arrays.asList("alice", "bob", "eve", "frank", "g"), expected);
+        final ByteBuffer bytes = ByteBuffer.wrap(packed.toString().getBytes(StandardCharsets.US_ASCII));
+        assertEquals(expected, mentions(bytes, bounds, texts.length));
+        assertEquals(Arrays.asList(), mentions(bytes, new int[] { 5 }, 0));
+    }
+}
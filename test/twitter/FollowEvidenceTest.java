@@ -0,0 +1,126 @@
+/* Copyright (c) 2007-2016 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package twitter;
+
+import static org.junit.Assert.*;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Test;
+
+public class FollowEvidenceTest {
+
+    /*
+     * Testing strategy for SocialNetwork.guessFollowsGraph(tweets, evidence)
+     *
+     *  - evidence: MENTION only; RETWEET only; REPLY only; HASHTAG only; all
+     *  - retweet: "RT @user" prefix; "RT" elsewhere; plain mention
+     *  - reply: one leading mention; several leading mentions; mention after text
+     *  - hashtag: first user of a tag; later users; same user twice; case of tag;
+     *    more distinct users than the per-tag cap
+     *  - self evidence is never an edge
+     *
+     * Also covers TweetText.scan() mention boundaries against the
+     * Extract.getMentionedUsers() spec.
+     */
+
+    private static final Instant T = Instant.parse("2016-02-17T10:00:00Z");
+
+    @Test(expected=AssertionError.class)
+    public void testAssertionsEnabled() {
+        assert false; // make sure assertions are enabled with VM argument: -ea
+    }
+
+    @Test
+    public void testMentionOnlyMatchesDefault() {
+        List<Tweet> tweets = Arrays.asList(
+                tweet(1, "ernie", "RT @Bert: hi @elmo #fun"),
+                tweet(2, "bert", "@ernie ok #fun"));
+        assertEquals(SocialNetwork.guessFollowsGraph(tweets),
+                SocialNetwork.guessFollowsGraph(tweets, EnumSet.of(FollowEvidence.MENTION)));
+    }
+
+    @Test
+    public void testRetweetOnly() {
+        List<Tweet> tweets = Arrays.asList(
+                tweet(1, "ernie", "RT @Bert: hi @elmo"),
+                tweet(2, "grover", "not a RT @bert"));
+        Map<String, Set<String>> graph = SocialNetwork.guessFollowsGraph(tweets, EnumSet.of(FollowEvidence.RETWEET));
+        assertEquals(Collections.singletonMap("ernie", set("bert")), graph);
+    }
+
+    @Test
+    public void testReplyOnly() {
+        List<Tweet> tweets = Arrays.asList(
+                tweet(1, "ernie", "@Bert @elmo  sure, ask @grover"),
+                tweet(2, "bert", "hi @ernie"),
+                tweet(3, "elmo", "@ernie, thanks @bert"));
+        Map<String, Set<String>> graph = SocialNetwork.guessFollowsGraph(tweets, EnumSet.of(FollowEvidence.REPLY));
+        assertEquals(set("bert", "elmo"), graph.get("ernie"));
+        assertFalse("not a reply", graph.containsKey("bert"));
+        assertEquals("only the leading mention", set("ernie"), graph.get("elmo"));
+    }
+
+    @Test
+    public void testHashtagOnly() {
+        List<Tweet> tweets = Arrays.asList(
+                tweet(1, "ernie", "#Cookies are great"),
+                tweet(2, "bert", "I like #cookies"),
+                tweet(3, "ernie", "more #COOKIES"),
+                tweet(4, "elmo", "#cookies #cookies!"),
+                tweet(5, "grover", "no#cookies here"));
+        Map<String, Set<String>> graph = SocialNetwork.guessFollowsGraph(tweets, EnumSet.of(FollowEvidence.HASHTAG));
+        assertEquals(set("ernie"), graph.get("bert"));
+        assertEquals(set("bert"), graph.get("ernie"));
+        assertEquals(set("ernie", "bert"), graph.get("elmo"));
+        assertFalse("tag preceded by a letter", graph.containsKey("grover"));
+    }
+
+    @Test
+    public void testHashtagCapBoundsEdges() {
+        List<Tweet> tweets = new ArrayList<>();
+        int users = EvidenceScanner.DEFAULT_HASHTAG_CAP * 3;
+        for (int i = 0; i < users; i++) {
+            tweets.add(tweet(i, "user" + i, "#popular"));
+        }
+        Map<String, Set<String>> graph = SocialNetwork.guessFollowsGraph(tweets, EnumSet.of(FollowEvidence.HASHTAG));
+        Set<String> last = graph.get("user" + (users - 1));
+        assertEquals("bounded by cap", EvidenceScanner.DEFAULT_HASHTAG_CAP, last.size());
+        assertTrue("most recent adopter remembered", last.contains("user" + (users - 2)));
+        assertFalse("oldest adopter forgotten", last.contains("user0"));
+    }
+
+    @Test
+    public void testAllEvidenceNoSelfEdges() {
+        List<Tweet> tweets = Arrays.asList(
+                tweet(1, "Ernie", "RT @ernie: #tag"),
+                tweet(2, "ernie", "@ERNIE #tag"));
+        Map<String, Set<String>> graph = SocialNetwork.guessFollowsGraph(tweets, EnumSet.allOf(FollowEvidence.class));
+        assertTrue("expected no edges", graph.isEmpty());
+    }
+
+    @Test
+    public void testScanMentionBoundaries() {
+        List<String> found = new ArrayList<>();
+        TweetText.scan("@a x@b @c-d! mail@me.com @@e @ (@f) #g@h",
+                (text, start, end, flags) -> found.add(text.substring(start, end)));
+        assertEquals(Arrays.asList("a", "c-d", "e", "f"), found);
+    }
+
+    private static Tweet tweet(long id, String author, String text) {
+        return new Tweet(id, author, text, T);
+    }
+
+    private static Set<String> set(String... users) {
+        return new HashSet<>(Arrays.asList(users));
+    }
+}
@@ -0,0 +1,189 @@
+/* Copyright (c) 2007-2016 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package twitter;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+public class GraphFormatTest {
+
+    /*
+     * Testing strategy
+     *
+     * writeBinary, readBinary
+     *  - empty graph; user without out-edges; large random graph with ids
+     *    and gaps that need multi-byte varints; written through a file
+     *  - corrupt input: wrong magic, flipped byte, truncated
+     *
+     * writeEdgeList, readEdgeList
+     *  - round trip; same edges as the graph, in id order
+     *  - input with comments, blank lines, CRLF, runs of spaces and tabs,
+     *    mixed case, self-edge, duplicate edge
+     *  - line with one name, with three names
+     */
+
+    @Test(expected=AssertionError.class)
+    public void testAssertionsEnabled() {
+        assert false; // make sure assertions are enabled with VM argument: -ea
+    }
+
+    private static Map<String, Set<String>> graph(String... edges) {
+        final Map<String, Set<String>> graph = new HashMap<>();
+        for (String edge : edges) {
+            final String[] ends = edge.split(">", -1);
+            final Set<String> followees = graph.computeIfAbsent(ends[0], k -> new HashSet<>());
+            if (!ends[1].isEmpty()) {
+                followees.add(ends[1]);
+            }
+        }
+        return graph;
+    }
+
+    private static CompactGraph randomGraph(int vertices, int edges, long seed) {
+        final Random random = new Random(seed);
+        final Map<String, Set<String>> graph = new HashMap<>();
+        for (int e = 0; e < edges; e++) {
+            final int follower = random.nextInt(vertices);
+            final int followee = random.nextBoolean() ? random.nextInt(vertices) : random.nextInt(10);
+            graph.computeIfAbsent("user" + follower, k -> new HashSet<>()).add("user" + followee);
+        }
+        return CompactGraph.of(graph);
+    }
+
+    private static void assertSameGraph(CompactGraph expected, CompactGraph actual) {
+        assertEquals(expected.vertexCount(), actual.vertexCount());
+        assertEquals(expected.edgeCount(), actual.edgeCount());
+        for (int v = 0; v < expected.vertexCount(); v++) {
+            assertEquals(expected.users().name(v), actual.users().name(v));
+            assertArrayEquals(expected.neighbors(v), actual.neighbors(v));
+        }
+    }
+
+    private static byte[] binary(CompactGraph graph) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        GraphFormat.writeBinary(graph, Channels.newChannel(bytes));
+        return bytes.toByteArray();
+    }
+
+    private static CompactGraph readBinary(byte[] bytes) throws IOException {
+        return GraphFormat.readBinary(Channels.newChannel(new ByteArrayInputStream(bytes)));
+    }
+
+    @Test
+    public void testBinaryRoundTrip() throws IOException {
+        for (CompactGraph graph : Arrays.asList(
+                CompactGraph.of(Collections.emptyMap()),
+                CompactGraph.of(graph("ernie>bert", "bert>", "elmo>bert", "elmo>ernie")),
+                randomGraph(50000, 200000, 6005))) {
+            assertSameGraph(graph, readBinary(binary(graph)));
+        }
+    }
+
+    @Test
+    public void testBinaryFile() throws IOException {
+        final CompactGraph graph = randomGraph(1000, 5000, 1);
+        final Path file = Files.createTempFile("graph", ".twg");
+        try {
+            try (FileChannel out = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                GraphFormat.writeBinary(graph, out);
+            }
+            try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+                assertSameGraph(graph, GraphFormat.readBinary(in));
+            }
+            assertTrue("compact: " + Files.size(file), Files.size(file) < 4L * 5000);
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testBinaryCorrupt() throws IOException {
+        final byte[] good = binary(randomGraph(100, 300, 2));
+        final byte[] magic = good.clone();
+        magic[0] ^= 1;
+        final byte[] flipped = good.clone();
+        flipped[good.length / 2] ^= 0x10;
+        final byte[] truncated = Arrays.copyOf(good, good.length - 1);
+        for (byte[] bad : Arrays.asList(magic, flipped, truncated)) {
+            try {
+                readBinary(bad);
+                fail("expected IOException");
+            } catch (IOException expected) {
+                // ok
+            }
+        }
+        try {
+            readBinary(Arrays.copyOf(good, 20));
+            fail("expected EOFException");
+        } catch (EOFException expected) {
+            // ok
+        }
+    }
+
+    private static String edgeList(CompactGraph graph) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        GraphFormat.writeEdgeList(graph, Channels.newChannel(bytes));
+        return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static CompactGraph readEdgeList(String text) throws IOException {
+        return GraphFormat.readEdgeList(Channels.newChannel(
+                new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8))));
+    }
+
+    @Test
+    public void testEdgeListRoundTrip() throws IOException {
+        final CompactGraph graph = CompactGraph.of(graph("ernie>bert", "elmo>bert", "elmo>ernie"));
+        final String text = edgeList(graph);
+        assertEquals(3, text.split("\n").length);
+        final CompactGraph read = readEdgeList(text);
+        assertEquals(graph.edgeCount(), read.edgeCount());
+        for (int v = 0; v < graph.vertexCount(); v++) {
+            for (int w : graph.neighbors(v)) {
+                assertTrue(read.hasEdge(read.users().id(graph.users().name(v)), read.users().id(graph.users().name(w))));
+            }
+        }
+        final CompactGraph large = randomGraph(5000, 20000, 3);
+        assertEquals(large.edgeCount(), readEdgeList(edgeList(large)).edgeCount());
+    }
+
+    @Test
+    public void testEdgeListParsing() throws IOException {
+        final CompactGraph graph = readEdgeList(
+                "# a comment\n\nErnie\tBert\r\n  elmo   ERNIE \nelmo elmo\nernie bert\nbert\t\telmo");
+        assertEquals(3, graph.vertexCount());
+        assertEquals(3, graph.edgeCount());
+        final UserIndex users = graph.users();
+        assertTrue(graph.hasEdge(users.id("ernie"), users.id("bert")));
+        assertTrue(graph.hasEdge(users.id("elmo"), users.id("ernie")));
+        assertTrue(graph.hasEdge(users.id("bert"), users.id("elmo")));
+        for (String bad : Arrays.asList("ernie\n", "ernie bert elmo\n")) {
+            try {
+                readEdgeList(bad);
+                fail("expected IOException for " + bad);
+            } catch (IOException expected) {
+                // ok
+            }
+        }
+    }
+}
@@ -0,0 +1,127 @@
+/* Copyright (c) 2007-2016 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package twitter;
+
+import static org.junit.Assert.*;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class HeavyHittersTest {
+
+    /*
+     * Testing strategy
+     *
+     * CountMinSketch
+     *  - estimate of an absent value, a value added once and many times
+     *  - estimates never below the true count, and within epsilon * total
+     *
+     * HeavyHitters
+     *  - fewer distinct users than capacity; more
+     *  - case-insensitive; many evictions
+     *
+     * SocialNetwork.approximateInfluencers
+     *  - no tweets; self-mentions ignored
+     *  - skewed corpus: same leaders as the exact ranking
+     */
+
+    private static final Instant D1 = Instant.parse("2016-02-17T10:00:00Z");
+
+    @Test(expected=AssertionError.class)
+    public void testAssertionsEnabled() {
+        assert false; // make sure assertions are enabled with VM argument: -ea
+    }
+
+    private static long hash(String value) {
+        return Usernames.hash(value);
+    }
+
+    @Test
+    public void testCountMinBounds() {
+        final double epsilon = 0.01;
+        final CountMinSketch sketch = new CountMinSketch(epsilon, 0.01);
+        assertEquals(0, sketch.estimate(hash("nobody")));
+        final Random random = new Random(6005);
+        final int[] counts = new int[2000];
+        for (int i = 0; i < 50000; i++) {
+            final int value = (int) Math.min(counts.length - 1, Math.abs(random.nextGaussian()) * 200);
+            counts[value]++;
+            sketch.add(hash("u" + value), 1);
+        }
+        assertEquals(50000, sketch.total());
+        int outside = 0;
+        for (int v = 0; v < counts.length; v++) {
+            final long estimate = sketch.estimate(hash("u" + v));
+            assertTrue(estimate >= counts[v]);
+            if (estimate > counts[v] + epsilon * sketch.total()) {
+                outside++;
+            }
+        }
+        assertTrue("few estimates outside the bound: " + outside, outside <= counts.length / 50);
+    }
+
+    @Test
+    public void testFewUsers() {
+        final HeavyHitters hitters = new HeavyHitters(10, 0.01, 0.01);
+        hitters.add("bert");
+        hitters.add("Ernie");
+        hitters.add("ERNIE");
+        assertEquals(Arrays.asList("ernie", "bert"), hitters.top());
+        assertEquals(2, hitters.estimate("ernie"));
+        assertEquals(3, hitters.total());
+    }
+
+    @Test
+    public void testManyEvictions() {
+        final HeavyHitters hitters = new HeavyHitters(3, 0.001, 0.01);
+        for (int i = 0; i < 10000; i++) {
+            hitters.add("rare" + i);
+            if (i % 10 == 0) {
+                hitters.add("big");
+            }
+            if (i % 20 == 0) {
+                hitters.add("medium");
+            }
+            if (i % 40 == 0) {
+                hitters.add("small");
+            }
+        }
+        assertEquals(Arrays.asList("big", "medium", "small"), hitters.top());
+    }
+
+    @Test
+    public void testApproximateInfluencersEmpty() {
+        assertTrue(SocialNetwork.approximateInfluencers(Collections.emptyList(), 5).isEmpty());
+    }
+
+    @Test
+    public void testSelfMentionsIgnored() {
+        final List<Tweet> tweets = Arrays.asList(
+                new Tweet(1, "ernie", "@Ernie @ERNIE @ernie @bert", D1),
+                new Tweet(2, "bert", "@elmo @ernie", D1),
+                new Tweet(3, "elmo", "@ernie", D1));
+        assertEquals(Arrays.asList("ernie", "bert", "elmo"), SocialNetwork.approximateInfluencers(tweets, 3));
+    }
+
+    @Test
+    public void testMatchesExactRanking() {
+        // user k is mentioned about 1/k^1.5 as often as user 1
+        final Random random = new Random(6005);
+        final List<Tweet> tweets = new ArrayList<>();
+        for (int i = 0; i < 50000; i++) {
+            final int k = (int) Math.floor(Math.pow(1 - random.nextDouble(), -1 / 0.5));
+            tweets.add(new Tweet(i, "author" + random.nextInt(1000), "hey @user" + k, D1));
+        }
+        final List<String> exact = SocialNetwork.influencersByStrength(
+                SocialNetwork.guessWeightedFollowsGraph(tweets, EnumSet.of(FollowEvidence.MENTION)));
+        assertEquals(exact.subList(0, 5), SocialNetwork.approximateInfluencers(tweets, 20).subList(0, 5));
+    }
+}
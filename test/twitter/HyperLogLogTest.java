@@ -0,0 +1,120 @@
+/* Copyright (c) 2007-2016 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package twitter;
+
+import static org.junit.Assert.*;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+public class HyperLogLogTest {
+
+    /*
+     * Testing strategy
+     *
+     * HyperLogLog
+     *  - precision: min, default, max, out of range
+     *  - distinct values: 0, few (linear counting range), many
+     *  - duplicates added
+     *  - merge: disjoint and overlapping inputs; mismatched precision
+     *
+     * Extract.estimateMentionedUsers, Extract.sketchMentionedUsers
+     *  - no tweets; mentions differing only by case; chunks merged
+     */
+
+    private static final Instant D1 = Instant.parse("2016-02-17T10:00:00Z");
+
+    @Test(expected=AssertionError.class)
+    public void testAssertionsEnabled() {
+        assert false; // make sure assertions are enabled with VM argument: -ea
+    }
+
+    private static long hash(String value) {
+        return Usernames.hash(value);
+    }
+
+    @Test
+    public void testEmpty() {
+        assertEquals(0, new HyperLogLog().estimate());
+        assertEquals(0, new HyperLogLog(HyperLogLog.MIN_PRECISION).estimate());
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testPrecisionTooLarge() {
+        new HyperLogLog(HyperLogLog.MAX_PRECISION + 1);
+    }
+
+    @Test
+    public void testFewWithDuplicates() {
+        final HyperLogLog sketch = new HyperLogLog();
+        for (int repeat = 0; repeat < 3; repeat++) {
+            for (int i = 0; i < 100; i++) {
+                sketch.add(hash("user" + i));
+            }
+        }
+        assertEquals(100, sketch.estimate(), 3);
+    }
+
+    @Test
+    public void testManyWithinError() {
+        for (int precision : new int[] { HyperLogLog.DEFAULT_PRECISION, HyperLogLog.MAX_PRECISION }) {
+            final HyperLogLog sketch = new HyperLogLog(precision);
+            final int n = 1_000_000;
+            for (int i = 0; i < n; i++) {
+                sketch.add(hash("user" + i));
+            }
+            assertEquals(n, sketch.estimate(), 3 * sketch.standardError() * n);
+        }
+    }
+
+    @Test
+    public void testMerge() {
+        final HyperLogLog a = new HyperLogLog();
+        final HyperLogLog b = new HyperLogLog();
+        final HyperLogLog union = new HyperLogLog();
+        for (int i = 0; i < 60000; i++) {
+            (i < 40000 ? a : b).add(hash("user" + i));
+            if (i >= 20000 && i < 40000) {
+                b.add(hash("user" + i));
+            }
+            union.add(hash("user" + i));
+        }
+        a.merge(b);
+        assertEquals(union.estimate(), a.estimate());
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testMergeMismatchedPrecision() {
+        new HyperLogLog(10).merge(new HyperLogLog(11));
+    }
+
+    @Test
+    public void testEstimateMentionedUsers() {
+        assertEquals(0, Extract.estimateMentionedUsers(Collections.emptyList()));
+        final List<Tweet> tweets = Arrays.asList(
+                new Tweet(1, "ernie", "@Bert @bert @BERT and @elmo", D1),
+                new Tweet(2, "bert", "mail bitdiddle@mit.edu or @grover", D1));
+        assertEquals(3, Extract.estimateMentionedUsers(tweets));
+    }
+
+    @Test
+    public void testSketchChunks() {
+        final List<Tweet> tweets = new ArrayList<>();
+        for (int i = 0; i < 20000; i++) {
+            tweets.add(new Tweet(i, "ernie", "@u" + i + " @U" + (i / 2), D1));
+        }
+        final HyperLogLog first = new HyperLogLog();
+        final HyperLogLog second = new HyperLogLog();
+        Extract.sketchMentionedUsers(tweets.subList(0, 10000), first);
+        Extract.sketchMentionedUsers(tweets.subList(10000, 20000), second);
+        first.merge(second);
+        assertEquals(Extract.estimateMentionedUsers(tweets), first.estimate());
+        assertEquals(Extract.getMentionedUsers(tweets).size(), first.estimate(), 3 * first.standardError() * 20000);
+    }
+}
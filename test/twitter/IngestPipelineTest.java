@@ -0,0 +1,271 @@
+/* Copyright (c) 2007-2016 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package twitter;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+import javax.json.JsonException;
+
+import org.junit.Test;
+
+public class IngestPipelineTest {
+
+    /*
+     * Testing strategy
+     *
+     * ingest(in), then tweetCount(), timespan(), mentionedUsers(), graph()
+     *  - compression: none; gzip
+     *  - size: empty array; one tweet; many more tweets than the queue capacity
+     *  - threads per stage: 1; several
+     *  - text: mentions, self-mentions, escaped quotes and brackets in strings
+     *  - calls: one; several accumulating, with and without a deduplicator
+     *  - failures: not an array; malformed element; trailing comma; truncated
+     *  - results compared with TweetReader, Extract and SocialNetwork
+     *
+     * stats(stage), report()
+     *  - items per stage; queue depth bounded by the capacity
+     *
+     * constructor
+     *  - HASHTAG evidence rejected
+     *
+     * BoundedQueue
+     *  - full and empty; wrap-around; several producers and consumers
+     */
+
+    private static final String[] USERS = { "ernie", "Bert", "elmo", "GROVER", "oscar" };
+
+    @Test(expected=AssertionError.class)
+    public void testAssertionsEnabled() {
+        assert false; // make sure assertions are enabled with VM argument: -ea
+    }
+
+    @Test
+    public void testEmptyArray() throws IOException {
+        IngestPipeline pipeline = new IngestPipeline(1, 1);
+        assertEquals(0, pipeline.ingest(new ByteArrayInputStream(utf8(" [ ] \n"))));
+        assertEquals(0, pipeline.tweetCount());
+        assertEquals(0, pipeline.graph().edgeCount());
+        assertTrue(pipeline.mentionedUsers().isEmpty());
+    }
+
+    @Test
+    public void testOneTweetWithTrickyStrings() throws IOException {
+        String json = "[{\"id\":7,\"text\":\"a \\\"[quoted]\\\" {x}, @Bert \\\\\",\"created_at\":"
+                + "\"Wed Feb 17 10:00:00 +0000 2016\",\"user.screen_name\":\"ernie\"}]";
+        IngestPipeline pipeline = new IngestPipeline(2, 2);
+        assertEquals(1, pipeline.ingest(new ByteArrayInputStream(utf8(json))));
+        assertEquals(Collections.singleton("bert"), pipeline.mentionedUsers());
+        assertEquals(1, pipeline.graph().weight("ernie", "bert"));
+    }
+
+    @Test
+    public void testMatchesSerialAnalysis() throws IOException {
+        checkMatchesSerial(utf8(json(2000, 0)), 1, 1);
+        checkMatchesSerial(utf8(json(2000, 0)), 3, 2);
+    }
+
+    @Test
+    public void testGzip() throws IOException {
+        checkMatchesSerial(gzip(utf8(json(500, 0))), 2, 2);
+    }
+
+    @Test
+    public void testIngestAccumulatesAndDeduplicates() throws IOException {
+        IngestPipeline pipeline = new IngestPipeline(16, 2, 2,
+                EnumSet.of(FollowEvidence.MENTION), new TweetDeduplicator());
+        assertEquals(100, pipeline.ingest(new ByteArrayInputStream(utf8(json(100, 0)))));
+        // ids 50..149: the first half repeats
+        assertEquals(50, pipeline.ingest(new ByteArrayInputStream(utf8(json(100, 50)))));
+        assertEquals(150, pipeline.tweetCount());
+        assertEquals(50, pipeline.duplicateCount());
+
+        List<Tweet> all = TweetReader.readTweets(new ByteArrayInputStream(utf8(json(150, 0))));
+        assertEquals(Extract.getTimespan(all).getStart(), pipeline.timespan().getStart());
+        assertEquals(Extract.getTimespan(all).getEnd(), pipeline.timespan().getEnd());
+        assertEquals(SocialNetwork.guessFollowsGraph(all), pipeline.graph().toFollowsGraph());
+    }
+
+    @Test
+    public void testBackpressureBoundsQueues() throws IOException {
+        IngestPipeline pipeline = new IngestPipeline(2, 2, 1, EnumSet.of(FollowEvidence.MENTION), null);
+        assertEquals(2, pipeline.queueCapacity());
+        assertEquals(5000, pipeline.ingest(new ByteArrayInputStream(utf8(json(5000, 0)))));
+        for (IngestPipeline.Stage stage : IngestPipeline.Stage.values()) {
+            assertEquals(stage.toString(), 5000, pipeline.stats(stage).items());
+            assertTrue(stage.toString(), pipeline.stats(stage).maxQueueDepth() <= 2);
+            assertTrue(stage.toString(), pipeline.stats(stage).itemsPerSecond() > 0);
+        }
+        assertEquals(0, pipeline.stats(IngestPipeline.Stage.READ).maxQueueDepth());
+        assertTrue(pipeline.report().contains("AGGREGATE"));
+    }
+
+    @Test(expected=JsonException.class)
+    public void testNotAnArray() throws IOException {
+        new IngestPipeline(1, 1).ingest(new ByteArrayInputStream(utf8("{\"id\":1}")));
+    }
+
+    @Test
+    public void testMalformedElementStopsEveryStage() throws IOException {
+        String json = json(3000, 0);
+        json = json.substring(0, json.length() / 2) + "{\"id\":\"oops\"}," + json.substring(json.length() / 2 + 1);
+        IngestPipeline pipeline = new IngestPipeline(4, 2, 2, EnumSet.of(FollowEvidence.MENTION), null);
+        try {
+            pipeline.ingest(new ByteArrayInputStream(utf8(json)));
+            fail("expected an exception");
+        } catch (RuntimeException expected) {
+            // the JSON library reports the missing and mistyped fields
+        }
+        // the pipeline is still usable
+        assertEquals(10, pipeline.ingest(new ByteArrayInputStream(utf8(json(10, 0)))));
+    }
+
+    @Test(expected=JsonException.class)
+    public void testTrailingComma() throws IOException {
+        new IngestPipeline(1, 1).ingest(new ByteArrayInputStream(utf8(json(2, 0).replace("}\n]", "},\n]"))));
+    }
+
+    @Test(expected=JsonException.class)
+    public void testTruncated() throws IOException {
+        String json = json(20, 0);
+        new IngestPipeline(1, 1).ingest(new ByteArrayInputStream(utf8(json.substring(0, json.length() - 5))));
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testHashtagEvidenceRejected() {
+        new IngestPipeline(16, 1, 1, EnumSet.of(FollowEvidence.HASHTAG), null);
+    }
+
+    @Test
+    public void testBoundedQueueFullAndEmpty() {
+        BoundedQueue<Integer> queue = new BoundedQueue<>(3);
+        assertEquals(4, queue.capacity());
+        assertNull(queue.poll());
+        for (int lap = 0; lap < 3; lap++) {
+            for (int i = 0; i < 4; i++) {
+                assertTrue(queue.offer(lap * 10 + i));
+            }
+            assertFalse(queue.offer(99));
+            assertEquals(4, queue.size());
+            for (int i = 0; i < 4; i++) {
+                assertEquals(Integer.valueOf(lap * 10 + i), queue.poll());
+            }
+            assertNull(queue.poll());
+        }
+    }
+
+    @Test
+    public void testBoundedQueueManyProducersAndConsumers() throws InterruptedException {
+        final BoundedQueue<Integer> queue = new BoundedQueue<>(8);
+        final int producers = 3;
+        final int perProducer = 20_000;
+        final Set<Integer> taken = ConcurrentHashMap.newKeySet();
+        final AtomicInteger remaining = new AtomicInteger(producers * perProducer);
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            final int base = p * perProducer;
+            threads.add(new Thread(() -> {
+                for (int i = 0; i < perProducer; i++) {
+                    while (!queue.offer(base + i)) {
+                        Thread.yield();
+                    }
+                }
+            }));
+        }
+        for (int c = 0; c < 2; c++) {
+            threads.add(new Thread(() -> {
+                while (remaining.get() > 0) {
+                    Integer next = queue.poll();
+                    if (next == null) {
+                        Thread.yield();
+                    } else {
+                        assertTrue("taken twice: " + next, taken.add(next));
+                        remaining.decrementAndGet();
+                    }
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(producers * perProducer, taken.size());
+        assertNull(queue.poll());
+    }
+
+    private static void checkMatchesSerial(byte[] input, int parsers, int extractors) throws IOException {
+        List<Tweet> tweets = TweetReader.readTweets(new ByteArrayInputStream(input));
+        IngestPipeline pipeline = new IngestPipeline(8, parsers, extractors, EnumSet.of(FollowEvidence.MENTION), null);
+        assertEquals(tweets.size(), pipeline.ingest(new ByteArrayInputStream(input)));
+
+        assertEquals(tweets.size(), pipeline.tweetCount());
+        assertEquals(Extract.getTimespan(tweets).getStart(), pipeline.timespan().getStart());
+        assertEquals(Extract.getTimespan(tweets).getEnd(), pipeline.timespan().getEnd());
+        assertEquals(Extract.getMentionedUsers(tweets), pipeline.mentionedUsers());
+
+        WeightedFollowsGraph expected = SocialNetwork.guessWeightedFollowsGraph(tweets, EnumSet.of(FollowEvidence.MENTION));
+        WeightedFollowsGraph actual = pipeline.graph();
+        Map<String, Set<String>> followsGraph = expected.toFollowsGraph();
+        assertEquals(followsGraph, actual.toFollowsGraph());
+        assertEquals(expected.edgeCount(), actual.edgeCount());
+        for (Map.Entry<String, Set<String>> entry : followsGraph.entrySet()) {
+            for (String followee : entry.getValue()) {
+                String follower = entry.getKey();
+                assertEquals(expected.weight(follower, followee), actual.weight(follower, followee));
+                assertEquals(expected.firstSeen(follower, followee), actual.firstSeen(follower, followee));
+                assertEquals(expected.lastSeen(follower, followee), actual.lastSeen(follower, followee));
+            }
+        }
+    }
+
+    /*
+     * Tweets with ids from..from+count-1, whose authors mention other users,
+     * themselves, and nobody, in mixed case.
+     */
+    private static String json(int count, int from) {
+        StringBuilder json = new StringBuilder("[\n");
+        for (int i = from; i < from + count; i++) {
+            String author = USERS[i % USERS.length];
+            String mentioned = USERS[(i * 7 + 3) % USERS.length];
+            String text = i % 5 == 0 ? "no mentions, just [brackets] and {braces}"
+                    : "@" + mentioned + " says \\\"hi\\\" to @" + author.toUpperCase() + " and @" + USERS[i % 3];
+            if (i > from) {
+                json.append(",\n");
+            }
+            json.append("{\"id\":").append(i)
+                .append(",\"text\":\"").append(text)
+                .append("\",\"created_at\":\"Wed Feb 17 ").append(String.format("%02d:%02d:00", (i / 60) % 24, i % 60))
+                .append(" +0000 2016\",\"user.screen_name\":\"").append(author).append("\"}");
+        }
+        return json.append("\n]").toString();
+    }
+
+    private static byte[] utf8(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] gzip(byte[] data) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (OutputStream out = new GZIPOutputStream(bytes)) {
+            out.write(data);
+        }
+        return bytes.toByteArray();
+    }
+}
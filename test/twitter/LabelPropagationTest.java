@@ -0,0 +1,151 @@
+/* Copyright (c) 2007-2016 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package twitter;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Test;
+
+public class LabelPropagationTest {
+
+    /*
+     * Testing strategy
+     *
+     * LabelPropagation.detect(graph, maxIterations, seed), via
+     * SocialNetwork.detectCommunities where convenient
+     *  - graph: empty; isolated pair; two dense cliques joined by one edge;
+     *    edges in one direction only
+     *  - maxIterations: 0, small, large
+     *  - same seed twice gives the same partition
+     *  - same graph built in different insertion orders and map types
+     *    gives the same ids and partition
+     *
+     * Communities
+     *  - communityOf: known user, different case, unknown user
+     *  - sizes sum to the number of users; members agree with communityOf
+     */
+
+    @Test(expected=AssertionError.class)
+    public void testAssertionsEnabled() {
+        assert false; // make sure assertions are enabled with VM argument: -ea
+    }
+
+    private static void clique(Map<String, Set<String>> graph, String... users) {
+        for (String f : users) {
+            for (String g : users) {
+                if (!f.equals(g)) {
+                    graph.computeIfAbsent(f, k -> new HashSet<>()).add(g);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testEmpty() {
+        final Communities communities = SocialNetwork.detectCommunities(Collections.emptyMap(), 10);
+        assertEquals(0, communities.communityCount());
+        assertEquals(-1, communities.communityOf("ernie"));
+    }
+
+    @Test
+    public void testZeroIterations() {
+        final Map<String, Set<String>> graph = new HashMap<>();
+        clique(graph, "a", "b", "c");
+        final Communities communities = SocialNetwork.detectCommunities(graph, 0);
+        assertEquals(3, communities.communityCount());
+        assertEquals(0, communities.iterations());
+    }
+
+    @Test
+    public void testIndependentOfInsertionOrder() {
+        // a ring of triangles, where ties make the partition depend on ids
+        final List<String> users = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            users.add("user" + i);
+        }
+        final Map<String, Set<String>> forward = new LinkedHashMap<>();
+        final Map<String, Set<String>> backward = new HashMap<>(4);
+        for (int k = 0; k < 2; k++) {
+            final Map<String, Set<String>> graph = k == 0 ? forward : backward;
+            for (int n = 0; n < users.size(); n++) {
+                final int i = k == 0 ? n : users.size() - 1 - n;
+                final String user = k == 0 ? users.get(i) : users.get(i).toUpperCase();
+                graph.put(user, new HashSet<>(Arrays.asList(
+                        users.get((i + 1) % users.size()), users.get((i + 2) % users.size()))));
+            }
+        }
+        final CompactGraph a = CompactGraph.of(forward);
+        final CompactGraph b = CompactGraph.of(backward);
+        for (String user : users) {
+            assertEquals(a.users().id(user), b.users().id(user));
+        }
+        final Communities first = SocialNetwork.detectCommunities(forward, 10);
+        final Communities second = SocialNetwork.detectCommunities(backward, 10);
+        assertEquals(first.communityCount(), second.communityCount());
+        for (String user : users) {
+            assertEquals(first.communityOf(user), second.communityOf(user));
+        }
+    }
+
+    @Test
+    public void testTwoCliques() {
+        final Map<String, Set<String>> graph = new HashMap<>();
+        clique(graph, "a1", "a2", "a3", "a4", "a5");
+        clique(graph, "b1", "b2", "b3", "b4", "b5");
+        graph.get("a1").add("B1");
+        final Communities communities = SocialNetwork.detectCommunities(graph, 20);
+        assertEquals(2, communities.communityCount());
+        final int a = communities.communityOf("A3");
+        assertEquals(5, communities.size(a));
+        assertEquals(new HashSet<>(Arrays.asList("a1", "a2", "a3", "a4", "a5")),
+                new HashSet<>(communities.members(a)));
+        assertNotEquals(a, communities.communityOf("b1"));
+        assertTrue(communities.iterations() < 20);
+    }
+
+    @Test
+    public void testOneWayEdges() {
+        final Map<String, Set<String>> graph = new HashMap<>();
+        graph.put("ernie", new HashSet<>(Arrays.asList("bert")));
+        graph.put("elmo", new HashSet<>(Arrays.asList("grover")));
+        final Communities communities = SocialNetwork.detectCommunities(graph, 10);
+        assertEquals(2, communities.communityCount());
+        assertEquals(communities.communityOf("bert"), communities.communityOf("Ernie"));
+        assertNotEquals(communities.communityOf("bert"), communities.communityOf("elmo"));
+    }
+
+    @Test
+    public void testRandomGraphDeterministic() {
+        final java.util.Random random = new java.util.Random(6005);
+        final Map<String, Set<String>> graph = new HashMap<>();
+        for (int e = 0; e < 5000; e++) {
+            final int f = random.nextInt(1000);
+            final int g = random.nextInt(1000);
+            if (f != g) {
+                graph.computeIfAbsent("u" + f, k -> new HashSet<>()).add("u" + g);
+            }
+        }
+        final CompactGraph compact = CompactGraph.of(graph);
+        final Communities first = LabelPropagation.detect(compact, 10, 42);
+        final Communities second = LabelPropagation.detect(compact, 10, 42);
+        int total = 0;
+        for (int c = 0; c < first.communityCount(); c++) {
+            total += first.size(c);
+        }
+        assertEquals(compact.vertexCount(), total);
+        for (int v = 0; v < compact.vertexCount(); v++) {
+            assertEquals(first.communityOf(v), second.communityOf(v));
+        }
+    }
+}
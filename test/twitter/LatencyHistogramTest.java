@@ -0,0 +1,101 @@
+/* Copyright (c) 2007-2016 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package twitter;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+
+    /*
+     * Testing strategy
+     *
+     * record, getCount, getMean, getMax, getPercentile
+     *  - histogram: empty; one value; many values
+     *  - values: 0; negative; small (exact buckets); large (log-linear buckets)
+     *  - percentile: 0; 50; 99; 100; out of range
+     * reset
+     *  - after values were recorded
+     * bucket, highestValue
+     *  - every bucket boundary is contiguous and contains its values
+     */
+
+    @Test(expected=AssertionError.class)
+    public void testAssertionsEnabled() {
+        assert false; // make sure assertions are enabled with VM argument: -ea
+    }
+
+    @Test
+    public void testEmpty() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMax());
+        assertEquals(0, histogram.getPercentile(99));
+        assertEquals(0.0, histogram.getMean(), 0.0);
+    }
+
+    @Test
+    public void testSmallValuesExact() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int v = 1; v <= 10; v++) {
+            histogram.record(v);
+        }
+        assertEquals(10, histogram.getCount());
+        assertEquals(5, histogram.getPercentile(50));
+        assertEquals(10, histogram.getPercentile(100));
+        assertEquals(1, histogram.getPercentile(0));
+        assertEquals(5.5, histogram.getMean(), 1e-9);
+    }
+
+    @Test
+    public void testNegativeRecordedAsZero() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5);
+        assertEquals(1, histogram.getCount());
+        assertEquals(0, histogram.getMax());
+    }
+
+    @Test
+    public void testLargeValuesWithinRelativeError() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long v = 1; v <= 100_000; v++) {
+            histogram.record(v * 1000);
+        }
+        long p50 = histogram.getPercentile(50);
+        long p99 = histogram.getPercentile(99);
+        assertTrue("p50 within 4%: " + p50, Math.abs(p50 - 50_000_000L) <= 50_000_000L * 0.04);
+        assertTrue("p99 within 4%: " + p99, Math.abs(p99 - 99_000_000L) <= 99_000_000L * 0.04);
+        assertEquals(100_000_000L, histogram.getMax());
+        assertEquals(100_000_000L, histogram.getPercentile(100));
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testPercentileOutOfRange() {
+        new LatencyHistogram().getPercentile(101);
+    }
+
+    @Test
+    public void testReset() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(42);
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMax());
+        assertEquals(0, histogram.getPercentile(50));
+    }
+
+    @Test
+    public void testBucketsContiguous() {
+        long expectedLow = 0;
+        for (int b = 0; b < 1000; b++) {
+            long high = LatencyHistogram.highestValue(b);
+            assertEquals("low end of bucket " + b, b, LatencyHistogram.bucket(expectedLow));
+            assertEquals("high end of bucket " + b, b, LatencyHistogram.bucket(high));
+            expectedLow = high + 1;
+        }
+        assertEquals(LatencyHistogram.bucket(Long.MAX_VALUE),
+                LatencyHistogram.bucket(LatencyHistogram.highestValue(LatencyHistogram.bucket(Long.MAX_VALUE))));
+    }
+}
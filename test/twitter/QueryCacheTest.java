@@ -0,0 +1,142 @@
+/* Copyright (c) 2007-2016 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package twitter;
+
+import static org.junit.Assert.*;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class QueryCacheTest {
+
+    /*
+     * Testing strategy
+     *
+     * QueryCache.get
+     *  - miss then hit; different keys; newer version invalidates;
+     *    older version computed but not cached
+     *  - eviction: least recently used first, by weight; result heavier
+     *    than the bound not cached
+     *  - counters: hits, misses, evictions, invalidations, hit ratio
+     *
+     * CachedQueries
+     *  - equivalent queries share an entry (case, word order, duplicates)
+     *  - results equal to Filter/SocialNetwork results, before and after
+     *    an append; results unmodifiable
+     *  - appends: directly to the corpus; through append(); many of
+     *    different sizes, so the resident indexes merge chunks
+     *  - queries: timespan, mentionedUsers, writtenBy, mentioning,
+     *    inTimespan, containing
+     */
+
+    private static final Instant D1 = Instant.parse("2016-02-17T10:00:00Z");
+
+    @Test(expected=AssertionError.class)
+    public void testAssertionsEnabled() {
+        assert false; // make sure assertions are enabled with VM argument: -ea
+    }
+
+    @Test
+    public void testHitsMissesAndVersions() {
+        final QueryCache cache = new QueryCache(100);
+        final AtomicInteger computed = new AtomicInteger();
+        assertEquals("a1", cache.get("a", 1, () -> "a" + computed.incrementAndGet(), v -> 1));
+        assertEquals("a1", cache.get("a", 1, () -> "a" + computed.incrementAndGet(), v -> 1));
+        assertEquals("b2", cache.get("b", 1, () -> "b" + computed.incrementAndGet(), v -> 1));
+        assertEquals(2, cache.getEntries());
+        assertEquals("a3", cache.get("a", 2, () -> "a" + computed.incrementAndGet(), v -> 1));
+        assertEquals(2, cache.getInvalidations());
+        assertEquals("old version not served", "a4", cache.get("a", 1, () -> "a" + computed.incrementAndGet(), v -> 1));
+        assertEquals("nor cached", "a3", cache.get("a", 2, () -> "a" + computed.incrementAndGet(), v -> 1));
+        assertEquals(2, cache.getHits());
+        assertEquals(4, cache.getMisses());
+        assertEquals(1.0 / 3, cache.getHitRatio(), 1e-9);
+    }
+
+    @Test
+    public void testEvictionByWeight() {
+        final QueryCache cache = new QueryCache(10);
+        cache.get("a", 0, () -> "a", v -> 4);
+        cache.get("b", 0, () -> "b", v -> 4);
+        cache.get("a", 0, () -> "a", v -> 4); // a now most recent
+        cache.get("c", 0, () -> "c", v -> 4);
+        assertEquals(Arrays.asList("a", "c"), cache.keys());
+        assertEquals(8, cache.getWeight());
+        assertEquals(1, cache.getEvictions());
+        cache.get("huge", 0, () -> "huge", v -> 11);
+        assertEquals(Arrays.asList("a", "c"), cache.keys());
+        cache.clear();
+        assertEquals(0, cache.getWeight());
+    }
+
+    @Test
+    public void testCachedQueries() {
+        final TweetCorpus corpus = new TweetCorpus();
+        final CachedQueries queries = new CachedQueries(corpus, new QueryCache(1000));
+        final Tweet t1 = new Tweet(1, "alyssa", "rivest talk @bbitdiddle", D1);
+        final Tweet t2 = new Tweet(2, "bbitdiddle", "Obama rivest @alyssa", D1.plusSeconds(60));
+        corpus.append(Arrays.asList(t1));
+
+        assertEquals(Arrays.asList(t1), queries.containing(Arrays.asList("Rivest", "obama")));
+        assertEquals(Arrays.asList(t1), queries.containing(Arrays.asList("OBAMA", "rivest", "rivest")));
+        assertEquals(1, queries.cache().getHits());
+        assertEquals(Arrays.asList(t1), queries.writtenBy("ALYSSA"));
+        assertEquals(Arrays.asList("bbitdiddle", "alyssa"), queries.influencers());
+
+        corpus.append(Collections.emptyList());
+        assertEquals(1, corpus.version());
+        corpus.append(Arrays.asList(t2));
+        final List<Tweet> both = Arrays.asList(t1, t2);
+        assertEquals(both, queries.containing(Arrays.asList("rivest")));
+        assertEquals(Arrays.asList(t2), queries.inTimespan(new Timespan(D1.plusSeconds(1), D1.plusSeconds(60))));
+        assertEquals(SocialNetwork.influencers(SocialNetwork.guessFollowsGraph(both)), queries.influencers());
+        assertEquals(3, queries.cache().getInvalidations());
+    }
+
+    @Test
+    public void testManyAppendsMatchFilter() {
+        final TweetCorpus corpus = new TweetCorpus();
+        final CachedQueries queries = new CachedQueries(corpus, new QueryCache(1_000_000));
+        final String[] users = { "alyssa", "Bbitdiddle", "ernie", "ELMO" };
+        final List<Tweet> all = new ArrayList<>();
+        for (int batch = 0; batch < 40; batch++) {
+            final List<Tweet> next = new ArrayList<>();
+            for (int i = 0; i < (batch * 7) % 30; i++) {
+                final int id = all.size() + next.size();
+                next.add(new Tweet(id, users[id % users.length],
+                        "rivest @" + users[(id * 3 + 1) % users.length] + (id % 5 == 0 ? " talk" : ""),
+                        D1.plusSeconds((id * 37) % 1000)));
+            }
+            // half the batches go through append(), half straight to the corpus
+            if (batch % 2 == 0) {
+                assertEquals(corpus.version() + (next.isEmpty() ? 0 : 1), queries.append(next));
+            } else {
+                corpus.append(next);
+            }
+            all.addAll(next);
+
+            final Timespan span = new Timespan(D1.plusSeconds(100), D1.plusSeconds(400));
+            assertEquals(Extract.getTimespan(all).getStart(), queries.timespan().getStart());
+            assertEquals(Extract.getTimespan(all).getEnd(), queries.timespan().getEnd());
+            assertEquals(Extract.getMentionedUsers(all), queries.mentionedUsers());
+            assertEquals(Filter.writtenBy(all, "ELMO"), queries.writtenBy("elmo"));
+            assertEquals(Filter.mentioning(all, "ernie"), queries.mentioning("Ernie"));
+            assertEquals(Filter.inTimespan(all, span), queries.inTimespan(span));
+            assertEquals(Filter.containing(all, Arrays.asList("talk")), queries.containing(Arrays.asList("TALK")));
+        }
+    }
+
+    @Test(expected=UnsupportedOperationException.class)
+    public void testResultsUnmodifiable() {
+        final TweetCorpus corpus = new TweetCorpus();
+        corpus.append(Arrays.asList(new Tweet(1, "alyssa", "hi", D1)));
+        new CachedQueries(corpus, new QueryCache(10)).writtenBy("alyssa").clear();
+    }
+}
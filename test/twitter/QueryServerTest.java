@@ -0,0 +1,156 @@
+/* Copyright (c) 2007-2016 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package twitter;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
+
+import javax.json.Json;
+import javax.json.JsonObject;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class QueryServerTest {
+
+    /*
+     * Testing strategy
+     *
+     * endpoints: /timespan, /mentions, /tweets by author, mention, words
+     *   and timespan, /influencers, /metrics, POST /tweets
+     * parameters: absent, limit smaller than result, malformed
+     * status: 200, 400, 404, 405
+     * corpus changed by POST: later queries see the new tweets
+     * invalid POST: bad author, text too long, corrupt gzip body; each gets
+     *   400, is counted, and leaves the corpus unchanged
+     */
+
+    private static final Instant D1 = Instant.parse("2016-02-17T10:00:00Z");
+
+    private final HttpClient client = HttpClient.newHttpClient();
+    private QueryServer server;
+
+    @Test(expected=AssertionError.class)
+    public void testAssertionsEnabled() {
+        assert false; // make sure assertions are enabled with VM argument: -ea
+    }
+
+    @Before
+    public void startServer() throws IOException {
+        final TweetCorpus corpus = new TweetCorpus();
+        corpus.append(Arrays.asList(
+                new Tweet(1, "alyssa", "rivest talk @bbitdiddle", D1),
+                new Tweet(2, "bbitdiddle", "Rivest talk in 30 minutes @alyssa @ernie", D1.plusSeconds(60)),
+                new Tweet(3, "ernie", "@alyssa hi", D1.plusSeconds(120))));
+        server = new QueryServer(new CachedQueries(corpus, new QueryCache(1000)), new InetSocketAddress("localhost", 0));
+        server.start();
+    }
+
+    @After
+    public void stopServer() {
+        server.stop(0);
+    }
+
+    private HttpResponse<String> send(HttpRequest.Builder request) throws IOException, InterruptedException {
+        return client.send(request.build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private HttpRequest.Builder request(String pathAndQuery) {
+        return HttpRequest.newBuilder(URI.create("http://localhost:" + server.port() + pathAndQuery));
+    }
+
+    private JsonObject get(String pathAndQuery, int expectedStatus) throws IOException, InterruptedException {
+        final HttpResponse<String> response = send(request(pathAndQuery));
+        assertEquals(response.body(), expectedStatus, response.statusCode());
+        return Json.createReader(new StringReader(response.body())).readObject();
+    }
+
+    @Test
+    public void testTimespanAndMentions() throws Exception {
+        final JsonObject span = get("/timespan", 200);
+        assertEquals(D1.toString(), span.getString("start"));
+        assertEquals(D1.plusSeconds(120).toString(), span.getString("end"));
+        final JsonObject mentions = get("/mentions", 200);
+        assertEquals(3, mentions.getInt("count"));
+        assertEquals(Json.createArrayBuilder().add("alyssa").add("bbitdiddle").add("ernie").build(),
+                mentions.getJsonArray("users"));
+    }
+
+    @Test
+    public void testTweets() throws Exception {
+        final JsonObject byAuthor = get("/tweets?author=ALYSSA", 200);
+        assertEquals(1, byAuthor.getInt("count"));
+        assertEquals(1, byAuthor.getJsonArray("tweets").getJsonObject(0).getJsonNumber("id").longValue());
+        final JsonObject byWords = get("/tweets?words=rivest+nothing&limit=1", 200);
+        assertEquals(2, byWords.getInt("count"));
+        assertEquals(1, byWords.getJsonArray("tweets").size());
+        final JsonObject inSpan = get("/tweets?start=" + D1.plusSeconds(1) + "&end=" + D1.plusSeconds(120), 200);
+        assertEquals(2, inSpan.getInt("count"));
+        final JsonObject mentioning = get("/tweets?mentioning=Alyssa", 200);
+        assertEquals(2, mentioning.getInt("count"));
+        assertEquals(2, mentioning.getJsonArray("tweets").getJsonObject(0).getJsonNumber("id").longValue());
+        assertEquals(0, get("/tweets?mentioning=nobody", 200).getInt("count"));
+    }
+
+    @Test
+    public void testInfluencers() throws Exception {
+        assertEquals(Json.createArrayBuilder().add("alyssa").add("bbitdiddle").build(),
+                get("/influencers?k=2", 200).getJsonArray("influencers"));
+    }
+
+    @Test
+    public void testErrors() throws Exception {
+        assertTrue(get("/tweets", 400).containsKey("error"));
+        get("/tweets?start=yesterday&end=today", 400);
+        get("/influencers?k=many", 400);
+        get("/tweets?mentioning=not+a+username", 400);
+        get("/timespan/extra", 404);
+        assertEquals(405, send(request("/mentions").DELETE()).statusCode());
+    }
+
+    @Test
+    public void testPostAndMetrics() throws Exception {
+        final String json = "[{\"id\":4,\"text\":\"@ernie rivest\",\"created_at\":\"Wed Feb 17 10:05:00 +0000 2016\","
+                + "\"user.screen_name\":\"elmo\"}]";
+        assertEquals(2, get("/tweets?words=rivest", 200).getInt("count"));
+        final HttpResponse<String> posted = send(request("/tweets").POST(HttpRequest.BodyPublishers.ofString(json)));
+        assertEquals(200, posted.statusCode());
+        assertEquals(3, get("/tweets?words=rivest", 200).getInt("count"));
+        assertEquals(2, get("/tweets?mentioning=ernie", 200).getInt("count"));
+        assertEquals(400, send(request("/tweets").POST(HttpRequest.BodyPublishers.ofString("[{"))).statusCode());
+
+        final JsonObject metrics = get("/metrics", 200);
+        assertEquals(5, metrics.getJsonObject("endpoints").getJsonObject("/tweets").getInt("requests"));
+        assertEquals(4, metrics.getInt("tweets"));
+        assertEquals(5, server.latency("/tweets").getCount());
+    }
+
+    @Test
+    public void testPostInvalidTweets() throws Exception {
+        final String badAuthor = "[{\"id\":5,\"text\":\"hi\",\"created_at\":\"Wed Feb 17 10:05:00 +0000 2016\","
+                + "\"user.screen_name\":\"not a username!\"}]";
+        final String longText = badAuthor.replace("not a username!", "elmo").replace("\"hi\"",
+                "\"" + String.join("", Collections.nCopies(141, "x")) + "\"");
+        // gzip magic followed by garbage
+        final byte[] corrupt = { 0x1f, (byte) 0x8b, 8, 0, 0, 0, 0, 0, 0, 0, 1, 2, 3, 4, 5 };
+        assertEquals(400, send(request("/tweets").POST(HttpRequest.BodyPublishers.ofString(badAuthor))).statusCode());
+        assertEquals(400, send(request("/tweets").POST(HttpRequest.BodyPublishers.ofString(longText))).statusCode());
+        assertEquals(400, send(request("/tweets").POST(HttpRequest.BodyPublishers.ofByteArray(corrupt))).statusCode());
+
+        final JsonObject metrics = get("/metrics", 200);
+        assertEquals(3, metrics.getInt("tweets"));
+        assertEquals(3, server.latency("/tweets").getCount());
+    }
+}
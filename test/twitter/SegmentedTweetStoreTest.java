@@ -0,0 +1,220 @@
+/* Copyright (c) 2007-2016 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package twitter;
+
+import static org.junit.Assert.*;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+public class SegmentedTweetStoreTest {
+
+    /*
+     * Testing strategy
+     *
+     * append
+     *  - empty store; tweets in one window; tweets spanning many windows,
+     *    in order and shuffled within a batch
+     *  - latest window stays open until a later tweet or seal()
+     *  - late tweet for a sealed window
+     *
+     * inTimespan, Filter.inTimespan, Extract.getTimespan
+     *  - same tweets as the scan over a list, in timestamp order
+     *  - timespan inside one segment, across segments, outside all
+     *  - segments outside the timespan are not visited
+     *  - concurrent with appends that seal windows: every tweet stored
+     *    before the query started is returned
+     *
+     * compact
+     *  - nothing to merge; overlapping segments; small adjacent segments up
+     *    to the target and no further
+     *  - in the background, while appending
+     */
+
+    private static final Instant D1 = Instant.parse("2016-02-17T10:00:00Z");
+    private static final Duration HOUR = Duration.ofHours(1);
+
+    @Test(expected=AssertionError.class)
+    public void testAssertionsEnabled() {
+        assert false; // make sure assertions are enabled with VM argument: -ea
+    }
+
+    private static Tweet tweet(long id, Instant when) {
+        return new Tweet(id, "author" + (id % 5), "text " + id, when);
+    }
+
+    /*
+     * count tweets, one every 10 minutes from D1
+     */
+    private static List<Tweet> tweets(int count) {
+        final List<Tweet> tweets = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            tweets.add(tweet(i, D1.plus(Duration.ofMinutes(10 * i))));
+        }
+        return tweets;
+    }
+
+    private static List<Tweet> sorted(List<Tweet> tweets) {
+        final List<Tweet> copy = new ArrayList<>(tweets);
+        copy.sort(Comparator.comparing(Tweet::getTimestamp));
+        return copy;
+    }
+
+    @Test
+    public void testEmpty() {
+        final SegmentedTweetStore store = new SegmentedTweetStore();
+        assertEquals(0, store.size());
+        assertEquals(0, store.segmentCount());
+        assertEquals(Collections.emptyList(), store.tweets());
+        assertEquals(Instant.EPOCH, Extract.getTimespan(store).getStart());
+        assertEquals(Collections.emptyList(), Filter.inTimespan(store, new Timespan(D1, D1.plus(HOUR))));
+        assertEquals(0, store.compact());
+    }
+
+    @Test
+    public void testSealing() {
+        final SegmentedTweetStore store = new SegmentedTweetStore(HOUR, 1000);
+        store.append(tweets(6));
+        assertEquals("one window, still open", 0, store.segmentCount());
+        assertEquals(6, store.size());
+        store.append(Arrays.asList(tweet(6, D1.plus(HOUR))));
+        assertEquals(1, store.segmentCount());
+        assertEquals(7, store.size());
+        store.seal();
+        assertEquals(2, store.segmentCount());
+        assertEquals(sorted(tweets(7)), store.tweets());
+    }
+
+    @Test
+    public void testSameAsScan() {
+        final List<Tweet> tweets = tweets(100);
+        Collections.shuffle(tweets, new Random(6005));
+        final SegmentedTweetStore store = new SegmentedTweetStore(HOUR, 1000);
+        store.append(tweets.subList(0, 50));
+        store.append(tweets.subList(50, 100));
+        assertEquals(100, store.size());
+        assertEquals(Extract.getTimespan(tweets), Extract.getTimespan(store));
+        for (Timespan timespan : Arrays.asList(
+                new Timespan(D1, D1.plus(Duration.ofMinutes(20))),
+                new Timespan(D1.plus(Duration.ofMinutes(55)), D1.plus(Duration.ofHours(7))),
+                new Timespan(D1.minus(HOUR), D1.plus(Duration.ofDays(2))),
+                new Timespan(D1.plus(Duration.ofDays(3)), D1.plus(Duration.ofDays(4))))) {
+            assertEquals(sorted(Filter.inTimespan(tweets, timespan)), Filter.inTimespan(store, timespan));
+        }
+    }
+
+    @Test
+    public void testPruning() {
+        final SegmentedTweetStore store = new SegmentedTweetStore(HOUR, 1);
+        store.append(tweets(60));
+        store.seal();
+        assertEquals(10, store.segmentCount());
+        final int[] visited = new int[1];
+        final List<Tweet> found = store.inTimespan(D1.plus(Duration.ofMinutes(130)),
+                D1.plus(Duration.ofMinutes(200)), visited);
+        assertEquals(8, found.size());
+        assertEquals(2, visited[0]);
+        store.inTimespan(D1.plus(Duration.ofDays(1)), D1.plus(Duration.ofDays(2)), visited);
+        assertEquals(0, visited[0]);
+    }
+
+    @Test
+    public void testLateTweetAndCompaction() {
+        final SegmentedTweetStore store = new SegmentedTweetStore(HOUR, 1);
+        store.append(tweets(30));
+        final Tweet late = tweet(99, D1.plus(Duration.ofMinutes(5)));
+        store.append(Arrays.asList(late));
+        store.seal();
+        assertEquals("5 windows plus the late tweet", 6, store.segmentCount());
+        final List<Tweet> all = new ArrayList<>(tweets(30));
+        all.add(late);
+        assertEquals(sorted(all), store.tweets());
+
+        assertEquals("only the overlapping segments merge", 1, store.compact());
+        assertEquals(5, store.segmentCount());
+        assertEquals(sorted(all), store.tweets());
+        assertEquals(0, store.compact());
+    }
+
+    @Test
+    public void testCompactionTarget() {
+        final SegmentedTweetStore store = new SegmentedTweetStore(HOUR, 12);
+        store.append(tweets(60));
+        store.seal();
+        assertEquals(10, store.segmentCount());
+        assertEquals(5, store.compact());
+        assertEquals(5, store.segmentCount());
+        assertEquals(tweets(60), store.tweets());
+        final int[] visited = new int[1];
+        assertEquals(6, store.inTimespan(D1, D1.plus(Duration.ofMinutes(50)), visited).size());
+        assertEquals(1, visited[0]);
+    }
+
+    @Test
+    public void testBackgroundCompaction() throws InterruptedException {
+        final SegmentedTweetStore store = new SegmentedTweetStore(Duration.ofMinutes(10), 1 << 20);
+        final ScheduledFuture<?> compaction = store.startCompaction(1);
+        final List<Tweet> tweets = tweets(500);
+        try {
+            for (int i = 0; i < tweets.size(); i += 10) {
+                store.append(tweets.subList(i, i + 10));
+                Thread.sleep(1);
+            }
+        } finally {
+            compaction.cancel(false);
+        }
+        store.seal();
+        store.compact();
+        assertEquals(1, store.segmentCount());
+        assertEquals(tweets, store.tweets());
+    }
+
+    @Test
+    public void testQueriesSeeTweetsStoredBeforeThemDuringSealing() throws InterruptedException {
+        // 1ms windows: nearly every append seals the previous window
+        final SegmentedTweetStore store = new SegmentedTweetStore(Duration.ofMillis(1), 1 << 20);
+        final int count = 20_000;
+        final AtomicLong stored = new AtomicLong(-1);
+        final Thread writer = new Thread(() -> {
+            for (int i = 0; i < count; i++) {
+                store.append(Collections.singletonList(tweet(i, D1.plusMillis(i))));
+                stored.set(i);
+            }
+        });
+        final List<String> problems = new ArrayList<>();
+        writer.start();
+        while (writer.isAlive()) {
+            final long before = stored.get();
+            final BitSet ids = new BitSet();
+            for (Tweet tweet : store.tweets()) {
+                ids.set((int) tweet.getId());
+            }
+            final int missing = ids.nextClearBit(0);
+            if (missing <= before) {
+                problems.add("tweet " + missing + " stored before the query but not returned");
+            }
+            final Timespan span = store.timespan();
+            if (before >= 0 && span.getEnd().isBefore(D1.plusMillis(before))) {
+                problems.add("timespan ends at " + span.getEnd() + " before stored tweet " + before);
+            }
+            if (!problems.isEmpty()) {
+                break;
+            }
+        }
+        writer.join();
+        assertEquals(Collections.emptyList(), problems);
+        assertEquals(count, store.size());
+    }
+}
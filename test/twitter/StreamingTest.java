@@ -0,0 +1,134 @@
+/* Copyright (c) 2007-2016 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package twitter;
+
+import static org.junit.Assert.*;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.Test;
+
+public class StreamingTest {
+
+    /*
+     * Testing strategy
+     *
+     * Iterator overloads of Extract and SocialNetwork
+     *  - empty input; same result as the List overload on a generated corpus
+     *  - input far larger than would be kept in memory, made one tweet at a
+     *    time: getTimespan, estimateMentionedUsers, approximateInfluencers
+     *
+     * Stream overloads of Filter
+     *  - same tweets, in the same order, as the List overload
+     *  - lazy: an infinite stream with a short-circuiting terminal operation
+     *  - parallel stream, mentioning
+     */
+
+    private static final Instant D1 = Instant.parse("2016-02-17T10:00:00Z");
+
+    @Test(expected=AssertionError.class)
+    public void testAssertionsEnabled() {
+        assert false; // make sure assertions are enabled with VM argument: -ea
+    }
+
+    /*
+     * count tweets made on demand, one a second from D1, each by one of 100
+     * authors mentioning another; mentions of user0 are the most frequent
+     */
+    private static Iterator<Tweet> generated(long count) {
+        return new Iterator<Tweet>() {
+            private long next = 0;
+
+            @Override public boolean hasNext() {
+                return next < count;
+            }
+
+            @Override public Tweet next() {
+                if (next == count) {
+                    throw new NoSuchElementException();
+                }
+                final long i = next++;
+                final String text = "hi @user" + (i % 3 == 0 ? 0 : (i * 7) % 100) + " and Obama";
+                return new Tweet(i, "user" + (1 + i % 99), text, D1.plusSeconds(i));
+            }
+        };
+    }
+
+    private static final List<Tweet> CORPUS = new TweetGenerator(6005, 200).tweets(5000);
+
+    @Test
+    public void testEmpty() {
+        assertEquals(new Timespan(Instant.EPOCH, Instant.EPOCH),
+                Extract.getTimespan(Collections.<Tweet>emptyIterator()));
+        assertEquals(Collections.emptySet(), Extract.getMentionedUsers(Collections.<Tweet>emptyIterator()));
+        assertEquals(0, Extract.estimateMentionedUsers(Collections.<Tweet>emptyIterator()));
+        assertTrue(SocialNetwork.guessFollowsGraph(Collections.<Tweet>emptyIterator(),
+                EnumSet.of(FollowEvidence.MENTION)).isEmpty());
+        assertEquals(Collections.emptyList(),
+                SocialNetwork.approximateInfluencers(Collections.<Tweet>emptyIterator(), 10));
+    }
+
+    @Test
+    public void testSameAsList() {
+        assertEquals(Extract.getTimespan(CORPUS), Extract.getTimespan(CORPUS.iterator()));
+        assertEquals(Extract.getMentionedUsers(CORPUS), Extract.getMentionedUsers(CORPUS.iterator()));
+        assertEquals(Extract.estimateMentionedUsers(CORPUS), Extract.estimateMentionedUsers(CORPUS.iterator()));
+        assertEquals(SocialNetwork.guessFollowsGraph(CORPUS, EnumSet.allOf(FollowEvidence.class)),
+                SocialNetwork.guessFollowsGraph(CORPUS.iterator(), EnumSet.allOf(FollowEvidence.class)));
+        assertEquals(SocialNetwork.guessWeightedFollowsGraph(CORPUS, EnumSet.of(FollowEvidence.MENTION)).edgeCount(),
+                SocialNetwork.guessWeightedFollowsGraph(CORPUS.iterator(), EnumSet.of(FollowEvidence.MENTION)).edgeCount());
+        assertEquals(SocialNetwork.approximateInfluencers(CORPUS, 5),
+                SocialNetwork.approximateInfluencers(CORPUS.iterator(), 5));
+    }
+
+    @Test
+    public void testLargeInput() {
+        final long count = 2_000_000;
+        assertEquals(new Timespan(D1, D1.plusSeconds(count - 1)), Extract.getTimespan(generated(count)));
+        final long estimate = Extract.estimateMentionedUsers(generated(count));
+        assertTrue("estimate " + estimate, estimate >= 95 && estimate <= 105);
+        assertEquals("user0", SocialNetwork.approximateInfluencers(generated(count), 3).get(0));
+    }
+
+    @Test
+    public void testFiltersSameAsList() {
+        final String author = CORPUS.get(0).getAuthor();
+        final Timespan span = new Timespan(CORPUS.get(100).getTimestamp(),
+                CORPUS.get(100).getTimestamp().plus(Duration.ofMinutes(30)));
+        final List<String> words = Arrays.asList("rivest", "OBAMA");
+        final String mentioned = Extract.getMentionedUsers(CORPUS).iterator().next();
+        assertEquals(Filter.writtenBy(CORPUS, author),
+                Filter.writtenBy(CORPUS.stream(), author).collect(Collectors.toList()));
+        assertEquals(Filter.inTimespan(CORPUS, span),
+                Filter.inTimespan(CORPUS.stream(), span).collect(Collectors.toList()));
+        assertEquals(Filter.containing(CORPUS, words),
+                Filter.containing(CORPUS.stream(), words).collect(Collectors.toList()));
+        assertEquals(Filter.mentioning(CORPUS, mentioned),
+                Filter.mentioning(CORPUS.stream(), mentioned).collect(Collectors.toList()));
+        assertEquals(Filter.mentioning(CORPUS, mentioned),
+                Filter.mentioning(CORPUS.parallelStream(), mentioned).collect(Collectors.toList()));
+    }
+
+    @Test
+    public void testFiltersLazy() {
+        final Iterator<Tweet> endless = generated(Long.MAX_VALUE);
+        final Stream<Tweet> tweets = Stream.generate(endless::next);
+        final List<Tweet> found = Filter.mentioning(Filter.writtenBy(tweets, "USER5"), "user0")
+                .limit(3).collect(Collectors.toList());
+        assertEquals(3, found.size());
+        for (Tweet tweet : found) {
+            assertEquals("user5", tweet.getAuthor());
+            assertTrue(tweet.getText().startsWith("hi @user0 "));
+        }
+    }
+}
@@ -0,0 +1,125 @@
+/* Copyright (c) 2007-2016 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package twitter;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Test;
+
+public class TriadicClosureTest {
+
+    /*
+     * Testing strategy
+     *
+     * CompactGraph.of(followsGraph)
+     *  - empty graph; mixed-case duplicates and self-edges; user only followed
+     *
+     * TriadicClosure.suggest(graph, topN, hubCap)
+     *  - no two-hop paths; candidate already followed; path back to self
+     *  - candidates ranked by number of paths, ties alphabetical
+     *  - topN smaller than, equal to, larger than number of candidates
+     *  - intermediary out-degree below, at, above hubCap
+     *  - large random graph: same result as a brute-force count
+     */
+
+    @Test(expected=AssertionError.class)
+    public void testAssertionsEnabled() {
+        assert false; // make sure assertions are enabled with VM argument: -ea
+    }
+
+    private static Map<String, Set<String>> graph(String... edges) {
+        final Map<String, Set<String>> graph = new HashMap<>();
+        for (String edge : edges) {
+            final String[] ends = edge.split(">");
+            graph.computeIfAbsent(ends[0], k -> new HashSet<>()).add(ends[1]);
+        }
+        return graph;
+    }
+
+    @Test
+    public void testCompactEmpty() {
+        final CompactGraph compact = CompactGraph.of(Collections.emptyMap());
+        assertEquals(0, compact.vertexCount());
+        assertEquals(0, compact.edgeCount());
+        assertTrue(TriadicClosure.suggest(compact, 3, 10).isEmpty());
+    }
+
+    @Test
+    public void testCompactCaseAndSelfEdges() {
+        final CompactGraph compact = CompactGraph.of(graph("ernie>Bert", "ernie>bert", "Ernie>ERNIE", "bert>elmo"));
+        final UserIndex users = compact.users();
+        assertEquals(3, compact.vertexCount());
+        assertEquals(2, compact.edgeCount());
+        final int ernie = users.id("ernie");
+        assertEquals(1, compact.outDegree(ernie));
+        assertTrue(compact.hasEdge(ernie, users.id("bert")));
+        assertFalse(compact.hasEdge(ernie, ernie));
+        assertEquals(0, compact.outDegree(users.id("elmo")));
+    }
+
+    @Test
+    public void testNoSuggestions() {
+        final CompactGraph compact = CompactGraph.of(graph("a>b", "b>a", "a>c", "b>c"));
+        assertTrue("only paths to self or already followed",
+                TriadicClosure.suggest(compact, 3, 10).isEmpty());
+    }
+
+    @Test
+    public void testRankingAndTopN() {
+        // a reaches x through b, c, d; y through b, c; z and w through d
+        final CompactGraph compact = CompactGraph.of(graph(
+                "a>b", "a>c", "a>d",
+                "b>x", "c>x", "d>x", "b>y", "c>y", "d>z", "d>w"));
+        assertEquals(Arrays.asList("x", "y", "w", "z"), TriadicClosure.suggest(compact, 4, 10).get("a"));
+        assertEquals(Arrays.asList("x", "y", "w", "z"), TriadicClosure.suggest(compact, 10, 10).get("a"));
+        assertEquals(Arrays.asList("x", "y"), TriadicClosure.suggest(compact, 2, 10).get("a"));
+        assertFalse(TriadicClosure.suggest(compact, 2, 10).containsKey("b"));
+    }
+
+    @Test
+    public void testHubCap() {
+        final CompactGraph compact = CompactGraph.of(graph("a>b", "b>x", "b>y", "a>c", "c>z"));
+        assertEquals(Arrays.asList("x", "y", "z"), TriadicClosure.suggest(compact, 5, 2).get("a"));
+        assertEquals(Arrays.asList("z"), TriadicClosure.suggest(compact, 5, 1).get("a"));
+        assertNull(TriadicClosure.suggest(compact, 5, 0).get("a"));
+    }
+
+    @Test
+    public void testMatchesBruteForce() {
+        final java.util.Random random = new java.util.Random(6005);
+        final Map<String, Set<String>> followsGraph = new HashMap<>();
+        for (int e = 0; e < 3000; e++) {
+            final int f = random.nextInt(300);
+            final int g = random.nextInt(300);
+            if (f != g) {
+                followsGraph.computeIfAbsent("u" + f, k -> new HashSet<>()).add("u" + g);
+            }
+        }
+        final Map<String, List<String>> suggestions = SocialNetwork.suggestFollows(followsGraph, 5);
+
+        for (String a : followsGraph.keySet()) {
+            final Map<String, Integer> paths = new HashMap<>();
+            for (String b : followsGraph.get(a)) {
+                for (String c : followsGraph.getOrDefault(b, Collections.emptySet())) {
+                    if (!c.equals(a) && !followsGraph.get(a).contains(c)) {
+                        paths.merge(c, 1, Integer::sum);
+                    }
+                }
+            }
+            final List<String> expected = new java.util.ArrayList<>(paths.keySet());
+            expected.sort((c, d) -> paths.get(c).equals(paths.get(d))
+                    ? c.compareTo(d) : Integer.compare(paths.get(d), paths.get(c)));
+            assertEquals(a, expected.subList(0, Math.min(5, expected.size())),
+                    suggestions.getOrDefault(a, Collections.emptyList()));
+        }
+    }
+}
@@ -0,0 +1,111 @@
+/* Copyright (c) 2007-2016 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package twitter;
+
+import static org.junit.Assert.*;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+public class TweetArenaTest {
+
+    /*
+     * Testing strategy
+     *
+     * TweetArena
+     *  - empty; rows in one chunk; rows spanning several chunks
+     *  - text: empty, ASCII, multi-byte UTF-8, supplementary characters
+     *  - timestamp with sub-millisecond precision
+     *  - authors differing only in case keep their own case
+     *  - row out of range
+     *
+     * Filter.containing(arena, words), Extract.getMentionedUsers(arena)
+     *  - same result as the List versions on the same tweets, including
+     *    non-ASCII words and tokens, and non-ASCII characters next to mentions
+     *  - non-ASCII token that lowercases to an ASCII word
+     */
+
+    private static final Instant D1 = Instant.parse("2016-02-17T10:00:00Z");
+
+    private static final List<Tweet> TWEETS = Arrays.asList(
+            new Tweet(1, "alyssa", "is it reasonable to talk about rivest so much?", D1),
+            new Tweet(2, "bbitdiddle", "rivest talk in 30 minutes #hype @Alyssa", D1.plusNanos(1234567)),
+            new Tweet(3, "Ernie", "", D1),
+            new Tweet(4, "ernie", "Ça va, @élodie? été Été @bert_é @Cookie", D1),
+            new Tweet(5, "bert", "😀@elmo emoji K and Kelvin", D1),
+            new Tweet(6, "bert", "mail bitdiddle@mit.edu   RIVEST", D1));
+
+    @Test(expected=AssertionError.class)
+    public void testAssertionsEnabled() {
+        assert false; // make sure assertions are enabled with VM argument: -ea
+    }
+
+    @Test
+    public void testEmpty() {
+        final TweetArena arena = TweetArena.of(Collections.emptyList());
+        assertEquals(0, arena.size());
+        assertTrue(Filter.containing(arena, Arrays.asList("rivest")).isEmpty());
+        assertTrue(Extract.getMentionedUsers(arena).isEmpty());
+    }
+
+    @Test
+    public void testRoundTrip() {
+        final TweetArena arena = TweetArena.of(TWEETS);
+        assertEquals(TWEETS.size(), arena.size());
+        for (int row = 0; row < TWEETS.size(); row++) {
+            final Tweet expected = TWEETS.get(row);
+            final Tweet actual = arena.tweet(row);
+            assertEquals(expected.getId(), actual.getId());
+            assertEquals(expected.getAuthor(), actual.getAuthor());
+            assertEquals(expected.getText(), actual.getText());
+            assertEquals(expected.getTimestamp(), actual.getTimestamp());
+        }
+        assertEquals("Ernie", arena.author(2));
+        assertEquals("ernie", arena.author(3));
+    }
+
+    @Test(expected=IndexOutOfBoundsException.class)
+    public void testRowOutOfRange() {
+        TweetArena.of(TWEETS).text(TWEETS.size());
+    }
+
+    @Test
+    public void testSameAsListVersions() {
+        final TweetArena arena = TweetArena.of(TWEETS);
+        for (List<String> words : Arrays.asList(
+                Arrays.asList("rivest"), Arrays.asList("ÉTÉ"), Arrays.asList("ça", "nothing"),
+                Arrays.asList("k"), Arrays.asList("Kelvin"), Arrays.asList("#HYPE", "@alyssa"))) {
+            assertEquals(words.toString(), Filter.containing(TWEETS, words), Filter.containing(arena, words));
+        }
+        assertEquals(Extract.getMentionedUsers(TWEETS), Extract.getMentionedUsers(arena));
+    }
+
+    @Test
+    public void testNonAsciiLowercasesToAscii() {
+        // KELVIN SIGN lowercases to ASCII 'k'
+        final TweetArena arena = TweetArena.of(TWEETS);
+        assertEquals(Arrays.asList(TWEETS.get(4)), Filter.containing(arena, Arrays.asList("K")));
+    }
+
+    @Test
+    public void testManyChunks() {
+        final List<Tweet> tweets = new ArrayList<>();
+        final StringBuilder padding = new StringBuilder();
+        while (padding.length() < 120) {
+            padding.append("padding ");
+        }
+        for (int i = 0; i < 150_000; i++) {
+            tweets.add(new Tweet(i, "user" + (i % 100), padding + "@u" + i + " word" + (i % 1000), D1));
+        }
+        final TweetArena arena = TweetArena.of(tweets);
+        assertEquals(tweets.get(149_999).getText(), arena.text(149_999));
+        assertEquals(150, Filter.containing(arena, Arrays.asList("WORD7")).size());
+        assertEquals(150_000, Extract.getMentionedUsers(arena).size());
+    }
+}
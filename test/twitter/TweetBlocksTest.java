@@ -0,0 +1,126 @@
+/* Copyright (c) 2007-2016 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package twitter;
+
+import static org.junit.Assert.*;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+public class TweetBlocksTest {
+
+    /*
+     * Testing strategy
+     *
+     * BloomFilter
+     *  - no false negatives
+     *  - false-positive rate near the one asked for, at the expected size
+     *
+     * TweetBlocks.of
+     *  - no tweets; fewer tweets than a block; a multiple of the block size;
+     *    not a multiple
+     *
+     * Filter.containing(TweetBlocks, words), Filter.mentioning
+     *  - same result as the scan over the list: words and users that appear
+     *    in one block, in every block, in none; differing case
+     *  - blocks without a rare word or user are skipped
+     */
+
+    private static final Instant D1 = Instant.parse("2016-02-17T10:00:00Z");
+
+    @Test(expected=AssertionError.class)
+    public void testAssertionsEnabled() {
+        assert false; // make sure assertions are enabled with VM argument: -ea
+    }
+
+    private static long hash(String value) {
+        return Usernames.hash(value);
+    }
+
+    @Test
+    public void testBloomFilterRates() {
+        final BloomFilter filter = new BloomFilter(10000, 0.01);
+        for (int i = 0; i < 10000; i++) {
+            filter.add(hash("in" + i));
+        }
+        for (int i = 0; i < 10000; i++) {
+            assertTrue("no false negatives", filter.mightContain(hash("in" + i)));
+        }
+        int falsePositives = 0;
+        for (int i = 0; i < 100000; i++) {
+            if (filter.mightContain(hash("out" + i))) {
+                falsePositives++;
+            }
+        }
+        assertTrue("false positives: " + falsePositives, falsePositives < 1000);
+    }
+
+    private static List<Tweet> corpus(int size) {
+        final List<Tweet> tweets = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            final String text = (i == 17 ? "a Rare word for @Needle " : "")
+                    + "common words for @everyone and @user" + (i % 50);
+            tweets.add(new Tweet(i, "author" + (i % 7), text, D1.plusSeconds(i)));
+        }
+        return tweets;
+    }
+
+    @Test
+    public void testEmpty() {
+        final TweetBlocks blocks = TweetBlocks.of(Collections.emptyList());
+        assertEquals(0, blocks.size());
+        assertEquals(0, blocks.blockCount());
+        assertEquals(Collections.emptyList(), Filter.containing(blocks, Arrays.asList("word")));
+        assertEquals(Collections.emptyList(), Filter.mentioning(blocks, "user"));
+    }
+
+    @Test
+    public void testBlockLayout() {
+        assertEquals(1, TweetBlocks.of(corpus(10), 64, 0.01).blockCount());
+        assertEquals(4, TweetBlocks.of(corpus(256), 64, 0.01).blockCount());
+        final TweetBlocks blocks = TweetBlocks.of(corpus(300), 64, 0.01);
+        assertEquals(5, blocks.blockCount());
+        assertEquals(300, blocks.size());
+        assertEquals(corpus(300), blocks.tweets());
+        assertEquals(300 - 4 * 64, blocks.block(4).size());
+        assertEquals(corpus(300).get(64), blocks.block(1).get(0));
+    }
+
+    @Test
+    public void testSameAsScan() {
+        final List<Tweet> tweets = corpus(1000);
+        final TweetBlocks blocks = TweetBlocks.of(tweets, 100, 0.01);
+        for (List<String> words : Arrays.asList(Arrays.asList("rare"), Arrays.asList("COMMON"),
+                Arrays.asList("absent"), Arrays.asList("absent", "RARE"), Arrays.asList("@needle"))) {
+            assertEquals(words.toString(), Filter.containing(tweets, words), Filter.containing(blocks, words));
+        }
+        for (String user : Arrays.asList("needle", "NEEDLE", "everyone", "user7", "user77", "nobody")) {
+            assertEquals(user, Filter.mentioning(tweets, user), Filter.mentioning(blocks, user));
+        }
+        assertEquals(1, Filter.mentioning(tweets, "Needle").size());
+        assertEquals(20, Filter.mentioning(tweets, "user7").size());
+    }
+
+    @Test
+    public void testSkipsBlocks() {
+        final TweetBlocks blocks = TweetBlocks.of(corpus(1000), 100, 0.0001);
+        int rare = 0;
+        int needle = 0;
+        for (int b = 0; b < blocks.blockCount(); b++) {
+            assertTrue(blocks.mayContainWord(b, "common"));
+            assertTrue(blocks.mayMention(b, "Everyone"));
+            assertFalse("no mention of word", blocks.mayMention(b, "common"));
+            rare += blocks.mayContainWord(b, "rare") ? 1 : 0;
+            needle += blocks.mayMention(b, "needle") ? 1 : 0;
+        }
+        assertEquals(1, rare);
+        assertEquals(1, needle);
+        assertTrue(blocks.mayContainWord(0, "rare"));
+    }
+}
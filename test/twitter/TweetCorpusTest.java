@@ -0,0 +1,181 @@
+/* Copyright (c) 2007-2016 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package twitter;
+
+import static org.junit.Assert.*;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+public class TweetCorpusTest {
+
+    /*
+     * Testing strategy
+     *
+     * append(batch), version(), size()
+     *  - batch: empty; small, merged into the last segment; larger than a segment
+     *  - writers: one; several at once
+     *
+     * snapshot(), tweets()
+     *  - taken: before any append; between appends; during concurrent appends
+     *  - later appends: none; some (snapshot unchanged)
+     *  - as a List: get, iterator, equals, subList; mutators throw
+     *  - queried by Filter and SocialNetwork
+     */
+
+    private static final Instant D1 = Instant.parse("2016-02-17T10:00:00Z");
+
+    @Test(expected=AssertionError.class)
+    public void testAssertionsEnabled() {
+        assert false; // make sure assertions are enabled with VM argument: -ea
+    }
+
+    @Test
+    public void testEmpty() {
+        TweetCorpus corpus = new TweetCorpus();
+        assertEquals(0, corpus.version());
+        assertEquals(0, corpus.size());
+        assertTrue(corpus.snapshot().isEmpty());
+        assertFalse(corpus.snapshot().iterator().hasNext());
+        assertEquals(0, corpus.append(Collections.emptyList()));
+    }
+
+    @Test
+    public void testSnapshotUnaffectedByLaterAppends() {
+        TweetCorpus corpus = new TweetCorpus();
+        List<Tweet> first = tweets(0, 3, "alyssa");
+        assertEquals(1, corpus.append(first));
+        TweetCorpus.Snapshot pinned = corpus.snapshot();
+        assertEquals(2, corpus.append(tweets(3, 2, "bbitdiddle")));
+
+        assertEquals(1, pinned.version());
+        assertEquals(first, pinned);
+        assertEquals(2, corpus.snapshot().version());
+        assertEquals(5, corpus.size());
+        assertEquals(5, corpus.tweets().size());
+        assertEquals(first, corpus.tweets().subList(0, 3));
+    }
+
+    @Test
+    public void testSegments() {
+        TweetCorpus corpus = new TweetCorpus();
+        List<Tweet> expected = new ArrayList<>();
+        // small batches share a segment, large ones get their own
+        for (int batch = 0; batch < 10; batch++) {
+            List<Tweet> next = tweets(expected.size(), batch == 5 ? 2 * TweetCorpus.SEGMENT_SIZE : 100, "alyssa");
+            corpus.append(next);
+            expected.addAll(next);
+        }
+        TweetCorpus.Snapshot snapshot = corpus.snapshot();
+        assertEquals(3, snapshot.segmentCount());
+        assertEquals(expected, snapshot);
+        for (int i = 0; i < expected.size(); i += 97) {
+            assertEquals(expected.get(i), snapshot.get(i));
+        }
+        assertEquals(expected.get(expected.size() - 1), snapshot.get(expected.size() - 1));
+        Iterator<Tweet> it = snapshot.iterator();
+        for (Tweet tweet : expected) {
+            assertSame(tweet, it.next());
+        }
+        assertFalse(it.hasNext());
+    }
+
+    @Test(expected=IndexOutOfBoundsException.class)
+    public void testGetOutOfBounds() {
+        TweetCorpus corpus = new TweetCorpus();
+        corpus.append(tweets(0, 2, "alyssa"));
+        corpus.snapshot().get(2);
+    }
+
+    @Test(expected=UnsupportedOperationException.class)
+    public void testSnapshotUnmodifiable() {
+        TweetCorpus corpus = new TweetCorpus();
+        corpus.append(tweets(0, 2, "alyssa"));
+        corpus.snapshot().add(new Tweet(99, "alyssa", "hi", D1));
+    }
+
+    @Test
+    public void testQueriesOnSnapshot() {
+        TweetCorpus corpus = new TweetCorpus();
+        corpus.append(Arrays.asList(
+                new Tweet(1, "alyssa", "hi @bbitdiddle", D1),
+                new Tweet(2, "bbitdiddle", "rivest talk", D1.plusSeconds(60))));
+        corpus.append(Arrays.asList(new Tweet(3, "alyssa", "@bbitdiddle rivest", D1.plusSeconds(120))));
+        TweetCorpus.Snapshot snapshot = corpus.snapshot();
+        assertEquals(2, Filter.writtenBy(snapshot, "Alyssa").size());
+        assertEquals(2, Filter.containing(snapshot, Arrays.asList("rivest")).size());
+        assertEquals(Collections.singletonList("bbitdiddle"),
+                SocialNetwork.influencers(SocialNetwork.guessFollowsGraph(snapshot)).subList(0, 1));
+    }
+
+    @Test
+    public void testConcurrentAppendsAndReads() throws InterruptedException {
+        final TweetCorpus corpus = new TweetCorpus();
+        final int writers = 3;
+        final int batches = 300;
+        final int batchSize = 7;
+        final AtomicBoolean writing = new AtomicBoolean(true);
+        final AtomicReference<String> problem = new AtomicReference<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int w = 0; w < writers; w++) {
+            final String author = "writer" + w;
+            final int base = w * batches * batchSize;
+            threads.add(new Thread(() -> {
+                for (int b = 0; b < batches; b++) {
+                    corpus.append(tweets(base + b * batchSize, batchSize, author));
+                }
+            }));
+        }
+        Thread reader = new Thread(() -> {
+            long lastVersion = 0;
+            while (writing.get()) {
+                TweetCorpus.Snapshot snapshot = corpus.snapshot();
+                // every snapshot is a whole number of batches, each intact
+                if (snapshot.version() < lastVersion || snapshot.size() != snapshot.version() * batchSize) {
+                    problem.compareAndSet(null, "version " + snapshot.version() + ", size " + snapshot.size());
+                }
+                int i = 0;
+                for (Tweet tweet : snapshot) {
+                    if (i % batchSize != tweet.getId() % batchSize) {
+                        problem.compareAndSet(null, "batch split at " + i);
+                    }
+                    i++;
+                }
+                lastVersion = snapshot.version();
+            }
+        });
+        reader.start();
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        writing.set(false);
+        reader.join();
+
+        assertNull(problem.get());
+        assertEquals(writers * batches, corpus.version());
+        assertEquals(writers * batches * batchSize, corpus.size());
+        for (int w = 0; w < writers; w++) {
+            assertEquals(batches * batchSize, Filter.writtenBy(corpus.tweets(), "writer" + w).size());
+        }
+    }
+
+    private static List<Tweet> tweets(int firstId, int count, String author) {
+        List<Tweet> tweets = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            tweets.add(new Tweet(firstId + i, author, "tweet " + (firstId + i), D1.plusSeconds(firstId + i)));
+        }
+        return tweets;
+    }
+}
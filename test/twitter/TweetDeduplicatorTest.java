@@ -0,0 +1,112 @@
+/* Copyright (c) 2007-2016 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package twitter;
+
+import static org.junit.Assert.*;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+public class TweetDeduplicatorTest {
+
+    /*
+     * Testing strategy
+     *
+     * LongHashSet
+     *  - keys: 0, negative, Long.MIN_VALUE, sequential, enough to grow
+     *  - add of a present key; contains of an absent key
+     *  - removeStampedBefore: none, some, all removed; on an unstamped set
+     *
+     * TweetDeduplicator
+     *  - batch: empty, repeats within the batch, overlapping previous batch
+     *  - retention: none; ids older than retention forgotten, newer kept
+     */
+
+    private static final Instant D1 = Instant.parse("2016-02-17T10:00:00Z");
+
+    @Test(expected=AssertionError.class)
+    public void testAssertionsEnabled() {
+        assert false; // make sure assertions are enabled with VM argument: -ea
+    }
+
+    @Test
+    public void testSpecialKeys() {
+        final LongHashSet set = new LongHashSet(false);
+        for (long key : new long[] { 0, -1, Long.MIN_VALUE, Long.MAX_VALUE }) {
+            assertFalse(set.contains(key));
+            assertTrue(set.add(key));
+            assertFalse(set.add(key));
+            assertTrue(set.contains(key));
+        }
+        assertEquals(4, set.size());
+        set.clear();
+        assertEquals(0, set.size());
+        assertFalse(set.contains(0));
+    }
+
+    @Test
+    public void testGrowth() {
+        final LongHashSet set = new LongHashSet(false);
+        for (long key = 1; key <= 1_000_000; key++) {
+            assertTrue(set.add(key * 1000));
+        }
+        assertEquals(1_000_000, set.size());
+        for (long key = 1; key <= 1_000_000; key++) {
+            assertTrue(set.contains(key * 1000));
+            assertFalse(set.contains(key * 1000 + 1));
+        }
+    }
+
+    @Test
+    public void testRemoveStamped() {
+        final LongHashSet set = new LongHashSet(true);
+        for (long key = 0; key < 10_000; key++) {
+            set.add(key, key % 100);
+        }
+        assertEquals(0, set.removeStampedBefore(0));
+        assertEquals(5000, set.removeStampedBefore(50));
+        assertEquals(5000, set.size());
+        for (long key = 0; key < 10_000; key++) {
+            assertEquals(key % 100 >= 50, set.contains(key));
+        }
+        assertEquals(5000, set.removeStampedBefore(Long.MAX_VALUE));
+        assertEquals(0, set.size());
+    }
+
+    @Test(expected=IllegalStateException.class)
+    public void testRemoveUnstamped() {
+        new LongHashSet(false).removeStampedBefore(0);
+    }
+
+    @Test
+    public void testFilterBatches() {
+        final Tweet t1 = new Tweet(1, "alyssa", "one", D1);
+        final Tweet t2 = new Tweet(2, "bbitdiddle", "two", D1);
+        final Tweet t3 = new Tweet(3, "alyssa", "three", D1);
+        final TweetDeduplicator dedup = new TweetDeduplicator();
+        assertTrue(dedup.filter(Collections.emptyList()).isEmpty());
+        assertEquals(Arrays.asList(t1, t2), dedup.filter(Arrays.asList(t1, t2, t1)));
+        assertEquals(Arrays.asList(t3), dedup.filter(Arrays.asList(t2, t3, t1)));
+        assertEquals(3, dedup.size());
+    }
+
+    @Test
+    public void testRetention() {
+        final TweetDeduplicator dedup = new TweetDeduplicator(Duration.ofHours(1));
+        final List<Tweet> first = Arrays.asList(
+                new Tweet(1, "alyssa", "old", D1),
+                new Tweet(2, "alyssa", "recent", D1.plusSeconds(3600)));
+        assertEquals(first, dedup.filter(first));
+        assertEquals(2, dedup.size());
+        final Tweet newest = new Tweet(3, "alyssa", "new", D1.plusSeconds(3600 + 1800));
+        assertEquals(Arrays.asList(newest), dedup.filter(Arrays.asList(newest, first.get(1))));
+        assertEquals("id 1 expired", 2, dedup.size());
+        assertTrue(dedup.firstSeen(first.get(0)));
+    }
+}
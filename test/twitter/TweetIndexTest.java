@@ -0,0 +1,155 @@
+/* Copyright (c) 2007-2016 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package twitter;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class TweetIndexTest {
+
+    /*
+     * Testing strategy
+     *
+     * TweetIndex.build, save, load
+     *  - tweets: none, some with non-ASCII text and sub-second timestamps
+     *  - loaded index answers like the built one
+     *  - file: wrong magic, unsupported version, corrupted body, truncated
+     *
+     * writtenBy, inTimespan, containing (via Filter)
+     *  - same results as the scanning Filter methods, on a random corpus
+     *    with repeated words, mixed case and timestamp ties
+     *  - absent author or word; empty word list; timespan before, around
+     *    and after all tweets, and matching single instants
+     */
+
+    private static final Instant D1 = Instant.parse("2016-02-17T10:00:00Z");
+
+    private final List<Path> files = new ArrayList<>();
+
+    @Test(expected=AssertionError.class)
+    public void testAssertionsEnabled() {
+        assert false; // make sure assertions are enabled with VM argument: -ea
+    }
+
+    @After
+    public void deleteFiles() throws IOException {
+        for (Path file : files) {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private Path tempFile() throws IOException {
+        final Path file = Files.createTempFile("tweet-index", ".twix");
+        files.add(file);
+        return file;
+    }
+
+    private static List<Tweet> corpus() {
+        final Random random = new Random(6005);
+        final String[] words = { "rivest", "Rivest", "talk", "été", "ÉTÉ", "#hype", "@alyssa", "a", "" };
+        final List<Tweet> tweets = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            final StringBuilder text = new StringBuilder();
+            for (int w = random.nextInt(6); w > 0; w--) {
+                text.append(words[random.nextInt(words.length)]).append(' ');
+            }
+            tweets.add(new Tweet(1000 - i, (random.nextBoolean() ? "User" : "user") + random.nextInt(50),
+                    text.toString(), D1.plusSeconds(random.nextInt(100)).plusNanos(random.nextInt(3))));
+        }
+        return tweets;
+    }
+
+    private static void assertSameAnswers(List<Tweet> tweets, TweetIndex index) {
+        assertEquals(tweets.size(), index.size());
+        for (String author : Arrays.asList("user1", "USER7", "nobody")) {
+            assertEquals(Filter.writtenBy(tweets, author), Filter.writtenBy(index, author));
+        }
+        for (List<String> words : Arrays.asList(Arrays.asList("rivest"), Arrays.asList("Été", "#HYPE"),
+                Arrays.asList("nothing"), Collections.<String>emptyList())) {
+            assertEquals(Filter.containing(tweets, words), Filter.containing(index, words));
+        }
+        for (Timespan span : Arrays.asList(new Timespan(D1.minusSeconds(10), D1.minusSeconds(1)),
+                new Timespan(D1.plusSeconds(20), D1.plusSeconds(30).plusNanos(1)),
+                new Timespan(D1.plusSeconds(50), D1.plusSeconds(50)),
+                new Timespan(D1.minusSeconds(1), D1.plusSeconds(1000)))) {
+            assertEquals(Filter.inTimespan(tweets, span), Filter.inTimespan(index, span));
+        }
+    }
+
+    @Test
+    public void testEmpty() throws IOException {
+        final TweetIndex index = TweetIndex.build(Collections.emptyList());
+        assertSameAnswers(Collections.emptyList(), index);
+        final Path file = tempFile();
+        index.save(file);
+        assertEquals(0, TweetIndex.load(file).size());
+    }
+
+    @Test
+    public void testBuiltAndLoadedMatchFilter() throws IOException {
+        final List<Tweet> tweets = corpus();
+        final TweetIndex index = TweetIndex.build(tweets);
+        assertSameAnswers(tweets, index);
+        final Path file = tempFile();
+        index.save(file);
+        final TweetIndex loaded = TweetIndex.load(file);
+        assertSameAnswers(tweets, loaded);
+        for (int row = 0; row < tweets.size(); row += 97) {
+            final Tweet tweet = loaded.tweet(row);
+            assertEquals(tweets.get(row).getId(), tweet.getId());
+            assertEquals(tweets.get(row).getAuthor(), tweet.getAuthor());
+            assertEquals(tweets.get(row).getText(), tweet.getText());
+            assertEquals(tweets.get(row).getTimestamp(), tweet.getTimestamp());
+        }
+    }
+
+    private Path corrupt(int offset, int value) throws IOException {
+        final Path file = tempFile();
+        TweetIndex.build(corpus().subList(0, 10)).save(file);
+        final byte[] bytes = Files.readAllBytes(file);
+        ByteBuffer.wrap(bytes).putInt(offset, value);
+        Files.write(file, bytes);
+        return file;
+    }
+
+    @Test(expected=IOException.class)
+    public void testBadMagic() throws IOException {
+        TweetIndex.load(corrupt(0, 0xCAFEBABE));
+    }
+
+    @Test(expected=IOException.class)
+    public void testUnsupportedVersion() throws IOException {
+        TweetIndex.load(corrupt(4, TweetIndex.VERSION + 1));
+    }
+
+    @Test(expected=IOException.class)
+    public void testChecksumMismatch() throws IOException {
+        final Path file = tempFile();
+        TweetIndex.build(corpus().subList(0, 10)).save(file);
+        final byte[] bytes = Files.readAllBytes(file);
+        bytes[bytes.length - 5] ^= 1;
+        Files.write(file, bytes);
+        TweetIndex.load(file);
+    }
+
+    @Test(expected=IOException.class)
+    public void testTruncated() throws IOException {
+        final Path file = tempFile();
+        Files.write(file, new byte[] { 0x54, 0x57, 0x49, 0x58 });
+        TweetIndex.load(file);
+    }
+}
@@ -0,0 +1,198 @@
+/* Copyright (c) 2007-2016 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package twitter;
+
+import static org.junit.Assert.*;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.Test;
+
+public class TweetReaderTest {
+
+    /*
+     * Testing strategy
+     *
+     * readTweets(in), readTweets(in, compression)
+     *  - compression: none; gzip; zlib; raw deflate (explicit only)
+     *  - size: empty array; a few tweets; larger than one inflated chunk
+     *  - failures: truncated compressed stream
+     *
+     * InflatingInputStream.close()
+     *  - inflater blocked in a read of the source that ignores interrupts
+     *
+     * Compression.detect(in)
+     *  - header: gzip magic; zlib header; JSON text; fewer than two bytes
+     *  - stream position is unchanged afterwards
+     */
+
+    private static final String JSON = "["
+            + "{\"id\":1,\"text\":\"hi @bert\",\"created_at\":\"Wed Feb 17 10:00:00 +0000 2016\",\"user.screen_name\":\"ernie\"},"
+            + "{\"id\":2,\"text\":\"café time\",\"created_at\":\"Wed Feb 17 11:30:00 +0000 2016\",\"user.screen_name\":\"bert\"}"
+            + "]";
+
+    @Test(expected=AssertionError.class)
+    public void testAssertionsEnabled() {
+        assert false; // make sure assertions are enabled with VM argument: -ea
+    }
+
+    @Test
+    public void testReadUncompressed() throws IOException {
+        List<Tweet> tweets = TweetReader.readTweets(new ByteArrayInputStream(utf8(JSON)));
+        assertTwoTweets(tweets);
+    }
+
+    @Test
+    public void testReadGzipDetected() throws IOException {
+        List<Tweet> tweets = TweetReader.readTweets(new ByteArrayInputStream(gzip(utf8(JSON))));
+        assertTwoTweets(tweets);
+    }
+
+    @Test
+    public void testReadZlibDetected() throws IOException {
+        byte[] compressed = deflate(utf8(JSON), false);
+        List<Tweet> tweets = TweetReader.readTweets(new ByteArrayInputStream(compressed));
+        assertTwoTweets(tweets);
+    }
+
+    @Test
+    public void testReadRawDeflateExplicit() throws IOException {
+        byte[] compressed = deflate(utf8(JSON), true);
+        List<Tweet> tweets = TweetReader.readTweets(new ByteArrayInputStream(compressed), Compression.DEFLATE);
+        assertTwoTweets(tweets);
+    }
+
+    @Test
+    public void testReadGzipEmptyArray() throws IOException {
+        List<Tweet> tweets = TweetReader.readTweets(new ByteArrayInputStream(gzip(utf8("[]"))));
+        assertTrue("expected no tweets", tweets.isEmpty());
+    }
+
+    @Test
+    public void testReadGzipManyChunks() throws IOException {
+        final int count = 5000;
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < count; i++) {
+            if (i > 0) json.append(',');
+            json.append("{\"id\":").append(i)
+                .append(",\"text\":\"tweet number ").append(i)
+                .append("\",\"created_at\":\"Wed Feb 17 10:00:00 +0000 2016\",\"user.screen_name\":\"u")
+                .append(i % 7).append("\"}");
+        }
+        json.append(']');
+        assertTrue("input spans several chunks", json.length() > 2 * InflatingInputStream.DEFAULT_CHUNK_SIZE);
+
+        List<Tweet> tweets = TweetReader.readTweets(new ByteArrayInputStream(gzip(utf8(json.toString()))));
+        assertEquals("all tweets read", count, tweets.size());
+        assertEquals("order preserved", count - 1, tweets.get(count - 1).getId());
+    }
+
+    @Test(expected=IOException.class)
+    public void testReadTruncatedGzip() throws IOException {
+        byte[] compressed = gzip(utf8(JSON));
+        byte[] truncated = Arrays.copyOf(compressed, compressed.length / 2);
+        TweetReader.readTweets(new ByteArrayInputStream(truncated));
+    }
+
+    @Test
+    public void testCloseUnblocksInflater() throws IOException, InterruptedException {
+        final CountDownLatch reading = new CountDownLatch(1);
+        final CountDownLatch closed = new CountDownLatch(1);
+        // like a socket: a read waits for data or close, and ignores interrupts
+        final InputStream source = new InputStream() {
+            @Override public int read() throws IOException {
+                reading.countDown();
+                while (true) {
+                    try {
+                        closed.await();
+                        throw new IOException("closed");
+                    } catch (InterruptedException ignored) {
+                        // keep waiting
+                    }
+                }
+            }
+
+            @Override public void close() {
+                closed.countDown();
+            }
+        };
+        final InflatingInputStream in = new InflatingInputStream(source, Compression.GZIP, 16, 1);
+        assertTrue(reading.await(10, TimeUnit.SECONDS));
+        in.close();
+        assertEquals(0, closed.getCount());
+        try {
+            in.read();
+            fail("expected IOException");
+        } catch (IOException expected) {
+            // closed
+        }
+    }
+
+    @Test
+    public void testDetect() throws IOException {
+        assertEquals(Compression.GZIP, detect(gzip(utf8(JSON))));
+        assertEquals(Compression.ZLIB, detect(deflate(utf8(JSON), false)));
+        assertEquals(Compression.NONE, detect(utf8(JSON)));
+        assertEquals(Compression.NONE, detect(utf8(" \n[]")));
+        assertEquals(Compression.NONE, detect(utf8("[")));
+    }
+
+    @Test
+    public void testDetectDoesNotConsume() throws IOException {
+        BufferedInputStream in = new BufferedInputStream(new ByteArrayInputStream(utf8(JSON)));
+        Compression.detect(in);
+        assertEquals("first byte still available", '[', in.read());
+    }
+
+    private static void assertTwoTweets(List<Tweet> tweets) {
+        assertEquals("expected two tweets", 2, tweets.size());
+        Tweet first = tweets.get(0);
+        assertEquals(1, first.getId());
+        assertEquals("ernie", first.getAuthor());
+        assertEquals("hi @bert", first.getText());
+        assertEquals(Instant.parse("2016-02-17T10:00:00Z"), first.getTimestamp());
+        assertEquals("non-ASCII text decoded as UTF-8", "café time", tweets.get(1).getText());
+    }
+
+    private static Compression detect(byte[] bytes) throws IOException {
+        return Compression.detect(new BufferedInputStream(new ByteArrayInputStream(bytes)));
+    }
+
+    private static byte[] utf8(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] gzip(byte[] bytes) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (OutputStream gz = new GZIPOutputStream(out)) {
+            gz.write(bytes);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] deflate(byte[] bytes, boolean raw) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, raw);
+        try (OutputStream z = new DeflaterOutputStream(out, deflater)) {
+            z.write(bytes);
+        } finally {
+            deflater.end();
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,86 @@
+/* Copyright (c) 2007-2016 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package twitter;
+
+import static org.junit.Assert.*;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Test;
+
+public class UsernamesTest {
+
+    /*
+     * Testing strategy
+     *
+     * toLowerCase
+     *  - already lowercase (same instance), mixed case, all uppercase, empty
+     *  - range of a larger text
+     *  - non-ASCII characters left alone
+     *
+     * equalsIgnoreCase, regionEqualsIgnoreCase, hash
+     *  - equal ignoring case; differing in one character; differing length
+     *  - equal usernames ignoring case hash equally
+     *
+     * modules under a Turkish default locale, where "I".toLowerCase() is a
+     * dotless i: SocialNetwork.influencers, Filter.writtenBy
+     */
+
+    private static final Instant D1 = Instant.parse("2016-02-17T10:00:00Z");
+
+    @Test(expected=AssertionError.class)
+    public void testAssertionsEnabled() {
+        assert false; // make sure assertions are enabled with VM argument: -ea
+    }
+
+    @Test
+    public void testToLowerCase() {
+        final String lower = "alyssa_p-hacker9";
+        assertSame(lower, Usernames.toLowerCase(lower));
+        assertEquals("alyssa", Usernames.toLowerCase("AlYssa"));
+        assertEquals("bitdiddle", Usernames.toLowerCase("BITDIDDLE"));
+        assertEquals("", Usernames.toLowerCase(""));
+        assertEquals("rivest", Usernames.toLowerCase("hi @RiVest!", 4, 10));
+        assertEquals("İstanbul", Usernames.toLowerCase("İSTANBUL"));
+    }
+
+    @Test
+    public void testEqualsAndHash() {
+        assertTrue(Usernames.equalsIgnoreCase("Alyssa", "aLYSSA"));
+        assertFalse(Usernames.equalsIgnoreCase("alyssa", "alyssb"));
+        assertFalse(Usernames.equalsIgnoreCase("alyssa", "alyss"));
+        assertFalse("only A-Z fold", Usernames.equalsIgnoreCase("@", "`"));
+        assertTrue(Usernames.regionEqualsIgnoreCase("hi @RiVest!", 4, 10, "rivest"));
+        assertFalse(Usernames.regionEqualsIgnoreCase("hi @RiVest!", 4, 9, "rivest"));
+        assertEquals(Usernames.hash("Alyssa"), Usernames.hash("aLYSSA"));
+        assertEquals(Usernames.hash("alyssa"), Usernames.hash("hi @ALYSSA", 4, 10));
+        assertNotEquals(Usernames.hash("alyssa"), Usernames.hash("alyssb"));
+    }
+
+    @Test
+    public void testTurkishLocale() {
+        final Locale saved = Locale.getDefault();
+        Locale.setDefault(Locale.forLanguageTag("tr-TR"));
+        try {
+            final Map<String, Set<String>> followsGraph = new HashMap<>();
+            followsGraph.put("MIKE", Collections.singleton("IRIS"));
+            followsGraph.put("iris", Collections.singleton("mike"));
+            final List<String> influencers = SocialNetwork.influencers(followsGraph);
+            assertEquals(2, influencers.size());
+            assertTrue(influencers.containsAll(Arrays.asList("mike", "iris")));
+
+            final Tweet tweet = new Tweet(1, "IRIS", "hello", D1);
+            assertEquals(Arrays.asList(tweet), Filter.writtenBy(Arrays.asList(tweet), "iris"));
+        } finally {
+            Locale.setDefault(saved);
+        }
+    }
+}
@@ -0,0 +1,121 @@
+/* Copyright (c) 2007-2016 MIT 6.005 course staff, all rights reserved.
+ * Redistribution of original or derived work requires permission of course staff.
+ */
+package twitter;
+
+import static org.junit.Assert.*;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+
+public class WeightedFollowsGraphTest {
+
+    /*
+     * Testing strategy
+     *
+     * addEvidence, weight, firstSeen, lastSeen
+     *  - edge: absent; seen once; seen several times out of time order
+     *  - case: follower/followee differ only by case
+     *  - self edge rejected
+     *  - many edges, forcing the arrays and hash table to grow
+     *
+     * SocialNetwork.guessWeightedFollowsGraph(tweets, evidence)
+     *  - same edges as guessFollowsGraph; repeated mentions add weight
+     *
+     * SocialNetwork.influencersByStrength(graph)
+     *  - empty graph; distinct strengths; ties broken alphabetically
+     */
+
+    private static final Instant T1 = Instant.parse("2016-02-17T10:00:00Z");
+    private static final Instant T2 = Instant.parse("2016-02-17T11:00:00Z");
+    private static final Instant T3 = Instant.parse("2016-02-17T12:00:00Z");
+
+    @Test(expected=AssertionError.class)
+    public void testAssertionsEnabled() {
+        assert false; // make sure assertions are enabled with VM argument: -ea
+    }
+
+    @Test
+    public void testAbsentEdge() {
+        WeightedFollowsGraph graph = new WeightedFollowsGraph();
+        graph.addEvidence("ernie", "bert", T1);
+        assertEquals(0, graph.weight("bert", "ernie"));
+        assertEquals(0, graph.weight("ernie", "elmo"));
+        assertNull(graph.firstSeen("bert", "ernie"));
+    }
+
+    @Test
+    public void testRepeatedEvidenceOutOfOrder() {
+        WeightedFollowsGraph graph = new WeightedFollowsGraph();
+        graph.addEvidence("Ernie", "bert", T2);
+        graph.addEvidence("ernie", "BERT", T3);
+        graph.addEvidence("ERNIE", "Bert", T1);
+        assertEquals(1, graph.edgeCount());
+        assertEquals(2, graph.users().size());
+        assertEquals(3, graph.weight("ernie", "bert"));
+        assertEquals(T1, graph.firstSeen("ernie", "bert"));
+        assertEquals(T3, graph.lastSeen("eRnIe", "bErT"));
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testSelfEdgeRejected() {
+        new WeightedFollowsGraph().addEvidence("ernie", "Ernie", T1);
+    }
+
+    @Test
+    public void testManyEdges() {
+        WeightedFollowsGraph graph = new WeightedFollowsGraph();
+        final int n = 300;
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < 10; j++) {
+                graph.addEvidence("u" + i, "v" + j, T1);
+            }
+        }
+        assertEquals(n * 10, graph.edgeCount());
+        for (int i = 0; i < n; i++) {
+            assertEquals(1, graph.weight("u" + i, "v" + (i % 10)));
+        }
+        assertEquals(n, graph.inStrengths()[graph.users().id("v3")]);
+    }
+
+    @Test
+    public void testGuessWeightedMatchesUnweighted() {
+        List<Tweet> tweets = Arrays.asList(
+                new Tweet(1, "ernie", "@bert hi", T1),
+                new Tweet(2, "ernie", "@Bert again, and @elmo", T3),
+                new Tweet(3, "bert", "@ernie @ernie", T2));
+        Set<FollowEvidence> mentions = EnumSet.of(FollowEvidence.MENTION);
+        WeightedFollowsGraph graph = SocialNetwork.guessWeightedFollowsGraph(tweets, mentions);
+        assertEquals(SocialNetwork.guessFollowsGraph(tweets, mentions), graph.toFollowsGraph());
+        assertEquals(2, graph.weight("ernie", "bert"));
+        assertEquals(T1, graph.firstSeen("ernie", "bert"));
+        assertEquals(T3, graph.lastSeen("ernie", "bert"));
+        assertEquals("each mention counts", 2, graph.weight("bert", "ernie"));
+    }
+
+    @Test
+    public void testInfluencersByStrengthEmpty() {
+        assertTrue(SocialNetwork.influencersByStrength(new WeightedFollowsGraph()).isEmpty());
+    }
+
+    @Test
+    public void testInfluencersByStrengthOrder() {
+        WeightedFollowsGraph graph = new WeightedFollowsGraph();
+        // bert: 3 evidence from one follower; elmo: 2 from two; cookie: 2 from one
+        graph.addEvidence("ernie", "bert", T1);
+        graph.addEvidence("ernie", "bert", T1);
+        graph.addEvidence("ernie", "bert", T1);
+        graph.addEvidence("ernie", "elmo", T1);
+        graph.addEvidence("grover", "elmo", T1);
+        graph.addEvidence("grover", "cookie", T1);
+        graph.addEvidence("grover", "cookie", T1);
+        List<String> expected = new ArrayList<>(Arrays.asList("bert", "cookie", "elmo", "ernie", "grover"));
+        assertEquals(expected, SocialNetwork.influencersByStrength(graph));
+    }
+}